@@ -3,6 +3,10 @@ DROP TABLE IF EXISTS MOVIMIENTO;
 DROP TABLE IF EXISTS INVENTARIO;
 DROP TABLE IF EXISTS BODEGA;
 DROP TABLE IF EXISTS PRODUCTO;
+DROP TABLE IF EXISTS GRAPHQL_PERSISTED_QUERY;
+DROP TABLE IF EXISTS EVENTO_OUTBOX;
+DROP TABLE IF EXISTS EVENTO_PROCESADO;
+DROP TABLE IF EXISTS COLECCION_VERSION;
 
 -- Table: PRODUCTO
 CREATE TABLE PRODUCTO (
@@ -51,6 +55,76 @@ CREATE TABLE MOVIMIENTO (
     FOREIGN KEY (IDBodega) REFERENCES BODEGA(ID) ON DELETE CASCADE
 );
 
+-- Table: EVENTO_OUTBOX (eventos pendientes de publicar en Event Grid)
+CREATE TABLE EVENTO_OUTBOX (
+    ID BIGSERIAL PRIMARY KEY,
+    EventId VARCHAR(64) NOT NULL,
+    Subject VARCHAR(255) NOT NULL,
+    EventType VARCHAR(255) NOT NULL,
+    Data TEXT NOT NULL,
+    DataVersion VARCHAR(20) NOT NULL DEFAULT '1.0',
+    FechaEvento TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    Intentos INTEGER NOT NULL DEFAULT 0,
+    ProximoIntento TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    UltimoError TEXT,
+    Descartado BOOLEAN NOT NULL DEFAULT FALSE
+);
+CREATE INDEX IDX_OUTBOX_PENDIENTE ON EVENTO_OUTBOX (ID) WHERE Descartado = FALSE;
+CREATE INDEX IDX_OUTBOX_SUBJECT_ID ON EVENTO_OUTBOX (Subject, ID);
+
+-- Table: EVENTO_PROCESADO (ids de eventos consumidos o EN_CURSO con lease, con purga por antigüedad)
+CREATE TABLE EVENTO_PROCESADO (
+    EventId VARCHAR(64) PRIMARY KEY,
+    Estado VARCHAR(10) NOT NULL DEFAULT 'PROCESADO',
+    FechaReclamo TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    FechaProcesado TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX IDX_EVENTO_PROCESADO_FECHA ON EVENTO_PROCESADO (FechaProcesado);
+
+-- Table: GRAPHQL_PERSISTED_QUERY (Automatic Persisted Queries compartidas entre instancias)
+CREATE TABLE GRAPHQL_PERSISTED_QUERY (
+    Hash CHAR(64) PRIMARY KEY,
+    Query TEXT NOT NULL,
+    FechaCreacion TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Indexes: paginación keyset (columna de orden, ID)
+CREATE INDEX IDX_PRODUCTO_NOMBRE_ID ON PRODUCTO (Nombre, ID);
+CREATE INDEX IDX_PRODUCTO_PRECIO_ID ON PRODUCTO (Precio, ID);
+CREATE INDEX IDX_BODEGA_NOMBRE_ID ON BODEGA (Nombre, ID);
+CREATE INDEX IDX_BODEGA_CAPACIDAD_ID ON BODEGA (Capacidad, ID);
+
+-- Index: inventario por bodega (IDProducto ya está cubierto por el UNIQUE)
+CREATE INDEX IDX_INVENTARIO_BODEGA ON INVENTARIO (IDBodega);
+
+-- Indexes: FechaActualizacion (ordenar y filtrar por fecha de cambio)
+CREATE INDEX IDX_PRODUCTO_FECHA_ACT ON PRODUCTO (FechaActualizacion);
+CREATE INDEX IDX_BODEGA_FECHA_ACT ON BODEGA (FechaActualizacion);
+
+-- Table: COLECCION_VERSION (versión de los ETag de listados, +1 por commit que modifica la tabla)
+CREATE TABLE COLECCION_VERSION (
+    Tabla VARCHAR(64) PRIMARY KEY,
+    Version BIGINT NOT NULL DEFAULT 0,
+    FechaActualizacion TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+INSERT INTO COLECCION_VERSION (Tabla) VALUES ('producto'), ('bodega');
+
+-- Trigger diferido: se ejecuta al hacer commit e incrementa una vez por transacción
+CREATE OR REPLACE FUNCTION incrementar_version_coleccion() RETURNS trigger AS $$
+BEGIN
+    IF current_setting('inventario.version_' || TG_TABLE_NAME, true) IS DISTINCT FROM '1' THEN
+        PERFORM set_config('inventario.version_' || TG_TABLE_NAME, '1', true);
+        UPDATE COLECCION_VERSION SET Version = Version + 1, FechaActualizacion = clock_timestamp()
+        WHERE Tabla = TG_TABLE_NAME;
+    END IF;
+    RETURN NULL;
+END $$ LANGUAGE plpgsql;
+
+CREATE CONSTRAINT TRIGGER TRG_PRODUCTO_VERSION AFTER INSERT OR UPDATE OR DELETE ON PRODUCTO
+    DEFERRABLE INITIALLY DEFERRED FOR EACH ROW EXECUTE FUNCTION incrementar_version_coleccion();
+CREATE CONSTRAINT TRIGGER TRG_BODEGA_VERSION AFTER INSERT OR UPDATE OR DELETE ON BODEGA
+    DEFERRABLE INITIALLY DEFERRED FOR EACH ROW EXECUTE FUNCTION incrementar_version_coleccion();
+
 -- Insert mock data into PRODUCTO
 INSERT INTO PRODUCTO (Nombre, Descripcion, Precio, CantidadEnStock)
 VALUES
@@ -0,0 +1,90 @@
+#!/bin/bash
+
+# =============================================================================
+# Benchmark de arranque con AppCDS - Sistema de Inventario Agranelos
+#
+# Ejecuta la carga de entrenamiento (com.agranelos.inventario.Warmup) varias
+# veces con cada configuración de class-data sharing y reporta la mediana del
+# tiempo desde el inicio de la JVM hasta terminar, las clases cargadas desde
+# el archivo compartido y el tiempo ahorrado respecto del CDS por defecto.
+#
+#   off      -Xshare:off (sin CDS)
+#   default  archivo CDS por defecto del JDK
+#   deploy   archivo generado con app-cds.lst del paquete (mvn package
+#            -Pappcds), como lo genera la instancia: clases del JDK
+#   full     archivo con el classpath de la app; solo alcanzable si la app
+#            corre en el class loader de la aplicación, no en el worker
+#
+# Uso: mvn package -Pappcds && ./scripts/cds-benchmark.sh [ejecuciones]
+# =============================================================================
+
+set -e
+
+RUNS="${1:-5}"
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+TARGET="$ROOT/target"
+BENCH="$TARGET/appcds-bench"
+CLASS_LIST="$(ls "$TARGET"/azure-functions/*/app-cds.lst 2>/dev/null | head -1)"
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+
+GREEN='\033[0;32m'
+YELLOW='\033[1;33m'
+RED='\033[0;31m'
+NC='\033[0m' # No Color
+
+if [[ -z "$CLASS_LIST" ]]; then
+    echo -e "${RED}Falta la lista de clases AppCDS: ejecutar primero 'mvn package -Pappcds'${NC}"
+    exit 1
+fi
+
+mkdir -p "$BENCH"
+(cd "$ROOT" && mvn -q dependency:build-classpath -Dmdep.outputFile="$BENCH/classpath.txt")
+# CDS solo archiva clases de JARs: las clases de la app se empaquetan aparte
+LIBS="$(cat "$BENCH/classpath.txt")"
+APP_JAR="$BENCH/app.jar"
+jar cf "$APP_JAR" -C "$TARGET/classes" .
+CLASSPATH_APP="$LIBS:$APP_JAR"
+
+echo -e "${YELLOW}Generando archivos AppCDS...${NC}"
+# Como en la instancia (CdsArchive): sin classpath, solo clases del JDK
+"$JAVA" -Xshare:dump -XX:SharedClassListFile="$CLASS_LIST" \
+    -XX:SharedArchiveFile="$BENCH/deploy.jsa" > "$BENCH/deploy-dump.log" 2>&1
+"$JAVA" -Xshare:dump -XX:SharedClassListFile="$CLASS_LIST" \
+    -XX:SharedArchiveFile="$BENCH/full.jsa" -cp "$CLASSPATH_APP" > "$BENCH/full-dump.log" 2>&1
+
+# Mediana de uptimeMs y clases compartidas de la última ejecución
+run_config() {
+    local nombre="$1"
+    shift
+    local tiempos=()
+    for ((i = 0; i < RUNS; i++)); do
+        local salida
+        salida="$("$JAVA" "$@" -Xlog:class+load=info:file="$BENCH/$nombre.log" \
+            -cp "$CLASSPATH_APP" com.agranelos.inventario.Warmup 2>/dev/null | grep '^cds-training')"
+        tiempos+=("$(echo "$salida" | sed 's/.*uptimeMs=\([0-9]*\).*/\1/')")
+    done
+    local mediana
+    mediana="$(printf '%s\n' "${tiempos[@]}" | sort -n | sed -n "$(( (RUNS + 1) / 2 ))p")"
+    local total compartidas
+    total="$(grep -c 'source:' "$BENCH/$nombre.log" || true)"
+    compartidas="$(grep -c 'source: shared objects file' "$BENCH/$nombre.log" || true)"
+    echo "$nombre $mediana $total $compartidas"
+}
+
+echo -e "${YELLOW}Ejecutando $RUNS veces cada configuración...${NC}"
+RESULTADOS=(
+    "$(run_config off -Xshare:off)"
+    "$(run_config default -Xshare:auto)"
+    "$(run_config deploy -Xshare:auto -XX:SharedArchiveFile="$BENCH/deploy.jsa")"
+    "$(run_config full -Xshare:auto -XX:SharedArchiveFile="$BENCH/full.jsa")"
+)
+
+BASE="$(echo "${RESULTADOS[1]}" | awk '{print $2}')"
+echo ""
+printf "%-10s %12s %10s %12s %14s\n" "config" "mediana(ms)" "clases" "compartidas" "ahorro(ms)"
+for resultado in "${RESULTADOS[@]}"; do
+    read -r nombre mediana total compartidas <<< "$resultado"
+    printf "%-10s %12s %10s %12s %14s\n" "$nombre" "$mediana" "$total" "$compartidas" "$((BASE - mediana))"
+done
+echo ""
+echo -e "${GREEN}El ahorro de 'deploy' es lo que obtiene la instancia en Azure con el archivo generado por su JDK; 'full' es el techo con las librerías archivadas.${NC}"
@@ -0,0 +1,125 @@
+package com.agranelos.inventario;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Archivo AppCDS generado en la propia instancia.
+ *
+ * Un archivo CDS solo sirve a la misma build del JDK y sistema operativo que
+ * lo generó (con otra, -Xshare:auto lo ignora sin error), así que no se
+ * genera en CI: el paquete lleva la lista de clases de la carga de
+ * entrenamiento ({@value #CLASS_LIST}, perfil {@code appcds} del pom) y, si
+ * el worker arrancó con -XX:SharedArchiveFile pero no lo está usando (no
+ * existe o es de otra build del JDK), se genera con el java del propio worker
+ * en un proceso aparte. Lo usan los arranques siguientes.
+ */
+final class CdsArchive {
+
+    private static final Logger logger = Logger.getLogger(CdsArchive.class.getName());
+
+    /**
+     * Lista de clases junto al JAR de la app en el paquete de despliegue
+     */
+    static final String CLASS_LIST = "app-cds.lst";
+
+    private static final String ARCHIVE_OPTION = "-XX:SharedArchiveFile=";
+
+    private static final long DUMP_TIMEOUT_SECONDS = 120;
+
+    private CdsArchive() {
+    }
+
+    /**
+     * Genera el archivo indicado en -XX:SharedArchiveFile si la JVM no lo
+     * pudo usar. Los errores se registran y no afectan a la instancia.
+     */
+    static void dumpIfUnused() {
+        try {
+            String archive = archiveOption();
+            if (archive == null || sharingInUse()) {
+                return;
+            }
+            Path classList = Paths.get(Function.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                .resolveSibling(CLASS_LIST);
+            if (!Files.isRegularFile(classList)) {
+                logger.info("Sin " + CLASS_LIST + " en el paquete, no se genera el archivo AppCDS");
+                return;
+            }
+            dump(classList, Paths.get(archive));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warning("No se pudo generar el archivo AppCDS: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Valor de -XX:SharedArchiveFile con que arrancó la JVM, o null
+     */
+    static String archiveOption() {
+        String archive = null;
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith(ARCHIVE_OPTION)) {
+                archive = argument.substring(ARCHIVE_OPTION.length());
+            }
+        }
+        return archive != null && !archive.isEmpty() ? archive : null;
+    }
+
+    /**
+     * La JVM queda con UseSharedSpaces en false si no pudo mapear el archivo
+     */
+    static boolean sharingInUse() {
+        return Boolean.parseBoolean(ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class)
+            .getVMOption("UseSharedSpaces").getValue());
+    }
+
+    /**
+     * Escribe a un temporal y lo mueve al destino, por si otra instancia que
+     * comparte el almacenamiento lo genera al mismo tiempo
+     */
+    private static void dump(Path classList, Path archive) throws Exception {
+        Path directorio = archive.toAbsolutePath().getParent();
+        Files.createDirectories(directorio);
+        Path temporal = Files.createTempFile(directorio, "app-cds", ".tmp");
+        try {
+            long inicio = System.nanoTime();
+            Process process = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xshare:dump",
+                "-XX:SharedClassListFile=" + classList,
+                "-XX:SharedArchiveFile=" + temporal)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            if (!process.waitFor(DUMP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                logger.warning("La generación del archivo AppCDS superó " + DUMP_TIMEOUT_SECONDS + " s");
+                return;
+            }
+            if (process.exitValue() != 0) {
+                logger.warning("La generación del archivo AppCDS terminó con código " + process.exitValue());
+                return;
+            }
+            // -Xshare:dump lo deja de solo lectura y Windows no reemplaza esos archivos
+            archive.toFile().setWritable(true);
+            try {
+                Files.move(temporal, archive,StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporal, archive, StandardCopyOption.REPLACE_EXISTING);
+            }
+            logger.info(String.format("Archivo AppCDS generado en %s (%d ms); lo usan los próximos arranques",
+                archive, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio)));
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+}
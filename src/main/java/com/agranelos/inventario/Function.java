@@ -1,12 +1,29 @@
 package com.agranelos.inventario;
 
+import com.agranelos.inventario.cache.CacheInvalidation;
+import com.agranelos.inventario.cache.CacheInvalidationListener;
+import com.agranelos.inventario.cache.EntityCache;
+import com.agranelos.inventario.db.AdmissionRejectedException;
+import com.agranelos.inventario.db.CollectionVersion;
 import com.agranelos.inventario.db.DatabaseInitializer;
 import com.agranelos.inventario.db.DatabaseManager;
+import com.agranelos.inventario.db.KeysetCursor;
+import com.agranelos.inventario.db.ProductoBatchOperations;
+import com.agranelos.inventario.db.ReadConsistency;
+import com.agranelos.inventario.db.Workload;
 import com.agranelos.inventario.model.Producto;
 import com.agranelos.inventario.model.Bodega;
 import com.agranelos.inventario.graphql.GraphQLSchemaBuilder;
+import com.agranelos.inventario.graphql.QueryCostInstrumentation;
+import com.agranelos.inventario.http.ConditionalGet;
+import com.agranelos.inventario.metrics.PrometheusExporter;
+import com.agranelos.inventario.metrics.RequestMetrics;
 import com.agranelos.inventario.events.*;
+import com.azure.messaging.eventgrid.EventGridEvent;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -19,15 +36,22 @@ import com.microsoft.azure.functions.annotation.AuthorizationLevel;
 import com.microsoft.azure.functions.annotation.BindingName;
 import com.microsoft.azure.functions.annotation.FunctionName;
 import com.microsoft.azure.functions.annotation.HttpTrigger;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
@@ -39,6 +63,7 @@ public class Function {
     private static final ObjectMapper objectMapper = new ObjectMapper()
         .registerModule(new JavaTimeModule())
         .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private static final ObjectWriter productoWriter = objectMapper.writerFor(Producto.class);
     private static final AtomicBoolean databaseInitialized = new AtomicBoolean(false);
     
     /**
@@ -46,6 +71,23 @@ public class Function {
      */
     private static final int DEFAULT_CAPACITY = 1000;
 
+    /**
+     * Paginación keyset de GET /productos
+     */
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final String PRODUCTO_CURSOR_ORDEN = "NOMBRE";
+
+    /**
+     * Filas por viaje al servidor en el modo streaming
+     */
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    // Precalentamiento en segundo plano al cargar la clase en el host (WARMUP_ENABLED)
+    static {
+        Warmup.bootstrap();
+    }
+
     @FunctionName("InitializeDatabase")
     public HttpResponseMessage initializeDatabase(
         @HttpTrigger(
@@ -55,6 +97,14 @@ public class Function {
             route = "init"
         ) HttpRequestMessage<Optional<String>> request,
         final ExecutionContext context
+    ) {
+        return measure("InitializeDatabase", request, session -> initializeDatabase(request, context, session));
+    }
+
+    private HttpResponseMessage initializeDatabase(
+        HttpRequestMessage<Optional<String>> request,
+        ExecutionContext context,
+        ReadConsistency.Session session
     ) {
         Logger logger = context.getLogger();
         logger.info("Inicializando base de datos...");
@@ -96,19 +146,125 @@ public class Function {
             route = "productos"
         ) HttpRequestMessage<Optional<String>> request,
         final ExecutionContext context
+    ) {
+        return measure("GetProductos", request, session -> getProductos(request, context, session));
+    }
+
+    private HttpResponseMessage getProductos(
+        HttpRequestMessage<Optional<String>> request,
+        ExecutionContext context,
+        ReadConsistency.Session session
     ) {
         Logger logger = context.getLogger();
         logger.info("Obteniendo lista de productos...");
 
+        Map<String, String> params = request.getQueryParameters() != null
+            ? request.getQueryParameters()
+            : new HashMap<>();
+        String limitParam = params.get("limit");
+        String afterParam = params.get("after");
+
         try {
+            // Sin parámetros de paginación se mantiene el formato de lista,
+            // pero escrito fila a fila desde el ResultSet
+            if (limitParam == null && afterParam == null) {
+                ensureDatabaseInitialized();
+                CollectionVersion version = CollectionVersion.ofProductos();
+                String etag = ConditionalGet.etag("productos", version.getVersion(), version.getUltimaActualizacion());
+                if (ConditionalGet.isNotModified(request, etag, null)) {
+                    return ConditionalGet.notModified(request, etag, version.getUltimaActualizacion());
+                }
+                return ConditionalGet.withValidators(
+                        request.createResponseBuilder(HttpStatus.OK),
+                        etag,
+                        version.getUltimaActualizacion()
+                    )
+                    .header("Content-Type", "application/json")
+                    .body(streamAllProductos(logger))
+                    .build();
+            }
+
+            int limit;
+            KeysetCursor after = null;
+            try {
+                limit = limitParam != null
+                    ? Integer.parseInt(limitParam.trim())
+                    : DEFAULT_PAGE_SIZE;
+                if (afterParam != null) {
+                    after = KeysetCursor.decode(afterParam);
+                    if (!PRODUCTO_CURSOR_ORDEN.equals(after.getOrden())) {
+                        throw new IllegalArgumentException("Cursor no corresponde a este listado");
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                logger.warning("Parámetros de paginación inválidos: " + e.getMessage());
+                return request
+                    .createResponseBuilder(HttpStatus.BAD_REQUEST)
+                    .header("Content-Type", "application/json")
+                    .body("{\"error\": \"Parámetros de paginación inválidos (limit/after)\"}")
+                    .build();
+            }
+
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                return request
+                    .createResponseBuilder(HttpStatus.BAD_REQUEST)
+                    .header("Content-Type", "application/json")
+                    .body(
+                        "{\"error\": \"limit debe estar entre 1 y " +
+                        MAX_PAGE_SIZE +
+                        "\"}"
+                    )
+                    .build();
+            }
+
             ensureDatabaseInitialized();
-            List<Producto> productos = getAllProductos(logger);
 
-            return request
-                .createResponseBuilder(HttpStatus.OK)
+            // La versión se lee antes que las filas: si cambia entre ambas lecturas
+            // el cliente solo pierde un 304, nunca recibe un ETag más nuevo que el cuerpo
+            CollectionVersion version = CollectionVersion.ofProductos();
+            String etag = ConditionalGet.etag(
+                "productos",
+                version.getVersion(),
+                version.getUltimaActualizacion(),
+                limit,
+                afterParam
+            );
+            if (ConditionalGet.isNotModified(request, etag, null)) {
+                return ConditionalGet.notModified(request, etag, version.getUltimaActualizacion());
+            }
+
+            List<Producto> productos = getProductosPage(after, limit + 1, logger);
+            boolean hasMore = productos.size() > limit;
+            if (hasMore) {
+                productos = productos.subList(0, limit);
+            }
+
+            String nextCursor = null;
+            if (hasMore) {
+                Producto last = productos.get(productos.size() - 1);
+                nextCursor = new KeysetCursor(
+                    PRODUCTO_CURSOR_ORDEN,
+                    last.getNombre(),
+                    last.getId()
+                ).encode();
+            }
+
+            Map<String, Object> page = new LinkedHashMap<>();
+            page.put("items", productos);
+            page.put("nextCursor", nextCursor);
+            page.put("hasMore", hasMore);
+            page.put("limit", limit);
+
+            return ConditionalGet.withValidators(
+                    request.createResponseBuilder(HttpStatus.OK),
+                    etag,
+                    version.getUltimaActualizacion()
+                )
                 .header("Content-Type", "application/json")
-                .body(objectMapper.writeValueAsString(productos))
+                .body(toJson(page))
                 .build();
+        } catch (AdmissionRejectedException e) {
+            return overloaded(request, e, logger);
         } catch (Exception e) {
             logger.severe("Error obteniendo productos: " + e.getMessage());
             return request
@@ -133,6 +289,15 @@ public class Function {
         ) HttpRequestMessage<Optional<String>> request,
         @BindingName("id") String id,
         final ExecutionContext context
+    ) {
+        return measure("GetProductoById", request, session -> getProductoById(request, id, context, session));
+    }
+
+    private HttpResponseMessage getProductoById(
+        HttpRequestMessage<Optional<String>> request,
+        String id,
+        ExecutionContext context,
+        ReadConsistency.Session session
     ) {
         Logger logger = context.getLogger();
         String productId = id;
@@ -162,10 +327,18 @@ public class Function {
                     .build();
             }
 
-            return request
-                .createResponseBuilder(HttpStatus.OK)
+            String etag = ConditionalGet.etag("producto", producto.getId(), producto.getFechaActualizacion());
+            if (ConditionalGet.isNotModified(request, etag, producto.getFechaActualizacion())) {
+                return ConditionalGet.notModified(request, etag, producto.getFechaActualizacion());
+            }
+
+            return ConditionalGet.withValidators(
+                    request.createResponseBuilder(HttpStatus.OK),
+                    etag,
+                    producto.getFechaActualizacion()
+                )
                 .header("Content-Type", "application/json")
-                .body(objectMapper.writeValueAsString(producto))
+                .body(toJson(producto))
                 .build();
         } catch (NumberFormatException e) {
             logger.warning("ID de producto inválido: " + productId);
@@ -176,6 +349,8 @@ public class Function {
                     "{\"error\": \"ID de producto debe ser un número válido\"}"
                 )
                 .build();
+        } catch (AdmissionRejectedException e) {
+            return overloaded(request, e, logger);
         } catch (Exception e) {
             logger.severe("Error obteniendo producto: " + e.getMessage());
             return request
@@ -199,6 +374,14 @@ public class Function {
             route = "productos"
         ) HttpRequestMessage<Optional<String>> request,
         final ExecutionContext context
+    ) {
+        return measure("CreateProducto", request, session -> createProducto(request, context, session));
+    }
+
+    private HttpResponseMessage createProducto(
+        HttpRequestMessage<Optional<String>> request,
+        ExecutionContext context,
+        ReadConsistency.Session session
     ) {
         Logger logger = context.getLogger();
         logger.info("Creando nuevo producto...");
@@ -241,15 +424,21 @@ public class Function {
                     .build();
             }
 
-            Integer productoId = insertProducto(producto, logger);
+            // El evento se encola en la misma transacción que el INSERT
+            ProductoEventData eventData = DatabaseManager.inTransaction(conn -> {
+                producto.setId(insertProducto(conn, producto, logger));
+                ProductoEventData data = new ProductoEventData(producto, "CREATE", "system");
+                EventOutbox.enqueueProductoEvent(conn, EventType.PRODUCTO_CREADO, data);
+                return data;
+            });
+            Integer productoId = producto.getId();
             
-            // Publicar evento en Event Grid
-            producto.setId(productoId);
-            ProductoEventData eventData = new ProductoEventData(producto, "CREATE", "system");
-            EventGridPublisher.publishProductoEvent(EventType.PRODUCTO_CREADO, eventData, logger);
+            // Sin outbox se publica directo en Event Grid
+            if (!EventOutbox.isEnabled()) {
+                EventGridPublisher.publishProductoEvent(EventType.PRODUCTO_CREADO, eventData, logger);
+            }
 
-            return request
-                .createResponseBuilder(HttpStatus.CREATED)
+            return withSessionToken(request.createResponseBuilder(HttpStatus.CREATED), session)
                 .header("Content-Type", "application/json")
                 .body(
                     "{\"mensaje\": \"Producto creado exitosamente\", \"id\": " +
@@ -257,6 +446,8 @@ public class Function {
                     "}"
                 )
                 .build();
+        } catch (AdmissionRejectedException e) {
+            return overloaded(request, e, logger);
         } catch (Exception e) {
             logger.severe("Error creando producto: " + e.getMessage());
             return request
@@ -281,6 +472,15 @@ public class Function {
         ) HttpRequestMessage<Optional<String>> request,
         @BindingName("id") String id,
         final ExecutionContext context
+    ) {
+        return measure("UpdateProducto", request, session -> updateProducto(request, id, context, session));
+    }
+
+    private HttpResponseMessage updateProducto(
+        HttpRequestMessage<Optional<String>> request,
+        String id,
+        ExecutionContext context,
+        ReadConsistency.Session session
     ) {
         Logger logger = context.getLogger();
         String productId = id;
@@ -319,7 +519,14 @@ public class Function {
             }
             producto.setId(Integer.parseInt(productId));
 
-            boolean updated = updateProducto(producto, logger);
+            ProductoEventData eventData = new ProductoEventData(producto, "UPDATE", "system");
+            boolean updated = DatabaseManager.inTransaction(conn -> {
+                boolean filaActualizada = updateProducto(conn, producto, logger);
+                if (filaActualizada) {
+                    EventOutbox.enqueueProductoEvent(conn, EventType.PRODUCTO_ACTUALIZADO, eventData);
+                }
+                return filaActualizada;
+            });
 
             if (!updated) {
                 return request
@@ -329,12 +536,13 @@ public class Function {
                     .build();
             }
             
-            // Publicar evento en Event Grid
-            ProductoEventData eventData = new ProductoEventData(producto, "UPDATE", "system");
-            EventGridPublisher.publishProductoEvent(EventType.PRODUCTO_ACTUALIZADO, eventData, logger);
+            // Sin outbox se publica directo en Event Grid
+            if (!EventOutbox.isEnabled()) {
+                EventGridPublisher.publishProductoEvent(EventType.PRODUCTO_ACTUALIZADO, eventData, logger);
+            }
+            CacheInvalidation.afterRestWriteProducto(producto.getId());
 
-            return request
-                .createResponseBuilder(HttpStatus.OK)
+            return withSessionToken(request.createResponseBuilder(HttpStatus.OK), session)
                 .header("Content-Type", "application/json")
                 .body("{\"mensaje\": \"Producto actualizado exitosamente\"}")
                 .build();
@@ -347,6 +555,8 @@ public class Function {
                     "{\"error\": \"ID de producto debe ser un número válido\"}"
                 )
                 .build();
+        } catch (AdmissionRejectedException e) {
+            return overloaded(request, e, logger);
         } catch (Exception e) {
             logger.severe("Error actualizando producto: " + e.getMessage());
             return request
@@ -371,6 +581,15 @@ public class Function {
         ) HttpRequestMessage<Optional<String>> request,
         @BindingName("id") String id,
         final ExecutionContext context
+    ) {
+        return measure("DeleteProducto", request, session -> deleteProducto(request, id, context, session));
+    }
+
+    private HttpResponseMessage deleteProducto(
+        HttpRequestMessage<Optional<String>> request,
+        String id,
+        ExecutionContext context,
+        ReadConsistency.Session session
     ) {
         Logger logger = context.getLogger();
         String productId = id;
@@ -387,10 +606,18 @@ public class Function {
                     .build();
             }
 
-            boolean deleted = deleteProducto(
-                Integer.parseInt(productId),
-                logger
-            );
+            ProductoEventData eventData = new ProductoEventData();
+            eventData.setProductoId(Integer.parseInt(productId));
+            eventData.setOperation("DELETE");
+            eventData.setUsuario("system");
+
+            boolean deleted = DatabaseManager.inTransaction(conn -> {
+                boolean filaEliminada = deleteProducto(conn, eventData.getProductoId(), logger);
+                if (filaEliminada) {
+                    EventOutbox.enqueueProductoEvent(conn, EventType.PRODUCTO_ELIMINADO, eventData);
+                }
+                return filaEliminada;
+            });
 
             if (!deleted) {
                 return request
@@ -400,15 +627,13 @@ public class Function {
                     .build();
             }
             
-            // Publicar evento en Event Grid
-            ProductoEventData eventData = new ProductoEventData();
-            eventData.setProductoId(Integer.parseInt(productId));
-            eventData.setOperation("DELETE");
-            eventData.setUsuario("system");
-            EventGridPublisher.publishProductoEvent(EventType.PRODUCTO_ELIMINADO, eventData, logger);
+            // Sin outbox se publica directo en Event Grid
+            if (!EventOutbox.isEnabled()) {
+                EventGridPublisher.publishProductoEvent(EventType.PRODUCTO_ELIMINADO, eventData, logger);
+            }
+            CacheInvalidation.afterRestWriteProducto(eventData.getProductoId());
 
-            return request
-                .createResponseBuilder(HttpStatus.OK)
+            return withSessionToken(request.createResponseBuilder(HttpStatus.OK), session)
                 .header("Content-Type", "application/json")
                 .body("{\"mensaje\": \"Producto eliminado exitosamente\"}")
                 .build();
@@ -421,6 +646,8 @@ public class Function {
                     "{\"error\": \"ID de producto debe ser un número válido\"}"
                 )
                 .build();
+        } catch (AdmissionRejectedException e) {
+            return overloaded(request, e, logger);
         } catch (Exception e) {
             logger.severe("Error eliminando producto: " + e.getMessage());
             return request
@@ -440,81 +667,137 @@ public class Function {
     private void ensureDatabaseInitialized() {
         if (databaseInitialized.compareAndSet(false, true)) {
             DatabaseManager.initialize();
+            CacheInvalidationListener.start();
         }
     }
 
-    private List<Producto> getAllProductos(Logger logger) throws SQLException {
+    /**
+     * Escribe todos los productos como arreglo JSON directamente desde el
+     * ResultSet, sin materializar la lista. Con autocommit desactivado el
+     * driver de PostgreSQL usa un cursor de servidor y trae las filas de a
+     * STREAM_FETCH_SIZE, por lo que la memoria no depende del tamaño de la tabla.
+     */
+    private byte[] streamAllProductos(Logger logger)
+        throws SQLException, IOException {
         String sql =
-            "SELECT ID, Nombre, Descripcion, Precio, CantidadEnStock, FechaCreacion, FechaActualizacion FROM PRODUCTO ORDER BY Nombre";
+            "SELECT ID, Nombre, Descripcion, Precio, CantidadEnStock, FechaCreacion, FechaActualizacion FROM PRODUCTO ORDER BY Nombre, ID";
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        int count = 0;
+
+        // Listado completo: pool de reportes, para no ocupar las conexiones OLTP
+        try (Connection conn = DatabaseManager.getConnection(Workload.REPORTING)) {
+            conn.setAutoCommit(false);
+            try (
+                PreparedStatement pstmt = conn.prepareStatement(sql);
+                JsonGenerator generator = objectMapper
+                    .getFactory()
+                    .createGenerator(out)
+            ) {
+                pstmt.setFetchSize(STREAM_FETCH_SIZE);
+                generator.writeStartArray();
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        productoWriter.writeValue(generator, mapProducto(rs));
+                        count++;
+                    }
+                }
+                generator.writeEndArray();
+            } finally {
+                conn.rollback();
+            }
+
+            logger.info("Se obtuvieron " + count + " productos");
+            return out.toByteArray();
+        } catch (SQLException e) {
+            logger.severe(
+                "Error en la consulta de productos: " + e.getMessage()
+            );
+            throw e;
+        }
+    }
+
+    /**
+     * Obtiene una página de productos ordenada por (Nombre, ID) usando keyset
+     */
+    private List<Producto> getProductosPage(
+        KeysetCursor after,
+        int fetchLimit,
+        Logger logger
+    ) throws SQLException {
+        String sql = after == null
+            ? "SELECT ID, Nombre, Descripcion, Precio, CantidadEnStock, FechaCreacion, FechaActualizacion FROM PRODUCTO ORDER BY Nombre, ID LIMIT ?"
+            : "SELECT ID, Nombre, Descripcion, Precio, CantidadEnStock, FechaCreacion, FechaActualizacion FROM PRODUCTO WHERE (Nombre, ID) > (?, ?) ORDER BY Nombre, ID LIMIT ?";
         List<Producto> productos = new ArrayList<>();
 
         try (
-            Connection conn = DatabaseManager.getConnection();
-            PreparedStatement pstmt = conn.prepareStatement(sql);
-            ResultSet rs = pstmt.executeQuery()
+            Connection conn = DatabaseManager.getReadConnection();
+            PreparedStatement pstmt = conn.prepareStatement(sql)
         ) {
-            while (rs.next()) {
-                Producto producto = new Producto();
-                producto.setId(rs.getInt("ID"));
-                producto.setNombre(rs.getString("Nombre"));
-                producto.setDescripcion(rs.getString("Descripcion"));
-                producto.setPrecio(rs.getBigDecimal("Precio"));
-                producto.setCantidadEnStock(rs.getInt("CantidadEnStock"));
-                if (rs.getTimestamp("FechaCreacion") != null) {
-                    producto.setFechaCreacion(
-                        rs.getTimestamp("FechaCreacion").toLocalDateTime()
-                    );
-                }
-                if (rs.getTimestamp("FechaActualizacion") != null) {
-                    producto.setFechaActualizacion(
-                        rs.getTimestamp("FechaActualizacion").toLocalDateTime()
-                    );
+            int index = 1;
+            if (after != null) {
+                pstmt.setString(index++, after.getValor());
+                pstmt.setInt(index++, after.getId());
+            }
+            pstmt.setInt(index, fetchLimit);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    productos.add(mapProducto(rs));
                 }
-                productos.add(producto);
             }
 
-            logger.info("Se obtuvieron " + productos.size() + " productos");
+            logger.info("Se obtuvieron " + productos.size() + " productos (página)");
             return productos;
         } catch (SQLException e) {
             logger.severe(
-                "Error en la consulta de productos: " + e.getMessage()
+                "Error en la consulta paginada de productos: " + e.getMessage()
             );
             throw e;
         }
     }
 
+    private static Producto mapProducto(ResultSet rs) throws SQLException {
+        Producto producto = new Producto();
+        producto.setId(rs.getInt("ID"));
+        producto.setNombre(rs.getString("Nombre"));
+        producto.setDescripcion(rs.getString("Descripcion"));
+        producto.setPrecio(rs.getBigDecimal("Precio"));
+        producto.setCantidadEnStock(rs.getInt("CantidadEnStock"));
+        Timestamp fechaCreacion = rs.getTimestamp("FechaCreacion");
+        if (fechaCreacion != null) {
+            producto.setFechaCreacion(fechaCreacion.toLocalDateTime());
+        }
+        Timestamp fechaActualizacion = rs.getTimestamp("FechaActualizacion");
+        if (fechaActualizacion != null) {
+            producto.setFechaActualizacion(fechaActualizacion.toLocalDateTime());
+        }
+        return producto;
+    }
+
     private Producto getProductoById(Integer id, Logger logger)
         throws SQLException {
+        Producto cached = EntityCache.getProducto(id);
+        if (cached != null) {
+            return cached;
+        }
+
         String sql =
             "SELECT ID, Nombre, Descripcion, Precio, CantidadEnStock, FechaCreacion, FechaActualizacion FROM PRODUCTO WHERE ID = ?";
 
         try (
-            Connection conn = DatabaseManager.getConnection();
+            Connection conn = DatabaseManager.getReadConnection();
             PreparedStatement pstmt = conn.prepareStatement(sql)
         ) {
             pstmt.setInt(1, id);
 
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    Producto producto = new Producto();
-                    producto.setId(rs.getInt("ID"));
-                    producto.setNombre(rs.getString("Nombre"));
-                    producto.setDescripcion(rs.getString("Descripcion"));
-                    producto.setPrecio(rs.getBigDecimal("Precio"));
-                    producto.setCantidadEnStock(rs.getInt("CantidadEnStock"));
-                    if (rs.getTimestamp("FechaCreacion") != null) {
-                        producto.setFechaCreacion(
-                            rs.getTimestamp("FechaCreacion").toLocalDateTime()
-                        );
-                    }
-                    if (rs.getTimestamp("FechaActualizacion") != null) {
-                        producto.setFechaActualizacion(
-                            rs
-                                .getTimestamp("FechaActualizacion")
-                                .toLocalDateTime()
-                        );
-                    }
+                    Producto producto = mapProducto(rs);
                     logger.info("Producto encontrado: " + producto.getNombre());
+                    // Una fila de la réplica puede ser anterior a la última invalidación
+                    if (!conn.isReadOnly()) {
+                        EntityCache.putProducto(producto);
+                    }
                     return producto;
                 }
             }
@@ -526,15 +809,12 @@ public class Function {
         return null;
     }
 
-    private Integer insertProducto(Producto producto, Logger logger)
+    private Integer insertProducto(Connection conn, Producto producto, Logger logger)
         throws SQLException {
         String sql =
             "INSERT INTO PRODUCTO (Nombre, Descripcion, Precio, CantidadEnStock) VALUES (?, ?, ?, ?) RETURNING ID";
 
-        try (
-            Connection conn = DatabaseManager.getConnection();
-            PreparedStatement pstmt = conn.prepareStatement(sql)
-        ) {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, producto.getNombre());
             pstmt.setString(2, producto.getDescripcion());
             pstmt.setBigDecimal(
@@ -553,6 +833,7 @@ public class Function {
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
                     Integer id = rs.getInt("ID");
+                    EntityCache.invalidateProducto(id);
                     logger.info(
                         "Producto creado con ID: " +
                         id +
@@ -570,15 +851,12 @@ public class Function {
         throw new SQLException("No se pudo crear el producto");
     }
 
-    private boolean updateProducto(Producto producto, Logger logger)
+    private boolean updateProducto(Connection conn, Producto producto, Logger logger)
         throws SQLException {
         String sql =
             "UPDATE PRODUCTO SET Nombre = ?, Descripcion = ?, Precio = ?, CantidadEnStock = ?, FechaActualizacion = CURRENT_TIMESTAMP WHERE ID = ?";
 
-        try (
-            Connection conn = DatabaseManager.getConnection();
-            PreparedStatement pstmt = conn.prepareStatement(sql)
-        ) {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, producto.getNombre());
             pstmt.setString(2, producto.getDescripcion());
             pstmt.setBigDecimal(
@@ -597,6 +875,7 @@ public class Function {
 
             int rowsAffected = pstmt.executeUpdate();
             boolean updated = rowsAffected > 0;
+            EntityCache.invalidateProducto(producto.getId());
 
             if (updated) {
                 logger.info(
@@ -618,18 +897,16 @@ public class Function {
         }
     }
 
-    private boolean deleteProducto(Integer id, Logger logger)
+    private boolean deleteProducto(Connection conn, Integer id, Logger logger)
         throws SQLException {
         String sql = "DELETE FROM PRODUCTO WHERE ID = ?";
 
-        try (
-            Connection conn = DatabaseManager.getConnection();
-            PreparedStatement pstmt = conn.prepareStatement(sql)
-        ) {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, id);
 
             int rowsAffected = pstmt.executeUpdate();
             boolean deleted = rowsAffected > 0;
+            EntityCache.invalidateProducto(id);
 
             if (deleted) {
                 logger.info("Producto eliminado: ID " + id);
@@ -644,6 +921,384 @@ public class Function {
         }
     }
 
+    // ======================== OPERACIONES MASIVAS DE PRODUCTOS ========================
+
+    /**
+     * Crea productos en lote. Cuerpo: arreglo JSON de productos.
+     * Responde 201 si todos se crearon o 207 con el resultado de cada ítem.
+     */
+    @FunctionName("CreateProductosBatch")
+    public HttpResponseMessage createProductosBatch(
+        @HttpTrigger(
+            name = "req",
+            methods = { HttpMethod.POST },
+            authLevel = AuthorizationLevel.ANONYMOUS,
+            route = "productos:batch"
+        ) HttpRequestMessage<Optional<String>> request,
+        final ExecutionContext context
+    ) {
+        return measure("CreateProductosBatch", request, session -> createProductosBatch(request, context, session));
+    }
+
+    private HttpResponseMessage createProductosBatch(
+        HttpRequestMessage<Optional<String>> request,
+        ExecutionContext context,
+        ReadConsistency.Session session
+    ) {
+        Logger logger = context.getLogger();
+        logger.info("Creando lote de productos...");
+
+        try {
+            JsonNode items;
+            try {
+                items = readBatchArray(request.getBody().orElse(""));
+            } catch (IllegalArgumentException e) {
+                return batchError(request, e.getMessage());
+            }
+
+            List<Map<String, Object>> resultados = new ArrayList<>(items.size());
+            List<Producto> validos = new ArrayList<>();
+            List<Map<String, Object>> resultadosValidos = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) {
+                Map<String, Object> resultado = new LinkedHashMap<>();
+                resultado.put("indice", i);
+                resultados.add(resultado);
+
+                String error;
+                Producto producto = null;
+                try {
+                    producto = objectMapper.treeToValue(items.get(i), Producto.class);
+                    error = ProductoBatchOperations.validar(producto);
+                } catch (JsonProcessingException e) {
+                    error = "JSON inválido";
+                }
+                if (error != null) {
+                    marcarError(resultado, error);
+                } else {
+                    validos.add(producto);
+                    resultadosValidos.add(resultado);
+                }
+            }
+
+            ensureDatabaseInitialized();
+            List<EventGridEvent> events = DatabaseManager.inTransaction(Workload.BATCH, conn -> {
+                List<Integer> ids = ProductoBatchOperations.insertAll(conn, validos);
+                List<EventGridEvent> lote = new ArrayList<>();
+                for (int i = 0; i < validos.size(); i++) {
+                    Producto producto = validos.get(i);
+                    producto.setId(ids.get(i));
+                    resultadosValidos.get(i).put("id", ids.get(i));
+                    resultadosValidos.get(i).put("estado", "CREADO");
+                    addProductoEvent(lote, EventType.PRODUCTO_CREADO, new ProductoEventData(producto, "CREATE", "system"), logger);
+                }
+                enqueueBatchEvents(conn, lote);
+                return lote;
+            });
+            publishBatchEvents(events, logger);
+
+            return batchResponse(request, session, resultados, validos.size(), HttpStatus.CREATED);
+        } catch (AdmissionRejectedException e) {
+            return overloaded(request, e, logger);
+        } catch (Exception e) {
+            logger.severe("Error creando lote de productos: " + e.getMessage());
+            return request
+                .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+                .header("Content-Type", "application/json")
+                .body(
+                    "{\"error\": \"Error creando lote de productos\", \"detalle\": \"" +
+                    e.getMessage() +
+                    "\"}"
+                )
+                .build();
+        }
+    }
+
+    /**
+     * Actualiza productos en lote. Cuerpo: arreglo JSON de productos con id.
+     */
+    @FunctionName("UpdateProductosBatch")
+    public HttpResponseMessage updateProductosBatch(
+        @HttpTrigger(
+            name = "req",
+            methods = { HttpMethod.POST },
+            authLevel = AuthorizationLevel.ANONYMOUS,
+            route = "productos:batchUpdate"
+        ) HttpRequestMessage<Optional<String>> request,
+        final ExecutionContext context
+    ) {
+        return measure("UpdateProductosBatch", request, session -> updateProductosBatch(request, context, session));
+    }
+
+    private HttpResponseMessage updateProductosBatch(
+        HttpRequestMessage<Optional<String>> request,
+        ExecutionContext context,
+        ReadConsistency.Session session
+    ) {
+        Logger logger = context.getLogger();
+        logger.info("Actualizando lote de productos...");
+
+        try {
+            JsonNode items;
+            try {
+                items = readBatchArray(request.getBody().orElse(""));
+            } catch (IllegalArgumentException e) {
+                return batchError(request, e.getMessage());
+            }
+
+            List<Map<String, Object>> resultados = new ArrayList<>(items.size());
+            List<Producto> validos = new ArrayList<>();
+            List<Map<String, Object>> resultadosValidos = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) {
+                Map<String, Object> resultado = new LinkedHashMap<>();
+                resultado.put("indice", i);
+                resultados.add(resultado);
+
+                String error;
+                Producto producto = null;
+                try {
+                    producto = objectMapper.treeToValue(items.get(i), Producto.class);
+                    error = producto != null && producto.getId() == null
+                        ? "ID de producto requerido"
+                        : ProductoBatchOperations.validar(producto);
+                } catch (JsonProcessingException e) {
+                    error = "JSON inválido";
+                }
+                if (error != null) {
+                    marcarError(resultado, error);
+                } else {
+                    resultado.put("id", producto.getId());
+                    validos.add(producto);
+                    resultadosValidos.add(resultado);
+                }
+            }
+
+            ensureDatabaseInitialized();
+            List<Integer> actualizados = new ArrayList<>();
+            List<EventGridEvent> events = DatabaseManager.inTransaction(Workload.BATCH, conn -> {
+                int[] filas = ProductoBatchOperations.updateAll(conn, validos);
+                List<EventGridEvent> lote = new ArrayList<>();
+                for (int i = 0; i < validos.size(); i++) {
+                    if (filas[i] > 0) {
+                        Producto producto = validos.get(i);
+                        resultadosValidos.get(i).put("estado", "ACTUALIZADO");
+                        actualizados.add(producto.getId());
+                        addProductoEvent(lote, EventType.PRODUCTO_ACTUALIZADO, new ProductoEventData(producto, "UPDATE", "system"), logger);
+                    } else {
+                        marcarError(resultadosValidos.get(i), "Producto no encontrado");
+                    }
+                }
+                enqueueBatchEvents(conn, lote);
+                return lote;
+            });
+            publishBatchEvents(events, logger);
+            CacheInvalidation.afterRestWriteProductos(actualizados);
+
+            return batchResponse(request, session, resultados, actualizados.size(), HttpStatus.OK);
+        } catch (AdmissionRejectedException e) {
+            return overloaded(request, e, logger);
+        } catch (Exception e) {
+            logger.severe("Error actualizando lote de productos: " + e.getMessage());
+            return request
+                .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+                .header("Content-Type", "application/json")
+                .body(
+                    "{\"error\": \"Error actualizando lote de productos\", \"detalle\": \"" +
+                    e.getMessage() +
+                    "\"}"
+                )
+                .build();
+        }
+    }
+
+    /**
+     * Elimina productos en lote. Cuerpo: arreglo JSON de IDs.
+     */
+    @FunctionName("DeleteProductosBatch")
+    public HttpResponseMessage deleteProductosBatch(
+        @HttpTrigger(
+            name = "req",
+            methods = { HttpMethod.POST },
+            authLevel = AuthorizationLevel.ANONYMOUS,
+            route = "productos:batchDelete"
+        ) HttpRequestMessage<Optional<String>> request,
+        final ExecutionContext context
+    ) {
+        return measure("DeleteProductosBatch", request, session -> deleteProductosBatch(request, context, session));
+    }
+
+    private HttpResponseMessage deleteProductosBatch(
+        HttpRequestMessage<Optional<String>> request,
+        ExecutionContext context,
+        ReadConsistency.Session session
+    ) {
+        Logger logger = context.getLogger();
+        logger.info("Eliminando lote de productos...");
+
+        try {
+            JsonNode items;
+            try {
+                items = readBatchArray(request.getBody().orElse(""));
+            } catch (IllegalArgumentException e) {
+                return batchError(request, e.getMessage());
+            }
+
+            List<Map<String, Object>> resultados = new ArrayList<>(items.size());
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) {
+                Map<String, Object> resultado = new LinkedHashMap<>();
+                resultado.put("indice", i);
+                resultados.add(resultado);
+
+                JsonNode item = items.get(i);
+                if (item.canConvertToInt() && item.isIntegralNumber()) {
+                    resultado.put("id", item.asInt());
+                    ids.add(item.asInt());
+                } else {
+                    marcarError(resultado, "ID de producto debe ser un número válido");
+                }
+            }
+
+            ensureDatabaseInitialized();
+            Set<Integer> eliminados = new LinkedHashSet<>();
+            List<EventGridEvent> events = DatabaseManager.inTransaction(Workload.BATCH, conn -> {
+                eliminados.addAll(ProductoBatchOperations.deleteAll(conn, ids));
+                List<EventGridEvent> lote = new ArrayList<>();
+                for (Map<String, Object> resultado : resultados) {
+                    Object id = resultado.get("id");
+                    if (id == null) {
+                        continue;
+                    }
+                    if (eliminados.contains(id)) {
+                        resultado.put("estado", "ELIMINADO");
+                        ProductoEventData eventData = new ProductoEventData();
+                        eventData.setProductoId((Integer) id);
+                        eventData.setOperation("DELETE");
+                        eventData.setUsuario("system");
+                        addProductoEvent(lote, EventType.PRODUCTO_ELIMINADO, eventData, logger);
+                    } else {
+                        marcarError(resultado, "Producto no encontrado");
+                    }
+                }
+                enqueueBatchEvents(conn, lote);
+                return lote;
+            });
+            publishBatchEvents(events, logger);
+            CacheInvalidation.afterRestWriteProductos(eliminados);
+
+            return batchResponse(request, session, resultados, eliminados.size(), HttpStatus.OK);
+        } catch (AdmissionRejectedException e) {
+            return overloaded(request, e, logger);
+        } catch (Exception e) {
+            logger.severe("Error eliminando lote de productos: " + e.getMessage());
+            return request
+                .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+                .header("Content-Type", "application/json")
+                .body(
+                    "{\"error\": \"Error eliminando lote de productos\", \"detalle\": \"" +
+                    e.getMessage() +
+                    "\"}"
+                )
+                .build();
+        }
+    }
+
+    /**
+     * Lee el cuerpo de una operación masiva: un arreglo JSON no vacío y acotado
+     *
+     * @throws IllegalArgumentException con el mensaje para el cliente
+     */
+    private JsonNode readBatchArray(String requestBody) {
+        if (requestBody.isEmpty()) {
+            throw new IllegalArgumentException("Cuerpo de la petición requerido");
+        }
+        JsonNode items;
+        try {
+            items = objectMapper.readTree(requestBody);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("JSON inválido");
+        }
+        if (items == null || !items.isArray() || items.size() == 0) {
+            throw new IllegalArgumentException("Se esperaba un arreglo JSON no vacío");
+        }
+        if (items.size() > ProductoBatchOperations.MAX_ITEMS) {
+            throw new IllegalArgumentException("El lote no puede superar " + ProductoBatchOperations.MAX_ITEMS + " ítems");
+        }
+        return items;
+    }
+
+    private HttpResponseMessage batchError(HttpRequestMessage<Optional<String>> request, String mensaje) {
+        return request
+            .createResponseBuilder(HttpStatus.BAD_REQUEST)
+            .header("Content-Type", "application/json")
+            .body("{\"error\": \"" + mensaje + "\"}")
+            .build();
+    }
+
+    private static void marcarError(Map<String, Object> resultado, String error) {
+        resultado.put("estado", "ERROR");
+        resultado.put("error", error);
+    }
+
+    /**
+     * Respuesta de una operación masiva: okStatus si todos los ítems
+     * resultaron bien, 207 Multi-Status si alguno falló
+     */
+    private HttpResponseMessage batchResponse(
+        HttpRequestMessage<Optional<String>> request,
+        ReadConsistency.Session session,
+        List<Map<String, Object>> resultados,
+        int exitosos,
+        HttpStatus okStatus
+    ) throws JsonProcessingException {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("total", resultados.size());
+        body.put("exitosos", exitosos);
+        body.put("fallidos", resultados.size() - exitosos);
+        body.put("resultados", resultados);
+
+        return withSessionToken(
+                request.createResponseBuilder(exitosos == resultados.size() ? okStatus : HttpStatus.MULTI_STATUS),
+                session
+            )
+            .header("Content-Type", "application/json")
+            .body(toJson(body))
+            .build();
+    }
+
+    private static void addProductoEvent(
+        List<EventGridEvent> events,
+        EventType eventType,
+        ProductoEventData eventData,
+        Logger logger
+    ) {
+        if (!EventGridPublisher.isConfigured()) {
+            return;
+        }
+        try {
+            events.add(EventGridPublisher.buildProductoEvent(eventType, eventData));
+        } catch (JsonProcessingException e) {
+            logger.warning("No se pudo serializar el evento del producto " + eventData.getProductoId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Encola los eventos del lote en EVENTO_OUTBOX dentro de la transacción
+     */
+    private static void enqueueBatchEvents(Connection conn, List<EventGridEvent> events) throws SQLException {
+        if (EventOutbox.isEnabled()) {
+            EventOutbox.enqueueAll(conn, events);
+        }
+    }
+
+    /**
+     * Publica todos los eventos del lote en una sola llamada cuando no hay outbox
+     */
+    private static void publishBatchEvents(List<EventGridEvent> events, Logger logger) {
+        if (!events.isEmpty() && !EventOutbox.isEnabled()) {
+            EventGridPublisher.publishEvents(events, logger);
+        }
+    }
+
     // ======================== FUNCIONES SERVERLESS PARA BODEGAS ========================
 
     @FunctionName("GetBodegas")
@@ -655,19 +1310,38 @@ public class Function {
             route = "bodegas"
         ) HttpRequestMessage<Optional<String>> request,
         final ExecutionContext context
+    ) {
+        return measure("GetBodegas", request, session -> getBodegas(request, context, session));
+    }
+
+    private HttpResponseMessage getBodegas(
+        HttpRequestMessage<Optional<String>> request,
+        ExecutionContext context,
+        ReadConsistency.Session session
     ) {
         Logger logger = context.getLogger();
         logger.info("Obteniendo lista de bodegas...");
 
         try {
             ensureDatabaseInitialized();
+            CollectionVersion version = CollectionVersion.ofBodegas();
+            String etag = ConditionalGet.etag("bodegas", version.getVersion(), version.getUltimaActualizacion());
+            if (ConditionalGet.isNotModified(request, etag, null)) {
+                return ConditionalGet.notModified(request, etag, version.getUltimaActualizacion());
+            }
+
             List<Bodega> bodegas = getAllBodegas(logger);
 
-            return request
-                .createResponseBuilder(HttpStatus.OK)
+            return ConditionalGet.withValidators(
+                    request.createResponseBuilder(HttpStatus.OK),
+                    etag,
+                    version.getUltimaActualizacion()
+                )
                 .header("Content-Type", "application/json")
-                .body(objectMapper.writeValueAsString(bodegas))
+                .body(toJson(bodegas))
                 .build();
+        } catch (AdmissionRejectedException e) {
+            return overloaded(request, e, logger);
         } catch (Exception e) {
             logger.severe("Error obteniendo bodegas: " + e.getMessage());
             return request
@@ -692,6 +1366,15 @@ public class Function {
         ) HttpRequestMessage<Optional<String>> request,
         @BindingName("id") String id,
         final ExecutionContext context
+    ) {
+        return measure("GetBodegaById", request, session -> getBodegaById(request, id, context, session));
+    }
+
+    private HttpResponseMessage getBodegaById(
+        HttpRequestMessage<Optional<String>> request,
+        String id,
+        ExecutionContext context,
+        ReadConsistency.Session session
     ) {
         Logger logger = context.getLogger();
         String bodegaId = id;
@@ -721,10 +1404,18 @@ public class Function {
                     .build();
             }
 
-            return request
-                .createResponseBuilder(HttpStatus.OK)
+            String etag = ConditionalGet.etag("bodega", bodega.getId(), bodega.getFechaActualizacion());
+            if (ConditionalGet.isNotModified(request, etag, bodega.getFechaActualizacion())) {
+                return ConditionalGet.notModified(request, etag, bodega.getFechaActualizacion());
+            }
+
+            return ConditionalGet.withValidators(
+                    request.createResponseBuilder(HttpStatus.OK),
+                    etag,
+                    bodega.getFechaActualizacion()
+                )
                 .header("Content-Type", "application/json")
-                .body(objectMapper.writeValueAsString(bodega))
+                .body(toJson(bodega))
                 .build();
         } catch (NumberFormatException e) {
             logger.warning("ID de bodega inválido: " + bodegaId);
@@ -735,6 +1426,8 @@ public class Function {
                     "{\"error\": \"ID de bodega debe ser un número válido\"}"
                 )
                 .build();
+        } catch (AdmissionRejectedException e) {
+            return overloaded(request, e, logger);
         } catch (Exception e) {
             logger.severe("Error obteniendo bodega: " + e.getMessage());
             return request
@@ -758,6 +1451,14 @@ public class Function {
             route = "bodegas"
         ) HttpRequestMessage<Optional<String>> request,
         final ExecutionContext context
+    ) {
+        return measure("CreateBodega", request, session -> createBodega(request, context, session));
+    }
+
+    private HttpResponseMessage createBodega(
+        HttpRequestMessage<Optional<String>> request,
+        ExecutionContext context,
+        ReadConsistency.Session session
     ) {
         Logger logger = context.getLogger();
         logger.info("Creando nueva bodega...");
@@ -813,15 +1514,21 @@ public class Function {
                     .build();
             }
 
-            Integer bodegaId = insertBodega(bodega, logger);
+            // El evento se encola en la misma transacción que el INSERT
+            BodegaEventData eventData = DatabaseManager.inTransaction(conn -> {
+                bodega.setId(insertBodega(conn, bodega, logger));
+                BodegaEventData data = new BodegaEventData(bodega, "CREATE", "system");
+                EventOutbox.enqueueBodegaEvent(conn, EventType.BODEGA_CREADA, data);
+                return data;
+            });
+            Integer bodegaId = bodega.getId();
             
-            // Publicar evento en Event Grid
-            bodega.setId(bodegaId);
-            BodegaEventData eventData = new BodegaEventData(bodega, "CREATE", "system");
-            EventGridPublisher.publishBodegaEvent(EventType.BODEGA_CREADA, eventData, logger);
+            // Sin outbox se publica directo en Event Grid
+            if (!EventOutbox.isEnabled()) {
+                EventGridPublisher.publishBodegaEvent(EventType.BODEGA_CREADA, eventData, logger);
+            }
 
-            return request
-                .createResponseBuilder(HttpStatus.CREATED)
+            return withSessionToken(request.createResponseBuilder(HttpStatus.CREATED), session)
                 .header("Content-Type", "application/json")
                 .body(
                     "{\"mensaje\": \"Bodega creada exitosamente\", \"id\": " +
@@ -829,6 +1536,8 @@ public class Function {
                     "}"
                 )
                 .build();
+        } catch (AdmissionRejectedException e) {
+            return overloaded(request, e, logger);
         } catch (Exception e) {
             logger.severe("Error creando bodega: " + e.getMessage());
             return request
@@ -853,6 +1562,15 @@ public class Function {
         ) HttpRequestMessage<Optional<String>> request,
         @BindingName("id") String id,
         final ExecutionContext context
+    ) {
+        return measure("UpdateBodega", request, session -> updateBodega(request, id, context, session));
+    }
+
+    private HttpResponseMessage updateBodega(
+        HttpRequestMessage<Optional<String>> request,
+        String id,
+        ExecutionContext context,
+        ReadConsistency.Session session
     ) {
         Logger logger = context.getLogger();
         String bodegaId = id;
@@ -891,7 +1609,14 @@ public class Function {
             }
             bodega.setId(Integer.parseInt(bodegaId));
 
-            boolean updated = updateBodega(bodega, logger);
+            BodegaEventData eventData = new BodegaEventData(bodega, "UPDATE", "system");
+            boolean updated = DatabaseManager.inTransaction(conn -> {
+                boolean filaActualizada = updateBodega(conn, bodega, logger);
+                if (filaActualizada) {
+                    EventOutbox.enqueueBodegaEvent(conn, EventType.BODEGA_ACTUALIZADA, eventData);
+                }
+                return filaActualizada;
+            });
 
             if (!updated) {
                 return request
@@ -901,12 +1626,13 @@ public class Function {
                     .build();
             }
             
-            // Publicar evento en Event Grid
-            BodegaEventData eventData = new BodegaEventData(bodega, "UPDATE", "system");
-            EventGridPublisher.publishBodegaEvent(EventType.BODEGA_ACTUALIZADA, eventData, logger);
+            // Sin outbox se publica directo en Event Grid
+            if (!EventOutbox.isEnabled()) {
+                EventGridPublisher.publishBodegaEvent(EventType.BODEGA_ACTUALIZADA, eventData, logger);
+            }
+            CacheInvalidation.afterRestWriteBodega(bodega.getId());
 
-            return request
-                .createResponseBuilder(HttpStatus.OK)
+            return withSessionToken(request.createResponseBuilder(HttpStatus.OK), session)
                 .header("Content-Type", "application/json")
                 .body("{\"mensaje\": \"Bodega actualizada exitosamente\"}")
                 .build();
@@ -919,6 +1645,8 @@ public class Function {
                     "{\"error\": \"ID de bodega debe ser un número válido\"}"
                 )
                 .build();
+        } catch (AdmissionRejectedException e) {
+            return overloaded(request, e, logger);
         } catch (Exception e) {
             logger.severe("Error actualizando bodega: " + e.getMessage());
             return request
@@ -943,6 +1671,15 @@ public class Function {
         ) HttpRequestMessage<Optional<String>> request,
         @BindingName("id") String id,
         final ExecutionContext context
+    ) {
+        return measure("DeleteBodega", request, session -> deleteBodega(request, id, context, session));
+    }
+
+    private HttpResponseMessage deleteBodega(
+        HttpRequestMessage<Optional<String>> request,
+        String id,
+        ExecutionContext context,
+        ReadConsistency.Session session
     ) {
         Logger logger = context.getLogger();
         String bodegaId = id;
@@ -959,10 +1696,18 @@ public class Function {
                     .build();
             }
 
-            boolean deleted = deleteBodega(
-                Integer.parseInt(bodegaId),
-                logger
-            );
+            BodegaEventData eventData = new BodegaEventData();
+            eventData.setBodegaId(Integer.parseInt(bodegaId));
+            eventData.setOperation("DELETE");
+            eventData.setUsuario("system");
+
+            boolean deleted = DatabaseManager.inTransaction(conn -> {
+                boolean filaEliminada = deleteBodega(conn, eventData.getBodegaId(), logger);
+                if (filaEliminada) {
+                    EventOutbox.enqueueBodegaEvent(conn, EventType.BODEGA_ELIMINADA, eventData);
+                }
+                return filaEliminada;
+            });
 
             if (!deleted) {
                 return request
@@ -972,15 +1717,13 @@ public class Function {
                     .build();
             }
             
-            // Publicar evento en Event Grid
-            BodegaEventData eventData = new BodegaEventData();
-            eventData.setBodegaId(Integer.parseInt(bodegaId));
-            eventData.setOperation("DELETE");
-            eventData.setUsuario("system");
-            EventGridPublisher.publishBodegaEvent(EventType.BODEGA_ELIMINADA, eventData, logger);
+            // Sin outbox se publica directo en Event Grid
+            if (!EventOutbox.isEnabled()) {
+                EventGridPublisher.publishBodegaEvent(EventType.BODEGA_ELIMINADA, eventData, logger);
+            }
+            CacheInvalidation.afterRestWriteBodega(eventData.getBodegaId());
 
-            return request
-                .createResponseBuilder(HttpStatus.OK)
+            return withSessionToken(request.createResponseBuilder(HttpStatus.OK), session)
                 .header("Content-Type", "application/json")
                 .body("{\"mensaje\": \"Bodega eliminada exitosamente\"}")
                 .build();
@@ -993,6 +1736,8 @@ public class Function {
                     "{\"error\": \"ID de bodega debe ser un número válido\"}"
                 )
                 .build();
+        } catch (AdmissionRejectedException e) {
+            return overloaded(request, e, logger);
         } catch (Exception e) {
             logger.severe("Error eliminando bodega: " + e.getMessage());
             return request
@@ -1011,11 +1756,11 @@ public class Function {
 
     private List<Bodega> getAllBodegas(Logger logger) throws SQLException {
         String sql =
-            "SELECT ID, Nombre, Ubicacion, Capacidad, FechaCreacion FROM BODEGA ORDER BY Nombre";
+            "SELECT ID, Nombre, Ubicacion, Capacidad, FechaCreacion, FechaActualizacion FROM BODEGA ORDER BY Nombre";
         List<Bodega> bodegas = new ArrayList<>();
 
         try (
-            Connection conn = DatabaseManager.getConnection();
+            Connection conn = DatabaseManager.getReadConnection();
             PreparedStatement pstmt = conn.prepareStatement(sql);
             ResultSet rs = pstmt.executeQuery()
         ) {
@@ -1030,6 +1775,11 @@ public class Function {
                         rs.getTimestamp("FechaCreacion").toLocalDateTime()
                     );
                 }
+                if (rs.getTimestamp("FechaActualizacion") != null) {
+                    bodega.setFechaActualizacion(
+                        rs.getTimestamp("FechaActualizacion").toLocalDateTime()
+                    );
+                }
                 bodegas.add(bodega);
             }
 
@@ -1045,11 +1795,16 @@ public class Function {
 
     private Bodega getBodegaById(Integer id, Logger logger)
         throws SQLException {
+        Bodega cached = EntityCache.getBodega(id);
+        if (cached != null) {
+            return cached;
+        }
+
         String sql =
-            "SELECT ID, Nombre, Ubicacion, Capacidad, FechaCreacion FROM BODEGA WHERE ID = ?";
+            "SELECT ID, Nombre, Ubicacion, Capacidad, FechaCreacion, FechaActualizacion FROM BODEGA WHERE ID = ?";
 
         try (
-            Connection conn = DatabaseManager.getConnection();
+            Connection conn = DatabaseManager.getReadConnection();
             PreparedStatement pstmt = conn.prepareStatement(sql)
         ) {
             pstmt.setInt(1, id);
@@ -1066,7 +1821,16 @@ public class Function {
                             rs.getTimestamp("FechaCreacion").toLocalDateTime()
                         );
                     }
+                    if (rs.getTimestamp("FechaActualizacion") != null) {
+                        bodega.setFechaActualizacion(
+                            rs.getTimestamp("FechaActualizacion").toLocalDateTime()
+                        );
+                    }
                     logger.info("Bodega encontrada: " + bodega.getNombre());
+                    // Una fila de la réplica puede ser anterior a la última invalidación
+                    if (!conn.isReadOnly()) {
+                        EntityCache.putBodega(bodega);
+                    }
                     return bodega;
                 }
             }
@@ -1078,15 +1842,12 @@ public class Function {
         return null;
     }
 
-    private Integer insertBodega(Bodega bodega, Logger logger)
+    private Integer insertBodega(Connection conn, Bodega bodega, Logger logger)
         throws SQLException {
         String sql =
             "INSERT INTO BODEGA (Nombre, Ubicacion, Capacidad) VALUES (?, ?, ?) RETURNING ID";
 
-        try (
-            Connection conn = DatabaseManager.getConnection();
-            PreparedStatement pstmt = conn.prepareStatement(sql)
-        ) {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, bodega.getNombre());
             pstmt.setString(2, bodega.getUbicacion());
             pstmt.setInt(
@@ -1099,6 +1860,7 @@ public class Function {
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
                     Integer id = rs.getInt("ID");
+                    EntityCache.invalidateBodega(id);
                     logger.info(
                         "Bodega creada con ID: " +
                         id +
@@ -1116,15 +1878,12 @@ public class Function {
         throw new SQLException("No se pudo crear la bodega");
     }
 
-    private boolean updateBodega(Bodega bodega, Logger logger)
+    private boolean updateBodega(Connection conn, Bodega bodega, Logger logger)
         throws SQLException {
         String sql =
-            "UPDATE BODEGA SET Nombre = ?, Ubicacion = ?, Capacidad = ? WHERE ID = ?";
+            "UPDATE BODEGA SET Nombre = ?, Ubicacion = ?, Capacidad = ?, FechaActualizacion = CURRENT_TIMESTAMP WHERE ID = ?";
 
-        try (
-            Connection conn = DatabaseManager.getConnection();
-            PreparedStatement pstmt = conn.prepareStatement(sql)
-        ) {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, bodega.getNombre());
             pstmt.setString(2, bodega.getUbicacion());
             pstmt.setInt(
@@ -1137,6 +1896,7 @@ public class Function {
 
             int rowsAffected = pstmt.executeUpdate();
             boolean updated = rowsAffected > 0;
+            EntityCache.invalidateBodega(bodega.getId());
 
             if (updated) {
                 logger.info(
@@ -1158,18 +1918,16 @@ public class Function {
         }
     }
 
-    private boolean deleteBodega(Integer id, Logger logger)
+    private boolean deleteBodega(Connection conn, Integer id, Logger logger)
         throws SQLException {
         String sql = "DELETE FROM BODEGA WHERE ID = ?";
 
-        try (
-            Connection conn = DatabaseManager.getConnection();
-            PreparedStatement pstmt = conn.prepareStatement(sql)
-        ) {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, id);
 
             int rowsAffected = pstmt.executeUpdate();
             boolean deleted = rowsAffected > 0;
+            EntityCache.invalidateBodega(id);
 
             if (deleted) {
                 logger.info("Bodega eliminada: ID " + id);
@@ -1184,6 +1942,195 @@ public class Function {
         }
     }
 
+    /**
+     * 503 con Retry-After cuando el control de admisión rechaza la petición:
+     * falla de inmediato en vez de esperar al timeout del pool
+     */
+    private static HttpResponseMessage overloaded(
+        HttpRequestMessage<Optional<String>> request,
+        AdmissionRejectedException e,
+        Logger logger
+    ) {
+        logger.warning("Petición rechazada por saturación: " + e.getMessage());
+        return request
+            .createResponseBuilder(HttpStatus.SERVICE_UNAVAILABLE)
+            .header("Content-Type", "application/json")
+            .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+            .body("{\"error\": \"Servicio saturado, reintente más tarde\"}")
+            .build();
+    }
+
+    /**
+     * Serializa a JSON sumando el tiempo a la fase de serialización de la invocación
+     */
+    private static String toJson(Object value) throws JsonProcessingException {
+        long inicio = System.nanoTime();
+        try {
+            return objectMapper.writeValueAsString(value);
+        } finally {
+            RequestMetrics.record(RequestMetrics.Phase.SERIALIZATION, System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Serializa y deserializa cargas representativas (producto, bodega,
+     * página de productos) para que Jackson arme sus serializadores antes de
+     * la primera petición
+     */
+    static void primeSerialization() throws IOException {
+        Producto producto = new Producto("Warmup", "Producto de precalentamiento", new BigDecimal("1.00"), 1);
+        producto.setId(0);
+        producto.setFechaCreacion(java.time.LocalDateTime.now());
+        producto.setFechaActualizacion(producto.getFechaCreacion());
+        Bodega bodega = new Bodega("Warmup", "Precalentamiento", DEFAULT_CAPACITY);
+        bodega.setId(0);
+        bodega.setFechaCreacion(producto.getFechaCreacion());
+
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("items", List.of(producto));
+        page.put("nextCursor", new KeysetCursor(PRODUCTO_CURSOR_ORDEN, producto.getNombre(), 0).encode());
+        page.put("hasMore", false);
+        page.put("limit", 1);
+
+        objectMapper.readValue(productoWriter.writeValueAsString(producto), Producto.class);
+        objectMapper.readValue(objectMapper.writeValueAsString(bodega), Bodega.class);
+        objectMapper.writeValueAsString(page);
+        objectMapper.writeValueAsString(List.of(bodega));
+    }
+
+    /**
+     * Métricas en formato de texto de Prometheus: latencias por función y fase
+     * (total, db, serialization, eventgrid) y estado del pool de conexiones
+     */
+    @FunctionName("Metrics")
+    public HttpResponseMessage metrics(
+        @HttpTrigger(
+            name = "req",
+            methods = { HttpMethod.GET },
+            authLevel = AuthorizationLevel.ANONYMOUS,
+            route = "metrics"
+        ) HttpRequestMessage<Optional<String>> request,
+        final ExecutionContext context
+    ) {
+        return request
+            .createResponseBuilder(HttpStatus.OK)
+            .header("Content-Type", PrometheusExporter.CONTENT_TYPE)
+            .body(PrometheusExporter.scrape())
+            .build();
+    }
+
+    /**
+     * Contadores de la caché de entidades (hits, misses, desalojos) para dimensionarla
+     */
+    @FunctionName("CacheStats")
+    public HttpResponseMessage cacheStats(
+        @HttpTrigger(
+            name = "req",
+            methods = { HttpMethod.GET },
+            authLevel = AuthorizationLevel.ANONYMOUS,
+            route = "cache/stats"
+        ) HttpRequestMessage<Optional<String>> request,
+        final ExecutionContext context
+    ) {
+        return measure("CacheStats", request, session -> cacheStats(request, context, session));
+    }
+
+    private HttpResponseMessage cacheStats(
+        HttpRequestMessage<Optional<String>> request,
+        ExecutionContext context,
+        ReadConsistency.Session session
+    ) {
+        try {
+            return request
+                .createResponseBuilder(HttpStatus.OK)
+                .header("Content-Type", "application/json")
+                .body(toJson(EntityCache.stats()))
+                .build();
+        } catch (JsonProcessingException e) {
+            context.getLogger().severe("Error serializando estadísticas de caché: " + e.getMessage());
+            return request
+                .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+                .header("Content-Type", "application/json")
+                .body("{\"error\": \"Error obteniendo estadísticas de caché\"}")
+                .build();
+        }
+    }
+
+    /**
+     * Contadores de la publicación de eventos: fusión de actualizaciones y cola asíncrona
+     */
+    @FunctionName("EventStats")
+    public HttpResponseMessage eventStats(
+        @HttpTrigger(
+            name = "req",
+            methods = { HttpMethod.GET },
+            authLevel = AuthorizationLevel.ANONYMOUS,
+            route = "events/stats"
+        ) HttpRequestMessage<Optional<String>> request,
+        final ExecutionContext context
+    ) {
+        return measure("EventStats", request, session -> eventStats(request, context, session));
+    }
+
+    private HttpResponseMessage eventStats(
+        HttpRequestMessage<Optional<String>> request,
+        ExecutionContext context,
+        ReadConsistency.Session session
+    ) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("coalescing", EventCoalescer.stats());
+        stats.put("async", AsyncEventGridPublisher.isEnabled()
+            ? AsyncEventGridPublisher.getInstance().stats()
+            : Map.of("enabled", false));
+        try {
+            return request
+                .createResponseBuilder(HttpStatus.OK)
+                .header("Content-Type", "application/json")
+                .body(toJson(stats))
+                .build();
+        } catch (JsonProcessingException e) {
+            context.getLogger().severe("Error serializando estadísticas de eventos: " + e.getMessage());
+            return request
+                .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+                .header("Content-Type", "application/json")
+                .body("{\"error\": \"Error obteniendo estadísticas de eventos\"}")
+                .build();
+        }
+    }
+
+    /**
+     * Tiempos por operación y campo de las consultas GraphQL trazadas
+     * (GRAPHQL_TRACING_SAMPLE_RATE) y rechazos por costo/presupuesto
+     */
+    @FunctionName("GraphQLStats")
+    public HttpResponseMessage graphqlStats(
+        @HttpTrigger(
+            name = "req",
+            methods = { HttpMethod.GET },
+            authLevel = AuthorizationLevel.ANONYMOUS,
+            route = "graphql/stats"
+        ) HttpRequestMessage<Optional<String>> request,
+        final ExecutionContext context
+    ) {
+        try {
+            return request
+                .createResponseBuilder(HttpStatus.OK)
+                .header("Content-Type", "application/json")
+                .body(toJson(Map.of(
+                    "tracing", GraphQLSchemaBuilder.getTracing().stats(),
+                    "cost", GraphQLSchemaBuilder.getCost().stats()
+                )))
+                .build();
+        } catch (JsonProcessingException e) {
+            context.getLogger().severe("Error serializando estadísticas de GraphQL: " + e.getMessage());
+            return request
+                .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+                .header("Content-Type", "application/json")
+                .body("{\"error\": \"Error obteniendo estadísticas de GraphQL\"}")
+                .build();
+        }
+    }
+
     /**
      * GraphQL Endpoint - Maneja consultas y mutaciones GraphQL
      * Alternativa moderna a los endpoints REST tradicionales
@@ -1197,6 +2144,14 @@ public class Function {
             route = "graphql"
         ) HttpRequestMessage<Optional<String>> request,
         final ExecutionContext context
+    ) {
+        return measure("GraphQL", request, session -> graphql(request, context, session));
+    }
+
+    private HttpResponseMessage graphql(
+        HttpRequestMessage<Optional<String>> request,
+        ExecutionContext context,
+        ReadConsistency.Session session
     ) {
         Logger logger = context.getLogger();
         logger.info("Ejecutando consulta GraphQL...");
@@ -1226,7 +2181,10 @@ public class Function {
                     .build();
             }
 
-            if (graphQLRequest.getQuery() == null || graphQLRequest.getQuery().trim().isEmpty()) {
+            boolean hasQuery = graphQLRequest.getQuery() != null && !graphQLRequest.getQuery().trim().isEmpty();
+            boolean hasPersistedQuery = graphQLRequest.getExtensions() != null
+                && graphQLRequest.getExtensions().containsKey("persistedQuery");
+            if (!hasQuery && !hasPersistedQuery) {
                 return request
                     .createResponseBuilder(HttpStatus.BAD_REQUEST)
                     .header("Content-Type", "application/json")
@@ -1234,18 +2192,43 @@ public class Function {
                     .build();
             }
 
-            // Ejecutar la consulta GraphQL
+            // Ejecutar la consulta GraphQL (con soporte APQ por hash y presupuesto por cliente)
             graphql.ExecutionResult result = GraphQLSchemaBuilder.executeQuery(
                 graphQLRequest.getQuery(),
                 graphQLRequest.getVariables(),
-                graphQLRequest.getOperationName()
+                graphQLRequest.getOperationName(),
+                graphQLRequest.getExtensions(),
+                clientId(request)
             );
 
             // Convertir resultado a JSON
-            String responseJson = objectMapper.writeValueAsString(result.toSpecification());
+            String responseJson = toJson(result.toSpecification());
 
-            return request
-                .createResponseBuilder(HttpStatus.OK)
+            // Algún resolver no obtuvo conexión: 503 para que el cliente reintente
+            AdmissionRejectedException rechazo = admissionRejection(result);
+            if (rechazo != null) {
+                logger.warning("Consulta GraphQL rechazada por saturación: " + rechazo.getMessage());
+                return request
+                    .createResponseBuilder(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Content-Type", "application/json")
+                    .header("Retry-After", String.valueOf(rechazo.getRetryAfterSeconds()))
+                    .body(responseJson)
+                    .build();
+            }
+
+            // Presupuesto agotado: 429 para que el cliente espere Retry-After
+            Object retryAfter = budgetRetryAfter(result);
+            if (retryAfter != null) {
+                HttpResponseMessage.Builder builder = request
+                    .createResponseBuilder(HttpStatus.TOO_MANY_REQUESTS)
+                    .header("Content-Type", "application/json");
+                if (!"".equals(retryAfter)) {
+                    builder.header("Retry-After", String.valueOf(retryAfter));
+                }
+                return builder.body(responseJson).build();
+            }
+
+            return withSessionToken(request.createResponseBuilder(HttpStatus.OK), session)
                 .header("Content-Type", "application/json")
                 .body(responseJson)
                 .build();
@@ -1260,6 +2243,103 @@ public class Function {
         }
     }
 
+    /**
+     * Handler HTTP con la sesión de lectura de la invocación
+     */
+    @FunctionalInterface
+    private interface SessionHandler {
+        HttpResponseMessage handle(ReadConsistency.Session session);
+    }
+
+    /**
+     * Ejecuta un handler HTTP medido en RequestMetrics y con la sesión
+     * read-your-writes del cliente abierta
+     */
+    private static HttpResponseMessage measure(String function, HttpRequestMessage<?> request, SessionHandler handler) {
+        return RequestMetrics.measure(function, () -> {
+            try (ReadConsistency.Session session = ReadConsistency.start(header(request, ReadConsistency.HEADER))) {
+                return handler.handle(session);
+            }
+        });
+    }
+
+    /**
+     * Valor de una cabecera sin distinguir mayúsculas, o null
+     */
+    private static String header(HttpRequestMessage<?> request, String nombre) {
+        String valor = null;
+        Map<String, String> headers = request.getHeaders() != null ? request.getHeaders() : Map.of();
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (nombre.equalsIgnoreCase(header.getKey())) {
+                valor = header.getValue();
+            }
+        }
+        return valor;
+    }
+
+    /**
+     * Devuelve al cliente el token read-your-writes si la invocación escribió,
+     * para que lo reenvíe en {@value ReadConsistency#HEADER}
+     */
+    private static HttpResponseMessage.Builder withSessionToken(
+        HttpResponseMessage.Builder builder,
+        ReadConsistency.Session session
+    ) {
+        String token = session.getToken();
+        return token != null ? builder.header(ReadConsistency.HEADER, token) : builder;
+    }
+
+    /**
+     * Identidad del cliente para el presupuesto GraphQL: la IP que vio el
+     * front end de Azure (último valor de X-Forwarded-For, sin puerto)
+     */
+    private static String clientId(HttpRequestMessage<?> request) {
+        String forwarded = header(request, "X-Forwarded-For");
+        if (forwarded == null || forwarded.trim().isEmpty()) {
+            return "anonimo";
+        }
+        String[] saltos = forwarded.split(",");
+        String ip = saltos[saltos.length - 1].trim();
+        if (ip.startsWith("[")) {
+            // IPv6 con puerto: [::1]:1234
+            int cierre = ip.indexOf(']');
+            return cierre > 0 ? ip.substring(1, cierre) : ip;
+        }
+        int puerto = ip.indexOf(':');
+        return puerto > 0 && puerto == ip.lastIndexOf(':') ? ip.substring(0, puerto) : ip;
+    }
+
+    /**
+     * Si la consulta se rechazó por presupuesto, los segundos de Retry-After
+     * (o "" si no aplica esperar); null en otro caso
+     */
+    private static Object budgetRetryAfter(graphql.ExecutionResult result) {
+        for (graphql.GraphQLError error : result.getErrors()) {
+            Map<String, Object> extensions = error.getExtensions();
+            if (extensions != null && QueryCostInstrumentation.BUDGET_EXCEEDED.equals(extensions.get("code"))) {
+                Object retryAfter = extensions.get("retryAfterSeconds");
+                return retryAfter != null ? retryAfter : "";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Rechazo de admisión que hizo fallar algún DataFetcher, o null
+     */
+    private static AdmissionRejectedException admissionRejection(graphql.ExecutionResult result) {
+        for (graphql.GraphQLError error : result.getErrors()) {
+            if (error instanceof graphql.ExceptionWhileDataFetching) {
+                AdmissionRejectedException rechazo =
+                    AdmissionRejectedException.find(((graphql.ExceptionWhileDataFetching) error).getException());
+                if (rechazo != null) {
+                    return rechazo;
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Clase interna para parsear requests GraphQL
      */
@@ -1267,6 +2347,7 @@ public class Function {
         private String query;
         private Map<String, Object> variables;
         private String operationName;
+        private Map<String, Object> extensions;
 
         public String getQuery() {
             return query;
@@ -1291,5 +2372,13 @@ public class Function {
         public void setOperationName(String operationName) {
             this.operationName = operationName;
         }
+
+        public Map<String, Object> getExtensions() {
+            return extensions;
+        }
+
+        public void setExtensions(Map<String, Object> extensions) {
+            this.extensions = extensions;
+        }
     }
 }
@@ -0,0 +1,360 @@
+package com.agranelos.inventario;
+
+import com.agranelos.inventario.config.EnvConfig;
+import com.agranelos.inventario.db.DatabaseManager;
+import com.agranelos.inventario.graphql.GraphQLSchemaBuilder;
+import com.agranelos.inventario.metrics.ColdStart;
+import com.agranelos.inventario.metrics.RequestMetrics;
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.HttpMethod;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+import com.microsoft.azure.functions.HttpStatusType;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.WarmupTrigger;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Precalentamiento de la instancia para reducir el arranque en frío.
+ *
+ * Se lanza una sola vez por instancia, en un hilo daemon, desde el trigger de
+ * warmup (planes Premium y Dedicated, antes de recibir tráfico) o al cargarse
+ * {@link Function} dentro del host de Functions (WARMUP_ENABLED, true por
+ * defecto). Fuera del host (tests, herramientas) cargar {@link Function} no
+ * lo inicia, para no abrir conexiones con la base de datos del entorno. Pasos:
+ * <ol>
+ * <li>pool: abre y prueba las conexiones ociosas mínimas de cada pool</li>
+ * <li>schema: construye el schema GraphQL</li>
+ * <li>serialization: serializa cargas representativas con Jackson</li>
+ * <li>requests: WARMUP_ITERATIONS (10) rondas de peticiones sintéticas de
+ * solo lectura por los handlers REST y GraphQL, para cargar clases y dar
+ * perfiles al JIT</li>
+ * </ol>
+ * Sin DB_HOST solo se ejecutan schema y serialization. Las peticiones
+ * sintéticas no cuentan en las latencias por función; la duración de cada
+ * paso y el tiempo hasta la primera respuesta real se publican en
+ * GET /api/metrics ({@link ColdStart}).
+ *
+ * {@link #main} ejecuta el mismo precalentamiento en primer plano como carga
+ * de entrenamiento del archivo AppCDS (perfil {@code appcds} del pom); en la
+ * instancia, al terminar, se genera el archivo si falta ({@link CdsArchive}).
+ */
+public class Warmup {
+
+    private static final Logger logger = Logger.getLogger(Warmup.class.getName());
+
+    /**
+     * Cliente de las peticiones sintéticas, con su propio presupuesto GraphQL
+     */
+    private static final String CLIENTE = "warmup";
+
+    /**
+     * Logger de las invocaciones sintéticas: solo muestra warnings
+     */
+    private static final Logger requestLogger = Logger.getLogger(Warmup.class.getName() + ".requests");
+
+    static {
+        requestLogger.setLevel(Level.WARNING);
+    }
+
+    private static final String GRAPHQL_QUERY =
+        "{\"query\": \"query Warmup { health productosConnection(first: 1) { edges { node { id nombre } } } " +
+        "bodegasConnection(first: 1) { edges { node { id nombre } } } }\", \"operationName\": \"Warmup\"}";
+
+    private static final AtomicBoolean iniciado = new AtomicBoolean(false);
+    private static final CompletableFuture<Void> terminado = new CompletableFuture<>();
+
+    /**
+     * Trigger de warmup: el host lo invoca al agregar una instancia, antes de
+     * enviarle tráfico. Espera el precalentamiento como mucho WARMUP_TIMEOUT_SECONDS.
+     */
+    @FunctionName("Warmup")
+    public void warmup(
+        @WarmupTrigger(name = "warmupContext") Object warmupContext,
+        final ExecutionContext context
+    ) {
+        context.getLogger().info("Precalentando instancia...");
+        start();
+        try {
+            terminado.get(EnvConfig.getLong("WARMUP_TIMEOUT_SECONDS", 60), TimeUnit.SECONDS);
+            context.getLogger().info("Instancia precalentada");
+        } catch (TimeoutException e) {
+            context.getLogger().warning("El precalentamiento sigue en segundo plano");
+        } catch (Exception e) {
+            context.getLogger().warning("Error en el precalentamiento: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Precalentamiento al cargar las funciones, si WARMUP_ENABLED y la clase
+     * se carga en el host de Functions (Azure o func start)
+     */
+    static void bootstrap() {
+        if (enHostDeFunctions() && EnvConfig.getBoolean("WARMUP_ENABLED", true)) {
+            start();
+        }
+    }
+
+    /**
+     * El host define FUNCTIONS_WORKER_RUNTIME (también en local, desde
+     * local.settings.json) y en Azure WEBSITE_INSTANCE_ID
+     */
+    static boolean enHostDeFunctions() {
+        return EnvConfig.getString("FUNCTIONS_WORKER_RUNTIME", null) != null
+            || EnvConfig.getString("WEBSITE_INSTANCE_ID", null) != null;
+    }
+
+    static boolean isStarted() {
+        return iniciado.get();
+    }
+
+    static void start() {
+        if (!iniciado.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            run(false);
+            CdsArchive.dumpIfUnused();
+        }, "warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Carga de entrenamiento del archivo AppCDS: precalienta en primer plano,
+     * con peticiones sintéticas aunque no haya base de datos (los handlers
+     * responden 500, pero cargan sus clases), e imprime el tiempo desde el
+     * inicio de la JVM y las clases cargadas para scripts/cds-benchmark.sh
+     */
+    public static void main(String[] args) {
+        boolean conBaseDeDatos = EnvConfig.getString("DB_HOST", null) != null;
+        if (!conBaseDeDatos) {
+            // Los errores de conexión esperados no son útiles en el entrenamiento
+            Logger.getLogger("com.agranelos.inventario").setLevel(Level.OFF);
+            requestLogger.setLevel(Level.OFF);
+        }
+        iniciado.set(true);
+        run(true);
+        System.out.println(String.format("cds-training uptimeMs=%d loadedClasses=%d",
+            ManagementFactory.getRuntimeMXBean().getUptime(),
+            ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount()));
+        System.exit(0);
+    }
+
+    /**
+     * @param entrenamiento ejecuta las peticiones sintéticas aunque no haya DB_HOST
+     */
+    private static void run(boolean entrenamiento) {
+        long inicio = System.nanoTime();
+        boolean conBaseDeDatos = EnvConfig.getString("DB_HOST", null) != null;
+        try (RequestMetrics.Scope metrics = RequestMetrics.startSynthetic("Warmup")) {
+            if (conBaseDeDatos) {
+                paso("pool", () -> logger.info("Conexiones precalentadas: " + DatabaseManager.primeConnections()));
+            }
+            paso("schema", GraphQLSchemaBuilder::buildSchema);
+            paso("serialization", Function::primeSerialization);
+            if (conBaseDeDatos || entrenamiento) {
+                paso("requests", Warmup::syntheticRequests);
+            }
+        } finally {
+            long total = System.nanoTime() - inicio;
+            ColdStart.warmupCompleted(total);
+            logger.info("Precalentamiento terminado en " + TimeUnit.NANOSECONDS.toMillis(total) + " ms");
+            terminado.complete(null);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Paso {
+        void run() throws Exception;
+    }
+
+    /**
+     * Un paso que falla se registra y no impide los siguientes
+     */
+    private static void paso(String nombre, Paso paso) {
+        long inicio = System.nanoTime();
+        try {
+            paso.run();
+        } catch (Exception e) {
+            logger.warning("Paso de precalentamiento '" + nombre + "' falló: " + e.getMessage());
+        } finally {
+            ColdStart.warmupStep(nombre, System.nanoTime() - inicio);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        HttpResponseMessage invoke(HttpRequestMessage<Optional<String>> request);
+    }
+
+    private static void syntheticRequests() {
+        Function funciones = new Function();
+        ExecutionContext context = new SyntheticContext();
+        AtomicInteger errores = new AtomicInteger();
+        int iteraciones = Math.max(1, EnvConfig.getInt("WARMUP_ITERATIONS", 10));
+        for (int i = 0; i < iteraciones; i++) {
+            Map<String, String> pagina = new HashMap<>();
+            pagina.put("limit", "1");
+            enviar(errores, HttpMethod.GET, "productos", pagina, null,
+                request -> funciones.getProductos(request, context));
+            enviar(errores, HttpMethod.GET, "productos/0", null, null,
+                request -> funciones.getProductoById(request, "0", context));
+            enviar(errores, HttpMethod.GET, "bodegas", null, null,
+                request -> funciones.getBodegas(request, context));
+            // Sin nombre: se deserializa y valida, y responde 400 sin escribir
+            enviar(errores, HttpMethod.POST, "productos", null, "{\"descripcion\": \"warmup\"}",
+                request -> funciones.createProducto(request, context));
+            enviar(errores, HttpMethod.POST, "graphql", null, GRAPHQL_QUERY,
+                request -> funciones.graphql(request, context));
+        }
+        if (errores.get() > 0) {
+            logger.warning(errores.get() + " peticiones de precalentamiento respondieron con error");
+        }
+    }
+
+    private static void enviar(
+        AtomicInteger errores,
+        HttpMethod method,
+        String ruta,
+        Map<String, String> query,
+        String body,
+        Handler handler
+    ) {
+        HttpResponseMessage response = handler.invoke(new SyntheticRequest(method, ruta, query, body));
+        if (response.getStatusCode() >= 500) {
+            errores.incrementAndGet();
+        }
+    }
+
+    private static final class SyntheticContext implements ExecutionContext {
+        @Override
+        public Logger getLogger() {
+            return requestLogger;
+        }
+
+        @Override
+        public String getInvocationId() {
+            return CLIENTE;
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "Warmup";
+        }
+    }
+
+    private static final class SyntheticRequest implements HttpRequestMessage<Optional<String>> {
+        private final HttpMethod method;
+        private final URI uri;
+        private final Map<String, String> headers = new HashMap<>();
+        private final Map<String, String> query;
+        private final String body;
+
+        SyntheticRequest(HttpMethod method, String ruta, Map<String, String> query, String body) {
+            this.method = method;
+            this.uri = URI.create("http://localhost/api/" + ruta);
+            this.query = query != null ? query : new HashMap<>();
+            this.body = body;
+            headers.put("x-forwarded-for", CLIENTE);
+            if (body != null) {
+                headers.put("content-type", "application/json");
+            }
+        }
+
+        @Override
+        public URI getUri() {
+            return uri;
+        }
+
+        @Override
+        public HttpMethod getHttpMethod() {
+            return method;
+        }
+
+        @Override
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public Map<String, String> getQueryParameters() {
+            return query;
+        }
+
+        @Override
+        public Optional<String> getBody() {
+            return Optional.ofNullable(body);
+        }
+
+        @Override
+        public HttpResponseMessage.Builder createResponseBuilder(HttpStatus status) {
+            return new SyntheticResponse(status);
+        }
+
+        @Override
+        public HttpResponseMessage.Builder createResponseBuilder(HttpStatusType status) {
+            return new SyntheticResponse(status);
+        }
+    }
+
+    private static final class SyntheticResponse implements HttpResponseMessage, HttpResponseMessage.Builder {
+        private HttpStatusType status;
+        private final Map<String, String> headers = new HashMap<>();
+        private Object body;
+
+        SyntheticResponse(HttpStatusType status) {
+            this.status = status;
+        }
+
+        @Override
+        public HttpResponseMessage.Builder status(HttpStatusType status) {
+            this.status = status;
+            return this;
+        }
+
+        @Override
+        public HttpResponseMessage.Builder header(String key, String value) {
+            headers.put(key, value);
+            return this;
+        }
+
+        @Override
+        public HttpResponseMessage.Builder body(Object body) {
+            this.body = body;
+            return this;
+        }
+
+        @Override
+        public HttpResponseMessage build() {
+            return this;
+        }
+
+        @Override
+        public HttpStatusType getStatus() {
+            return status;
+        }
+
+        @Override
+        public String getHeader(String key) {
+            return headers.get(key);
+        }
+
+        @Override
+        public Object getBody() {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.agranelos.inventario.cache;
+
+import com.agranelos.inventario.config.EnvConfig;
+import com.agranelos.inventario.db.DatabaseManager;
+import com.agranelos.inventario.events.EventGridPublisher;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.logging.Logger;
+
+/**
+ * Invalidación de EntityCache entre instancias de la Function App.
+ *
+ * Cada escritura invalida su propia instancia de inmediato. Para el resto:
+ * <ul>
+ *   <li>Event Grid: el consumidor que recibe PRODUCTO_* / BODEGA_* desaloja la
+ *   entrada y la difunde con {@code pg_notify}, ya que Event Grid entrega cada
+ *   evento a una sola instancia.</li>
+ *   <li>Fallback sin Azure: si Event Grid no está configurado, quien escribe
+ *   difunde directamente por el canal {@link #CHANNEL}.</li>
+ * </ul>
+ * Cada instancia escucha el canal con {@link CacheInvalidationListener}.
+ *
+ * Formato del payload: {@code producto:42}, {@code producto:1,2,3}, {@code bodega:7} o {@code *}.
+ */
+public final class CacheInvalidation {
+
+    private static final Logger logger = Logger.getLogger(CacheInvalidation.class.getName());
+
+    public static final String CHANNEL = "entity_cache_invalidation";
+    static final String PRODUCTO = "producto";
+    static final String BODEGA = "bodega";
+    static final String TODO = "*";
+
+    private static final int MAX_PAYLOAD_LENGTH = 7000;
+
+    private static final boolean NOTIFY_ENABLED = EnvConfig.getBoolean("CACHE_INVALIDATION_NOTIFY_ENABLED", true);
+
+    private CacheInvalidation() {
+    }
+
+    /**
+     * Escritura hecha desde la API REST, que ya publica su evento en Event Grid:
+     * solo difunde por NOTIFY cuando Event Grid no está configurado
+     */
+    private static void afterRestWrite(String entidad, int id) {
+        EntityCache.invalidate(entidad, id);
+        if (!EventGridPublisher.isConfigured()) {
+            notifyOthers(entidad + ":" + id);
+        }
+    }
+
+    /**
+     * Desaloja localmente y difunde a todas las instancias (mutations GraphQL,
+     * que no publican eventos, y el consumidor de Event Grid)
+     */
+    private static void broadcast(String entidad, int id) {
+        EntityCache.invalidate(entidad, id);
+        notifyOthers(entidad + ":" + id);
+    }
+
+    public static void broadcastProducto(int id) {
+        broadcast(PRODUCTO, id);
+    }
+
+    public static void broadcastBodega(int id) {
+        broadcast(BODEGA, id);
+    }
+
+    public static void afterRestWriteProducto(int id) {
+        afterRestWrite(PRODUCTO, id);
+    }
+
+    public static void afterRestWriteBodega(int id) {
+        afterRestWrite(BODEGA, id);
+    }
+
+    /**
+     * Variante masiva de {@link #afterRestWriteProducto(int)}: agrupa los IDs en
+     * pocas notificaciones ({@code producto:1,2,3}) por debajo del límite de
+     * 8000 bytes del payload de NOTIFY
+     */
+    public static void afterRestWriteProductos(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        for (Integer id : ids) {
+            EntityCache.invalidateProducto(id);
+        }
+        if (EventGridPublisher.isConfigured()) {
+            return;
+        }
+        StringBuilder payload = new StringBuilder(PRODUCTO).append(':');
+        int base = payload.length();
+        for (Integer id : ids) {
+            if (payload.length() > MAX_PAYLOAD_LENGTH) {
+                notifyOthers(payload.toString());
+                payload.setLength(base);
+            }
+            if (payload.length() > base) {
+                payload.append(',');
+            }
+            payload.append(id);
+        }
+        notifyOthers(payload.toString());
+    }
+
+    /**
+     * Aplica un payload recibido por LISTEN
+     *
+     * @return true si el payload era válido
+     */
+    static boolean apply(String payload) {
+        if (payload == null) {
+            return false;
+        }
+        if (TODO.equals(payload)) {
+            EntityCache.invalidateAll();
+            return true;
+        }
+        int separador = payload.indexOf(':');
+        if (separador <= 0) {
+            return false;
+        }
+        String entidad = payload.substring(0, separador);
+        try {
+            for (String id : payload.substring(separador + 1).split(",")) {
+                if (!EntityCache.invalidate(entidad, Integer.parseInt(id.trim()))) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static void notifyOthers(String payload) {
+        if (!NOTIFY_ENABLED || !EntityCache.isEnabled()) {
+            return;
+        }
+        try (Connection connection = DatabaseManager.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            statement.setString(1, CHANNEL);
+            statement.setString(2, payload);
+            statement.execute();
+        } catch (SQLException | RuntimeException e) {
+            // El TTL de EntityCache acota el tiempo que las demás instancias quedan obsoletas
+            logger.warning("No se pudo difundir la invalidación " + payload + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.agranelos.inventario.cache;
+
+import com.agranelos.inventario.config.EnvConfig;
+import com.agranelos.inventario.db.DatabaseManager;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+/**
+ * Hilo daemon que escucha el canal {@link CacheInvalidation#CHANNEL} con
+ * LISTEN y aplica cada notificación a la EntityCache local.
+ *
+ * Usa una conexión dedicada fuera del pool (LISTEN es por sesión). Tras una
+ * reconexión vacía la caché completa, porque las notificaciones emitidas
+ * mientras estaba desconectado se pierden.
+ *
+ * App Settings: CACHE_INVALIDATION_LISTEN_ENABLED (true),
+ * CACHE_INVALIDATION_POLL_MS (1000).
+ */
+public final class CacheInvalidationListener implements Runnable {
+
+    private static final Logger logger = Logger.getLogger(CacheInvalidationListener.class.getName());
+
+    private static final boolean ENABLED = EnvConfig.getBoolean("CACHE_INVALIDATION_LISTEN_ENABLED", true);
+    private static final int POLL_MS = EnvConfig.getInt("CACHE_INVALIDATION_POLL_MS", 1000);
+    private static final long MAX_BACKOFF_MS = 30000;
+
+    private static CacheInvalidationListener instance;
+
+    private volatile boolean running = true;
+
+    private CacheInvalidationListener() {
+    }
+
+    /**
+     * Inicia el listener una sola vez por instancia
+     */
+    public static synchronized void start() {
+        if (instance != null || !ENABLED || !EntityCache.isEnabled()) {
+            return;
+        }
+        instance = new CacheInvalidationListener();
+        Thread thread = new Thread(instance, "cache-invalidation-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static synchronized void stop() {
+        if (instance != null) {
+            instance.running = false;
+            instance = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        long backoff = 1000;
+        while (running) {
+            try (Connection connection = DatabaseManager.openDedicatedConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CacheInvalidation.CHANNEL);
+                }
+                EntityCache.invalidateAll();
+                logger.info("Escuchando invalidaciones de caché en " + CacheInvalidation.CHANNEL);
+                backoff = 1000;
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_MS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        if (!CacheInvalidation.apply(notification.getParameter())) {
+                            logger.warning("Notificación de caché inválida: " + notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                logger.warning("Listener de invalidación desconectado: " + e.getMessage());
+                sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
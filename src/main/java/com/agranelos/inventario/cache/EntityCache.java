@@ -0,0 +1,121 @@
+package com.agranelos.inventario.cache;
+
+import com.agranelos.inventario.config.EnvConfig;
+import com.agranelos.inventario.model.Bodega;
+import com.agranelos.inventario.model.Producto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caché read-through de productos y bodegas por ID, compartida por la API
+ * REST y los DataLoaders de GraphQL dentro de una instancia.
+ *
+ * Todas las escrituras (REST y mutations) deben invalidar la entrada
+ * afectada; el TTL acota cuánto puede quedar obsoleta una entrada que otra
+ * instancia modificó.
+ *
+ * App Settings: ENTITY_CACHE_ENABLED (true), ENTITY_CACHE_SIZE (1000),
+ * ENTITY_CACHE_TTL_SECONDS (60).
+ */
+public final class EntityCache {
+
+    private static final boolean ENABLED = EnvConfig.getBoolean("ENTITY_CACHE_ENABLED", true);
+    private static final int SIZE = EnvConfig.getInt("ENTITY_CACHE_SIZE", 1000);
+    private static final long TTL_MILLIS = EnvConfig.getLong("ENTITY_CACHE_TTL_SECONDS", 60) * 1000L;
+
+    private static final LruCache<Integer, Producto> PRODUCTOS = new LruCache<>(SIZE, TTL_MILLIS);
+    private static final LruCache<Integer, Bodega> BODEGAS = new LruCache<>(SIZE, TTL_MILLIS);
+
+    private EntityCache() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public static Producto getProducto(Integer id) {
+        return ENABLED && id != null ? PRODUCTOS.get(id) : null;
+    }
+
+    public static void putProducto(Producto producto) {
+        if (ENABLED && producto != null) {
+            PRODUCTOS.put(producto.getId(), producto);
+        }
+    }
+
+    public static void invalidateProducto(Integer id) {
+        if (id != null) {
+            PRODUCTOS.invalidate(id);
+        }
+    }
+
+    public static Bodega getBodega(Integer id) {
+        return ENABLED && id != null ? BODEGAS.get(id) : null;
+    }
+
+    public static void putBodega(Bodega bodega) {
+        if (ENABLED && bodega != null) {
+            BODEGAS.put(bodega.getId(), bodega);
+        }
+    }
+
+    public static void invalidateBodega(Integer id) {
+        if (id != null) {
+            BODEGAS.invalidate(id);
+        }
+    }
+
+    /**
+     * Invalida por nombre de entidad ("producto" o "bodega")
+     *
+     * @return false si la entidad no se reconoce
+     */
+    public static boolean invalidate(String entidad, int id) {
+        if ("producto".equals(entidad)) {
+            PRODUCTOS.invalidate(id);
+            return true;
+        }
+        if ("bodega".equals(entidad)) {
+            BODEGAS.invalidate(id);
+            return true;
+        }
+        return false;
+    }
+
+    public static void invalidateAll() {
+        PRODUCTOS.invalidateAll();
+        BODEGAS.invalidateAll();
+    }
+
+    public static LruCache<Integer, Producto> getProductos() {
+        return PRODUCTOS;
+    }
+
+    public static LruCache<Integer, Bodega> getBodegas() {
+        return BODEGAS;
+    }
+
+    /**
+     * Contadores de cada caché para dimensionarlas (GET /api/cache/stats)
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("productos", stats(PRODUCTOS));
+        stats.put("bodegas", stats(BODEGAS));
+        return stats;
+    }
+
+    private static Map<String, Object> stats(LruCache<?, ?> cache) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", cache.size());
+        stats.put("maxEntries", cache.getMaxEntries());
+        stats.put("ttlSeconds", cache.getTtlMillis() / 1000);
+        stats.put("hits", cache.getHits());
+        stats.put("misses", cache.getMisses());
+        stats.put("evictions", cache.getEvictions());
+        stats.put("expirations", cache.getExpirations());
+        return stats;
+    }
+}
@@ -0,0 +1,53 @@
+package com.agranelos.inventario.config;
+
+import java.util.logging.Logger;
+
+/**
+ * Lectura de parámetros opcionales desde variables de entorno (App Settings)
+ * con valores por defecto.
+ */
+public final class EnvConfig {
+
+    private static final Logger logger = Logger.getLogger(EnvConfig.class.getName());
+
+    private EnvConfig() {
+    }
+
+    public static String getString(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return (value != null && !value.trim().isEmpty())
+            ? value.trim()
+            : defaultValue;
+    }
+
+    public static int getInt(String name, int defaultValue) {
+        String value = getString(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            logger.warning("Valor inválido para " + name + ": " + value + ", usando " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static long getLong(String name, long defaultValue) {
+        String value = getString(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            logger.warning("Valor inválido para " + name + ": " + value + ", usando " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(String name, boolean defaultValue) {
+        String value = getString(name, null);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+}
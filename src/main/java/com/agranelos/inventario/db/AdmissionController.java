@@ -0,0 +1,316 @@
+package com.agranelos.inventario.db;
+
+import com.agranelos.inventario.config.EnvConfig;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Control de admisión delante del pool de conexiones.
+ *
+ * Limita las conexiones en uso a un límite de concurrencia adaptativo (AIMD):
+ * cada conexión devuelta es una muestra de latencia (desde la admisión hasta
+ * el close); si supera DB_ADMISSION_LATENCY_TARGET_MS o el pool no entregó la
+ * conexión, el límite se multiplica por {@value #BACKOFF} (como mucho una vez
+ * por ventana de latencia objetivo); si no, y el límite se está usando, sube
+ * 1/límite (≈ +1 por ventana). El límite queda entre DB_ADMISSION_MIN_LIMIT y
+ * el tamaño del pool.
+ *
+ * Lo que no entra espera en una cola acotada (DB_ADMISSION_QUEUE_SIZE) como
+ * mucho DB_ADMISSION_READ_WAIT_MS o DB_ADMISSION_WRITE_WAIT_MS; si la cola
+ * está llena o vence la espera se lanza {@link AdmissionRejectedException},
+ * que las funciones HTTP convierten en 503 con Retry-After. Las escrituras
+ * tienen prioridad: las lecturas solo usan DB_ADMISSION_READ_SHARE del límite
+ * y no adelantan a una escritura que espera.
+ */
+public class AdmissionController {
+
+    private static final Logger logger = Logger.getLogger(AdmissionController.class.getName());
+
+    static final double BACKOFF = 0.9;
+
+    public enum Priority {
+        READ("read"),
+        WRITE("write");
+
+        private final String label;
+
+        Priority(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double readShare;
+    private final int maxQueue;
+    private final long readWaitNanos;
+    private final long writeWaitNanos;
+    private final long latencyTargetNanos;
+    private final int retryAfterSeconds;
+    private final LongSupplier nanoClock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition lecturas = lock.newCondition();
+    private final Condition escrituras = lock.newCondition();
+
+    // Protegidos por lock
+    private double limit;
+    private int inFlight;
+    private int lecturasEsperando;
+    private int escriturasEsperando;
+    private long ultimaReduccion;
+    private long admitidas;
+    private long rechazadasLectura;
+    private long rechazadasEscritura;
+    private long caidas;
+    private long reducciones;
+
+    public AdmissionController(int minLimit, int maxLimit, double readShare, int maxQueue,
+                               long readWaitMillis, long writeWaitMillis, long latencyTargetMillis,
+                               int retryAfterSeconds) {
+        this(minLimit, maxLimit, readShare, maxQueue, readWaitMillis, writeWaitMillis,
+            latencyTargetMillis, retryAfterSeconds, System::nanoTime);
+    }
+
+    AdmissionController(int minLimit, int maxLimit, double readShare, int maxQueue,
+                        long readWaitMillis, long writeWaitMillis, long latencyTargetMillis,
+                        int retryAfterSeconds, LongSupplier nanoClock) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Se requiere 1 <= minLimit <= maxLimit");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.readShare = Math.min(1.0, Math.max(0.0, readShare));
+        this.maxQueue = Math.max(0, maxQueue);
+        this.readWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, readWaitMillis));
+        this.writeWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, writeWaitMillis));
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, latencyTargetMillis));
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+        this.nanoClock = nanoClock;
+        this.limit = maxLimit;
+        this.ultimaReduccion = nanoClock.getAsLong() - latencyTargetNanos;
+    }
+
+    /**
+     * Crea la instancia según App Settings: DB_ADMISSION_MIN_LIMIT (1),
+     * DB_ADMISSION_READ_SHARE (0.8), DB_ADMISSION_QUEUE_SIZE (50),
+     * DB_ADMISSION_READ_WAIT_MS (200), DB_ADMISSION_WRITE_WAIT_MS (1000),
+     * DB_ADMISSION_LATENCY_TARGET_MS (250) y DB_ADMISSION_RETRY_AFTER_SECONDS (1)
+     *
+     * @param poolSize tamaño del pool, que es el límite máximo
+     */
+    public static AdmissionController fromEnvironment(int poolSize) {
+        double readShare;
+        try {
+            readShare = Double.parseDouble(EnvConfig.getString("DB_ADMISSION_READ_SHARE", "0.8"));
+        } catch (NumberFormatException e) {
+            logger.warning("DB_ADMISSION_READ_SHARE inválido, usando 0.8");
+            readShare = 0.8;
+        }
+        return new AdmissionController(
+            Math.min(poolSize, Math.max(1, EnvConfig.getInt("DB_ADMISSION_MIN_LIMIT", 1))),
+            poolSize,
+            readShare,
+            EnvConfig.getInt("DB_ADMISSION_QUEUE_SIZE", 50),
+            EnvConfig.getLong("DB_ADMISSION_READ_WAIT_MS", 200),
+            EnvConfig.getLong("DB_ADMISSION_WRITE_WAIT_MS", 1000),
+            EnvConfig.getLong("DB_ADMISSION_LATENCY_TARGET_MS", 250),
+            EnvConfig.getInt("DB_ADMISSION_RETRY_AFTER_SECONDS", 1)
+        );
+    }
+
+    /**
+     * Permiso para usar una conexión; se libera una sola vez
+     */
+    public final class Permit {
+        private final long admitido = nanoClock.getAsLong();
+        private boolean liberado;
+
+        private Permit() {
+        }
+
+        /**
+         * @param caida true si la conexión no llegó a obtenerse (timeout del pool)
+         */
+        public void release(boolean caida) {
+            synchronized (this) {
+                if (liberado) {
+                    return;
+                }
+                liberado = true;
+            }
+            onRelease(nanoClock.getAsLong() - admitido, caida);
+        }
+    }
+
+    /**
+     * Espera un lugar según la prioridad
+     *
+     * @throws AdmissionRejectedException si la cola está llena o vence la espera
+     */
+    public Permit acquire(Priority priority) throws SQLException {
+        boolean escritura = priority == Priority.WRITE;
+        long espera = escritura ? writeWaitNanos : readWaitNanos;
+        lock.lock();
+        try {
+            if (puedeEntrar(escritura)) {
+                return admitir();
+            }
+            if (espera <= 0 || lecturasEsperando + escriturasEsperando >= maxQueue) {
+                throw rechazar(priority);
+            }
+            Condition condicion = escritura ? escrituras : lecturas;
+            if (escritura) {
+                escriturasEsperando++;
+            } else {
+                lecturasEsperando++;
+            }
+            try {
+                while (!puedeEntrar(escritura)) {
+                    if (espera <= 0) {
+                        // El aviso que quizás recibimos pasa al siguiente
+                        avisarSiguiente();
+                        throw rechazar(priority);
+                    }
+                    espera = condicion.awaitNanos(espera);
+                }
+                return admitir();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                avisarSiguiente();
+                throw new SQLException("Interrumpido esperando admisión a la base de datos", e);
+            } finally {
+                if (escritura) {
+                    escriturasEsperando--;
+                } else {
+                    lecturasEsperando--;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean puedeEntrar(boolean escritura) {
+        if (escritura) {
+            return inFlight < (int) limit;
+        }
+        // Una lectura no adelanta a una escritura en espera
+        return escriturasEsperando == 0 && inFlight < readLimit();
+    }
+
+    private int readLimit() {
+        return Math.max(1, (int) (limit * readShare));
+    }
+
+    private Permit admitir() {
+        inFlight++;
+        admitidas++;
+        return new Permit();
+    }
+
+    private AdmissionRejectedException rechazar(Priority priority) {
+        if (priority == Priority.WRITE) {
+            rechazadasEscritura++;
+        } else {
+            rechazadasLectura++;
+        }
+        return new AdmissionRejectedException(String.format(
+            "Base de datos saturada: %d conexiones en uso de un límite de %d (%s)",
+            inFlight, (int) limit, priority.getLabel()), retryAfterSeconds);
+    }
+
+    private void onRelease(long latencia, boolean caida) {
+        lock.lock();
+        try {
+            onSample(latencia, caida);
+            inFlight--;
+            avisarSiguiente();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ajuste AIMD del límite con una muestra; se llama con lock tomado y antes
+     * de descontar la conexión de inFlight
+     */
+    void onSample(long latencia, boolean caida) {
+        if (caida) {
+            caidas++;
+        }
+        if (caida || latencia > latencyTargetNanos) {
+            long ahora = nanoClock.getAsLong();
+            if (ahora - ultimaReduccion >= latencyTargetNanos && limit > minLimit) {
+                double anterior = limit;
+                limit = Math.max(minLimit, limit * BACKOFF);
+                ultimaReduccion = ahora;
+                reducciones++;
+                if ((int) anterior != (int) limit) {
+                    logger.warning(String.format("Límite de concurrencia de la base de datos reducido a %d (latencia %d ms%s)",
+                        (int) limit, TimeUnit.NANOSECONDS.toMillis(latencia), caida ? ", timeout del pool" : ""));
+                }
+            }
+        } else if (inFlight * 2 >= (int) limit) {
+            // Solo crece si el límite actual se está usando
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    private void avisarSiguiente() {
+        if (escriturasEsperando > 0 && puedeEntrar(true)) {
+            escrituras.signal();
+        } else if (lecturasEsperando > 0 && puedeEntrar(false)) {
+            lecturas.signal();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        lock.lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("limit", (int) limit);
+            stats.put("readLimit", readLimit());
+            stats.put("maxLimit", maxLimit);
+            stats.put("inFlight", inFlight);
+            stats.put("waitingReads", lecturasEsperando);
+            stats.put("waitingWrites", escriturasEsperando);
+            stats.put("admitted", admitidas);
+            stats.put("rejectedReads", rechazadasLectura);
+            stats.put("rejectedWrites", rechazadasEscritura);
+            stats.put("poolTimeouts", caidas);
+            stats.put("decreases", reducciones);
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Envuelve la conexión del pool para liberar el permiso en su close()
+     */
+    static Connection track(Connection connection, Permit permit) {
+        return ConnectionHooks.onClose(connection, null, () -> permit.release(false));
+    }
+}
@@ -0,0 +1,40 @@
+package com.agranelos.inventario.db;
+
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * La petición no se admitió porque la base de datos está saturada; conviene
+ * reintentar tras {@link #getRetryAfterSeconds()}
+ */
+public class AdmissionRejectedException extends SQLTransientConnectionException {
+
+    // SQLSTATE de PostgreSQL too_many_connections
+    private static final String SQL_STATE = "53300";
+
+    private final int retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, int retryAfterSeconds) {
+        super(message, SQL_STATE);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * Busca un rechazo de admisión en la cadena de causas (los DataFetcher lo
+     * envuelven en RuntimeException)
+     */
+    public static AdmissionRejectedException find(Throwable error) {
+        for (Throwable actual = error; actual != null; actual = actual.getCause()) {
+            if (actual instanceof AdmissionRejectedException) {
+                return (AdmissionRejectedException) actual;
+            }
+            if (actual.getCause() == actual) {
+                break;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,103 @@
+package com.agranelos.inventario.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+
+/**
+ * Versión barata de una tabla: contador de COLECCION_VERSION y fecha de su
+ * último incremento.
+ *
+ * MAX(FechaActualizacion) no sirve: CURRENT_TIMESTAMP es el inicio de la
+ * transacción, así que una transacción que empezó antes pero hace commit
+ * después (p. ej. un productos:batchUpdate largo) no mueve el máximo ni la
+ * cantidad, y los clientes seguirían recibiendo 304. El contador lo
+ * incrementa un trigger diferido al hacer commit de cualquier transacción que
+ * inserte, actualice o elimine filas de la tabla (una vez por transacción),
+ * así que cambia con cada commit y basta para derivar el ETag de un listado
+ * sin leer ni serializar sus filas.
+ *
+ * En una base sin COLECCION_VERSION (anterior a la inicialización actual) la
+ * versión es aleatoria: el ETag nunca coincide y no hay 304, pero tampoco uno
+ * desactualizado.
+ */
+public final class CollectionVersion {
+
+    private static final Logger logger = Logger.getLogger(CollectionVersion.class.getName());
+
+    private static final String UNDEFINED_TABLE = "42P01";
+
+    private static final String SQL =
+        "SELECT Version, FechaActualizacion FROM COLECCION_VERSION WHERE Tabla = ?";
+
+    private final String tabla;
+    private final long version;
+    private final LocalDateTime ultimaActualizacion;
+
+    CollectionVersion(String tabla, long version, LocalDateTime ultimaActualizacion) {
+        this.tabla = tabla;
+        this.version = version;
+        this.ultimaActualizacion = ultimaActualizacion;
+    }
+
+    public static CollectionVersion ofProductos() throws SQLException {
+        return query("producto");
+    }
+
+    public static CollectionVersion ofBodegas() throws SQLException {
+        return query("bodega");
+    }
+
+    private static CollectionVersion query(String tabla) throws SQLException {
+        try (Connection connection = DatabaseManager.getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(SQL)) {
+            statement.setString(1, tabla);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return read(tabla, resultSet);
+            }
+        } catch (SQLException e) {
+            if (!UNDEFINED_TABLE.equals(e.getSQLState())) {
+                throw e;
+            }
+            logger.warning("Sin COLECCION_VERSION, listados sin 304 hasta inicializar la base");
+            return sinVersion(tabla);
+        }
+    }
+
+    static CollectionVersion read(String tabla, ResultSet resultSet) throws SQLException {
+        if (!resultSet.next()) {
+            logger.warning("COLECCION_VERSION sin fila para " + tabla + ", listados sin 304");
+            return sinVersion(tabla);
+        }
+        Timestamp ultima = resultSet.getTimestamp("FechaActualizacion");
+        return new CollectionVersion(
+            tabla,
+            resultSet.getLong("Version"),
+            ultima != null ? ultima.toLocalDateTime() : null
+        );
+    }
+
+    private static CollectionVersion sinVersion(String tabla) {
+        return new CollectionVersion(tabla, ThreadLocalRandom.current().nextLong(Long.MIN_VALUE, 0), null);
+    }
+
+    public String getTabla() {
+        return tabla;
+    }
+
+    /**
+     * Contador de commits que modificaron la tabla
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public LocalDateTime getUltimaActualizacion() {
+        return ultimaActualizacion;
+    }
+}
@@ -0,0 +1,67 @@
+package com.agranelos.inventario.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Envoltorio de una conexión del pool que ejecuta acciones en su close(),
+ * para que los llamadores sigan usando try-with-resources sin cambios
+ */
+final class ConnectionHooks {
+
+    /**
+     * Trabajo sobre la conexión justo antes de devolverla al pool
+     */
+    @FunctionalInterface
+    interface BeforeClose {
+        void run(Connection connection) throws SQLException;
+    }
+
+    private ConnectionHooks() {
+    }
+
+    /**
+     * @param antes   se ejecuta antes de cerrar (puede ser null); sus errores
+     *                no impiden el cierre
+     * @param despues se ejecuta siempre después de cerrar (puede ser null)
+     */
+    static Connection onClose(Connection connection, BeforeClose antes, Runnable despues) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean cerrada;
+
+            @Override
+            public Object invoke(Object proxy, java.lang.reflect.Method method, Object[] args) throws Throwable {
+                if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                    if (cerrada) {
+                        return null;
+                    }
+                    cerrada = true;
+                    try {
+                        if (antes != null) {
+                            antes.run(connection);
+                        }
+                    } finally {
+                        try {
+                            connection.close();
+                        } finally {
+                            if (despues != null) {
+                                despues.run();
+                            }
+                        }
+                    }
+                    return null;
+                }
+                try {
+                    return method.invoke(connection, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, handler);
+    }
+}
@@ -19,8 +19,20 @@ public class DatabaseInitializer {
         logger.info("Iniciando inicialización de la base de datos...");
 
         try (Connection conn = DatabaseManager.getConnection()) {
-            createTables(conn);
-            insertMockData(conn);
+            // El DDL (p. ej. CREATE INDEX sobre una tabla grande) no debe cortarse
+            // con el statement_timeout del pool OLTP; se restaura antes de devolver
+            // la conexión al pool
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SET statement_timeout = 0");
+            }
+            try {
+                createTables(conn);
+                insertMockData(conn);
+            } finally {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("RESET statement_timeout");
+                }
+            }
             logger.info("Base de datos inicializada exitosamente");
         } catch (SQLException e) {
             logger.severe(
@@ -84,6 +96,101 @@ public class DatabaseInitializer {
             "FOREIGN KEY (IDBodega) REFERENCES BODEGA(ID) ON DELETE CASCADE" +
             ")";
 
+        // Create GRAPHQL_PERSISTED_QUERY table (nivel compartido de APQ)
+        String createPersistedQueryTable =
+            "CREATE TABLE IF NOT EXISTS GRAPHQL_PERSISTED_QUERY (" +
+            "Hash CHAR(64) PRIMARY KEY, " +
+            "Query TEXT NOT NULL, " +
+            "FechaCreacion TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+            ")";
+
+        // Outbox transaccional de eventos (EventOutbox / EventOutboxDispatcher)
+        String createOutboxTable =
+            "CREATE TABLE IF NOT EXISTS EVENTO_OUTBOX (" +
+            "ID BIGSERIAL PRIMARY KEY, " +
+            "EventId VARCHAR(64) NOT NULL, " +
+            "Subject VARCHAR(255) NOT NULL, " +
+            "EventType VARCHAR(255) NOT NULL, " +
+            "Data TEXT NOT NULL, " +
+            "DataVersion VARCHAR(20) NOT NULL DEFAULT '1.0', " +
+            "FechaEvento TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+            "Intentos INTEGER NOT NULL DEFAULT 0, " +
+            "ProximoIntento TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+            "UltimoError TEXT, " +
+            "Descartado BOOLEAN NOT NULL DEFAULT FALSE" +
+            ")";
+        String[] createOutboxIndexes = {
+            "CREATE INDEX IF NOT EXISTS IDX_OUTBOX_PENDIENTE ON EVENTO_OUTBOX (ID) WHERE Descartado = FALSE",
+            "CREATE INDEX IF NOT EXISTS IDX_OUTBOX_SUBJECT_ID ON EVENTO_OUTBOX (Subject, ID)",
+        };
+
+        // Eventos ya procesados por EventGridConsumer (deduplicación por id)
+        String createEventoProcesadoTable =
+            "CREATE TABLE IF NOT EXISTS EVENTO_PROCESADO (" +
+            "EventId VARCHAR(64) PRIMARY KEY, " +
+            "Estado VARCHAR(10) NOT NULL DEFAULT 'PROCESADO', " +
+            "FechaReclamo TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+            "FechaProcesado TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP" +
+            ")";
+        // Bases creadas antes del lease: las filas existentes ya están procesadas
+        String[] addEventoProcesadoLease = {
+            "ALTER TABLE EVENTO_PROCESADO ADD COLUMN IF NOT EXISTS Estado VARCHAR(10) NOT NULL DEFAULT 'PROCESADO'",
+            "ALTER TABLE EVENTO_PROCESADO ADD COLUMN IF NOT EXISTS FechaReclamo TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP",
+        };
+        String createEventoProcesadoIndex =
+            "CREATE INDEX IF NOT EXISTS IDX_EVENTO_PROCESADO_FECHA ON EVENTO_PROCESADO (FechaProcesado)";
+
+        // Índices para la paginación keyset (columna de orden, ID)
+        String[] createKeysetIndexes = {
+            "CREATE INDEX IF NOT EXISTS IDX_PRODUCTO_NOMBRE_ID ON PRODUCTO (Nombre, ID)",
+            "CREATE INDEX IF NOT EXISTS IDX_PRODUCTO_PRECIO_ID ON PRODUCTO (Precio, ID)",
+            "CREATE INDEX IF NOT EXISTS IDX_BODEGA_NOMBRE_ID ON BODEGA (Nombre, ID)",
+            "CREATE INDEX IF NOT EXISTS IDX_BODEGA_CAPACIDAD_ID ON BODEGA (Capacidad, ID)",
+        };
+
+        // Bases creadas antes de que BODEGA tuviera FechaActualizacion
+        String addBodegaFechaActualizacion =
+            "ALTER TABLE BODEGA ADD COLUMN IF NOT EXISTS FechaActualizacion TIMESTAMP DEFAULT CURRENT_TIMESTAMP";
+
+        // Versión de colección de los ETag de listados (CollectionVersion): un
+        // trigger diferido la incrementa al hacer commit, una vez por transacción
+        String createColeccionVersionTable =
+            "CREATE TABLE IF NOT EXISTS COLECCION_VERSION (" +
+            "Tabla VARCHAR(64) PRIMARY KEY, " +
+            "Version BIGINT NOT NULL DEFAULT 0, " +
+            "FechaActualizacion TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP" +
+            ")";
+        String insertColeccionVersion =
+            "INSERT INTO COLECCION_VERSION (Tabla) VALUES ('producto'), ('bodega') ON CONFLICT (Tabla) DO NOTHING";
+        String createColeccionVersionFunction =
+            "CREATE OR REPLACE FUNCTION incrementar_version_coleccion() RETURNS trigger AS $$ " +
+            "BEGIN " +
+            "IF current_setting('inventario.version_' || TG_TABLE_NAME, true) IS DISTINCT FROM '1' THEN " +
+            "PERFORM set_config('inventario.version_' || TG_TABLE_NAME, '1', true); " +
+            "UPDATE COLECCION_VERSION SET Version = Version + 1, FechaActualizacion = clock_timestamp() " +
+            "WHERE Tabla = TG_TABLE_NAME; " +
+            "END IF; " +
+            "RETURN NULL; " +
+            "END $$ LANGUAGE plpgsql";
+        String[] createColeccionVersionTriggers = {
+            "DROP TRIGGER IF EXISTS TRG_PRODUCTO_VERSION ON PRODUCTO",
+            "CREATE CONSTRAINT TRIGGER TRG_PRODUCTO_VERSION AFTER INSERT OR UPDATE OR DELETE ON PRODUCTO " +
+                "DEFERRABLE INITIALLY DEFERRED FOR EACH ROW EXECUTE FUNCTION incrementar_version_coleccion()",
+            "DROP TRIGGER IF EXISTS TRG_BODEGA_VERSION ON BODEGA",
+            "CREATE CONSTRAINT TRIGGER TRG_BODEGA_VERSION AFTER INSERT OR UPDATE OR DELETE ON BODEGA " +
+                "DEFERRABLE INITIALLY DEFERRED FOR EACH ROW EXECUTE FUNCTION incrementar_version_coleccion()",
+        };
+
+        // Índices sobre FechaActualizacion (ordenar y filtrar por fecha de cambio)
+        String[] createFechaActualizacionIndexes = {
+            "CREATE INDEX IF NOT EXISTS IDX_PRODUCTO_FECHA_ACT ON PRODUCTO (FechaActualizacion)",
+            "CREATE INDEX IF NOT EXISTS IDX_BODEGA_FECHA_ACT ON BODEGA (FechaActualizacion)",
+        };
+
+        // Índice para resolver el inventario por bodega (IDProducto ya lo cubre el UNIQUE)
+        String createInventarioBodegaIndex =
+            "CREATE INDEX IF NOT EXISTS IDX_INVENTARIO_BODEGA ON INVENTARIO (IDBodega)";
+
         // Execute table creation
         try (Statement stmt = conn.createStatement()) {
             stmt.executeUpdate(createProductoTable);
@@ -91,12 +198,50 @@ public class DatabaseInitializer {
 
             stmt.executeUpdate(createBodegaTable);
             logger.info("Tabla BODEGA creada");
+            stmt.executeUpdate(addBodegaFechaActualizacion);
 
             stmt.executeUpdate(createInventarioTable);
             logger.info("Tabla INVENTARIO creada");
 
             stmt.executeUpdate(createMovimientoTable);
             logger.info("Tabla MOVIMIENTO creada");
+
+            stmt.executeUpdate(createPersistedQueryTable);
+            logger.info("Tabla GRAPHQL_PERSISTED_QUERY creada");
+
+            stmt.executeUpdate(createOutboxTable);
+            for (String createIndex : createOutboxIndexes) {
+                stmt.executeUpdate(createIndex);
+            }
+            logger.info("Tabla EVENTO_OUTBOX creada");
+
+            stmt.executeUpdate(createEventoProcesadoTable);
+            for (String addColumn : addEventoProcesadoLease) {
+                stmt.executeUpdate(addColumn);
+            }
+            stmt.executeUpdate(createEventoProcesadoIndex);
+            logger.info("Tabla EVENTO_PROCESADO creada");
+
+            for (String createIndex : createKeysetIndexes) {
+                stmt.executeUpdate(createIndex);
+            }
+            logger.info("Índices de paginación keyset creados");
+
+            stmt.executeUpdate(createInventarioBodegaIndex);
+            logger.info("Índice IDX_INVENTARIO_BODEGA creado");
+
+            for (String createIndex : createFechaActualizacionIndexes) {
+                stmt.executeUpdate(createIndex);
+            }
+            logger.info("Índices de FechaActualizacion creados");
+
+            stmt.executeUpdate(createColeccionVersionTable);
+            stmt.executeUpdate(insertColeccionVersion);
+            stmt.executeUpdate(createColeccionVersionFunction);
+            for (String createTrigger : createColeccionVersionTriggers) {
+                stmt.executeUpdate(createTrigger);
+            }
+            logger.info("Tabla COLECCION_VERSION y triggers creados");
         }
     }
 
@@ -1,9 +1,20 @@
 package com.agranelos.inventario.db;
 
+import com.agranelos.inventario.config.EnvConfig;
+import com.agranelos.inventario.metrics.PoolMetrics;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.logging.Logger;
 
 public class DatabaseManager {
@@ -11,7 +22,11 @@ public class DatabaseManager {
     private static final Logger logger = Logger.getLogger(
         DatabaseManager.class.getName()
     );
-    private static HikariDataSource dataSource;
+    private static final Map<Workload, HikariDataSource> pools = new EnumMap<>(Workload.class);
+    private static final Map<Workload, AdmissionController> admissions = new EnumMap<>(Workload.class);
+    private static HikariDataSource readDataSource;
+    private static AdmissionController readAdmission;
+    private static ReplicaMonitor replicaMonitor;
     private static boolean initialized = false;
 
     public static synchronized void initialize() {
@@ -23,8 +38,6 @@ public class DatabaseManager {
 
     private static void initializeDataSource() {
         try {
-            HikariConfig config = new HikariConfig();
-
             // Get database configuration from environment variables
             String host = getEnvVariable("DB_HOST");
             String port = getEnvVariable("DB_PORT", "5432");
@@ -32,12 +45,6 @@ public class DatabaseManager {
             String username = getEnvVariable("DB_USER");
             String password = getEnvVariable("DB_PASSWORD");
 
-            String jdbcUrl = String.format(
-                "jdbc:postgresql://%s:%s/%s",
-                host,
-                port,
-                database
-            );
             logger.info(
                 "Connecting to PostgreSQL on EC2: " +
                 host +
@@ -47,33 +54,53 @@ public class DatabaseManager {
                 database
             );
 
-            config.setJdbcUrl(jdbcUrl);
-            config.setUsername(username);
-            config.setPassword(password);
-
-            // Connection pool settings optimized for EC2 PostgreSQL
-            config.setMaximumPoolSize(10);
-            config.setMinimumIdle(2);
-            config.setConnectionTimeout(20000);
-            config.setIdleTimeout(600000);
-            config.setMaxLifetime(1800000);
-            config.setLeakDetectionThreshold(60000);
-
-            // SSL settings for EC2 PostgreSQL (optional, configurable)
-            String sslMode = getEnvVariable("DB_SSL_MODE", "disable");
-            config.addDataSourceProperty("sslmode", sslMode);
-            if ("require".equals(sslMode) || "prefer".equals(sslMode)) {
-                config.addDataSourceProperty("ssl", "true");
+            // Un pool por carga de trabajo, para que un reporte no agote las
+            // conexiones de las consultas puntuales
+            boolean admissionEnabled = EnvConfig.getBoolean("DB_ADMISSION_ENABLED", true);
+            for (Workload workload : Workload.values()) {
+                HikariConfig config = poolConfig(workload, "inventario-" + workload.getLabel(),
+                    host, port, database, username, password);
+                if (workload != Workload.OLTP) {
+                    // Sin conexiones hasta el primer uso
+                    config.setInitializationFailTimeout(-1);
+                }
+                pools.put(workload, new HikariDataSource(config));
+                if (admissionEnabled) {
+                    admissions.put(workload, AdmissionController.fromEnvironment(config.getMaximumPoolSize()));
+                }
             }
-            config.addDataSourceProperty("serverTimezone", "UTC");
+            logger.info("Database connection pools initialized successfully");
 
-            // Performance settings
-            config.addDataSourceProperty("cachePrepStmts", "true");
-            config.addDataSourceProperty("prepStmtCacheSize", "250");
-            config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
-
-            dataSource = new HikariDataSource(config);
-            logger.info("Database connection pool initialized successfully");
+            // Réplica de lectura opcional; sin ella todo va al primario
+            String readHost = getEnvVariable("DB_READ_HOST", null);
+            if (readHost != null) {
+                String readPort = getEnvVariable("DB_READ_PORT", port);
+                logger.info("Réplica de lectura: " + readHost + ":" + readPort + "/" + database);
+                HikariConfig readConfig = poolConfig(
+                    Workload.OLTP,
+                    "inventario-replica",
+                    readHost,
+                    readPort,
+                    database,
+                    getEnvVariable("DB_READ_USER", username),
+                    getEnvVariable("DB_READ_PASSWORD", password)
+                );
+                readConfig.setMaximumPoolSize(EnvConfig.getInt("DB_READ_POOL_SIZE", readConfig.getMaximumPoolSize()));
+                readConfig.setReadOnly(true);
+                // Si la réplica no arranca, las lecturas siguen en el primario
+                readConfig.setInitializationFailTimeout(-1);
+                readDataSource = new HikariDataSource(readConfig);
+                if (admissionEnabled) {
+                    readAdmission = AdmissionController.fromEnvironment(readConfig.getMaximumPoolSize());
+                }
+                replicaMonitor = new ReplicaMonitor(
+                    readDataSource,
+                    EnvConfig.getLong("DB_READ_LAG_POLL_MS", 500),
+                    EnvConfig.getLong("DB_READ_MAX_LAG_MS", 5000),
+                    System::currentTimeMillis
+                );
+                replicaMonitor.start();
+            }
         } catch (Exception e) {
             logger.severe(
                 "Failed to initialize database connection: " + e.getMessage()
@@ -82,11 +109,253 @@ public class DatabaseManager {
         }
     }
 
+    private static HikariConfig poolConfig(
+        Workload workload,
+        String poolName,
+        String host,
+        String port,
+        String database,
+        String username,
+        String password
+    ) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(String.format(
+            "jdbc:postgresql://%s:%s/%s",
+            host,
+            port,
+            database
+        ));
+        config.setUsername(username);
+        config.setPassword(password);
+
+        // Connection pool settings optimized for EC2 PostgreSQL
+        config.setMaximumPoolSize(workload.size());
+        config.setMinimumIdle(Math.min(workload.minIdle(), workload.size()));
+        // La espera larga la absorbe el control de admisión; esto solo cubre
+        // conexiones tomadas fuera de él o un servidor que no responde
+        config.setConnectionTimeout(workload.connectionTimeoutMillis());
+        config.setIdleTimeout(600000);
+        config.setMaxLifetime(1800000);
+        config.setLeakDetectionThreshold(60000);
+
+        // Estado del pool y espera de conexiones para GET /metrics
+        config.setPoolName(poolName);
+        config.setMetricsTrackerFactory(PoolMetrics.getFactory());
+
+        // SSL settings for EC2 PostgreSQL (optional, configurable)
+        String sslMode = getEnvVariable("DB_SSL_MODE", "disable");
+        config.addDataSourceProperty("sslmode", sslMode);
+        if ("require".equals(sslMode) || "prefer".equals(sslMode)) {
+            config.addDataSourceProperty("ssl", "true");
+        }
+        config.addDataSourceProperty("serverTimezone", "UTC");
+        // El servidor cancela las sentencias que superan el límite del pool
+        if (workload.statementTimeoutMillis() > 0) {
+            config.addDataSourceProperty("options", "-c statement_timeout=" + workload.statementTimeoutMillis());
+        }
+
+        // Performance settings
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", "250");
+        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        // Los executeBatch de INSERT se reescriben como INSERT multi-fila
+        config.addDataSourceProperty("reWriteBatchedInserts", "true");
+        return config;
+    }
+
+    /**
+     * Conexión para lecturas del pool OLTP; con el pool saturado puede lanzar
+     * {@link AdmissionRejectedException} en vez de esperar
+     */
     public static Connection getConnection() throws SQLException {
+        return getConnection(Workload.OLTP);
+    }
+
+    /**
+     * Conexión para lecturas del pool de la carga indicada
+     */
+    public static Connection getConnection(Workload workload) throws SQLException {
+        return getConnection(workload, AdmissionController.Priority.READ);
+    }
+
+    /**
+     * Conexión para escrituras del pool OLTP, con prioridad sobre las
+     * lecturas en el control de admisión
+     */
+    public static Connection getWriteConnection() throws SQLException {
+        return getWriteConnection(Workload.OLTP);
+    }
+
+    public static Connection getWriteConnection(Workload workload) throws SQLException {
+        return getConnection(workload, AdmissionController.Priority.WRITE);
+    }
+
+    /**
+     * Conexión de solo lectura para consultas OLTP: a la réplica si está
+     * configurada, al día (DB_READ_MAX_LAG_MS) y ya reprodujo las escrituras
+     * de la sesión ({@link ReadConsistency}); si no, al primario.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        if (!initialized) {
+            initialize();
+        }
+        if (replicaMonitor == null || !replicaMonitor.canServe(ReadConsistency.requiredLsn())) {
+            return getConnection();
+        }
+        try {
+            return checkout(readDataSource, readAdmission, AdmissionController.Priority.READ);
+        } catch (SQLException e) {
+            logger.warning("Réplica de lectura sin conexión, usando el primario: " + e.getMessage());
+            return getConnection();
+        }
+    }
+
+    private static Connection getConnection(Workload workload, AdmissionController.Priority priority)
+        throws SQLException {
         if (!initialized) {
             initialize();
         }
-        return dataSource.getConnection();
+        Connection connection = checkout(pools.get(workload), admissions.get(workload), priority);
+        if (priority == AdmissionController.Priority.WRITE && replicaMonitor != null) {
+            return ReadConsistency.trackWrites(connection);
+        }
+        return connection;
+    }
+
+    private static Connection checkout(
+        HikariDataSource pool,
+        AdmissionController control,
+        AdmissionController.Priority priority
+    ) throws SQLException {
+        if (control == null) {
+            return pool.getConnection();
+        }
+        AdmissionController.Permit permit = control.acquire(priority);
+        Connection connection;
+        try {
+            connection = pool.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            permit.release(e instanceof SQLTransientConnectionException);
+            throw e;
+        }
+        return AdmissionController.track(connection, permit);
+    }
+
+    /**
+     * Abre y prueba las conexiones ociosas mínimas de cada pool (y de la
+     * réplica) para que la primera petición no pague el handshake con
+     * PostgreSQL. No pasa por el control de admisión.
+     *
+     * @return conexiones probadas
+     */
+    public static int primeConnections() throws SQLException {
+        if (!initialized) {
+            initialize();
+        }
+        int probadas = 0;
+        for (HikariDataSource pool : pools.values()) {
+            probadas += prime(pool);
+        }
+        if (readDataSource != null) {
+            try {
+                probadas += prime(readDataSource);
+            } catch (SQLException e) {
+                logger.warning("No se pudo precalentar la réplica de lectura: " + e.getMessage());
+            }
+        }
+        return probadas;
+    }
+
+    private static int prime(HikariDataSource pool) throws SQLException {
+        // Se toman todas a la vez para que el pool abra minimumIdle conexiones distintas
+        List<Connection> conexiones = new ArrayList<>();
+        try {
+            for (int i = 0; i < pool.getMinimumIdle(); i++) {
+                Connection connection = pool.getConnection();
+                conexiones.add(connection);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SELECT 1");
+                }
+            }
+            return conexiones.size();
+        } finally {
+            for (Connection connection : conexiones) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Estado del control de admisión por pool (vacío si está desactivado o
+     * los pools no se inicializaron)
+     */
+    public static Map<String, Map<String, Object>> admissionStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        for (Map.Entry<Workload, AdmissionController> entry : admissions.entrySet()) {
+            stats.put(entry.getKey().getLabel(), entry.getValue().stats());
+        }
+        if (readAdmission != null) {
+            stats.put("replica", readAdmission.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * Estado de la réplica de lectura, o null si no hay réplica configurada
+     */
+    public static Map<String, Object> replicaStats() {
+        if (replicaMonitor == null) {
+            return null;
+        }
+        return replicaMonitor.stats();
+    }
+
+    /**
+     * Trabajo JDBC que se ejecuta dentro de una transacción
+     */
+    @FunctionalInterface
+    public interface TransactionalWork<T> {
+        T execute(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Ejecuta el trabajo en una transacción del pool OLTP: commit si termina
+     * bien, rollback ante cualquier excepción
+     */
+    public static <T> T inTransaction(TransactionalWork<T> work) throws SQLException {
+        return inTransaction(Workload.OLTP, work);
+    }
+
+    public static <T> T inTransaction(Workload workload, TransactionalWork<T> work) throws SQLException {
+        try (Connection connection = getWriteConnection(workload)) {
+            connection.setAutoCommit(false);
+            try {
+                T result = work.execute(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Abre una conexión fuera del pool con la misma configuración, para
+     * sesiones de larga duración como LISTEN. El llamador debe cerrarla.
+     */
+    public static Connection openDedicatedConnection() throws SQLException {
+        if (!initialized) {
+            initialize();
+        }
+        HikariDataSource dataSource = pools.get(Workload.OLTP);
+        Properties properties = new Properties();
+        properties.putAll(dataSource.getDataSourceProperties());
+        properties.setProperty("user", dataSource.getUsername());
+        properties.setProperty("password", dataSource.getPassword());
+        return DriverManager.getConnection(dataSource.getJdbcUrl(), properties);
     }
 
     private static String getEnvVariable(String name) {
@@ -107,10 +376,25 @@ public class DatabaseManager {
     }
 
     public static void close() {
-        if (dataSource != null && !dataSource.isClosed()) {
-            dataSource.close();
-            logger.info("Database connection pool closed");
+        for (HikariDataSource pool : pools.values()) {
+            if (!pool.isClosed()) {
+                pool.close();
+            }
+        }
+        if (!pools.isEmpty()) {
+            logger.info("Database connection pools closed");
+        }
+        pools.clear();
+        if (replicaMonitor != null) {
+            replicaMonitor.stop();
+            replicaMonitor = null;
+        }
+        if (readDataSource != null && !readDataSource.isClosed()) {
+            readDataSource.close();
         }
+        readDataSource = null;
+        readAdmission = null;
+        admissions.clear();
         initialized = false;
     }
 }
@@ -0,0 +1,90 @@
+package com.agranelos.inventario.db;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Cursor opaco para paginación keyset (seek method).
+ *
+ * Codifica el criterio de orden, el valor de la columna de orden y el ID
+ * de la última fila entregada, de modo que la página siguiente se obtiene con
+ * {@code WHERE (columna, ID) > (?, ?)} en lugar de un OFFSET creciente.
+ */
+public final class KeysetCursor {
+
+    private static final char SEPARATOR = '|';
+
+    private final String orden;
+    private final String valor;
+    private final int id;
+
+    public KeysetCursor(String orden, String valor, int id) {
+        if (orden == null || orden.isEmpty() || orden.indexOf(SEPARATOR) >= 0) {
+            throw new IllegalArgumentException("Orden de cursor inválido: " + orden);
+        }
+        this.orden = orden;
+        this.valor = valor != null ? valor : "";
+        this.id = id;
+    }
+
+    /**
+     * Serializa el cursor como token base64url sin padding
+     */
+    public String encode() {
+        String raw = orden + SEPARATOR + id + SEPARATOR + valor;
+        return Base64.getUrlEncoder()
+            .withoutPadding()
+            .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica un token generado por {@link #encode()}
+     *
+     * @throws IllegalArgumentException si el token no es un cursor válido
+     */
+    public static KeysetCursor decode(String token) {
+        if (token == null || token.trim().isEmpty()) {
+            throw new IllegalArgumentException("Cursor vacío");
+        }
+
+        String raw;
+        try {
+            raw = new String(
+                Base64.getUrlDecoder().decode(token.trim()),
+                StandardCharsets.UTF_8
+            );
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor mal formado", e);
+        }
+
+        // El valor va al final para que pueda contener el separador
+        int first = raw.indexOf(SEPARATOR);
+        int second = first < 0 ? -1 : raw.indexOf(SEPARATOR, first + 1);
+        if (first <= 0 || second < 0) {
+            throw new IllegalArgumentException("Cursor mal formado");
+        }
+
+        try {
+            int id = Integer.parseInt(raw.substring(first + 1, second));
+            return new KeysetCursor(
+                raw.substring(0, first),
+                raw.substring(second + 1),
+                id
+            );
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor mal formado", e);
+        }
+    }
+
+    public String getOrden() {
+        return orden;
+    }
+
+    public String getValor() {
+        return valor;
+    }
+
+    public int getId() {
+        return id;
+    }
+}
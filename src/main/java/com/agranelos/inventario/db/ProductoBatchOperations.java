@@ -0,0 +1,206 @@
+package com.agranelos.inventario.db;
+
+import com.agranelos.inventario.config.EnvConfig;
+import com.agranelos.inventario.model.Producto;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Escrituras masivas de productos con batching JDBC.
+ *
+ * Cada operación trabaja sobre la conexión del llamador, de modo que el lote
+ * y sus eventos en EVENTO_OUTBOX quedan en una sola transacción (ver
+ * {@link DatabaseManager#inTransaction}), en bloques de {@link #CHUNK_SIZE}.
+ * Los UPDATE usan addBatch/executeBatch; los INSERT envían cada bloque como
+ * arreglos en una sola sentencia (unnest WITH ORDINALITY), para devolver el
+ * ID de cada ítem por su posición y no por el orden de RETURNING, que
+ * PostgreSQL no garantiza. La validación por ítem corresponde al llamador;
+ * aquí solo llegan ítems válidos.
+ */
+public final class ProductoBatchOperations {
+
+    private static final Logger logger = Logger.getLogger(ProductoBatchOperations.class.getName());
+
+    static final int CHUNK_SIZE = 500;
+
+    /**
+     * Máximo de ítems por petición (PRODUCTO_BATCH_MAX_ITEMS)
+     */
+    public static final int MAX_ITEMS = EnvConfig.getInt("PRODUCTO_BATCH_MAX_ITEMS", 5000);
+
+    private ProductoBatchOperations() {
+    }
+
+    /**
+     * Valida un producto para crear o actualizar
+     *
+     * @return el mensaje de error, o null si es válido
+     */
+    public static String validar(Producto producto) {
+        if (producto == null) {
+            return "Producto requerido";
+        }
+        if (producto.getNombre() == null || producto.getNombre().trim().isEmpty()) {
+            return "El nombre del producto es requerido";
+        }
+        if (producto.getPrecio() != null && producto.getPrecio().signum() < 0) {
+            return "El precio no puede ser negativo";
+        }
+        if (producto.getCantidadEnStock() != null && producto.getCantidadEnStock() < 0) {
+            return "La cantidad en stock no puede ser negativa";
+        }
+        return null;
+    }
+
+    /**
+     * Los IDs se reservan con nextval por ordinal antes del INSERT, y la
+     * consulta devuelve el par (ordinal, ID) de cada fila insertada
+     */
+    private static final String INSERT_SQL =
+        "WITH filas AS (" +
+        "SELECT t.n, nextval(pg_get_serial_sequence('producto', 'id')) AS id, " +
+        "t.nombre, t.descripcion, t.precio, t.cantidad " +
+        "FROM unnest(?::text[], ?::text[], ?::numeric[], ?::integer[]) " +
+        "WITH ORDINALITY AS t(nombre, descripcion, precio, cantidad, n)" +
+        "), insertadas AS (" +
+        "INSERT INTO PRODUCTO (ID, Nombre, Descripcion, Precio, CantidadEnStock) " +
+        "SELECT id, nombre, descripcion, precio, cantidad FROM filas RETURNING ID" +
+        ") SELECT filas.n, filas.id FROM filas JOIN insertadas ON insertadas.ID = filas.id";
+
+    /**
+     * Inserta los productos y devuelve los IDs generados, en el mismo orden
+     */
+    public static List<Integer> insertAll(Connection connection, List<Producto> productos) throws SQLException {
+        List<Integer> ids = new ArrayList<>(productos.size());
+        if (productos.isEmpty()) {
+            return ids;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+            for (int desde = 0; desde < productos.size(); desde += CHUNK_SIZE) {
+                List<Producto> bloque = productos.subList(desde, Math.min(productos.size(), desde + CHUNK_SIZE));
+                ids.addAll(insertBloque(connection, statement, bloque));
+            }
+        } catch (SQLException e) {
+            logger.severe("Error insertando lote de productos: " + e.getMessage());
+            throw e;
+        }
+
+        logger.info("Lote de productos insertado: " + ids.size());
+        return ids;
+    }
+
+    private static List<Integer> insertBloque(Connection connection, PreparedStatement statement, List<Producto> bloque)
+        throws SQLException {
+        int n = bloque.size();
+        String[] nombres = new String[n];
+        String[] descripciones = new String[n];
+        BigDecimal[] precios = new BigDecimal[n];
+        Integer[] cantidades = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            Producto producto = bloque.get(i);
+            nombres[i] = producto.getNombre();
+            descripciones[i] = producto.getDescripcion();
+            precios[i] = producto.getPrecio() != null ? producto.getPrecio() : BigDecimal.ZERO;
+            cantidades[i] = producto.getCantidadEnStock() != null ? producto.getCantidadEnStock() : 0;
+        }
+        statement.setArray(1, connection.createArrayOf("text", nombres));
+        statement.setArray(2, connection.createArrayOf("text", descripciones));
+        statement.setArray(3, connection.createArrayOf("numeric", precios));
+        statement.setArray(4, connection.createArrayOf("integer", cantidades));
+
+        Integer[] ids = new Integer[n];
+        int recibidos = 0;
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                // WITH ORDINALITY empieza en 1
+                int ordinal = (int) resultSet.getLong(1);
+                if (ordinal < 1 || ordinal > n || ids[ordinal - 1] != null) {
+                    throw new SQLException("Ordinal inesperado en el INSERT del lote: " + ordinal);
+                }
+                ids[ordinal - 1] = resultSet.getInt(2);
+                recibidos++;
+            }
+        }
+        if (recibidos != n) {
+            throw new SQLException("Se esperaban " + n + " IDs generados y se obtuvieron " + recibidos);
+        }
+        return Arrays.asList(ids);
+    }
+
+    /**
+     * Actualiza los productos (mismo criterio que PUT /productos/{id})
+     *
+     * @return filas afectadas por ítem; 0 indica que el producto no existe
+     */
+    public static int[] updateAll(Connection connection, List<Producto> productos) throws SQLException {
+        int[] resultados = new int[productos.size()];
+        if (productos.isEmpty()) {
+            return resultados;
+        }
+
+        String sql = "UPDATE PRODUCTO SET Nombre = ?, Descripcion = ?, Precio = ?, CantidadEnStock = ?, FechaActualizacion = CURRENT_TIMESTAMP WHERE ID = ?";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int desde = 0;
+            for (int i = 0; i < productos.size(); i++) {
+                Producto producto = productos.get(i);
+                setCampos(statement, producto);
+                statement.setInt(5, producto.getId());
+                statement.addBatch();
+                if (i - desde + 1 == CHUNK_SIZE || i == productos.size() - 1) {
+                    int[] counts = statement.executeBatch();
+                    System.arraycopy(counts, 0, resultados, desde, counts.length);
+                    desde = i + 1;
+                }
+            }
+        } catch (SQLException e) {
+            logger.severe("Error actualizando lote de productos: " + e.getMessage());
+            throw e;
+        }
+        return resultados;
+    }
+
+    /**
+     * Elimina los productos en una sola sentencia
+     *
+     * @return IDs efectivamente eliminados
+     */
+    public static Set<Integer> deleteAll(Connection connection, Collection<Integer> ids) throws SQLException {
+        Set<Integer> eliminados = new LinkedHashSet<>();
+        if (ids.isEmpty()) {
+            return eliminados;
+        }
+
+        String sql = "DELETE FROM PRODUCTO WHERE ID = ANY(?) RETURNING ID";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setArray(1, connection.createArrayOf("integer", ids.toArray()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    eliminados.add(resultSet.getInt(1));
+                }
+            }
+        } catch (SQLException e) {
+            logger.severe("Error eliminando lote de productos: " + e.getMessage());
+            throw e;
+        }
+        return eliminados;
+    }
+
+    private static void setCampos(PreparedStatement statement, Producto producto) throws SQLException {
+        statement.setString(1, producto.getNombre());
+        statement.setString(2, producto.getDescripcion());
+        statement.setBigDecimal(3, producto.getPrecio() != null ? producto.getPrecio() : BigDecimal.ZERO);
+        statement.setInt(4, producto.getCantidadEnStock() != null ? producto.getCantidadEnStock() : 0);
+    }
+}
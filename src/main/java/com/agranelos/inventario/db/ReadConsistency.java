@@ -0,0 +1,136 @@
+package com.agranelos.inventario.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.logging.Logger;
+
+/**
+ * Read-your-writes sobre la réplica de lectura.
+ *
+ * Cada invocación abre una {@link Session} con el token que trae el cliente
+ * (cabecera {@value #HEADER}): la posición del WAL (LSN) del primario tras
+ * su última escritura. Una lectura solo va a la réplica si ya reprodujo ese
+ * LSN; si no, va al primario. Las conexiones de escritura registran en la
+ * sesión el LSN del primario al cerrarse, y ese es el token que la respuesta
+ * devuelve al cliente para sus próximas lecturas.
+ *
+ * Como {@link com.agranelos.inventario.metrics.RequestMetrics}, la sesión
+ * vive en el hilo de la invocación (los DataFetcher corren en ese hilo).
+ */
+public final class ReadConsistency {
+
+    private static final Logger logger = Logger.getLogger(ReadConsistency.class.getName());
+
+    public static final String HEADER = "X-Session-Token";
+
+    /**
+     * Escribió sin poder leer el LSN: las lecturas siguientes van al primario
+     */
+    static final long PRIMARY = Long.MAX_VALUE;
+
+    private static final ThreadLocal<Session> CURRENT = new ThreadLocal<>();
+
+    private ReadConsistency() {
+    }
+
+    /**
+     * Sesión de lectura de una invocación; usar con try-with-resources
+     */
+    public static final class Session implements AutoCloseable {
+        private final Session anterior;
+        private final long minLsn;
+        private long escrito;
+
+        private Session(long minLsn, Session anterior) {
+            this.minLsn = minLsn;
+            this.anterior = anterior;
+        }
+
+        /**
+         * Token para la cabecera de respuesta, o null si la invocación no escribió
+         */
+        public String getToken() {
+            return escrito > 0 && escrito != PRIMARY ? formatLsn(escrito) : null;
+        }
+
+        @Override
+        public void close() {
+            if (CURRENT.get() == this) {
+                if (anterior != null) {
+                    CURRENT.set(anterior);
+                } else {
+                    CURRENT.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param token cabecera {@value #HEADER} del cliente; null o inválido se ignora
+     */
+    public static Session start(String token) {
+        Session session = new Session(parseLsn(token), CURRENT.get());
+        CURRENT.set(session);
+        return session;
+    }
+
+    /**
+     * LSN que la réplica debe haber reproducido para la invocación en curso (0 si ninguno)
+     */
+    static long requiredLsn() {
+        Session session = CURRENT.get();
+        return session != null ? Math.max(session.minLsn, session.escrito) : 0;
+    }
+
+    /**
+     * Envuelve una conexión de escritura para registrar el LSN del primario al cerrarla
+     */
+    static Connection trackWrites(Connection connection) {
+        if (CURRENT.get() == null) {
+            return connection;
+        }
+        return ConnectionHooks.onClose(connection, ReadConsistency::recordWrite, null);
+    }
+
+    private static void recordWrite(Connection connection) {
+        Session session = CURRENT.get();
+        if (session == null) {
+            return;
+        }
+        long lsn;
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_current_wal_lsn()::text");
+             ResultSet resultSet = statement.executeQuery()) {
+            lsn = resultSet.next() ? parseLsn(resultSet.getString(1)) : 0;
+        } catch (SQLException e) {
+            logger.warning("No se pudo leer el LSN tras la escritura: " + e.getMessage());
+            lsn = 0;
+        }
+        session.escrito = lsn > 0 ? Math.max(session.escrito, lsn) : PRIMARY;
+    }
+
+    /**
+     * LSN de PostgreSQL ({@code 16/B374D848}) como número; 0 si no es válido
+     */
+    static long parseLsn(String lsn) {
+        if (lsn == null) {
+            return 0;
+        }
+        int barra = lsn.indexOf('/');
+        if (barra <= 0 || barra == lsn.length() - 1 || barra > 8 || lsn.length() - barra - 1 > 8) {
+            return 0;
+        }
+        try {
+            long alto = Long.parseLong(lsn.substring(0, barra).trim(), 16);
+            long bajo = Long.parseLong(lsn.substring(barra + 1).trim(), 16);
+            return alto << 32 | bajo;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static String formatLsn(long lsn) {
+        return Long.toHexString(lsn >>> 32).toUpperCase() + "/" + Long.toHexString(lsn & 0xFFFFFFFFL).toUpperCase();
+    }
+}
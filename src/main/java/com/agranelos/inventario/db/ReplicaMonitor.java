@@ -0,0 +1,146 @@
+package com.agranelos.inventario.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * Estado de la réplica de lectura: LSN reproducido y retraso respecto del
+ * primario, consultados cada DB_READ_LAG_POLL_MS por un hilo daemon.
+ *
+ * La réplica atiende una lectura solo si la última consulta es reciente (tres
+ * períodos), su receptor de WAL está transmitiendo, su retraso no supera
+ * DB_READ_MAX_LAG_MS y, si la sesión exige un LSN, ya lo reprodujo. Si no, la
+ * lectura va al primario.
+ *
+ * Con un servidor que no es standby (p. ej. dos PostgreSQL independientes en
+ * local) el retraso es 0 y no hay LSN: sirve lecturas sin sesión, y las que
+ * exigen read-your-writes van al primario.
+ */
+final class ReplicaMonitor implements Runnable {
+
+    private static final Logger logger = Logger.getLogger(ReplicaMonitor.class.getName());
+
+    // Sin tráfico en el primario now() - pg_last_xact_replay_timestamp() crece
+    // aunque la réplica esté al día: si recibió y reprodujo todo, el retraso es 0.
+    // Eso solo vale con el receptor conectado: desconectado o detenido, lo
+    // recibido deja de avanzar y el retraso se mide por la última reproducción.
+    // Sin pg_read_all_stats el status es NULL y solo se ve que el proceso existe
+    private static final String SQL =
+        "SELECT pg_is_in_recovery(), pg_last_wal_replay_lsn()::text, receptor.activo, " +
+        "CASE WHEN receptor.activo AND pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+        "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END " +
+        "FROM (SELECT EXISTS (SELECT 1 FROM pg_stat_wal_receiver " +
+        "WHERE COALESCE(status, 'streaming') = 'streaming') AS activo) receptor";
+
+    private final DataSource replica;
+    private final long pollMillis;
+    private final long maxLagMillis;
+    private final LongSupplier clock;
+
+    private volatile boolean running = true;
+    private volatile long replayLsn;
+    private volatile long lagMillis;
+    private volatile long ultimaConsulta;
+    private volatile boolean disponible;
+    private volatile boolean retrasada;
+    private volatile boolean receptorActivo;
+
+    ReplicaMonitor(DataSource replica, long pollMillis, long maxLagMillis, LongSupplier clock) {
+        this.replica = replica;
+        this.pollMillis = Math.max(50, pollMillis);
+        this.maxLagMillis = maxLagMillis;
+        this.clock = clock;
+    }
+
+    void start() {
+        Thread thread = new Thread(this, "replica-lag-monitor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            poll();
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+    }
+
+    private void poll() {
+        try (Connection connection = replica.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SQL);
+             ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            boolean standby = resultSet.getBoolean(1);
+            update(standby ? ReadConsistency.parseLsn(resultSet.getString(2)) : 0,
+                standby ? resultSet.getLong(4) : 0,
+                !standby || resultSet.getBoolean(3));
+        } catch (SQLException | RuntimeException e) {
+            if (disponible) {
+                logger.warning("Réplica de lectura no disponible, lecturas al primario: " + e.getMessage());
+            }
+            disponible = false;
+        }
+    }
+
+    /**
+     * Registra una consulta exitosa del estado de la réplica
+     *
+     * @param replayLsn LSN reproducido, o 0 si no es standby
+     * @param receptorActivo el receptor de WAL está transmitiendo (true si no es standby)
+     */
+    void update(long replayLsn, long lagMillis, boolean receptorActivo) {
+        boolean fuera = lagMillis > maxLagMillis;
+        if (fuera && !retrasada) {
+            logger.warning("Réplica de lectura con " + lagMillis + " ms de retraso, lecturas al primario");
+        }
+        if (!receptorActivo && this.receptorActivo) {
+            logger.warning("Réplica de lectura sin receptor de WAL activo, lecturas al primario");
+        }
+        this.retrasada = fuera;
+        this.receptorActivo = receptorActivo;
+        this.replayLsn = replayLsn;
+        this.lagMillis = lagMillis;
+        this.ultimaConsulta = clock.getAsLong();
+        this.disponible = true;
+    }
+
+    /**
+     * @param minLsn LSN que la lectura debe ver (0 si ninguno)
+     */
+    boolean canServe(long minLsn) {
+        if (!disponible || !receptorActivo || lagMillis > maxLagMillis) {
+            return false;
+        }
+        if (clock.getAsLong() - ultimaConsulta > 3 * pollMillis) {
+            return false;
+        }
+        return minLsn <= 0 || replayLsn >= minLsn;
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("available", disponible);
+        stats.put("walReceiverStreaming", receptorActivo);
+        stats.put("lagMillis", lagMillis);
+        stats.put("replayLsn", replayLsn > 0 ? ReadConsistency.formatLsn(replayLsn) : null);
+        stats.put("maxLagMillis", maxLagMillis);
+        return stats;
+    }
+}
@@ -0,0 +1,77 @@
+package com.agranelos.inventario.db;
+
+import com.agranelos.inventario.config.EnvConfig;
+
+/**
+ * Pools de conexiones con nombre, para que una carga lenta no deje sin
+ * conexiones a las consultas puntuales.
+ *
+ * Cada pool tiene su tamaño, timeout de conexión y statement_timeout
+ * propios, configurables con DB_POOL_&lt;NOMBRE&gt;_SIZE,
+ * DB_POOL_&lt;NOMBRE&gt;_MIN_IDLE, DB_POOL_&lt;NOMBRE&gt;_CONNECTION_TIMEOUT_MS y
+ * DB_POOL_&lt;NOMBRE&gt;_STATEMENT_TIMEOUT_MS (p. ej. DB_POOL_REPORTING_SIZE).
+ * Los pools que no son OLTP no abren conexiones hasta el primer uso.
+ */
+public enum Workload {
+
+    /**
+     * Consultas puntuales y escrituras de una fila desde HTTP y GraphQL
+     */
+    OLTP("oltp", 10, 2, 5000, 10000),
+
+    /**
+     * Listados completos y exportaciones: pocas conexiones, consultas largas
+     */
+    REPORTING("reporting", 2, 0, 5000, 60000),
+
+    /**
+     * Operaciones masivas y trabajo en segundo plano (outbox, purgas)
+     */
+    BATCH("batch", 3, 0, 10000, 120000);
+
+    private final String label;
+    private final int defaultSize;
+    private final int defaultMinIdle;
+    private final long defaultConnectionTimeoutMillis;
+    private final long defaultStatementTimeoutMillis;
+
+    Workload(String label, int defaultSize, int defaultMinIdle,
+             long defaultConnectionTimeoutMillis, long defaultStatementTimeoutMillis) {
+        this.label = label;
+        this.defaultSize = defaultSize;
+        this.defaultMinIdle = defaultMinIdle;
+        this.defaultConnectionTimeoutMillis = defaultConnectionTimeoutMillis;
+        this.defaultStatementTimeoutMillis = defaultStatementTimeoutMillis;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    private String setting(String nombre) {
+        return "DB_POOL_" + name() + "_" + nombre;
+    }
+
+    int size() {
+        return Math.max(1, EnvConfig.getInt(setting("SIZE"), defaultSize));
+    }
+
+    int minIdle() {
+        return Math.max(0, EnvConfig.getInt(setting("MIN_IDLE"), defaultMinIdle));
+    }
+
+    long connectionTimeoutMillis() {
+        // DB_CONNECTION_TIMEOUT_MS se mantiene como valor por defecto del pool OLTP
+        long porDefecto = this == OLTP
+            ? EnvConfig.getLong("DB_CONNECTION_TIMEOUT_MS", defaultConnectionTimeoutMillis)
+            : defaultConnectionTimeoutMillis;
+        return EnvConfig.getLong(setting("CONNECTION_TIMEOUT_MS"), porDefecto);
+    }
+
+    /**
+     * statement_timeout de las sesiones del pool; 0 lo desactiva
+     */
+    long statementTimeoutMillis() {
+        return Math.max(0, EnvConfig.getLong(setting("STATEMENT_TIMEOUT_MS"), defaultStatementTimeoutMillis));
+    }
+}
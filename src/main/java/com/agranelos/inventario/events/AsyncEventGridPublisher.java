@@ -0,0 +1,284 @@
+package com.agranelos.inventario.events;
+
+import com.agranelos.inventario.config.EnvConfig;
+import com.azure.messaging.eventgrid.EventGridEvent;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Publicación asíncrona en Event Grid con micro-batching.
+ *
+ * Los handlers solo dejan el evento en una cola acotada y vuelven de
+ * inmediato; un hilo de fondo arma lotes de hasta {@code batchSize} eventos
+ * (o lo acumulado en {@code flushMillis}) y los envía con el cliente
+ * asíncrono, con un máximo de {@code maxInFlight} peticiones en vuelo.
+ *
+ * Contrapresión: si las peticiones en vuelo se agotan, el hilo de fondo deja
+ * de vaciar la cola; si la cola se llena, {@link #offer} devuelve false y el
+ * llamador publica en forma síncrona, pagando él la latencia. Un lote de
+ * {@link #offerAll} se encola completo o no se encola. Al apagar la
+ * instancia un shutdown hook envía lo que quede en la cola.
+ *
+ * Sin garantía de orden: con la cola llena el evento rechazado se publica en
+ * forma síncrona antes que los que siguen en la cola (p. ej. un
+ * ProductoEliminado antes del ProductoActualizado previo), y con
+ * {@code maxInFlight} mayor que 1 los lotes en vuelo pueden completarse en
+ * cualquier orden. Los consumidores deben tolerar eventos desordenados.
+ *
+ * Se activa con EVENT_GRID_ASYNC_ENABLED. Un fallo de envío se registra y
+ * no se reintenta; para entrega garantizada y en orden por subject está
+ * EVENTO_OUTBOX.
+ */
+public class AsyncEventGridPublisher {
+
+    private static final Logger logger = Logger.getLogger(AsyncEventGridPublisher.class.getName());
+
+    private static final boolean ENABLED = EnvConfig.getBoolean("EVENT_GRID_ASYNC_ENABLED", false);
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private static volatile AsyncEventGridPublisher instance;
+
+    /**
+     * Envía un lote ya acotado a MAX_EVENTS_PER_REQUEST
+     */
+    interface Sender {
+        Mono<Void> send(List<EventGridEvent> events);
+    }
+
+    private final Sender sender;
+    private final BlockingQueue<EventGridEvent> queue;
+    private final int batchSize;
+    private final long flushNanos;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    /**
+     * Serializa a los productores, para que offerAll vea la capacidad que
+     * realmente le queda; el hilo de fondo solo saca de la cola
+     */
+    private final Object productores = new Object();
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    AsyncEventGridPublisher(Sender sender, int queueSize, int batchSize, long flushMillis, int maxInFlight) {
+        if (queueSize < 1 || batchSize < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("queueSize, batchSize y maxInFlight deben ser mayores que 0");
+        }
+        this.sender = sender;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = Math.min(batchSize, EventGridPublisher.MAX_EVENTS_PER_REQUEST);
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushMillis));
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.flusher = new Thread(this::runFlusher, "eventgrid-async-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED && EventGridPublisher.isConfigured();
+    }
+
+    /**
+     * Instancia compartida, creada con App Settings (EVENT_GRID_ASYNC_QUEUE_SIZE,
+     * EVENT_GRID_ASYNC_BATCH_SIZE, EVENT_GRID_ASYNC_FLUSH_MS, EVENT_GRID_ASYNC_MAX_IN_FLIGHT)
+     */
+    public static AsyncEventGridPublisher getInstance() {
+        if (instance == null) {
+            synchronized (AsyncEventGridPublisher.class) {
+                if (instance == null) {
+                    AsyncEventGridPublisher publisher = new AsyncEventGridPublisher(
+                        EventGridPublisher.asyncClient()::sendEvents,
+                        EnvConfig.getInt("EVENT_GRID_ASYNC_QUEUE_SIZE", 10000),
+                        EnvConfig.getInt("EVENT_GRID_ASYNC_BATCH_SIZE", 500),
+                        EnvConfig.getInt("EVENT_GRID_ASYNC_FLUSH_MS", 200),
+                        EnvConfig.getInt("EVENT_GRID_ASYNC_MAX_IN_FLIGHT", 4)
+                    );
+                    Runtime.getRuntime().addShutdownHook(
+                        new Thread(() -> publisher.close(SHUTDOWN_TIMEOUT_MS), "eventgrid-async-shutdown")
+                    );
+                    instance = publisher;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Encola un evento sin bloquear
+     *
+     * @return false si la cola está llena o el publicador ya se cerró
+     */
+    public boolean offer(EventGridEvent event) {
+        synchronized (productores) {
+            if (running && queue.offer(event)) {
+                enqueued.incrementAndGet();
+                return true;
+            }
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Encola todos los eventos o ninguno: si no caben todos, el llamador los
+     * publica en forma síncrona, sin orden respecto de lo que ya está en la cola
+     *
+     * @return los eventos que no se encolaron (vacía o la lista completa)
+     */
+    public List<EventGridEvent> offerAll(List<EventGridEvent> events) {
+        synchronized (productores) {
+            if (running && queue.remainingCapacity() >= events.size()) {
+                for (EventGridEvent event : events) {
+                    // Solo los productores agregan y tienen el monitor: siempre cabe
+                    queue.add(event);
+                }
+                enqueued.addAndGet(events.size());
+                return new ArrayList<>();
+            }
+        }
+        rejected.addAndGet(events.size());
+        return new ArrayList<>(events);
+    }
+
+    private void runFlusher() {
+        while (running) {
+            try {
+                EventGridEvent first = queue.poll(flushNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<EventGridEvent> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                collect(batch, System.nanoTime() + flushNanos);
+
+                inFlight.acquire();
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.severe("Error en el envío asíncrono a Event Grid: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Completa el lote hasta batchSize o hasta el plazo de flush
+     */
+    private void collect(List<EventGridEvent> batch, long deadline) throws InterruptedException {
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                return;
+            }
+            EventGridEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Envía el lote sin esperar la respuesta; libera el permiso al terminar
+     */
+    private void dispatch(List<EventGridEvent> batch) {
+        batches.incrementAndGet();
+        Mono<Void> send;
+        try {
+            send = sender.send(batch);
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        send
+            .doFinally(signal -> inFlight.release())
+            .subscribe(
+                ignored -> { },
+                error -> {
+                    failed.addAndGet(batch.size());
+                    logger.severe(String.format("Error publicando lote asíncrono de %d eventos: %s",
+                        batch.size(), error.getMessage()));
+                },
+                () -> sent.addAndGet(batch.size())
+            );
+    }
+
+    /**
+     * Detiene el hilo de fondo y envía en forma síncrona lo que quede en la cola
+     */
+    public void close(long timeoutMillis) {
+        running = false;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            flusher.join(timeoutMillis);
+            // Espera las peticiones en vuelo antes del último envío
+            inFlight.tryAcquire(maxInFlight, Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<EventGridEvent> pendientes = new ArrayList<>();
+        queue.drainTo(pendientes);
+        for (int desde = 0; desde < pendientes.size(); desde += batchSize) {
+            List<EventGridEvent> batch = pendientes.subList(desde, Math.min(desde + batchSize, pendientes.size()));
+            long remaining = deadline - System.currentTimeMillis();
+            try {
+                batches.incrementAndGet();
+                sender.send(batch).block(Duration.ofMillis(Math.max(1, remaining)));
+                sent.addAndGet(batch.size());
+            } catch (RuntimeException e) {
+                failed.addAndGet(pendientes.size() - desde);
+                logger.severe(String.format("Error enviando %d eventos pendientes al cerrar: %s",
+                    pendientes.size() - desde, e.getMessage()));
+                return;
+            }
+        }
+        if (!pendientes.isEmpty()) {
+            logger.info("Eventos pendientes enviados al cerrar: " + pendientes.size());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("queued", queue.size());
+        stats.put("enqueued", enqueued.get());
+        stats.put("rejected", rejected.get());
+        stats.put("sent", sent.get());
+        stats.put("failed", failed.get());
+        stats.put("batches", batches.get());
+        return stats;
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+}
@@ -0,0 +1,214 @@
+package com.agranelos.inventario.events;
+
+import com.agranelos.inventario.config.EnvConfig;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Procesa lotes de eventos de Event Grid con paralelismo acotado.
+ *
+ * Los eventos se agrupan por subject (p. ej. /productos/42): cada grupo se
+ * procesa en orden de llegada en un solo hilo y los grupos distintos corren
+ * en paralelo sobre un pool de EVENT_HANDLER_PARALLELISM hilos (8),
+ * compartido por todas las invocaciones de la instancia. Un evento que falla
+ * detiene su grupo: los siguientes del mismo subject no se ejecutan
+ * (aplazados) y sus ids se liberan junto al fallido, para que la reentrega
+ * los procese en orden. Los demás grupos siguen.
+ *
+ * Con un {@link EventDeduplicator} los ids ya procesados (o en proceso) se
+ * descartan antes de deserializar nada; al terminar, los de eventos que
+ * pasaron por sus handlers se marcan procesados y los fallidos se liberan.
+ */
+public class EventBatchProcessor {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final EventHandlerRegistry registry;
+    private final EventDeduplicator deduplicator;
+    private final ExecutorService executor;
+
+    public EventBatchProcessor(EventHandlerRegistry registry, int parallelism) {
+        this(registry, parallelism, null);
+    }
+
+    /**
+     * @param deduplicator deduplicación por id, o null para procesar todo
+     */
+    public EventBatchProcessor(EventHandlerRegistry registry, int parallelism, EventDeduplicator deduplicator) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism debe ser mayor que 0");
+        }
+        this.registry = registry;
+        this.deduplicator = deduplicator;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "event-handler-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Crea el procesador con los handlers por defecto y EVENT_HANDLER_PARALLELISM
+     */
+    public static EventBatchProcessor fromEnvironment() {
+        return new EventBatchProcessor(
+            EventHandlerRegistry.defaults(),
+            EnvConfig.getInt("EVENT_HANDLER_PARALLELISM", 8),
+            EventDeduplicator.fromEnvironment()
+        );
+    }
+
+    /**
+     * Resultado del procesamiento de un lote
+     */
+    public static final class Resultado {
+        private final AtomicInteger procesados = new AtomicInteger();
+        private final AtomicInteger ignorados = new AtomicInteger();
+        private final AtomicInteger fallidos = new AtomicInteger();
+        private final AtomicInteger duplicados = new AtomicInteger();
+        private final AtomicInteger aplazados = new AtomicInteger();
+        private final Queue<String> idsFallidos = new ConcurrentLinkedQueue<>();
+        private final Queue<String> idsCompletados = new ConcurrentLinkedQueue<>();
+
+        public int getProcesados() {
+            return procesados.get();
+        }
+
+        public int getIgnorados() {
+            return ignorados.get();
+        }
+
+        public int getFallidos() {
+            return fallidos.get();
+        }
+
+        public int getDuplicados() {
+            return duplicados.get();
+        }
+
+        /**
+         * Eventos no ejecutados porque uno anterior de su subject falló
+         */
+        public int getAplazados() {
+            return aplazados.get();
+        }
+    }
+
+    /**
+     * Procesa el lote y espera a que terminen todos los grupos
+     */
+    public Resultado process(List<EventGridConsumer.EventGridEventSchema> events, Logger logger) {
+        Resultado resultado = new Resultado();
+        List<EventGridConsumer.EventGridEventSchema> pendientes = descartarDuplicados(events, resultado);
+
+        Map<String, List<EventGridConsumer.EventGridEventSchema>> porSubject = new LinkedHashMap<>();
+        for (EventGridConsumer.EventGridEventSchema event : pendientes) {
+            String subject = event.getSubject() != null ? event.getSubject() : "";
+            porSubject.computeIfAbsent(subject, key -> new ArrayList<>()).add(event);
+        }
+
+        if (porSubject.size() == 1) {
+            // Un solo subject: no vale la pena pasar por el pool
+            processGroup(porSubject.values().iterator().next(), resultado, logger);
+        } else if (!porSubject.isEmpty()) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(porSubject.size());
+            for (List<EventGridConsumer.EventGridEventSchema> grupo : porSubject.values()) {
+                futures.add(CompletableFuture.runAsync(() -> processGroup(grupo, resultado, logger), executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        }
+
+        if (deduplicator != null) {
+            deduplicator.complete(new ArrayList<>(resultado.idsCompletados));
+            deduplicator.release(new ArrayList<>(resultado.idsFallidos));
+        }
+        return resultado;
+    }
+
+    /**
+     * Deja solo la primera aparición de cada id que nadie procesó todavía
+     */
+    private List<EventGridConsumer.EventGridEventSchema> descartarDuplicados(
+        List<EventGridConsumer.EventGridEventSchema> events,
+        Resultado resultado
+    ) {
+        if (deduplicator == null) {
+            return events;
+        }
+        List<String> ids = new ArrayList<>(events.size());
+        for (EventGridConsumer.EventGridEventSchema event : events) {
+            ids.add(event.getId());
+        }
+        Set<String> reclamados = deduplicator.claim(ids);
+
+        List<EventGridConsumer.EventGridEventSchema> pendientes = new ArrayList<>(reclamados.size());
+        for (EventGridConsumer.EventGridEventSchema event : events) {
+            if (event.getId() == null || reclamados.remove(event.getId())) {
+                pendientes.add(event);
+            }
+        }
+        resultado.duplicados.set(events.size() - pendientes.size());
+        return pendientes;
+    }
+
+    public EventDeduplicator getDeduplicator() {
+        return deduplicator;
+    }
+
+    private void processGroup(List<EventGridConsumer.EventGridEventSchema> grupo, Resultado resultado, Logger logger) {
+        for (int i = 0; i < grupo.size(); i++) {
+            EventGridConsumer.EventGridEventSchema event = grupo.get(i);
+            try {
+                if (registry.dispatch(event, objectMapper, logger)) {
+                    resultado.procesados.incrementAndGet();
+                } else {
+                    resultado.ignorados.incrementAndGet();
+                    logger.fine("Evento sin handler: " + event.getEventType());
+                }
+                if (event.getId() != null) {
+                    resultado.idsCompletados.add(event.getId());
+                }
+            } catch (Exception e) {
+                resultado.fallidos.incrementAndGet();
+                if (event.getId() != null) {
+                    resultado.idsFallidos.add(event.getId());
+                }
+                logger.severe(String.format("Error procesando evento %s (%s, %s): %s",
+                    event.getEventType(), event.getSubject(), event.getId(), e.getMessage()));
+                aplazar(grupo.subList(i + 1, grupo.size()), resultado, logger);
+                return;
+            }
+        }
+    }
+
+    private void aplazar(List<EventGridConsumer.EventGridEventSchema> resto, Resultado resultado, Logger logger) {
+        if (resto.isEmpty()) {
+            return;
+        }
+        for (EventGridConsumer.EventGridEventSchema event : resto) {
+            resultado.aplazados.incrementAndGet();
+            if (event.getId() != null) {
+                resultado.idsFallidos.add(event.getId());
+            }
+        }
+        logger.warning(String.format("%d eventos de %s aplazados hasta la reentrega",
+            resto.size(), resto.get(0).getSubject()));
+    }
+}
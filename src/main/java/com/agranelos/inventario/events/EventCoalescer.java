@@ -0,0 +1,239 @@
+package com.agranelos.inventario.events;
+
+import com.agranelos.inventario.config.EnvConfig;
+import com.azure.messaging.eventgrid.EventGridEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Fusión de ráfagas de PRODUCTO_ACTUALIZADO por subject.
+ *
+ * Un repricing masivo puede tocar el mismo producto varias veces en un
+ * segundo; cada evento trae el estado completo, así que basta publicar el
+ * último. La primera actualización de un subject abre una ventana de
+ * EVENT_COALESCE_WINDOW_MS; las siguientes reemplazan a la pendiente y, al
+ * cerrar la ventana, se emiten juntas todas las que vencieron. Cualquier otro
+ * evento del mismo subject (p. ej. una eliminación) libera antes la
+ * actualización pendiente, de modo que el orden por subject se conserva.
+ *
+ * El outbox aplica la misma regla a cada lote con {@link #coalesce(List)}:
+ * ahí la ventana es la cadencia del despachador.
+ */
+public class EventCoalescer {
+
+    private static final Logger logger = Logger.getLogger(EventCoalescer.class.getName());
+
+    private static final long WINDOW_MILLIS = EnvConfig.getInt("EVENT_COALESCE_WINDOW_MS", 0);
+
+    // Contadores compartidos por la ventana en memoria y el outbox
+    private static final AtomicLong recibidos = new AtomicLong();
+    private static final AtomicLong fusionados = new AtomicLong();
+
+    private static volatile EventCoalescer instance;
+
+    private final long windowMillis;
+    private final Consumer<List<EventGridEvent>> sink;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService scheduler;
+    private final LinkedHashMap<String, Pendiente> pendientes = new LinkedHashMap<>();
+
+    private static final class Pendiente {
+        private EventGridEvent event;
+        private final long vence;
+
+        private Pendiente(EventGridEvent event, long vence) {
+            this.event = event;
+            this.vence = vence;
+        }
+    }
+
+    /**
+     * @param sink recibe los eventos que salen de la ventana, en orden de llegada
+     */
+    EventCoalescer(long windowMillis, Consumer<List<EventGridEvent>> sink, LongSupplier clock) {
+        this.windowMillis = windowMillis;
+        this.sink = sink;
+        this.clock = clock;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static boolean isEnabled() {
+        return WINDOW_MILLIS > 0;
+    }
+
+    /**
+     * Instancia compartida; publica con {@link EventGridPublisher#publishEvents}
+     */
+    static EventCoalescer getInstance() {
+        if (instance == null) {
+            synchronized (EventCoalescer.class) {
+                if (instance == null) {
+                    EventCoalescer coalescer = new EventCoalescer(
+                        WINDOW_MILLIS,
+                        events -> EventGridPublisher.publishEvents(events, logger),
+                        System::currentTimeMillis
+                    );
+                    Runtime.getRuntime().addShutdownHook(new Thread(coalescer::flushAll, "event-coalescer-shutdown"));
+                    instance = coalescer;
+                }
+            }
+        }
+        return instance;
+    }
+
+    static boolean isCoalescible(EventGridEvent event) {
+        return EventType.PRODUCTO_ACTUALIZADO.getValue().equals(event.getEventType());
+    }
+
+    /**
+     * Deja una actualización en la ventana de su subject
+     */
+    public void submit(EventGridEvent event) {
+        recibidos.incrementAndGet();
+        synchronized (pendientes) {
+            Pendiente pendiente = pendientes.get(event.getSubject());
+            if (pendiente != null) {
+                pendiente.event = event;
+                fusionados.incrementAndGet();
+                return;
+            }
+            pendientes.put(event.getSubject(), new Pendiente(event, clock.getAsLong() + windowMillis));
+        }
+        scheduler.schedule(this::flushExpired, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Retira la actualización pendiente del subject, para publicarla antes de otro evento
+     *
+     * @return el evento pendiente o null
+     */
+    public EventGridEvent take(String subject) {
+        synchronized (pendientes) {
+            Pendiente pendiente = pendientes.remove(subject);
+            return pendiente != null ? pendiente.event : null;
+        }
+    }
+
+    /**
+     * Emite las ventanas vencidas en una sola llamada al sink
+     */
+    void flushExpired() {
+        long now = clock.getAsLong();
+        List<EventGridEvent> vencidos = new ArrayList<>();
+        synchronized (pendientes) {
+            // Todas las ventanas duran lo mismo: el orden de inserción es el de vencimiento
+            Iterator<Pendiente> iterator = pendientes.values().iterator();
+            while (iterator.hasNext()) {
+                Pendiente pendiente = iterator.next();
+                if (pendiente.vence > now) {
+                    break;
+                }
+                vencidos.add(pendiente.event);
+                iterator.remove();
+            }
+        }
+        emit(vencidos);
+    }
+
+    /**
+     * Emite todo lo pendiente (apagado de la instancia)
+     */
+    public void flushAll() {
+        List<EventGridEvent> todos = new ArrayList<>();
+        synchronized (pendientes) {
+            for (Pendiente pendiente : pendientes.values()) {
+                todos.add(pendiente.event);
+            }
+            pendientes.clear();
+        }
+        emit(todos);
+    }
+
+    private void emit(List<EventGridEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        try {
+            sink.accept(events);
+        } catch (RuntimeException e) {
+            logger.severe("Error publicando " + events.size() + " actualizaciones fusionadas: " + e.getMessage());
+        }
+    }
+
+    public int size() {
+        synchronized (pendientes) {
+            return pendientes.size();
+        }
+    }
+
+    /**
+     * Fusiona un lote ya ordenado: de cada racha de actualizaciones de un
+     * subject sin otros eventos de ese subject en medio, queda solo la última
+     */
+    public static List<EventGridEvent> coalesce(List<EventGridEvent> events) {
+        if (events.size() < 2) {
+            return events;
+        }
+        List<EventGridEvent> resultado = new ArrayList<>(events.size());
+        Set<String> conActualizacionPosterior = new HashSet<>();
+        // Se recorre desde el final: la última actualización de cada racha es la que se conserva
+        for (int i = events.size() - 1; i >= 0; i--) {
+            EventGridEvent event = events.get(i);
+            if (isCoalescible(event)) {
+                if (!conActualizacionPosterior.add(event.getSubject())) {
+                    continue;
+                }
+            } else {
+                conActualizacionPosterior.remove(event.getSubject());
+            }
+            resultado.add(event);
+        }
+        Collections.reverse(resultado);
+
+        long actualizaciones = 0;
+        for (EventGridEvent event : events) {
+            if (isCoalescible(event)) {
+                actualizaciones++;
+            }
+        }
+        recibidos.addAndGet(actualizaciones);
+        fusionados.addAndGet(events.size() - resultado.size());
+        return resultado;
+    }
+
+    /**
+     * Contadores: actualizaciones recibidas y descartadas por fusión
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("windowMillis", WINDOW_MILLIS);
+        stats.put("received", recibidos.get());
+        stats.put("coalesced", fusionados.get());
+        stats.put("pending", instance != null ? instance.size() : 0);
+        return stats;
+    }
+
+    static long getFusionados() {
+        return fusionados.get();
+    }
+}
@@ -0,0 +1,275 @@
+package com.agranelos.inventario.events;
+
+import com.agranelos.inventario.cache.LruCache;
+import com.agranelos.inventario.config.EnvConfig;
+import com.agranelos.inventario.db.DatabaseManager;
+import com.agranelos.inventario.db.Workload;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Deduplicación de eventos por id para un consumo idempotente.
+ *
+ * Event Grid entrega at-least-once y el outbox reintenta con el mismo id, así
+ * que un evento puede llegar más de una vez. Antes de deserializar el payload
+ * cada id se reclama con un lease de EVENT_DEDUP_LEASE_SECONDS, localmente y
+ * en la tabla EVENTO_PROCESADO (compartida entre instancias), donde un solo
+ * {@code INSERT ... ON CONFLICT DO UPDATE ... RETURNING} reclama todo el lote
+ * como EN_CURSO. Solo cuando sus handlers terminan el id se marca PROCESADO
+ * con {@link #complete} y entra a la LRU local (aciertos sin ir a la base de
+ * datos); si fallan se libera con {@link #release}. Si la instancia muere o
+ * la función vence a mitad del handler, el lease expira y la reentrega de
+ * Event Grid lo vuelve a reclamar: el consumo es at-least-once, nunca se
+ * pierde un evento. Las filas más antiguas que el TTL se purgan con
+ * {@link #purge()}.
+ *
+ * App Settings: EVENT_DEDUP_ENABLED (true), EVENT_DEDUP_CACHE_SIZE (10000),
+ * EVENT_DEDUP_TTL_HOURS (24), EVENT_DEDUP_LEASE_SECONDS (600, mayor que el
+ * functionTimeout), EVENT_DEDUP_DB_ENABLED (true).
+ */
+public class EventDeduplicator {
+
+    private static final Logger logger = Logger.getLogger(EventDeduplicator.class.getName());
+
+    /**
+     * Largo de EVENTO_PROCESADO.EventId; ids más largos se guardan como SHA-256
+     */
+    static final int MAX_ID_LENGTH = 64;
+
+    static final long DEFAULT_LEASE_SECONDS = 600;
+
+    /**
+     * Ids terminados por esta instancia
+     */
+    private final LruCache<String, Boolean> localCache;
+    /**
+     * Ids reclamados por esta instancia y aún en proceso, con el vencimiento del lease
+     */
+    private final Map<String, Long> enCurso = new ConcurrentHashMap<>();
+    private final boolean databaseEnabled;
+    private final long ttlHours;
+    private final long leaseMillis;
+    private final LongSupplier clock;
+
+    public EventDeduplicator(int localCacheSize, long ttlHours, boolean databaseEnabled) {
+        this(localCacheSize, ttlHours, TimeUnit.SECONDS.toMillis(DEFAULT_LEASE_SECONDS), databaseEnabled,
+            System::currentTimeMillis);
+    }
+
+    EventDeduplicator(int localCacheSize, long ttlHours, long leaseMillis, boolean databaseEnabled, LongSupplier clock) {
+        this.localCache = new LruCache<>(localCacheSize, TimeUnit.HOURS.toMillis(ttlHours));
+        this.ttlHours = ttlHours;
+        this.leaseMillis = leaseMillis;
+        this.databaseEnabled = databaseEnabled;
+        this.clock = clock;
+    }
+
+    /**
+     * Crea la instancia según App Settings, o null si la deduplicación está desactivada
+     */
+    public static EventDeduplicator fromEnvironment() {
+        if (!EnvConfig.getBoolean("EVENT_DEDUP_ENABLED", true)) {
+            return null;
+        }
+        return new EventDeduplicator(
+            EnvConfig.getInt("EVENT_DEDUP_CACHE_SIZE", 10000),
+            EnvConfig.getInt("EVENT_DEDUP_TTL_HOURS", 24),
+            TimeUnit.SECONDS.toMillis(EnvConfig.getLong("EVENT_DEDUP_LEASE_SECONDS", DEFAULT_LEASE_SECONDS)),
+            EnvConfig.getBoolean("EVENT_DEDUP_DB_ENABLED", true),
+            System::currentTimeMillis
+        );
+    }
+
+    /**
+     * Reclama los ids del lote con un lease; cada id reclamado debe cerrarse
+     * con {@link #complete} o {@link #release}
+     *
+     * @return los ids que nadie procesó ni está procesando; los repetidos dentro del lote cuentan una vez
+     */
+    public Set<String> claim(Collection<String> eventIds) {
+        long ahora = clock.getAsLong();
+        Set<String> candidatos = new LinkedHashSet<>();
+        for (String eventId : eventIds) {
+            if (eventId != null && !candidatos.contains(eventId)
+                && localCache.get(key(eventId)) == null && claimLocally(key(eventId), ahora)) {
+                candidatos.add(eventId);
+            }
+        }
+        if (candidatos.isEmpty() || !databaseEnabled) {
+            return candidatos;
+        }
+
+        Set<String> reclamados = claimInDatabase(candidatos);
+        for (String eventId : candidatos) {
+            if (!reclamados.contains(eventId)) {
+                // Otra instancia lo terminó o lo tiene en proceso
+                enCurso.remove(key(eventId));
+            }
+        }
+        return reclamados;
+    }
+
+    /**
+     * Un id se reclama si nadie en esta instancia lo tiene o su lease venció
+     */
+    private boolean claimLocally(String key, long ahora) {
+        boolean[] reclamado = { false };
+        enCurso.compute(key, (k, vence) -> {
+            if (vence != null && vence > ahora) {
+                return vence;
+            }
+            reclamado[0] = true;
+            return ahora + leaseMillis;
+        });
+        return reclamado[0];
+    }
+
+    /**
+     * Marca como procesados ids cuyos handlers terminaron
+     */
+    public void complete(Collection<String> eventIds) {
+        if (eventIds.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(eventIds.size());
+        for (String eventId : eventIds) {
+            keys.add(key(eventId));
+            enCurso.remove(key(eventId));
+            localCache.put(key(eventId), Boolean.TRUE);
+        }
+        if (!databaseEnabled) {
+            return;
+        }
+        try (Connection connection = DatabaseManager.getWriteConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                 "UPDATE EVENTO_PROCESADO SET Estado = 'PROCESADO', FechaProcesado = CURRENT_TIMESTAMP " +
+                 "WHERE EventId = ANY(?)")) {
+            statement.setArray(1, connection.createArrayOf("varchar", keys.toArray()));
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            // Al vencer el lease otra instancia puede repetirlo: at-least-once
+            logger.warning("Error marcando eventos procesados: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Libera ids cuyo procesamiento falló, para que un reintento los procese
+     */
+    public void release(Collection<String> eventIds) {
+        if (eventIds.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(eventIds.size());
+        for (String eventId : eventIds) {
+            keys.add(key(eventId));
+            enCurso.remove(key(eventId));
+            localCache.invalidate(key(eventId));
+        }
+        if (!databaseEnabled) {
+            return;
+        }
+        try (Connection connection = DatabaseManager.getWriteConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                 "DELETE FROM EVENTO_PROCESADO WHERE EventId = ANY(?) AND Estado = 'EN_CURSO'")) {
+            statement.setArray(1, connection.createArrayOf("varchar", keys.toArray()));
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            logger.warning("Error liberando eventos fallidos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Inserta los ids como EN_CURSO o retoma los EN_CURSO con el lease vencido;
+     * RETURNING devuelve solo las filas insertadas o retomadas
+     */
+    private Set<String> claimInDatabase(Set<String> candidatos) {
+        List<String> keys = new ArrayList<>(candidatos.size());
+        for (String eventId : candidatos) {
+            keys.add(key(eventId));
+        }
+        String sql = "INSERT INTO EVENTO_PROCESADO (EventId, Estado, FechaReclamo) " +
+            "SELECT unnest(?::varchar[]), 'EN_CURSO', CURRENT_TIMESTAMP " +
+            "ON CONFLICT (EventId) DO UPDATE SET FechaReclamo = CURRENT_TIMESTAMP " +
+            "WHERE EVENTO_PROCESADO.Estado = 'EN_CURSO' " +
+            "AND EVENTO_PROCESADO.FechaReclamo < CURRENT_TIMESTAMP - make_interval(secs => ?) " +
+            "RETURNING EventId";
+        try (Connection connection = DatabaseManager.getWriteConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            Array array = connection.createArrayOf("varchar", keys.toArray());
+            statement.setArray(1, array);
+            statement.setDouble(2, leaseMillis / 1000.0);
+            Set<String> insertados = new HashSet<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    insertados.add(resultSet.getString(1));
+                }
+            }
+            Set<String> reclamados = new LinkedHashSet<>();
+            for (String eventId : candidatos) {
+                if (insertados.contains(key(eventId))) {
+                    reclamados.add(eventId);
+                }
+            }
+            return reclamados;
+        } catch (SQLException e) {
+            // Sin la tabla se conserva la deduplicación local de esta instancia
+            logger.warning("Error registrando eventos procesados: " + e.getMessage());
+            return candidatos;
+        }
+    }
+
+    /**
+     * Elimina de EVENTO_PROCESADO las filas más antiguas que el TTL
+     *
+     * @return filas eliminadas
+     */
+    public int purge() throws SQLException {
+        if (!databaseEnabled) {
+            return 0;
+        }
+        String sql = "DELETE FROM EVENTO_PROCESADO WHERE FechaProcesado < CURRENT_TIMESTAMP - make_interval(hours => ?)";
+        try (Connection connection = DatabaseManager.getWriteConnection(Workload.BATCH);
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, (int) ttlHours);
+            return statement.executeUpdate();
+        }
+    }
+
+    static String key(String eventId) {
+        if (eventId.length() <= MAX_ID_LENGTH) {
+            return eventId;
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(eventId.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    public LruCache<String, Boolean> getLocalCache() {
+        return localCache;
+    }
+}
@@ -1,24 +1,222 @@
 package com.agranelos.inventario.events;
 
 import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.HttpMethod;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+import com.microsoft.azure.functions.annotation.AuthorizationLevel;
 import com.microsoft.azure.functions.annotation.EventGridTrigger;
 import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.HttpTrigger;
+import com.microsoft.azure.functions.annotation.TimerTrigger;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.agranelos.inventario.config.EnvConfig;
 import com.agranelos.inventario.services.EmailService;
+import com.agranelos.inventario.metrics.RequestMetrics;
 
-import java.util.logging.Logger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Logger;
 
 /**
  * Azure Functions que consumen eventos de Event Grid
  * Permite reaccionar a cambios en productos y bodegas
+ *
+ * Los efectos secundarios de cada tipo están en {@link EventHandlerRegistry};
+ * los triggers por tipo reciben un evento por invocación y el webhook
+ * {@code POST /api/events/eventgrid} recibe lotes completos (suscripción con
+ * maxEventsPerBatch), procesados por {@link EventBatchProcessor}.
+ *
+ * El webhook exige la clave de la función ({@code ?code=} en la URL de la
+ * suscripción) y, si EVENT_GRID_WEBHOOK_KEY está definido, además la cabecera
+ * {@value #WEBHOOK_KEY_HEADER} con ese valor (propiedad de entrega secreta de
+ * la suscripción); sin ella responde 401 sin procesar ni validar nada.
+ *
+ * Event Grid solo reintenta si la entrega falla: el webhook responde 500 si
+ * algún evento del lote falló (y se reentrega el lote completo, los ya
+ * procesados se descartan como duplicados) y los triggers por tipo relanzan
+ * el error para que el host marque la invocación como fallida.
  */
 public class EventGridConsumer {
     
     private static final ObjectMapper objectMapper = new ObjectMapper()
         .registerModule(new JavaTimeModule());
     
+    private static final String SUBSCRIPTION_VALIDATION_EVENT = "Microsoft.EventGrid.SubscriptionValidationEvent";
+    
+    static final String WEBHOOK_KEY_HEADER = "X-Webhook-Key";
+    
+    private static volatile EventBatchProcessor processor;
+    
+    /**
+     * Procesador de esta instancia; null usa el compartido de la configuración
+     */
+    private final EventBatchProcessor instanceProcessor;
+    
+    /**
+     * Secreto compartido del webhook, o null si basta la clave de la función
+     */
+    private final String webhookKey;
+    
+    public EventGridConsumer() {
+        this(null, EnvConfig.getString("EVENT_GRID_WEBHOOK_KEY", null));
+    }
+    
+    EventGridConsumer(EventBatchProcessor instanceProcessor, String webhookKey) {
+        this.instanceProcessor = instanceProcessor;
+        this.webhookKey = webhookKey;
+    }
+    
+    private EventBatchProcessor getProcessor() {
+        if (instanceProcessor != null) {
+            return instanceProcessor;
+        }
+        if (processor == null) {
+            synchronized (EventGridConsumer.class) {
+                if (processor == null) {
+                    processor = EventBatchProcessor.fromEnvironment();
+                }
+            }
+        }
+        return processor;
+    }
+    
+    /**
+     * Webhook para suscripciones con entrega en lote: recibe un arreglo de
+     * eventos en esquema Event Grid y responde al handshake de validación
+     */
+    @FunctionName("EventGridBatchWebhook")
+    public HttpResponseMessage handleEventBatch(
+        @HttpTrigger(
+            name = "req",
+            methods = { HttpMethod.POST },
+            authLevel = AuthorizationLevel.FUNCTION,
+            route = "events/eventgrid"
+        ) HttpRequestMessage<Optional<String>> request,
+        final ExecutionContext context
+    ) {
+        return RequestMetrics.measure("EventGridBatchWebhook", () -> handleEventBatch(request, context.getLogger()));
+    }
+
+    private HttpResponseMessage handleEventBatch(HttpRequestMessage<Optional<String>> request, Logger logger) {
+        if (!authorized(request)) {
+            logger.warning("Lote de eventos rechazado: falta " + WEBHOOK_KEY_HEADER + " o no coincide");
+            return request
+                .createResponseBuilder(HttpStatus.UNAUTHORIZED)
+                .header("Content-Type", "application/json")
+                .body("{\"error\": \"No autorizado\"}")
+                .build();
+        }
+        
+        List<EventGridEventSchema> events;
+        try {
+            events = readEvents(request.getBody().orElse(""));
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            logger.warning("Lote de eventos inválido: " + e.getMessage());
+            return request
+                .createResponseBuilder(HttpStatus.BAD_REQUEST)
+                .header("Content-Type", "application/json")
+                .body("{\"error\": \"Se esperaba un arreglo de eventos de Event Grid\"}")
+                .build();
+        }
+        
+        for (EventGridEventSchema event : events) {
+            if (SUBSCRIPTION_VALIDATION_EVENT.equals(event.getEventType())) {
+                return validationResponse(request, event, logger);
+            }
+        }
+        
+        logger.info("=== Lote de eventos recibido: " + events.size() + " ===");
+        EventBatchProcessor.Resultado resultado = getProcessor().process(events, logger);
+        logger.info(String.format("Lote procesado: %d procesados, %d duplicados, %d sin handler, %d fallidos, %d aplazados",
+            resultado.getProcesados(), resultado.getDuplicados(), resultado.getIgnorados(), resultado.getFallidos(),
+            resultado.getAplazados()));
+        
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("recibidos", events.size());
+        body.put("procesados", resultado.getProcesados());
+        body.put("duplicados", resultado.getDuplicados());
+        body.put("ignorados", resultado.getIgnorados());
+        body.put("fallidos", resultado.getFallidos());
+        body.put("aplazados", resultado.getAplazados());
+        HttpStatus status = resultado.getFallidos() > 0 ? HttpStatus.INTERNAL_SERVER_ERROR : HttpStatus.OK;
+        try {
+            return request
+                .createResponseBuilder(status)
+                .header("Content-Type", "application/json")
+                .body(objectMapper.writeValueAsString(body))
+                .build();
+        } catch (JsonProcessingException e) {
+            return request.createResponseBuilder(status).build();
+        }
+    }
+    
+    /**
+     * Compara {@value #WEBHOOK_KEY_HEADER} con el secreto en tiempo constante
+     */
+    private boolean authorized(HttpRequestMessage<?> request) {
+        if (webhookKey == null) {
+            return true;
+        }
+        String recibida = null;
+        Map<String, String> headers = request.getHeaders() != null ? request.getHeaders() : Map.of();
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (WEBHOOK_KEY_HEADER.equalsIgnoreCase(header.getKey())) {
+                recibida = header.getValue();
+            }
+        }
+        return recibida != null && MessageDigest.isEqual(
+            recibida.getBytes(StandardCharsets.UTF_8), webhookKey.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Lee un arreglo de eventos (o un único evento) del cuerpo del webhook
+     */
+    static List<EventGridEventSchema> readEvents(String body) throws JsonProcessingException {
+        JsonNode root = objectMapper.readTree(body);
+        if (root == null || !(root.isArray() || root.isObject())) {
+            throw new IllegalArgumentException("Cuerpo vacío o inválido");
+        }
+        List<EventGridEventSchema> events = new ArrayList<>();
+        if (root.isObject()) {
+            events.add(objectMapper.treeToValue(root, EventGridEventSchema.class));
+            return events;
+        }
+        for (JsonNode node : root) {
+            events.add(objectMapper.treeToValue(node, EventGridEventSchema.class));
+        }
+        return events;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private HttpResponseMessage validationResponse(
+        HttpRequestMessage<Optional<String>> request,
+        EventGridEventSchema event,
+        Logger logger
+    ) {
+        Object code = event.getData() instanceof Map
+            ? ((Map<String, Object>) event.getData()).get("validationCode")
+            : null;
+        logger.info("Validación de suscripción de Event Grid");
+        return request
+            .createResponseBuilder(HttpStatus.OK)
+            .header("Content-Type", "application/json")
+            .body("{\"validationResponse\": \"" + (code != null ? code : "") + "\"}")
+            .build();
+    }
+    
     /**
      * Función que se dispara cuando se crea un producto
      * Útil para: notificaciones, auditoría, sincronización con otros sistemas
@@ -28,38 +226,7 @@ public class EventGridConsumer {
         @EventGridTrigger(name = "event") String event,
         final ExecutionContext context
     ) {
-        Logger logger = context.getLogger();
-        logger.info("=== Evento ProductoCreado Recibido ===");
-        
-        try {
-            // Parsear el evento
-            EventGridEventSchema eventSchema = objectMapper.readValue(event, EventGridEventSchema.class);
-            
-            logger.info(String.format("Event Type: %s", eventSchema.getEventType()));
-            logger.info(String.format("Subject: %s", eventSchema.getSubject()));
-            logger.info(String.format("Data: %s", eventSchema.getData()));
-            
-            // Extraer información del producto
-            Map<String, Object> data = (Map<String, Object>) eventSchema.getData();
-            Long productoId = getLongFromData(data, "productoId");
-            String nombre = (String) data.get("nombre");
-            
-            // 📧 Enviar notificación por email
-            if (productoId != null && nombre != null) {
-                EmailService.sendProductoCreatedEmail(productoId, nombre, logger);
-            }
-            
-            // Aquí puedes agregar más lógica de negocio:
-            // - Actualizar cachés
-            // - Sincronizar con sistemas externos
-            // - Registrar en sistemas de auditoría
-            // - Activar workflows de aprobación
-            
-            logger.info("Evento procesado exitosamente");
-            
-        } catch (Exception e) {
-            logger.severe("Error procesando evento ProductoCreado: " + e.getMessage());
-        }
+        RequestMetrics.measure("ProductoCreadoEventHandler", () -> handleSingle(event, "ProductoCreado", context.getLogger()));
     }
     
     /**
@@ -70,35 +237,7 @@ public class EventGridConsumer {
         @EventGridTrigger(name = "event") String event,
         final ExecutionContext context
     ) {
-        Logger logger = context.getLogger();
-        logger.info("=== Evento ProductoActualizado Recibido ===");
-        
-        try {
-            EventGridEventSchema eventSchema = objectMapper.readValue(event, EventGridEventSchema.class);
-            
-            logger.info(String.format("Event Type: %s", eventSchema.getEventType()));
-            logger.info(String.format("Subject: %s", eventSchema.getSubject()));
-            
-            // Extraer información del producto
-            Map<String, Object> data = (Map<String, Object>) eventSchema.getData();
-            Long productoId = getLongFromData(data, "productoId");
-            String nombre = (String) data.get("nombre");
-            
-            // 📧 Enviar notificación por email
-            if (productoId != null && nombre != null) {
-                EmailService.sendProductoUpdatedEmail(productoId, nombre, logger);
-            }
-            
-            // Lógica de negocio para actualizaciones
-            // - Verificar cambios significativos de precio
-            // - Alertar sobre cambios de stock
-            // - Actualizar reportes
-            
-            logger.info("Evento procesado exitosamente");
-            
-        } catch (Exception e) {
-            logger.severe("Error procesando evento ProductoActualizado: " + e.getMessage());
-        }
+        RequestMetrics.measure("ProductoActualizadoEventHandler", () -> handleSingle(event, "ProductoActualizado", context.getLogger()));
     }
     
     /**
@@ -109,34 +248,7 @@ public class EventGridConsumer {
         @EventGridTrigger(name = "event") String event,
         final ExecutionContext context
     ) {
-        Logger logger = context.getLogger();
-        logger.info("=== Evento ProductoEliminado Recibido ===");
-        
-        try {
-            EventGridEventSchema eventSchema = objectMapper.readValue(event, EventGridEventSchema.class);
-            
-            logger.info(String.format("Event Type: %s", eventSchema.getEventType()));
-            logger.info(String.format("Subject: %s", eventSchema.getSubject()));
-            
-            // Extraer información del producto
-            Map<String, Object> data = (Map<String, Object>) eventSchema.getData();
-            Long productoId = getLongFromData(data, "productoId");
-            
-            // 📧 Enviar notificación por email
-            if (productoId != null) {
-                EmailService.sendProductoDeletedEmail(productoId, logger);
-            }
-            
-            // Lógica de negocio para eliminaciones
-            // - Limpiar cachés
-            // - Archivar información
-            // - Notificar a sistemas dependientes
-            
-            logger.info("Evento procesado exitosamente");
-            
-        } catch (Exception e) {
-            logger.severe("Error procesando evento ProductoEliminado: " + e.getMessage());
-        }
+        RequestMetrics.measure("ProductoEliminadoEventHandler", () -> handleSingle(event, "ProductoEliminado", context.getLogger()));
     }
     
     /**
@@ -147,35 +259,7 @@ public class EventGridConsumer {
         @EventGridTrigger(name = "event") String event,
         final ExecutionContext context
     ) {
-        Logger logger = context.getLogger();
-        logger.info("=== Evento BodegaCreada Recibido ===");
-        
-        try {
-            EventGridEventSchema eventSchema = objectMapper.readValue(event, EventGridEventSchema.class);
-            
-            logger.info(String.format("Event Type: %s", eventSchema.getEventType()));
-            logger.info(String.format("Subject: %s", eventSchema.getSubject()));
-            
-            // Extraer información de la bodega
-            Map<String, Object> data = (Map<String, Object>) eventSchema.getData();
-            Long bodegaId = getLongFromData(data, "bodegaId");
-            String nombre = (String) data.get("nombre");
-            
-            // 📧 Enviar notificación por email
-            if (bodegaId != null && nombre != null) {
-                EmailService.sendBodegaCreatedEmail(bodegaId, nombre, logger);
-            }
-            
-            // Lógica de negocio para nuevas bodegas
-            // - Inicializar inventario
-            // - Configurar permisos
-            // - Notificar al equipo de logística
-            
-            logger.info("Evento procesado exitosamente");
-            
-        } catch (Exception e) {
-            logger.severe("Error procesando evento BodegaCreada: " + e.getMessage());
-        }
+        RequestMetrics.measure("BodegaCreadaEventHandler", () -> handleSingle(event, "BodegaCreada", context.getLogger()));
     }
     
     /**
@@ -186,30 +270,7 @@ public class EventGridConsumer {
         @EventGridTrigger(name = "event") String event,
         final ExecutionContext context
     ) {
-        Logger logger = context.getLogger();
-        logger.info("=== Evento BodegaActualizada Recibido ===");
-        
-        try {
-            EventGridEventSchema eventSchema = objectMapper.readValue(event, EventGridEventSchema.class);
-            
-            logger.info(String.format("Event Type: %s", eventSchema.getEventType()));
-            logger.info(String.format("Subject: %s", eventSchema.getSubject()));
-            
-            // Extraer información de la bodega
-            Map<String, Object> data = (Map<String, Object>) eventSchema.getData();
-            Long bodegaId = getLongFromData(data, "bodegaId");
-            String nombre = (String) data.get("nombre");
-            
-            // 📧 Enviar notificación por email
-            if (bodegaId != null && nombre != null) {
-                EmailService.sendBodegaUpdatedEmail(bodegaId, nombre, logger);
-            }
-            
-            logger.info("Evento procesado exitosamente");
-            
-        } catch (Exception e) {
-            logger.severe("Error procesando evento BodegaActualizada: " + e.getMessage());
-        }
+        RequestMetrics.measure("BodegaActualizadaEventHandler", () -> handleSingle(event, "BodegaActualizada", context.getLogger()));
     }
     
     /**
@@ -220,47 +281,86 @@ public class EventGridConsumer {
         @EventGridTrigger(name = "event") String event,
         final ExecutionContext context
     ) {
-        Logger logger = context.getLogger();
-        logger.info("=== Evento BodegaEliminada Recibido ===");
+        RequestMetrics.measure("BodegaEliminadaEventHandler", () -> handleSingle(event, "BodegaEliminada", context.getLogger()));
+    }
+    
+    /**
+     * Purga horaria de EVENTO_PROCESADO (filas más antiguas que EVENT_DEDUP_TTL_HOURS)
+     */
+    @FunctionName("EventDedupPurge")
+    public void purgeProcessedEvents(
+        @TimerTrigger(name = "timer", schedule = "0 0 * * * *") String timerInfo,
+        final ExecutionContext context
+    ) {
+        RequestMetrics.measure("EventDedupPurge", () -> purgeProcessedEvents(context.getLogger()));
+    }
+
+    private void purgeProcessedEvents(Logger logger) {
+        EventDeduplicator deduplicator = getProcessor().getDeduplicator();
+        if (deduplicator == null) {
+            return;
+        }
+        try {
+            int eliminados = deduplicator.purge();
+            logger.info("Eventos procesados purgados: " + eliminados);
+        } catch (SQLException e) {
+            logger.severe("Error purgando EVENTO_PROCESADO: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Entrega los resúmenes de email vencidos (modo EMAIL_DIGEST_ENABLED)
+     */
+    @FunctionName("EmailDigestFlush")
+    public void flushEmailDigest(
+        @TimerTrigger(name = "timer", schedule = "0 * * * * *") String timerInfo,
+        final ExecutionContext context
+    ) {
+        RequestMetrics.measure("EmailDigestFlush", () -> flushEmailDigest(context.getLogger()));
+    }
+
+    private void flushEmailDigest(Logger logger) {
+        int resumenes = EmailService.flushDigest();
+        if (resumenes > 0) {
+            logger.info("Resúmenes de email encolados: " + resumenes);
+        }
+    }
+    
+    /**
+     * Procesa un evento de los triggers por tipo con los mismos handlers del
+     * webhook; si falla relanza el error para que Event Grid lo reintente
+     */
+    private void handleSingle(String event, String nombre, Logger logger) {
+        logger.info("=== Evento " + nombre + " Recibido ===");
         
+        EventBatchProcessor.Resultado resultado;
+        EventGridEventSchema eventSchema;
         try {
-            EventGridEventSchema eventSchema = objectMapper.readValue(event, EventGridEventSchema.class);
+            eventSchema = objectMapper.readValue(event, EventGridEventSchema.class);
             
             logger.info(String.format("Event Type: %s", eventSchema.getEventType()));
             logger.info(String.format("Subject: %s", eventSchema.getSubject()));
             
-            // Extraer información de la bodega
-            Map<String, Object> data = (Map<String, Object>) eventSchema.getData();
-            Long bodegaId = getLongFromData(data, "bodegaId");
-            
-            // 📧 Enviar notificación por email
-            if (bodegaId != null) {
-                EmailService.sendBodegaDeletedEmail(bodegaId, logger);
-            }
-            
-            logger.info("Evento procesado exitosamente");
-            
+            resultado = getProcessor().process(Collections.singletonList(eventSchema), logger);
         } catch (Exception e) {
-            logger.severe("Error procesando evento BodegaEliminada: " + e.getMessage());
+            logger.severe("Error procesando evento " + nombre + ": " + e.getMessage());
+            throw new IllegalStateException("Error procesando evento " + nombre, e);
+        }
+        
+        if (resultado.getFallidos() > 0) {
+            throw new IllegalStateException("Falló el procesamiento del evento " + nombre + ": " + eventSchema.getId());
+        }
+        if (resultado.getDuplicados() > 0) {
+            logger.info("Evento duplicado descartado: " + eventSchema.getId());
+        } else {
+            logger.info("Evento procesado exitosamente");
         }
-    }
-    
-    /**
-     * Método auxiliar para extraer valores Long de forma segura
-     */
-    private Long getLongFromData(Map<String, Object> data, String key) {
-        Object value = data.get(key);
-        if (value instanceof Integer) {
-            return ((Integer) value).longValue();
-        } else if (value instanceof Long) {
-            return (Long) value;
-        }
-        return null;
     }
     
     /**
      * Clase interna para representar el esquema de eventos de Event Grid
      */
+    @JsonIgnoreProperties(ignoreUnknown = true)
     public static class EventGridEventSchema {
         private String id;
         private String eventType;
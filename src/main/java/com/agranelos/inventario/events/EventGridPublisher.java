@@ -1,15 +1,19 @@
 package com.agranelos.inventario.events;
 
+import com.agranelos.inventario.metrics.RequestMetrics;
 import com.azure.core.credential.AzureKeyCredential;
 import com.azure.core.util.BinaryData;
 import com.azure.messaging.eventgrid.EventGridEvent;
+import com.azure.messaging.eventgrid.EventGridPublisherAsyncClient;
 import com.azure.messaging.eventgrid.EventGridPublisherClient;
 import com.azure.messaging.eventgrid.EventGridPublisherClientBuilder;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 import java.time.OffsetDateTime;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -19,7 +23,8 @@ import java.util.logging.Logger;
  */
 public class EventGridPublisher {
     
-    private static EventGridPublisherClient client;
+    private static EventGridPublisherClient<EventGridEvent> client;
+    private static EventGridPublisherAsyncClient<EventGridEvent> asyncClient;
     private static final ObjectMapper objectMapper = new ObjectMapper()
         .registerModule(new JavaTimeModule());
     
@@ -27,34 +32,52 @@ public class EventGridPublisher {
     private static final String EVENT_GRID_KEY = System.getenv("EVENT_GRID_KEY");
     private static final String EVENT_SOURCE = "Agranelos.Inventario.Functions";
     
+    /**
+     * Eventos por petición en publishEvents (los de inventario pesan ~1 KB)
+     */
+    static final int MAX_EVENTS_PER_REQUEST = 500;
+    
     /**
      * Inicializa el cliente de Event Grid con las credenciales
      */
     private static synchronized void initializeClient() {
         if (client == null) {
-            String endpoint = EVENT_GRID_ENDPOINT;
-            String key = EVENT_GRID_KEY;
-            
-            // Si no están configuradas las variables de entorno, usar valores por defecto para desarrollo local
-            if (endpoint == null || endpoint.isEmpty()) {
-                endpoint = "https://localhost:7071/runtime/webhooks/EventGrid";
-                Logger.getLogger(EventGridPublisher.class.getName())
-                    .warning("EVENT_GRID_ENDPOINT no configurado. Usando endpoint de desarrollo local.");
-            }
-            
-            if (key == null || key.isEmpty()) {
-                key = "local-development-key";
-                Logger.getLogger(EventGridPublisher.class.getName())
-                    .warning("EVENT_GRID_KEY no configurada. Usando key de desarrollo local.");
-            }
-            
-            client = new EventGridPublisherClientBuilder()
-                .endpoint(endpoint)
-                .credential(new AzureKeyCredential(key))
-                .buildEventGridEventPublisherClient();
+            client = clientBuilder().buildEventGridEventPublisherClient();
         }
     }
     
+    /**
+     * Cliente asíncrono, usado por AsyncEventGridPublisher
+     */
+    static synchronized EventGridPublisherAsyncClient<EventGridEvent> asyncClient() {
+        if (asyncClient == null) {
+            asyncClient = clientBuilder().buildEventGridEventPublisherAsyncClient();
+        }
+        return asyncClient;
+    }
+    
+    private static EventGridPublisherClientBuilder clientBuilder() {
+        String endpoint = EVENT_GRID_ENDPOINT;
+        String key = EVENT_GRID_KEY;
+        
+        // Si no están configuradas las variables de entorno, usar valores por defecto para desarrollo local
+        if (endpoint == null || endpoint.isEmpty()) {
+            endpoint = "https://localhost:7071/runtime/webhooks/EventGrid";
+            Logger.getLogger(EventGridPublisher.class.getName())
+                .warning("EVENT_GRID_ENDPOINT no configurado. Usando endpoint de desarrollo local.");
+        }
+        
+        if (key == null || key.isEmpty()) {
+            key = "local-development-key";
+            Logger.getLogger(EventGridPublisher.class.getName())
+                .warning("EVENT_GRID_KEY no configurada. Usando key de desarrollo local.");
+        }
+        
+        return new EventGridPublisherClientBuilder()
+            .endpoint(endpoint)
+            .credential(new AzureKeyCredential(key));
+    }
+    
     /**
      * Publica un evento de producto en Event Grid
      */
@@ -66,20 +89,29 @@ public class EventGridPublisher {
         }
         
         try {
-            initializeClient();
+            EventGridEvent event = buildProductoEvent(eventType, eventData);
             
-            EventGridEvent event = new EventGridEvent(
-                String.format("/productos/%d", eventData.getProductoId()),
-                eventType.getValue(),
-                BinaryData.fromString(objectMapper.writeValueAsString(eventData)),
-                "1.0"
-            );
-            event.setEventTime(OffsetDateTime.now());
+            if (EventCoalescer.isEnabled()) {
+                EventCoalescer coalescer = EventCoalescer.getInstance();
+                if (EventCoalescer.isCoalescible(event)) {
+                    coalescer.submit(event);
+                    logger.fine("Actualización en ventana de fusión: Producto ID: " + eventData.getProductoId());
+                    return;
+                }
+                // La actualización pendiente del mismo producto sale antes que este evento
+                EventGridEvent pendiente = coalescer.take(event.getSubject());
+                if (pendiente != null) {
+                    publishEvents(Arrays.asList(pendiente, event), logger);
+                    return;
+                }
+            }
             
-            List<EventGridEvent> events = new ArrayList<>();
-            events.add(event);
+            if (offerAsync(event)) {
+                logger.fine("Evento encolado: " + eventType.getValue() + " para Producto ID: " + eventData.getProductoId());
+                return;
+            }
             
-            client.sendEvents(events);
+            sendEvents(Collections.singletonList(event));
             
             logger.info(String.format("Evento publicado: %s para Producto ID: %d", 
                 eventType.getValue(), eventData.getProductoId()));
@@ -103,20 +135,14 @@ public class EventGridPublisher {
         }
         
         try {
-            initializeClient();
-            
-            EventGridEvent event = new EventGridEvent(
-                String.format("/bodegas/%d", eventData.getBodegaId()),
-                eventType.getValue(),
-                BinaryData.fromString(objectMapper.writeValueAsString(eventData)),
-                "1.0"
-            );
-            event.setEventTime(OffsetDateTime.now());
+            EventGridEvent event = buildBodegaEvent(eventType, eventData);
             
-            List<EventGridEvent> events = new ArrayList<>();
-            events.add(event);
+            if (offerAsync(event)) {
+                logger.fine("Evento encolado: " + eventType.getValue() + " para Bodega ID: " + eventData.getBodegaId());
+                return;
+            }
             
-            client.sendEvents(events);
+            sendEvents(Collections.singletonList(event));
             
             logger.info(String.format("Evento publicado: %s para Bodega ID: %d", 
                 eventType.getValue(), eventData.getBodegaId()));
@@ -129,26 +155,104 @@ public class EventGridPublisher {
     }
     
     /**
-     * Publica múltiples eventos en batch
+     * Construye el evento de producto (subject /productos/{id})
+     */
+    public static EventGridEvent buildProductoEvent(EventType eventType, ProductoEventData eventData)
+        throws JsonProcessingException {
+        EventGridEvent event = new EventGridEvent(
+            String.format("/productos/%d", eventData.getProductoId()),
+            eventType.getValue(),
+            BinaryData.fromString(objectMapper.writeValueAsString(eventData)),
+            "1.0"
+        );
+        event.setEventTime(OffsetDateTime.now());
+        return event;
+    }
+    
+    /**
+     * Construye el evento de bodega (subject /bodegas/{id})
+     */
+    public static EventGridEvent buildBodegaEvent(EventType eventType, BodegaEventData eventData)
+        throws JsonProcessingException {
+        EventGridEvent event = new EventGridEvent(
+            String.format("/bodegas/%d", eventData.getBodegaId()),
+            eventType.getValue(),
+            BinaryData.fromString(objectMapper.writeValueAsString(eventData)),
+            "1.0"
+        );
+        event.setEventTime(OffsetDateTime.now());
+        return event;
+    }
+    
+    /**
+     * Publica múltiples eventos en batch.
+     * Se envían en bloques de MAX_EVENTS_PER_REQUEST para respetar el límite
+     * de 1 MB por petición de Event Grid.
      */
     public static void publishEvents(List<EventGridEvent> events, Logger logger) {
+        if (!isConfigured()) {
+            logger.warning("Event Grid no configurado, eventos no publicados: " + (events != null ? events.size() : 0));
+            return;
+        }
+        
         try {
-            initializeClient();
-            
             if (events == null || events.isEmpty()) {
                 logger.warning("No hay eventos para publicar");
                 return;
             }
             
-            client.sendEvents(events);
+            List<EventGridEvent> pendientes = events;
+            if (AsyncEventGridPublisher.isEnabled()) {
+                pendientes = AsyncEventGridPublisher.getInstance().offerAll(events);
+                if (pendientes.isEmpty()) {
+                    logger.fine(String.format("Se encolaron %d eventos", events.size()));
+                    return;
+                }
+                logger.warning(String.format("Cola asíncrona llena, %d eventos se publican en forma síncrona", pendientes.size()));
+            }
+            
+            sendEvents(pendientes);
             
-            logger.info(String.format("Se publicaron %d eventos en batch", events.size()));
+            logger.info(String.format("Se publicaron %d eventos en batch", pendientes.size()));
             
         } catch (Exception e) {
             logger.severe(String.format("Error publicando eventos en batch: %s", e.getMessage()));
         }
     }
     
+    /**
+     * Envía los eventos en bloques de MAX_EVENTS_PER_REQUEST y propaga cualquier
+     * error, para que el llamador decida si reintentar (outbox)
+     */
+    public static void sendEvents(List<EventGridEvent> events) {
+        initializeClient();
+        long inicio = System.nanoTime();
+        try {
+            for (int desde = 0; desde < events.size(); desde += MAX_EVENTS_PER_REQUEST) {
+                int hasta = Math.min(desde + MAX_EVENTS_PER_REQUEST, events.size());
+                client.sendEvents(events.subList(desde, hasta));
+            }
+        } finally {
+            RequestMetrics.record(RequestMetrics.Phase.EVENT_GRID, System.nanoTime() - inicio);
+        }
+    }
+    
+    /**
+     * Deja el evento en la cola asíncrona si ese modo está activo.
+     * Con la cola llena devuelve false y el llamador publica en forma síncrona.
+     */
+    private static boolean offerAsync(EventGridEvent event) {
+        if (!AsyncEventGridPublisher.isEnabled()) {
+            return false;
+        }
+        if (AsyncEventGridPublisher.getInstance().offer(event)) {
+            return true;
+        }
+        Logger.getLogger(EventGridPublisher.class.getName())
+            .warning("Cola asíncrona de Event Grid llena, publicando en forma síncrona");
+        return false;
+    }
+    
     /**
      * Valida si Event Grid está configurado correctamente
      */
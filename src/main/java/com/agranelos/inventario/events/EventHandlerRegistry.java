@@ -0,0 +1,136 @@
+package com.agranelos.inventario.events;
+
+import com.agranelos.inventario.cache.CacheInvalidation;
+import com.agranelos.inventario.services.EmailService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Registro de efectos secundarios por tipo de evento.
+ *
+ * Cada tipo declara la clase de su payload (ProductoEventData o
+ * BodegaEventData); el campo data del evento se convierte directamente a esa
+ * clase y se entrega a los handlers registrados, en orden de registro.
+ */
+public class EventHandlerRegistry {
+
+    /**
+     * Efecto secundario para un evento ya deserializado
+     */
+    @FunctionalInterface
+    public interface EventHandler<T> {
+        void handle(T data, Logger logger) throws Exception;
+    }
+
+    private static final class Registration<T> {
+        private final Class<T> dataType;
+        private final List<EventHandler<T>> handlers = new ArrayList<>();
+
+        private Registration(Class<T> dataType) {
+            this.dataType = dataType;
+        }
+
+        private void dispatch(Object rawData, ObjectMapper objectMapper, Logger logger) throws Exception {
+            T data = objectMapper.convertValue(rawData, dataType);
+            for (EventHandler<T> handler : handlers) {
+                handler.handle(data, logger);
+            }
+        }
+    }
+
+    private final Map<String, Registration<?>> registrations = new HashMap<>();
+
+    /**
+     * Registra un handler; varios handlers del mismo tipo se ejecutan en orden
+     *
+     * @throws IllegalArgumentException si el tipo ya se registró con otra clase de payload
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> EventHandlerRegistry register(EventType eventType, Class<T> dataType, EventHandler<T> handler) {
+        Registration<?> existing = registrations.get(eventType.getValue());
+        if (existing != null && existing.dataType != dataType) {
+            throw new IllegalArgumentException("El evento " + eventType.getValue() + " ya usa " + existing.dataType.getSimpleName());
+        }
+        Registration<T> registration = existing != null ? (Registration<T>) existing : new Registration<>(dataType);
+        registration.handlers.add(handler);
+        registrations.put(eventType.getValue(), registration);
+        return this;
+    }
+
+    public synchronized boolean supports(String eventType) {
+        return registrations.containsKey(eventType);
+    }
+
+    /**
+     * Ejecuta los handlers del tipo del evento
+     *
+     * @return false si el tipo no tiene handlers
+     */
+    boolean dispatch(EventGridConsumer.EventGridEventSchema event, ObjectMapper objectMapper, Logger logger)
+        throws Exception {
+        Registration<?> registration;
+        synchronized (this) {
+            registration = registrations.get(event.getEventType());
+        }
+        if (registration == null) {
+            return false;
+        }
+        registration.dispatch(event.getData(), objectMapper, logger);
+        return true;
+    }
+
+    /**
+     * Handlers de la aplicación: notificación por email y, para
+     * actualizaciones y eliminaciones, invalidación de caché en todas las instancias
+     */
+    public static EventHandlerRegistry defaults() {
+        return new EventHandlerRegistry()
+            .register(EventType.PRODUCTO_CREADO, ProductoEventData.class, (data, logger) -> {
+                if (data.getProductoId() != null && data.getNombre() != null) {
+                    EmailService.sendProductoCreatedEmail(data.getProductoId().longValue(), data.getNombre(), logger);
+                }
+            })
+            .register(EventType.PRODUCTO_ACTUALIZADO, ProductoEventData.class, (data, logger) -> {
+                if (data.getProductoId() == null) {
+                    return;
+                }
+                CacheInvalidation.broadcastProducto(data.getProductoId());
+                if (data.getNombre() != null) {
+                    EmailService.sendProductoUpdatedEmail(data.getProductoId().longValue(), data.getNombre(), logger);
+                }
+            })
+            .register(EventType.PRODUCTO_ELIMINADO, ProductoEventData.class, (data, logger) -> {
+                if (data.getProductoId() == null) {
+                    return;
+                }
+                CacheInvalidation.broadcastProducto(data.getProductoId());
+                EmailService.sendProductoDeletedEmail(data.getProductoId().longValue(), logger);
+            })
+            .register(EventType.BODEGA_CREADA, BodegaEventData.class, (data, logger) -> {
+                if (data.getBodegaId() != null && data.getNombre() != null) {
+                    EmailService.sendBodegaCreatedEmail(data.getBodegaId().longValue(), data.getNombre(), logger);
+                }
+            })
+            .register(EventType.BODEGA_ACTUALIZADA, BodegaEventData.class, (data, logger) -> {
+                if (data.getBodegaId() == null) {
+                    return;
+                }
+                CacheInvalidation.broadcastBodega(data.getBodegaId());
+                if (data.getNombre() != null) {
+                    EmailService.sendBodegaUpdatedEmail(data.getBodegaId().longValue(), data.getNombre(), logger);
+                }
+            })
+            .register(EventType.BODEGA_ELIMINADA, BodegaEventData.class, (data, logger) -> {
+                if (data.getBodegaId() == null) {
+                    return;
+                }
+                CacheInvalidation.broadcastBodega(data.getBodegaId());
+                EmailService.sendBodegaDeletedEmail(data.getBodegaId().longValue(), logger);
+            });
+    }
+}
@@ -0,0 +1,94 @@
+package com.agranelos.inventario.events;
+
+import com.agranelos.inventario.config.EnvConfig;
+import com.azure.messaging.eventgrid.EventGridEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outbox transaccional de eventos (tabla EVENTO_OUTBOX).
+ *
+ * Los eventos se insertan con la misma conexión y transacción que el cambio
+ * de datos, así que se confirman o descartan junto con él. EventOutboxDispatcher
+ * los publica después en lotes; la latencia de Event Grid queda fuera de la
+ * petición HTTP y un fallo de publicación se reintenta en vez de perderse.
+ *
+ * Se activa con EVENT_OUTBOX_ENABLED (true) siempre que Event Grid esté
+ * configurado; si no, los handlers publican directo como antes.
+ */
+public final class EventOutbox {
+
+    private static final boolean ENABLED = EnvConfig.getBoolean("EVENT_OUTBOX_ENABLED", true);
+
+    private EventOutbox() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED && EventGridPublisher.isConfigured();
+    }
+
+    /**
+     * Encola un evento de producto en la transacción de {@code connection};
+     * no hace nada si el outbox está deshabilitado
+     */
+    public static void enqueueProductoEvent(Connection connection, EventType eventType, ProductoEventData eventData)
+        throws SQLException {
+        if (isEnabled()) {
+            enqueueAll(connection, Collections.singletonList(build(() -> EventGridPublisher.buildProductoEvent(eventType, eventData))));
+        }
+    }
+
+    /**
+     * Encola un evento de bodega en la transacción de {@code connection};
+     * no hace nada si el outbox está deshabilitado
+     */
+    public static void enqueueBodegaEvent(Connection connection, EventType eventType, BodegaEventData eventData)
+        throws SQLException {
+        if (isEnabled()) {
+            enqueueAll(connection, Collections.singletonList(build(() -> EventGridPublisher.buildBodegaEvent(eventType, eventData))));
+        }
+    }
+
+    /**
+     * Encola varios eventos con un solo executeBatch
+     */
+    public static void enqueueAll(Connection connection, List<EventGridEvent> events) throws SQLException {
+        if (events.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO EVENTO_OUTBOX (EventId, Subject, EventType, Data, DataVersion, FechaEvento) VALUES (?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (EventGridEvent event : events) {
+                OffsetDateTime eventTime = event.getEventTime() != null ? event.getEventTime() : OffsetDateTime.now();
+                statement.setString(1, event.getId());
+                statement.setString(2, event.getSubject());
+                statement.setString(3, event.getEventType());
+                statement.setString(4, event.getData().toString());
+                statement.setString(5, event.getDataVersion());
+                statement.setTimestamp(6, Timestamp.from(eventTime.toInstant()));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private interface EventFactory {
+        EventGridEvent create() throws JsonProcessingException;
+    }
+
+    private static EventGridEvent build(EventFactory factory) throws SQLException {
+        try {
+            return factory.create();
+        } catch (JsonProcessingException e) {
+            // Se propaga como SQLException para deshacer también el cambio de datos
+            throw new SQLException("No se pudo serializar el evento para el outbox", e);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.agranelos.inventario.events;
+
+import com.agranelos.inventario.config.EnvConfig;
+import com.agranelos.inventario.db.DatabaseManager;
+import com.agranelos.inventario.db.Workload;
+import com.agranelos.inventario.metrics.RequestMetrics;
+import com.azure.core.util.BinaryData;
+import com.azure.messaging.eventgrid.EventGridEvent;
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.TimerTrigger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Función con timer que vacía EVENTO_OUTBOX hacia Event Grid.
+ *
+ * Cada lote se lee en orden de ID y se publica con
+ * {@link EventGridPublisher#sendEvents(List)}; si la publicación falla, las
+ * filas quedan con backoff exponencial y ningún evento posterior del mismo
+ * subject sale antes que ellas. Un advisory lock garantiza un solo
+ * despachador activo entre instancias. La entrega es at-least-once: los
+ * reintentos conservan el id del evento para que los consumidores deduplicen.
+ *
+ * App Settings: EVENT_OUTBOX_BATCH_SIZE (1000), EVENT_OUTBOX_MAX_INTENTOS (10).
+ */
+public class EventOutboxDispatcher {
+
+    private static final Logger logger = Logger.getLogger(EventOutboxDispatcher.class.getName());
+
+    private static final int BATCH_SIZE = EnvConfig.getInt("EVENT_OUTBOX_BATCH_SIZE", 1000);
+    private static final int MAX_INTENTOS = EnvConfig.getInt("EVENT_OUTBOX_MAX_INTENTOS", 10);
+    private static final int MAX_BACKOFF_SECONDS = 900;
+
+    /**
+     * Clave del advisory lock que serializa los despachadores
+     */
+    private static final long LOCK_KEY = 0x4F5554424F58L;
+
+    static final String SELECT_PENDIENTES =
+        "SELECT o.ID, o.EventId, o.Subject, o.EventType, o.Data, o.DataVersion, o.FechaEvento " +
+        "FROM EVENTO_OUTBOX o " +
+        "WHERE o.Descartado = FALSE AND o.ProximoIntento <= CURRENT_TIMESTAMP " +
+        // Orden por subject: un evento anterior en espera de reintento bloquea a los siguientes
+        "AND NOT EXISTS (SELECT 1 FROM EVENTO_OUTBOX p " +
+        "WHERE p.Subject = o.Subject AND p.ID < o.ID AND p.Descartado = FALSE " +
+        "AND p.ProximoIntento > CURRENT_TIMESTAMP) " +
+        "ORDER BY o.ID LIMIT ?";
+
+    /**
+     * Backoff exponencial desde 5 s con tope MAX_BACKOFF_SECONDS; al agotar
+     * los intentos la fila queda descartada
+     */
+    static final String MARK_FAILED =
+        "UPDATE EVENTO_OUTBOX SET Intentos = Intentos + 1, UltimoError = ?, " +
+        "ProximoIntento = CURRENT_TIMESTAMP + LEAST(POWER(2, Intentos) * 5, ?) * INTERVAL '1 second', " +
+        "Descartado = (Intentos + 1 >= ?) " +
+        "WHERE ID = ANY(?) RETURNING ID, Descartado";
+
+    @FunctionName("EventOutboxDispatcher")
+    public void dispatch(
+        @TimerTrigger(name = "timer", schedule = "*/10 * * * * *") String timerInfo,
+        final ExecutionContext context
+    ) {
+        RequestMetrics.measure("EventOutboxDispatcher", () -> dispatch(context.getLogger()));
+    }
+
+    private void dispatch(Logger logger) {
+        if (!EventOutbox.isEnabled()) {
+            return;
+        }
+
+        try {
+            int publicados = drain(logger);
+            if (publicados > 0) {
+                logger.info("Outbox: " + publicados + " eventos publicados");
+            }
+        } catch (Exception e) {
+            logger.severe("Error vaciando el outbox de eventos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Publica lotes hasta vaciar lo pendiente o encontrar un fallo
+     *
+     * @return eventos publicados
+     */
+    public static int drain(Logger logger) throws SQLException {
+        int publicados = 0;
+        while (true) {
+            int lote = DatabaseManager.inTransaction(Workload.BATCH,
+                connection -> drainBatch(connection, logger, EventGridPublisher::sendEvents));
+            if (lote <= 0) {
+                return publicados;
+            }
+            publicados += lote;
+            if (lote < BATCH_SIZE) {
+                return publicados;
+            }
+        }
+    }
+
+    /**
+     * @return eventos publicados, 0 si no había nada u otro despachador está activo, -1 si falló
+     */
+    static int drainBatch(Connection connection, Logger logger, Consumer<List<EventGridEvent>> publisher)
+        throws SQLException {
+        if (!tryLock(connection)) {
+            return 0;
+        }
+
+        List<Long> ids = new ArrayList<>();
+        List<EventGridEvent> events = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_PENDIENTES)) {
+            statement.setInt(1, BATCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getLong("ID"));
+                    EventGridEvent event = new EventGridEvent(
+                        resultSet.getString("Subject"),
+                        resultSet.getString("EventType"),
+                        BinaryData.fromString(resultSet.getString("Data")),
+                        resultSet.getString("DataVersion")
+                    );
+                    event.setId(resultSet.getString("EventId"));
+                    event.setEventTime(resultSet.getTimestamp("FechaEvento").toInstant().atOffset(ZoneOffset.UTC));
+                    events.add(event);
+                }
+            }
+        }
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        // Las actualizaciones repetidas de un producto dentro del lote salen una sola vez
+        List<EventGridEvent> aPublicar = EventCoalescer.coalesce(events);
+        if (aPublicar.size() < events.size()) {
+            logger.info("Outbox: " + (events.size() - aPublicar.size()) + " actualizaciones fusionadas");
+        }
+
+        try {
+            publisher.accept(aPublicar);
+        } catch (RuntimeException e) {
+            logger.warning("Outbox: fallo publicando " + events.size() + " eventos, se reintentará: " + e.getMessage());
+            markFailed(connection, ids, e.getMessage());
+            return -1;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement("DELETE FROM EVENTO_OUTBOX WHERE ID = ANY(?)")) {
+            statement.setArray(1, connection.createArrayOf("bigint", ids.toArray()));
+            statement.executeUpdate();
+        }
+        return events.size();
+    }
+
+    private static boolean tryLock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_xact_lock(?)")) {
+            statement.setLong(1, LOCK_KEY);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    private static void markFailed(Connection connection, List<Long> ids, String error) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(MARK_FAILED)) {
+            statement.setString(1, error);
+            statement.setInt(2, MAX_BACKOFF_SECONDS);
+            statement.setInt(3, MAX_INTENTOS);
+            statement.setArray(4, connection.createArrayOf("bigint", ids.toArray()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    if (resultSet.getBoolean("Descartado")) {
+                        logger.severe("Outbox: evento " + resultSet.getLong("ID") + " descartado tras " + MAX_INTENTOS + " intentos");
+                    }
+                }
+            }
+        }
+    }
+}
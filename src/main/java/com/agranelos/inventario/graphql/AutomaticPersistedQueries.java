@@ -0,0 +1,163 @@
+package com.agranelos.inventario.graphql;
+
+import com.agranelos.inventario.cache.LruCache;
+import com.agranelos.inventario.config.EnvConfig;
+import com.agranelos.inventario.db.DatabaseManager;
+import graphql.execution.preparsed.persisted.PersistedQueryError;
+import graphql.execution.preparsed.persisted.PersistedQueryIdInvalid;
+import graphql.execution.preparsed.persisted.PersistedQueryNotFound;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Protocolo Automatic Persisted Queries (APQ) de Apollo.
+ *
+ * El cliente envía primero solo {@code extensions.persistedQuery.sha256Hash};
+ * si el servidor no conoce el hash responde PersistedQueryNotFound y el
+ * cliente reintenta con el texto completo, que queda guardado para las
+ * siguientes peticiones. La búsqueda recorre tres niveles: consultas
+ * registradas explícitamente, una LRU local y, opcionalmente, la tabla
+ * GRAPHQL_PERSISTED_QUERY compartida por todas las instancias.
+ */
+public class AutomaticPersistedQueries {
+
+    private static final Logger logger = Logger.getLogger(AutomaticPersistedQueries.class.getName());
+
+    private final PersistedQueryRegistry registry;
+    private final LruCache<String, String> localCache;
+    private final boolean databaseEnabled;
+
+    public AutomaticPersistedQueries(PersistedQueryRegistry registry, int localCacheSize, boolean databaseEnabled) {
+        this.registry = registry;
+        this.localCache = new LruCache<>(localCacheSize);
+        this.databaseEnabled = databaseEnabled;
+    }
+
+    /**
+     * Crea la instancia según App Settings (GRAPHQL_APQ_CACHE_SIZE, GRAPHQL_APQ_DB_ENABLED)
+     */
+    public static AutomaticPersistedQueries fromEnvironment(PersistedQueryRegistry registry) {
+        return new AutomaticPersistedQueries(
+            registry,
+            EnvConfig.getInt("GRAPHQL_APQ_CACHE_SIZE", 1000),
+            EnvConfig.getBoolean("GRAPHQL_APQ_DB_ENABLED", false)
+        );
+    }
+
+    /**
+     * Resuelve el texto de la consulta a ejecutar.
+     *
+     * @param query      texto enviado por el cliente (puede ser null)
+     * @param extensions extensions del request GraphQL (puede ser null)
+     * @return el texto de la consulta
+     * @throws PersistedQueryError si el hash no se conoce o no coincide con el texto
+     */
+    public String resolve(String query, Map<String, Object> extensions) {
+        String hash = extractHash(extensions);
+        if (hash == null) {
+            return query;
+        }
+
+        if (query == null || query.trim().isEmpty()) {
+            String known = lookup(hash);
+            if (known == null) {
+                throw new PersistedQueryNotFound(hash);
+            }
+            return known;
+        }
+
+        if (!PersistedQueryRegistry.sha256Hex(query).equals(hash)) {
+            throw new PersistedQueryIdInvalid(hash);
+        }
+        store(hash, query);
+        return query;
+    }
+
+    /**
+     * Extrae extensions.persistedQuery.sha256Hash (version 1)
+     */
+    @SuppressWarnings("unchecked")
+    static String extractHash(Map<String, Object> extensions) {
+        if (extensions == null) {
+            return null;
+        }
+        Object persistedQuery = extensions.get("persistedQuery");
+        if (!(persistedQuery instanceof Map)) {
+            return null;
+        }
+        Map<String, Object> persisted = (Map<String, Object>) persistedQuery;
+        Object version = persisted.get("version");
+        if (version != null && !"1".equals(version.toString())) {
+            throw new PersistedQueryIdInvalid(persisted.get("sha256Hash"));
+        }
+        Object hash = persisted.get("sha256Hash");
+        if (hash == null || hash.toString().trim().isEmpty()) {
+            return null;
+        }
+        return hash.toString().trim().toLowerCase();
+    }
+
+    private String lookup(String hash) {
+        String query = registry.lookup(hash);
+        if (query != null) {
+            return query;
+        }
+
+        query = localCache.get(hash);
+        if (query != null || !databaseEnabled) {
+            return query;
+        }
+
+        query = loadFromDatabase(hash);
+        if (query != null) {
+            localCache.put(hash, query);
+        }
+        return query;
+    }
+
+    private void store(String hash, String query) {
+        if (registry.lookup(hash) != null || localCache.get(hash) != null) {
+            return;
+        }
+        localCache.put(hash, query);
+        if (databaseEnabled) {
+            saveToDatabase(hash, query);
+        }
+    }
+
+    private String loadFromDatabase(String hash) {
+        String sql = "SELECT Query FROM GRAPHQL_PERSISTED_QUERY WHERE Hash = ?";
+        try (Connection connection = DatabaseManager.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, hash);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString("Query") : null;
+            }
+        } catch (SQLException e) {
+            // El nivel compartido es una optimización: si falla, el cliente reenvía el texto
+            logger.warning("Error leyendo consulta persistida: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveToDatabase(String hash, String query) {
+        String sql = "INSERT INTO GRAPHQL_PERSISTED_QUERY (Hash, Query) VALUES (?, ?) ON CONFLICT (Hash) DO NOTHING";
+        try (Connection connection = DatabaseManager.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, hash);
+            statement.setString(2, query);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            logger.warning("Error guardando consulta persistida: " + e.getMessage());
+        }
+    }
+
+    public LruCache<String, String> getLocalCache() {
+        return localCache;
+    }
+}
@@ -1,8 +1,12 @@
 package com.agranelos.inventario.graphql;
 
+import com.agranelos.inventario.cache.CacheInvalidation;
+import com.agranelos.inventario.cache.EntityCache;
 import com.agranelos.inventario.db.DatabaseManager;
+import com.agranelos.inventario.db.KeysetCursor;
 import com.agranelos.inventario.model.Bodega;
 import graphql.schema.DataFetcher;
+import org.dataloader.DataLoader;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -15,6 +19,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 
 /**
@@ -25,6 +31,18 @@ public class BodegaDataFetcher {
     private static final Logger logger = Logger.getLogger(BodegaDataFetcher.class.getName());
     private static final int DEFAULT_CAPACITY = 10000; // Capacidad por defecto
     
+    /**
+     * Órdenes soportados por bodegasConnection (enum BodegaOrderBy)
+     */
+    private static final Map<String, KeysetPagination.Orden<Bodega>> ORDENES = KeysetPagination.ordenes(
+        new KeysetPagination.Orden<>("ID_ASC", null, true, null, null),
+        new KeysetPagination.Orden<>("ID_DESC", null, false, null, null),
+        new KeysetPagination.Orden<>("NOMBRE_ASC", "Nombre", true, valor -> valor, Bodega::getNombre),
+        new KeysetPagination.Orden<>("NOMBRE_DESC", "Nombre", false, valor -> valor, Bodega::getNombre),
+        new KeysetPagination.Orden<>("CAPACIDAD_ASC", "Capacidad", true, Integer::valueOf, Bodega::getCapacidad),
+        new KeysetPagination.Orden<>("CAPACIDAD_DESC", "Capacidad", false, Integer::valueOf, Bodega::getCapacidad)
+    );
+    
     /**
      * Query: bodegas - Obtener todas las bodegas
      */
@@ -32,30 +50,14 @@ public class BodegaDataFetcher {
         return dataFetchingEnvironment -> {
             List<Bodega> bodegas = new ArrayList<>();
             
-            try (Connection connection = DatabaseManager.getConnection()) {
-                String sql = "SELECT ID, Nombre, Ubicacion, Capacidad, FechaCreacion FROM BODEGA ORDER BY ID";
+            try (Connection connection = DatabaseManager.getReadConnection()) {
+                String sql = "SELECT ID, Nombre, Ubicacion, Capacidad, FechaCreacion, FechaActualizacion FROM BODEGA ORDER BY ID";
                 
                 try (PreparedStatement statement = connection.prepareStatement(sql);
                      ResultSet resultSet = statement.executeQuery()) {
                     
                     while (resultSet.next()) {
-                        Bodega bodega = new Bodega();
-                        bodega.setId(resultSet.getInt("ID"));
-                        bodega.setNombre(resultSet.getString("Nombre"));
-                        bodega.setUbicacion(resultSet.getString("Ubicacion"));
-                        bodega.setCapacidad(resultSet.getInt("Capacidad"));
-                        
-                        Timestamp fechaCreacion = resultSet.getTimestamp("FechaCreacion");
-                        if (fechaCreacion != null) {
-                            bodega.setFechaCreacion(fechaCreacion.toLocalDateTime());
-                        }
-                        
-                        // TODO: Re-enable FechaActualizacion once column is confirmed to exist
-                        // Timestamp fechaActualizacion = resultSet.getTimestamp("FechaActualizacion");
-                        // if (fechaActualizacion != null) {
-                        //     bodega.setFechaActualizacion(fechaActualizacion.toLocalDateTime());
-                        // }
-                        
+                        Bodega bodega = mapBodega(resultSet);
                         bodegas.add(bodega);
                     }
                 }
@@ -69,48 +71,73 @@ public class BodegaDataFetcher {
     }
     
     /**
-     * Query: bodega(id) - Obtener bodega por ID
+     * Query: bodega(id) - Obtener bodega por ID (agrupado vía DataLoader)
      */
-    public static DataFetcher<Bodega> getBodega() {
+    public static DataFetcher<CompletableFuture<Bodega>> getBodega() {
         return dataFetchingEnvironment -> {
             String idString = dataFetchingEnvironment.getArgument("id");
             int id = Integer.parseInt(idString);
             
-            try (Connection connection = DatabaseManager.getConnection()) {
-                String sql = "SELECT ID, Nombre, Ubicacion, Capacidad, FechaCreacion FROM BODEGA WHERE ID = ?";
-                
-                try (PreparedStatement statement = connection.prepareStatement(sql)) {
-                    statement.setInt(1, id);
-                    
-                    try (ResultSet resultSet = statement.executeQuery()) {
-                        if (resultSet.next()) {
-                            Bodega bodega = new Bodega();
-                            bodega.setId(resultSet.getInt("ID"));
-                            bodega.setNombre(resultSet.getString("Nombre"));
-                            bodega.setUbicacion(resultSet.getString("Ubicacion"));
-                            bodega.setCapacidad(resultSet.getInt("Capacidad"));
-                            
-                            Timestamp fechaCreacion = resultSet.getTimestamp("FechaCreacion");
-                            if (fechaCreacion != null) {
-                                bodega.setFechaCreacion(fechaCreacion.toLocalDateTime());
-                            }
-                            
-                            // TODO: Re-enable FechaActualizacion once column is confirmed to exist
-                            // Timestamp fechaActualizacion = resultSet.getTimestamp("FechaActualizacion");
-                            // if (fechaActualizacion != null) {
-                            //     bodega.setFechaActualizacion(fechaActualizacion.toLocalDateTime());
-                            // }
-                            
-                            return bodega;
-                        }
+            DataLoader<Integer, Bodega> loader = dataFetchingEnvironment.getDataLoader(DataLoaders.BODEGA_LOADER);
+            return loader.load(id);
+        };
+    }
+    
+    /**
+     * Query: bodegasConnection(first, after, filter, orderBy) - Paginación Relay con keyset
+     */
+    public static DataFetcher<Map<String, Object>> getBodegasConnection() {
+        return dataFetchingEnvironment -> {
+            String ordenNombre = dataFetchingEnvironment.getArgumentOrDefault("orderBy", "ID_ASC");
+            KeysetPagination.Orden<Bodega> orden = ORDENES.get(ordenNombre);
+            if (orden == null) {
+                throw new IllegalArgumentException("Orden no soportado: " + ordenNombre);
+            }
+            int first = KeysetPagination.resolveFirst(dataFetchingEnvironment.getArgument("first"));
+            KeysetCursor after = KeysetPagination.resolveAfter(dataFetchingEnvironment.getArgument("after"), orden);
+            Map<String, Object> filter = dataFetchingEnvironment.getArgument("filter");
+
+            List<String> conditions = new ArrayList<>();
+            List<Object> params = new ArrayList<>();
+            if (filter != null) {
+                Object nombre = filter.get("nombreContiene");
+                if (nombre != null && !nombre.toString().trim().isEmpty()) {
+                    conditions.add("Nombre ILIKE ?");
+                    params.add(KeysetPagination.likePattern(nombre.toString().trim()));
+                }
+                Object ubicacion = filter.get("ubicacionContiene");
+                if (ubicacion != null && !ubicacion.toString().trim().isEmpty()) {
+                    conditions.add("Ubicacion ILIKE ?");
+                    params.add(KeysetPagination.likePattern(ubicacion.toString().trim()));
+                }
+                if (filter.get("capacidadMin") != null) {
+                    conditions.add("Capacidad >= ?");
+                    params.add(filter.get("capacidadMin"));
+                }
+            }
+            KeysetPagination.appendKeysetCondition(conditions, params, orden, after);
+            params.add(first + 1);
+
+            String sql = "SELECT ID, Nombre, Ubicacion, Capacidad, FechaCreacion, FechaActualizacion FROM BODEGA"
+                + KeysetPagination.tail(conditions, orden);
+            List<Bodega> bodegas = new ArrayList<>();
+
+            try (Connection connection = DatabaseManager.getReadConnection();
+                 PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < params.size(); i++) {
+                    statement.setObject(i + 1, params.get(i));
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        bodegas.add(mapBodega(resultSet));
                     }
                 }
             } catch (SQLException e) {
-                logger.severe("Error obteniendo bodega por ID: " + e.getMessage());
-                throw new RuntimeException("Error obteniendo bodega", e);
+                logger.severe("Error obteniendo página de bodegas: " + e.getMessage());
+                throw new RuntimeException("Error obteniendo bodegas", e);
             }
-            
-            return null;
+
+            return KeysetPagination.toConnection(bodegas, first, after != null, orden, Bodega::getId);
         };
     }
     
@@ -181,6 +208,7 @@ public class BodegaDataFetcher {
                 // Insertar en base de datos
                 Integer bodegaId = insertBodega(bodega);
                 bodega.setId(bodegaId);
+                EntityCache.invalidateBodega(bodegaId);
                 
                 response.put("success", true);
                 response.put("message", "Bodega creada exitosamente");
@@ -226,6 +254,7 @@ public class BodegaDataFetcher {
                 boolean updated = updateBodega(bodega);
                 
                 if (updated) {
+                    CacheInvalidation.broadcastBodega(id);
                     response.put("success", true);
                     response.put("message", "Bodega actualizada exitosamente");
                     response.put("bodega", bodega);
@@ -262,6 +291,7 @@ public class BodegaDataFetcher {
                 boolean deleted = deleteBodega(id);
                 
                 if (deleted) {
+                    CacheInvalidation.broadcastBodega(id);
                     response.put("success", true);
                     response.put("message", "Bodega eliminada exitosamente");
                     response.put("error", null);
@@ -282,9 +312,69 @@ public class BodegaDataFetcher {
         };
     }
     
+    /**
+     * Carga en una sola consulta las bodegas de un lote de IDs (batch loader)
+     */
+    static Map<Integer, Bodega> loadBodegasByIds(Set<Integer> ids) {
+        Map<Integer, Bodega> bodegas = new HashMap<>();
+        List<Integer> pendientes = new ArrayList<>();
+        for (Integer id : ids) {
+            Bodega cached = EntityCache.getBodega(id);
+            if (cached != null) {
+                bodegas.put(id, cached);
+            } else {
+                pendientes.add(id);
+            }
+        }
+        if (pendientes.isEmpty()) {
+            return bodegas;
+        }
+        
+        String sql = "SELECT ID, Nombre, Ubicacion, Capacidad, FechaCreacion, FechaActualizacion FROM BODEGA WHERE ID = ANY(?)";
+        try (Connection connection = DatabaseManager.getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setArray(1, connection.createArrayOf("integer", pendientes.toArray()));
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    Bodega bodega = mapBodega(resultSet);
+                    bodegas.put(bodega.getId(), bodega);
+                    // Una fila de la réplica puede ser anterior a la última invalidación
+                    if (!connection.isReadOnly()) {
+                        EntityCache.putBodega(bodega);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            logger.severe("Error obteniendo lote de bodegas por ID: " + e.getMessage());
+            throw new RuntimeException("Error obteniendo bodega", e);
+        }
+        
+        return bodegas;
+    }
+    
     // Métodos auxiliares de base de datos
+    static Bodega mapBodega(ResultSet resultSet) throws SQLException {
+        Bodega bodega = new Bodega();
+        bodega.setId(resultSet.getInt("ID"));
+        bodega.setNombre(resultSet.getString("Nombre"));
+        bodega.setUbicacion(resultSet.getString("Ubicacion"));
+        bodega.setCapacidad(resultSet.getInt("Capacidad"));
+        
+        Timestamp fechaCreacion = resultSet.getTimestamp("FechaCreacion");
+        if (fechaCreacion != null) {
+            bodega.setFechaCreacion(fechaCreacion.toLocalDateTime());
+        }
+        
+        Timestamp fechaActualizacion = resultSet.getTimestamp("FechaActualizacion");
+        if (fechaActualizacion != null) {
+            bodega.setFechaActualizacion(fechaActualizacion.toLocalDateTime());
+        }
+        return bodega;
+    }
+    
     private static Integer insertBodega(Bodega bodega) throws SQLException {
-        try (Connection connection = DatabaseManager.getConnection()) {
+        try (Connection connection = DatabaseManager.getWriteConnection()) {
             String sql = "INSERT INTO BODEGA (Nombre, Ubicacion, Capacidad, FechaCreacion, FechaActualizacion) VALUES (?, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)";
             
             try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
@@ -309,7 +399,7 @@ public class BodegaDataFetcher {
     }
     
     private static boolean updateBodega(Bodega bodega) throws SQLException {
-        try (Connection connection = DatabaseManager.getConnection()) {
+        try (Connection connection = DatabaseManager.getWriteConnection()) {
             StringBuilder sql = new StringBuilder("UPDATE BODEGA SET FechaActualizacion = CURRENT_TIMESTAMP");
             List<Object> params = new ArrayList<>();
             
@@ -340,7 +430,7 @@ public class BodegaDataFetcher {
     }
     
     private static boolean deleteBodega(int id) throws SQLException {
-        try (Connection connection = DatabaseManager.getConnection()) {
+        try (Connection connection = DatabaseManager.getWriteConnection()) {
             String sql = "DELETE FROM BODEGA WHERE ID = ?";
             
             try (PreparedStatement statement = connection.prepareStatement(sql)) {
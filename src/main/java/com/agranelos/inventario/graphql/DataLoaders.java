@@ -0,0 +1,85 @@
+package com.agranelos.inventario.graphql;
+
+import com.agranelos.inventario.model.Bodega;
+import com.agranelos.inventario.model.InventarioItem;
+import com.agranelos.inventario.model.Producto;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderFactory;
+import org.dataloader.DataLoaderOptions;
+import org.dataloader.DataLoaderRegistry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * DataLoaders por request para las consultas por ID.
+ *
+ * Todas las cargas pedidas durante un mismo nivel de ejecución se agrupan en
+ * una sola consulta {@code WHERE ID = ANY(?)}, y cada DataLoader cachea sus
+ * resultados durante el request, por lo que un documento con 50 alias de
+ * producto(id:) hace una sola consulta y usa una sola conexión del pool.
+ */
+public final class DataLoaders {
+
+    public static final String PRODUCTO_LOADER = "productoPorId";
+    public static final String BODEGA_LOADER = "bodegaPorId";
+    public static final String INVENTARIO_POR_PRODUCTO_LOADER = "inventarioPorProducto";
+    public static final String INVENTARIO_POR_BODEGA_LOADER = "inventarioPorBodega";
+    public static final String OCUPACION_POR_BODEGA_LOADER = "ocupacionPorBodega";
+
+    /**
+     * Tope de IDs por consulta para acotar el tamaño del arreglo enviado
+     */
+    private static final int MAX_BATCH_SIZE = 500;
+
+    private DataLoaders() {
+    }
+
+    /**
+     * Crea un registro nuevo; debe usarse uno por ejecución para que la
+     * caché de cada DataLoader quede limitada al request
+     */
+    public static DataLoaderRegistry newRegistry() {
+        return newRegistry(ProductoDataFetcher::loadProductosByIds);
+    }
+
+    /**
+     * Igual que {@link #newRegistry()}, con otra carga de productos por lote
+     */
+    static DataLoaderRegistry newRegistry(Function<Set<Integer>, Map<Integer, Producto>> productosPorId) {
+        DataLoaderOptions options = DataLoaderOptions.newOptions()
+            .setMaxBatchSize(MAX_BATCH_SIZE);
+
+        DataLoader<Integer, Producto> productoLoader = DataLoaderFactory.newMappedDataLoader(
+            ids -> CompletableFuture.completedFuture(productosPorId.apply(ids)),
+            options
+        );
+        DataLoader<Integer, Bodega> bodegaLoader = DataLoaderFactory.newMappedDataLoader(
+            ids -> CompletableFuture.completedFuture(BodegaDataFetcher.loadBodegasByIds(ids)),
+            options
+        );
+        DataLoader<Integer, List<InventarioItem>> inventarioPorProducto = DataLoaderFactory.newMappedDataLoader(
+            ids -> CompletableFuture.completedFuture(InventarioDataFetcher.loadInventarioPorProductos(ids)),
+            options
+        );
+        DataLoader<Integer, List<InventarioItem>> inventarioPorBodega = DataLoaderFactory.newMappedDataLoader(
+            ids -> CompletableFuture.completedFuture(InventarioDataFetcher.loadInventarioPorBodegas(ids)),
+            options
+        );
+        DataLoader<Integer, Long> ocupacionPorBodega = DataLoaderFactory.newMappedDataLoader(
+            ids -> CompletableFuture.completedFuture(InventarioDataFetcher.loadOcupacionPorBodegas(ids)),
+            options
+        );
+
+        return DataLoaderRegistry.newRegistry()
+            .register(PRODUCTO_LOADER, productoLoader)
+            .register(BODEGA_LOADER, bodegaLoader)
+            .register(INVENTARIO_POR_PRODUCTO_LOADER, inventarioPorProducto)
+            .register(INVENTARIO_POR_BODEGA_LOADER, inventarioPorBodega)
+            .register(OCUPACION_POR_BODEGA_LOADER, ocupacionPorBodega)
+            .build();
+    }
+}
@@ -0,0 +1,274 @@
+package com.agranelos.inventario.graphql;
+
+import com.agranelos.inventario.config.EnvConfig;
+import com.agranelos.inventario.metrics.LatencyHistogram;
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.execution.ExecutionStepInfo;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.schema.GraphQLTypeUtil;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Tiempos por campo y DataFetcher de las consultas GraphQL.
+ *
+ * Solo se trazan las ejecuciones muestreadas (GRAPHQL_TRACING_SAMPLE_RATE,
+ * de 0 a 1): en las demás el estado es null y cada campo devuelve un
+ * contexto no-op, sin leer el reloj. De cada ejecución trazada:
+ * <ul>
+ * <li>se acumula la latencia de la operación y de cada campo
+ * ({@code Tipo.campo}) en histogramas por nombre de operación;</li>
+ * <li>se registra un warning por cada resolver que supera
+ * GRAPHQL_SLOW_RESOLVER_MS;</li>
+ * <li>si GRAPHQL_TRACING_EXTENSIONS está activo y el cliente envía
+ * {@code extensions.tracing: true}, la respuesta incluye
+ * {@code extensions.tracing} en el formato de Apollo Tracing (esas
+ * peticiones se trazan siempre, sin muestreo).</li>
+ * </ul>
+ *
+ * El tiempo de un campo resuelto con DataLoader incluye la espera del lote.
+ */
+public class FieldTracingInstrumentation extends SimplePerformantInstrumentation {
+
+    private static final Logger logger = Logger.getLogger(FieldTracingInstrumentation.class.getName());
+
+    /**
+     * Límite de operaciones distintas con estadísticas propias (el nombre lo elige el cliente)
+     */
+    static final int MAX_OPERATIONS = 200;
+    static final String OTRAS_OPERACIONES = "(otras)";
+    static final String SIN_NOMBRE = "(anónima)";
+
+    private final double sampleRate;
+    private final long slowResolverNanos;
+    private final boolean extensionsEnabled;
+    private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+
+    public FieldTracingInstrumentation(double sampleRate, long slowResolverMillis, boolean extensionsEnabled) {
+        this.sampleRate = sampleRate;
+        this.slowResolverNanos = TimeUnit.MILLISECONDS.toNanos(slowResolverMillis);
+        this.extensionsEnabled = extensionsEnabled;
+    }
+
+    /**
+     * Crea la instancia según App Settings (GRAPHQL_TRACING_SAMPLE_RATE,
+     * GRAPHQL_SLOW_RESOLVER_MS, GRAPHQL_TRACING_EXTENSIONS)
+     */
+    public static FieldTracingInstrumentation fromEnvironment() {
+        double sampleRate;
+        try {
+            sampleRate = Double.parseDouble(EnvConfig.getString("GRAPHQL_TRACING_SAMPLE_RATE", "0"));
+        } catch (NumberFormatException e) {
+            logger.warning("GRAPHQL_TRACING_SAMPLE_RATE inválido, trazado desactivado");
+            sampleRate = 0;
+        }
+        return new FieldTracingInstrumentation(
+            sampleRate,
+            EnvConfig.getLong("GRAPHQL_SLOW_RESOLVER_MS", 100),
+            EnvConfig.getBoolean("GRAPHQL_TRACING_EXTENSIONS", false)
+        );
+    }
+
+    /**
+     * Tiempos de una ejecución trazada
+     */
+    static final class TraceState implements InstrumentationState {
+        private final String operation;
+        private final boolean apolloTracing;
+        private final Instant inicio = Instant.now();
+        private final long inicioNanos = System.nanoTime();
+        private final ConcurrentLinkedQueue<ResolverTiming> resolvers = new ConcurrentLinkedQueue<>();
+
+        private TraceState(String operation, boolean apolloTracing) {
+            this.operation = operation;
+            this.apolloTracing = apolloTracing;
+        }
+    }
+
+    static final class ResolverTiming {
+        private final List<Object> path;
+        private final String parentType;
+        private final String fieldName;
+        private final String returnType;
+        private final long startOffset;
+        private final long duration;
+
+        private ResolverTiming(List<Object> path, String parentType, String fieldName, String returnType,
+                               long startOffset, long duration) {
+            this.path = path;
+            this.parentType = parentType;
+            this.fieldName = fieldName;
+            this.returnType = returnType;
+            this.startOffset = startOffset;
+            this.duration = duration;
+        }
+    }
+
+    static final class OperationStats {
+        private final LatencyHistogram total = new LatencyHistogram();
+        private final Map<String, LatencyHistogram> fields = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public InstrumentationState createState(InstrumentationCreateStateParameters parameters) {
+        ExecutionInput input = parameters.getExecutionInput();
+        boolean apolloTracing = extensionsEnabled && input.getExtensions() != null
+            && Boolean.TRUE.equals(input.getExtensions().get("tracing"));
+        if (!apolloTracing && (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return null;
+        }
+        String operation = input.getOperationName();
+        return new TraceState(operation != null && !operation.isEmpty() ? operation : SIN_NOMBRE, apolloTracing);
+    }
+
+    @Override
+    public InstrumentationContext<Object> beginFieldFetch(InstrumentationFieldFetchParameters parameters,
+                                                          InstrumentationState state) {
+        if (!(state instanceof TraceState)) {
+            return SimpleInstrumentationContext.noOp();
+        }
+        TraceState trace = (TraceState) state;
+        long inicio = System.nanoTime();
+        return SimpleInstrumentationContext.whenCompleted((result, error) -> {
+            long duracion = System.nanoTime() - inicio;
+            ExecutionStepInfo stepInfo = parameters.getEnvironment().getExecutionStepInfo();
+            trace.resolvers.add(new ResolverTiming(
+                stepInfo.getPath().toList(),
+                stepInfo.getObjectType().getName(),
+                stepInfo.getFieldDefinition().getName(),
+                GraphQLTypeUtil.simplePrint(stepInfo.getType()),
+                inicio - trace.inicioNanos,
+                duracion
+            ));
+        });
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> instrumentExecutionResult(ExecutionResult executionResult,
+                                                                        InstrumentationExecutionParameters parameters,
+                                                                        InstrumentationState state) {
+        if (!(state instanceof TraceState)) {
+            return CompletableFuture.completedFuture(executionResult);
+        }
+        TraceState trace = (TraceState) state;
+        long duracion = System.nanoTime() - trace.inicioNanos;
+        record(trace, duracion);
+
+        if (!trace.apolloTracing) {
+            return CompletableFuture.completedFuture(executionResult);
+        }
+        Map<Object, Object> extensions = new LinkedHashMap<>();
+        if (executionResult.getExtensions() != null) {
+            extensions.putAll(executionResult.getExtensions());
+        }
+        extensions.put("tracing", apolloTracing(trace, duracion));
+        return CompletableFuture.completedFuture(
+            ExecutionResultImpl.newExecutionResult().from(executionResult).extensions(extensions).build());
+    }
+
+    private void record(TraceState trace, long duracion) {
+        OperationStats stats = statsFor(trace.operation);
+        stats.total.recordNanos(duracion);
+        for (ResolverTiming resolver : trace.resolvers) {
+            String campo = resolver.parentType + "." + resolver.fieldName;
+            stats.fields.computeIfAbsent(campo, key -> new LatencyHistogram()).recordNanos(resolver.duration);
+            if (resolver.duration >= slowResolverNanos) {
+                logger.warning(String.format("Resolver lento: %s en %s (operación %s): %d ms",
+                    campo, pathToString(resolver.path), trace.operation,
+                    TimeUnit.NANOSECONDS.toMillis(resolver.duration)));
+            }
+        }
+    }
+
+    private OperationStats statsFor(String operation) {
+        OperationStats stats = operations.get(operation);
+        if (stats != null) {
+            return stats;
+        }
+        if (operations.size() >= MAX_OPERATIONS) {
+            operation = OTRAS_OPERACIONES;
+        }
+        return operations.computeIfAbsent(operation, key -> new OperationStats());
+    }
+
+    /**
+     * extensions.tracing según https://github.com/apollographql/apollo-tracing
+     */
+    private static Map<String, Object> apolloTracing(TraceState trace, long duracion) {
+        List<Map<String, Object>> resolvers = new ArrayList<>();
+        for (ResolverTiming resolver : trace.resolvers) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("path", resolver.path);
+            item.put("parentType", resolver.parentType);
+            item.put("fieldName", resolver.fieldName);
+            item.put("returnType", resolver.returnType);
+            item.put("startOffset", resolver.startOffset);
+            item.put("duration", resolver.duration);
+            resolvers.add(item);
+        }
+        Map<String, Object> tracing = new LinkedHashMap<>();
+        tracing.put("version", 1);
+        tracing.put("startTime", trace.inicio.toString());
+        tracing.put("endTime", trace.inicio.plusNanos(duracion).toString());
+        tracing.put("duration", duracion);
+        tracing.put("execution", Map.of("resolvers", resolvers));
+        return tracing;
+    }
+
+    private static String pathToString(List<Object> path) {
+        StringBuilder texto = new StringBuilder();
+        for (Object segmento : path) {
+            texto.append('/').append(segmento);
+        }
+        return texto.toString();
+    }
+
+    /**
+     * Estadísticas por operación: ejecuciones trazadas, p50/p99/máximo de la
+     * operación y de cada campo, en milisegundos
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> porOperacion = new TreeMap<>();
+        for (Map.Entry<String, OperationStats> entry : operations.entrySet()) {
+            Map<String, Object> operacion = resumen(entry.getValue().total);
+            Map<String, Object> campos = new TreeMap<>();
+            entry.getValue().fields.forEach((campo, histograma) -> campos.put(campo, resumen(histograma)));
+            operacion.put("fields", campos);
+            porOperacion.put(entry.getKey(), operacion);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sampleRate", sampleRate);
+        stats.put("slowResolverMillis", TimeUnit.NANOSECONDS.toMillis(slowResolverNanos));
+        stats.put("apolloTracing", extensionsEnabled);
+        stats.put("operations", porOperacion);
+        return stats;
+    }
+
+    private static Map<String, Object> resumen(LatencyHistogram histograma) {
+        Map<String, Object> resumen = new LinkedHashMap<>();
+        resumen.put("count", histograma.getCount());
+        resumen.put("p50Ms", histograma.percentileNanos(0.5) / 1e6);
+        resumen.put("p99Ms", histograma.percentileNanos(0.99) / 1e6);
+        resumen.put("maxMs", histograma.getMaxNanos() / 1e6);
+        return resumen;
+    }
+}
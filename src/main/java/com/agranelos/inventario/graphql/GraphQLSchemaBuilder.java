@@ -1,9 +1,15 @@
 package com.agranelos.inventario.graphql;
 
+import com.agranelos.inventario.config.EnvConfig;
 import com.agranelos.inventario.db.DatabaseInitializer;
 import graphql.ExecutionInput;
 import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
 import graphql.GraphQL;
+import graphql.GraphqlErrorBuilder;
+import graphql.execution.instrumentation.ChainedInstrumentation;
+import graphql.execution.preparsed.persisted.PersistedQueryError;
+import graphql.execution.preparsed.persisted.PersistedQueryNotFound;
 import graphql.schema.GraphQLSchema;
 import graphql.schema.StaticDataFetcher;
 import graphql.schema.idl.RuntimeWiring;
@@ -18,6 +24,8 @@ import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
@@ -33,6 +41,24 @@ public class GraphQLSchemaBuilder {
     private static final AtomicBoolean initialized = new AtomicBoolean(false);
     private static volatile GraphQL graphQL;
     
+    // Documentos parseados y validados, reutilizados entre requests
+    private static final PreparsedDocumentCache DOCUMENT_CACHE = new PreparsedDocumentCache(
+        EnvConfig.getInt("GRAPHQL_DOCUMENT_CACHE_SIZE", 256),
+        EnvConfig.getBoolean("GRAPHQL_DOCUMENT_CACHE_BY_OPERATION", false)
+    );
+    
+    // Consultas persistidas registradas por hash SHA-256
+    private static final PersistedQueryRegistry PERSISTED_QUERIES = new PersistedQueryRegistry();
+    
+    // Automatic Persisted Queries (extensions.persistedQuery.sha256Hash)
+    private static final AutomaticPersistedQueries APQ = AutomaticPersistedQueries.fromEnvironment(PERSISTED_QUERIES);
+    
+    // Límites de profundidad, costo y presupuesto por cliente, antes de ejecutar
+    private static final QueryCostInstrumentation COST = QueryCostInstrumentation.fromEnvironment();
+    
+    // Tiempos por campo (muestreados) y log de resolvers lentos
+    private static final FieldTracingInstrumentation TRACING = FieldTracingInstrumentation.fromEnvironment();
+    
     // Cache the schema string to avoid IO overhead
     private static final String CACHED_SCHEMA;
     
@@ -71,7 +97,10 @@ public class GraphQLSchemaBuilder {
                     );
                     
                     // Crear la instancia GraphQL
-                    graphQL = GraphQL.newGraphQL(graphQLSchema).build();
+                    graphQL = GraphQL.newGraphQL(graphQLSchema)
+                        .preparsedDocumentProvider(DOCUMENT_CACHE)
+                        .instrumentation(new ChainedInstrumentation(List.of(COST, TRACING)))
+                        .build();
                     
                     logger.info("Esquema GraphQL inicializado exitosamente");
                 }
@@ -103,6 +132,7 @@ public class GraphQLSchemaBuilder {
                     LocalDateTime localDateTime = producto.getFechaActualizacion();
                     return localDateTime != null ? localDateTime.atOffset(ZoneOffset.UTC) : null;
                 })
+                .dataFetcher("inventario", InventarioDataFetcher.getInventarioDeProducto())
             )
             .type("Bodega", builder -> builder
                 .dataFetcher("fechaCreacion", environment -> {
@@ -115,18 +145,32 @@ public class GraphQLSchemaBuilder {
                     LocalDateTime localDateTime = bodega.getFechaActualizacion();
                     return localDateTime != null ? localDateTime.atOffset(ZoneOffset.UTC) : null;
                 })
+                .dataFetcher("inventario", InventarioDataFetcher.getInventarioDeBodega())
+                .dataFetcher("ocupacion", InventarioDataFetcher.getOcupacion())
+            )
+            .type("InventarioItem", builder -> builder
+                .dataFetcher("producto", InventarioDataFetcher.getProductoDeItem())
+                .dataFetcher("bodega", InventarioDataFetcher.getBodegaDeItem())
+                .dataFetcher("fechaActualizacion", environment -> {
+                    com.agranelos.inventario.model.InventarioItem item = environment.getSource();
+                    LocalDateTime localDateTime = item.getFechaActualizacion();
+                    return localDateTime != null ? localDateTime.atOffset(ZoneOffset.UTC) : null;
+                })
             )
             // Query resolvers
             .type("Query", builder -> builder
                 .dataFetcher("productos", ProductoDataFetcher.getProductos())
                 .dataFetcher("producto", ProductoDataFetcher.getProducto())
+                .dataFetcher("productosConnection", ProductoDataFetcher.getProductosConnection())
                 .dataFetcher("bodegas", BodegaDataFetcher.getBodegas())
                 .dataFetcher("bodega", BodegaDataFetcher.getBodega())
+                .dataFetcher("bodegasConnection", BodegaDataFetcher.getBodegasConnection())
                 .dataFetcher("health", new StaticDataFetcher("GraphQL API funcionando correctamente"))
             )
             // Mutation resolvers  
             .type("Mutation", builder -> builder
                 .dataFetcher("crearProducto", ProductoDataFetcher.crearProducto())
+                .dataFetcher("crearProductos", ProductoDataFetcher.crearProductos())
                 .dataFetcher("actualizarProducto", ProductoDataFetcher.actualizarProducto())
                 .dataFetcher("eliminarProducto", ProductoDataFetcher.eliminarProducto())
                 .dataFetcher("crearBodega", BodegaDataFetcher.crearBodega())
@@ -149,15 +193,32 @@ public class GraphQLSchemaBuilder {
      * Ejecuta una consulta GraphQL
      */
     public static ExecutionResult executeQuery(String query, Map<String, Object> variables, String operationName) throws IOException {
+        return execute(query, variables, operationName, null, null);
+    }
+    
+    private static ExecutionResult execute(String query, Map<String, Object> variables, String operationName,
+                                           Map<String, Object> extensions, String clientId) throws IOException {
         GraphQL graphQL = buildSchema();
         
+        // Registro de DataLoaders nuevo por request: agrupa y cachea las cargas por ID
         ExecutionInput.Builder inputBuilder = ExecutionInput.newExecutionInput()
-            .query(query);
+            .query(query)
+            .dataLoaderRegistry(DataLoaders.newRegistry());
             
         if (variables != null && !variables.isEmpty()) {
             inputBuilder.variables(variables);
         }
         
+        // extensions.tracing activa Apollo Tracing en la respuesta (si está habilitado)
+        if (extensions != null && !extensions.isEmpty()) {
+            inputBuilder.extensions(extensions);
+        }
+        
+        // Identifica al cliente para su presupuesto de costo
+        if (clientId != null) {
+            inputBuilder.graphQLContext(Map.of(QueryCostInstrumentation.CLIENT_KEY, clientId));
+        }
+        
         if (operationName != null && !operationName.trim().isEmpty()) {
             inputBuilder.operationName(operationName);
         }
@@ -165,6 +226,80 @@ public class GraphQLSchemaBuilder {
         return graphQL.execute(inputBuilder.build());
     }
     
+    /**
+     * Ejecuta una consulta GraphQL aplicando el protocolo APQ: si extensions trae
+     * persistedQuery.sha256Hash, la consulta puede omitirse y se resuelve por hash
+     */
+    public static ExecutionResult executeQuery(String query, Map<String, Object> variables, String operationName,
+                                               Map<String, Object> extensions) throws IOException {
+        return executeQuery(query, variables, operationName, extensions, null);
+    }
+    
+    /**
+     * Igual que {@link #executeQuery(String, Map, String, Map)}, descontando el
+     * costo de la consulta del presupuesto del cliente indicado
+     */
+    public static ExecutionResult executeQuery(String query, Map<String, Object> variables, String operationName,
+                                               Map<String, Object> extensions, String clientId) throws IOException {
+        String resolvedQuery;
+        try {
+            resolvedQuery = APQ.resolve(query, extensions);
+        } catch (PersistedQueryError e) {
+            return persistedQueryErrorResult(e);
+        }
+        return execute(resolvedQuery, variables, operationName, extensions, clientId);
+    }
+    
+    /**
+     * Registra una consulta persistida y devuelve su hash SHA-256,
+     * con el que los clientes pueden ejecutarla sin enviar el texto
+     */
+    public static String registerPersistedQuery(String query) {
+        return PERSISTED_QUERIES.register(query);
+    }
+    
+    /**
+     * Ejecuta una consulta persistida a partir de su hash SHA-256
+     */
+    public static ExecutionResult executePersistedQuery(String sha256Hash, Map<String, Object> variables, String operationName) throws IOException {
+        String query = PERSISTED_QUERIES.lookup(sha256Hash);
+        if (query == null) {
+            return persistedQueryErrorResult(new PersistedQueryNotFound(sha256Hash));
+        }
+        return executeQuery(query, variables, operationName);
+    }
+    
+    private static ExecutionResult persistedQueryErrorResult(PersistedQueryError error) {
+        // Los clientes APQ reconocen el error por message y extensions.classification
+        Map<String, Object> extensions = new HashMap<>();
+        extensions.put("classification", error.getMessage());
+        return new ExecutionResultImpl(GraphqlErrorBuilder.newError()
+            .message(error.getMessage())
+            .extensions(extensions)
+            .build());
+    }
+    
+    /**
+     * Límites de costo (expuestos para métricas)
+     */
+    public static QueryCostInstrumentation getCost() {
+        return COST;
+    }
+    
+    /**
+     * Trazado por campo (expuesto para métricas)
+     */
+    public static FieldTracingInstrumentation getTracing() {
+        return TRACING;
+    }
+    
+    /**
+     * Caché de documentos preparsados (expuesta para métricas)
+     */
+    public static PreparsedDocumentCache getDocumentCache() {
+        return DOCUMENT_CACHE;
+    }
+    
     /**
      * Carga el esquema GraphQL desde el classpath (internal method for static init)
      */
@@ -0,0 +1,207 @@
+package com.agranelos.inventario.graphql;
+
+import com.agranelos.inventario.db.DatabaseManager;
+import com.agranelos.inventario.model.Bodega;
+import com.agranelos.inventario.model.InventarioItem;
+import com.agranelos.inventario.model.Producto;
+import graphql.schema.DataFetcher;
+import org.dataloader.DataLoader;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+/**
+ * Data Fetchers para el stock por bodega (tabla INVENTARIO).
+ *
+ * Todos los campos se resuelven mediante DataLoaders, así que listar N
+ * productos con su inventario y bodegas ejecuta un número fijo de consultas.
+ */
+public class InventarioDataFetcher {
+    
+    private static final Logger logger = Logger.getLogger(InventarioDataFetcher.class.getName());
+    
+    /**
+     * Producto.inventario - Stock del producto en cada bodega
+     */
+    public static DataFetcher<CompletableFuture<List<InventarioItem>>> getInventarioDeProducto() {
+        return dataFetchingEnvironment -> {
+            Producto producto = dataFetchingEnvironment.getSource();
+            DataLoader<Integer, List<InventarioItem>> loader =
+                dataFetchingEnvironment.getDataLoader(DataLoaders.INVENTARIO_POR_PRODUCTO_LOADER);
+            return loader.load(producto.getId()).thenApply(InventarioDataFetcher::orEmpty);
+        };
+    }
+    
+    /**
+     * Bodega.inventario - Productos almacenados en la bodega
+     */
+    public static DataFetcher<CompletableFuture<List<InventarioItem>>> getInventarioDeBodega() {
+        return dataFetchingEnvironment -> {
+            Bodega bodega = dataFetchingEnvironment.getSource();
+            DataLoader<Integer, List<InventarioItem>> loader =
+                dataFetchingEnvironment.getDataLoader(DataLoaders.INVENTARIO_POR_BODEGA_LOADER);
+            return loader.load(bodega.getId()).thenApply(InventarioDataFetcher::orEmpty);
+        };
+    }
+    
+    /**
+     * Bodega.ocupacion - Suma de cantidades frente a la capacidad de la bodega
+     */
+    public static DataFetcher<CompletableFuture<Map<String, Object>>> getOcupacion() {
+        return dataFetchingEnvironment -> {
+            Bodega bodega = dataFetchingEnvironment.getSource();
+            DataLoader<Integer, Long> loader =
+                dataFetchingEnvironment.getDataLoader(DataLoaders.OCUPACION_POR_BODEGA_LOADER);
+            return loader.load(bodega.getId()).thenApply(total -> ocupacion(bodega, total));
+        };
+    }
+    
+    /**
+     * Ocupación de una bodega a partir de la suma de cantidades (null si no
+     * tiene inventario). Los campos Int! se convierten explícitamente: una
+     * suma que no cabe en un int es un error, no un valor truncado.
+     */
+    static Map<String, Object> ocupacion(Bodega bodega, Long total) {
+        int unidades = Math.toIntExact(total != null ? total : 0L);
+        int capacidad = bodega.getCapacidad() != null ? bodega.getCapacidad() : 0;
+        
+        Map<String, Object> ocupacion = new HashMap<>();
+        ocupacion.put("totalUnidades", unidades);
+        ocupacion.put("capacidad", capacidad);
+        ocupacion.put("disponible", capacidad - unidades);
+        ocupacion.put("porcentaje", capacidad > 0 ? (unidades * 100.0) / capacidad : 0.0);
+        return ocupacion;
+    }
+    
+    /**
+     * InventarioItem.producto
+     */
+    public static DataFetcher<CompletableFuture<Producto>> getProductoDeItem() {
+        return dataFetchingEnvironment -> {
+            InventarioItem item = dataFetchingEnvironment.getSource();
+            DataLoader<Integer, Producto> loader = dataFetchingEnvironment.getDataLoader(DataLoaders.PRODUCTO_LOADER);
+            return loader.load(item.getProductoId());
+        };
+    }
+    
+    /**
+     * InventarioItem.bodega
+     */
+    public static DataFetcher<CompletableFuture<Bodega>> getBodegaDeItem() {
+        return dataFetchingEnvironment -> {
+            InventarioItem item = dataFetchingEnvironment.getSource();
+            DataLoader<Integer, Bodega> loader = dataFetchingEnvironment.getDataLoader(DataLoaders.BODEGA_LOADER);
+            return loader.load(item.getBodegaId());
+        };
+    }
+    
+    /**
+     * Carga el inventario de un lote de productos, agrupado por IDProducto (batch loader)
+     */
+    static Map<Integer, List<InventarioItem>> loadInventarioPorProductos(Set<Integer> productoIds) {
+        return loadInventario("IDProducto", productoIds, true);
+    }
+    
+    /**
+     * Carga el inventario de un lote de bodegas, agrupado por IDBodega (batch loader)
+     */
+    static Map<Integer, List<InventarioItem>> loadInventarioPorBodegas(Set<Integer> bodegaIds) {
+        return loadInventario("IDBodega", bodegaIds, false);
+    }
+    
+    /**
+     * Suma las cantidades almacenadas de un lote de bodegas (batch loader)
+     */
+    static Map<Integer, Long> loadOcupacionPorBodegas(Set<Integer> bodegaIds) {
+        if (bodegaIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        
+        String sql = "SELECT IDBodega, SUM(Cantidad) AS Total FROM INVENTARIO WHERE IDBodega = ANY(?) GROUP BY IDBodega";
+        try (Connection connection = DatabaseManager.getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setArray(1, connection.createArrayOf("integer", bodegaIds.toArray()));
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return mapTotales(resultSet);
+            }
+        } catch (SQLException e) {
+            logger.severe("Error obteniendo ocupación de bodegas: " + e.getMessage());
+            throw new RuntimeException("Error obteniendo ocupación", e);
+        }
+    }
+    
+    /**
+     * Filas (IDBodega, Total) a un mapa de totales por bodega
+     */
+    static Map<Integer, Long> mapTotales(ResultSet resultSet) throws SQLException {
+        Map<Integer, Long> totales = new HashMap<>();
+        while (resultSet.next()) {
+            totales.put(resultSet.getInt("IDBodega"), resultSet.getLong("Total"));
+        }
+        return totales;
+    }
+    
+    // Métodos auxiliares de base de datos
+    private static Map<Integer, List<InventarioItem>> loadInventario(String columna, Set<Integer> ids, boolean porProducto) {
+        if (ids.isEmpty()) {
+            return new HashMap<>();
+        }
+        
+        String sql = "SELECT ID, IDProducto, IDBodega, Cantidad, FechaActualizacion FROM INVENTARIO WHERE "
+            + columna + " = ANY(?) ORDER BY " + columna + ", ID";
+        try (Connection connection = DatabaseManager.getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setArray(1, connection.createArrayOf("integer", ids.toArray()));
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return mapInventario(resultSet, porProducto);
+            }
+        } catch (SQLException e) {
+            logger.severe("Error obteniendo inventario: " + e.getMessage());
+            throw new RuntimeException("Error obteniendo inventario", e);
+        }
+    }
+    
+    /**
+     * Filas de INVENTARIO agrupadas por producto o por bodega, en el orden del ResultSet
+     */
+    static Map<Integer, List<InventarioItem>> mapInventario(ResultSet resultSet, boolean porProducto) throws SQLException {
+        Map<Integer, List<InventarioItem>> inventario = new HashMap<>();
+        while (resultSet.next()) {
+            InventarioItem item = mapInventarioItem(resultSet);
+            Integer key = porProducto ? item.getProductoId() : item.getBodegaId();
+            inventario.computeIfAbsent(key, k -> new ArrayList<>()).add(item);
+        }
+        return inventario;
+    }
+    
+    private static InventarioItem mapInventarioItem(ResultSet resultSet) throws SQLException {
+        InventarioItem item = new InventarioItem();
+        item.setId(resultSet.getInt("ID"));
+        item.setProductoId(resultSet.getInt("IDProducto"));
+        item.setBodegaId(resultSet.getInt("IDBodega"));
+        item.setCantidad(resultSet.getInt("Cantidad"));
+        
+        Timestamp fechaActualizacion = resultSet.getTimestamp("FechaActualizacion");
+        if (fechaActualizacion != null) {
+            item.setFechaActualizacion(fechaActualizacion.toLocalDateTime());
+        }
+        return item;
+    }
+    
+    private static List<InventarioItem> orEmpty(List<InventarioItem> items) {
+        return items != null ? items : Collections.emptyList();
+    }
+}
@@ -0,0 +1,172 @@
+package com.agranelos.inventario.graphql;
+
+import com.agranelos.inventario.db.KeysetCursor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Utilidades para las conexiones estilo Relay (productosConnection, bodegasConnection)
+ * respaldadas por SQL keyset: cada página filtra por (columna, ID) respecto del
+ * cursor, de modo que la página 10.000 cuesta lo mismo que la primera.
+ */
+final class KeysetPagination {
+
+    static final int DEFAULT_FIRST = 20;
+    static final int MAX_FIRST = 100;
+
+    private KeysetPagination() {
+    }
+
+    /**
+     * Criterio de orden soportado por una conexión
+     */
+    static final class Orden<T> {
+        private final String nombre;
+        private final String columna;
+        private final boolean ascendente;
+        private final Function<String, Object> parser;
+        private final Function<T, Object> extractor;
+
+        /**
+         * @param nombre    valor del enum GraphQL (p. ej. NOMBRE_ASC)
+         * @param columna   columna SQL de orden, o null para ordenar solo por ID
+         * @param parser    convierte el valor del cursor al tipo de la columna
+         * @param extractor obtiene el valor de orden desde el nodo
+         */
+        Orden(String nombre, String columna, boolean ascendente,
+              Function<String, Object> parser, Function<T, Object> extractor) {
+            this.nombre = nombre;
+            this.columna = columna;
+            this.ascendente = ascendente;
+            this.parser = parser;
+            this.extractor = extractor;
+        }
+
+        String getNombre() {
+            return nombre;
+        }
+    }
+
+    /**
+     * Construye el índice de órdenes por nombre de enum
+     */
+    @SafeVarargs
+    static <T> Map<String, Orden<T>> ordenes(Orden<T>... ordenes) {
+        Map<String, Orden<T>> map = new HashMap<>();
+        for (Orden<T> orden : ordenes) {
+            map.put(orden.nombre, orden);
+        }
+        return map;
+    }
+
+    /**
+     * Valida el argumento first
+     */
+    static int resolveFirst(Integer first) {
+        int value = first != null ? first : DEFAULT_FIRST;
+        if (value < 1 || value > MAX_FIRST) {
+            throw new IllegalArgumentException("first debe estar entre 1 y " + MAX_FIRST);
+        }
+        return value;
+    }
+
+    /**
+     * Decodifica el argumento after y verifica que corresponda al orden solicitado
+     */
+    static KeysetCursor resolveAfter(String after, Orden<?> orden) {
+        if (after == null || after.isEmpty()) {
+            return null;
+        }
+        KeysetCursor cursor = KeysetCursor.decode(after);
+        if (!orden.nombre.equals(cursor.getOrden())) {
+            throw new IllegalArgumentException("El cursor no corresponde al orden " + orden.nombre);
+        }
+        return cursor;
+    }
+
+    /**
+     * Agrega la condición keyset a partir del cursor
+     */
+    static void appendKeysetCondition(List<String> conditions, List<Object> params,
+                                      Orden<?> orden, KeysetCursor cursor) {
+        if (cursor == null) {
+            return;
+        }
+        String operador = orden.ascendente ? ">" : "<";
+        if (orden.columna == null) {
+            conditions.add("ID " + operador + " ?");
+        } else {
+            conditions.add("(" + orden.columna + ", ID) " + operador + " (?, ?)");
+            params.add(orden.parser.apply(cursor.getValor()));
+        }
+        params.add(cursor.getId());
+    }
+
+    /**
+     * Arma la cláusula WHERE ... ORDER BY ... LIMIT ? (LIMIT first + 1 para detectar hasNextPage)
+     */
+    static String tail(List<String> conditions, Orden<?> orden) {
+        StringBuilder sql = new StringBuilder();
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        String direccion = orden.ascendente ? "ASC" : "DESC";
+        sql.append(" ORDER BY ");
+        if (orden.columna != null) {
+            sql.append(orden.columna).append(' ').append(direccion).append(", ");
+        }
+        sql.append("ID ").append(direccion).append(" LIMIT ?");
+        return sql.toString();
+    }
+
+    /**
+     * Escapa comodines de LIKE para búsquedas por substring
+     */
+    static String likePattern(String texto) {
+        String escaped = texto
+            .replace("\\", "\\\\")
+            .replace("%", "\\%")
+            .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+
+    /**
+     * Convierte las filas (first + 1 como máximo) en el objeto Connection
+     */
+    static <T> Map<String, Object> toConnection(List<T> rows, int first, boolean hasPreviousPage,
+                                               Orden<T> orden, Function<T, Integer> idExtractor) {
+        boolean hasNextPage = rows.size() > first;
+        List<T> nodes = hasNextPage ? rows.subList(0, first) : rows;
+
+        List<Map<String, Object>> edges = new ArrayList<>(nodes.size());
+        for (T node : nodes) {
+            Object valor = orden.extractor != null ? orden.extractor.apply(node) : null;
+            String cursor = new KeysetCursor(
+                orden.nombre,
+                valor != null ? valor.toString() : "",
+                idExtractor.apply(node)
+            ).encode();
+
+            Map<String, Object> edge = new HashMap<>();
+            edge.put("cursor", cursor);
+            edge.put("node", node);
+            edges.add(edge);
+        }
+
+        Map<String, Object> pageInfo = new HashMap<>();
+        pageInfo.put("hasNextPage", hasNextPage);
+        pageInfo.put("hasPreviousPage", hasPreviousPage);
+        pageInfo.put("startCursor", edges.isEmpty() ? null : edges.get(0).get("cursor"));
+        pageInfo.put("endCursor", edges.isEmpty() ? null : edges.get(edges.size() - 1).get("cursor"));
+
+        Map<String, Object> connection = new LinkedHashMap<>();
+        connection.put("edges", edges);
+        connection.put("pageInfo", pageInfo);
+        return connection;
+    }
+}
@@ -0,0 +1,62 @@
+package com.agranelos.inventario.graphql;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro de consultas persistidas identificadas por su hash SHA-256.
+ *
+ * Las consultas registradas aquí no expiran: son el conjunto conocido de
+ * consultas de los dashboards, que los clientes pueden enviar solo por hash.
+ */
+public class PersistedQueryRegistry {
+
+    private final Map<String, String> queries = new ConcurrentHashMap<>();
+
+    /**
+     * Registra una consulta y devuelve su hash SHA-256 en hexadecimal
+     */
+    public String register(String query) {
+        if (query == null || query.trim().isEmpty()) {
+            throw new IllegalArgumentException("La consulta persistida no puede estar vacía");
+        }
+        String hash = sha256Hex(query);
+        queries.put(hash, query);
+        return hash;
+    }
+
+    /**
+     * Obtiene la consulta registrada para un hash, o null si no existe
+     */
+    public String lookup(String sha256Hash) {
+        if (sha256Hash == null) {
+            return null;
+        }
+        return queries.get(sha256Hash.toLowerCase());
+    }
+
+    public int size() {
+        return queries.size();
+    }
+
+    /**
+     * Calcula el SHA-256 (hex, minúsculas) del texto de una consulta
+     */
+    public static String sha256Hex(String query) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(query.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
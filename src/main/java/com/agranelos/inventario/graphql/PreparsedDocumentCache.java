@@ -0,0 +1,71 @@
+package com.agranelos.inventario.graphql;
+
+import com.agranelos.inventario.cache.LruCache;
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Caché de documentos GraphQL ya parseados y validados.
+ *
+ * Las consultas de los dashboards se repiten miles de veces con el mismo
+ * texto; con esta caché el parseo y la validación se hacen una sola vez por
+ * consulta distinta. Los documentos con errores no se guardan, para que
+ * consultas inválidas no desplacen a las válidas.
+ */
+public class PreparsedDocumentCache implements PreparsedDocumentProvider {
+
+    private final LruCache<String, PreparsedDocumentEntry> cache;
+    private final boolean keyByOperationName;
+
+    /**
+     * @param maxEntries         cantidad máxima de documentos en caché
+     * @param keyByOperationName si es true la clave incluye el operationName
+     */
+    public PreparsedDocumentCache(int maxEntries, boolean keyByOperationName) {
+        this.cache = new LruCache<>(maxEntries);
+        this.keyByOperationName = keyByOperationName;
+    }
+
+    @Override
+    public CompletableFuture<PreparsedDocumentEntry> getDocumentAsync(
+            ExecutionInput executionInput,
+            Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction) {
+        String key = keyOf(executionInput);
+        PreparsedDocumentEntry entry = cache.get(key);
+        if (entry != null) {
+            return CompletableFuture.completedFuture(entry);
+        }
+
+        entry = parseAndValidateFunction.apply(executionInput);
+        if (!entry.hasErrors()) {
+            cache.put(key, entry);
+        }
+        return CompletableFuture.completedFuture(entry);
+    }
+
+    /**
+     * Variante síncrona que graphql-java ya no usa; delega en {@link #getDocumentAsync}
+     */
+    @Override
+    @Deprecated
+    public PreparsedDocumentEntry getDocument(ExecutionInput executionInput,
+                                              Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction) {
+        return getDocumentAsync(executionInput, parseAndValidateFunction).join();
+    }
+
+    private String keyOf(ExecutionInput executionInput) {
+        String query = executionInput.getQuery();
+        if (!keyByOperationName || executionInput.getOperationName() == null) {
+            return query;
+        }
+        return executionInput.getOperationName() + '\u0000' + query;
+    }
+
+    public LruCache<String, PreparsedDocumentEntry> getCache() {
+        return cache;
+    }
+}
@@ -1,8 +1,20 @@
 package com.agranelos.inventario.graphql;
 
+import com.agranelos.inventario.cache.CacheInvalidation;
+import com.agranelos.inventario.cache.EntityCache;
 import com.agranelos.inventario.db.DatabaseManager;
+import com.agranelos.inventario.db.Workload;
+import com.agranelos.inventario.db.KeysetCursor;
+import com.agranelos.inventario.db.ProductoBatchOperations;
+import com.agranelos.inventario.events.EventGridPublisher;
+import com.agranelos.inventario.events.EventOutbox;
+import com.agranelos.inventario.events.EventType;
+import com.agranelos.inventario.events.ProductoEventData;
 import com.agranelos.inventario.model.Producto;
+import com.azure.messaging.eventgrid.EventGridEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import graphql.schema.DataFetcher;
+import org.dataloader.DataLoader;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -15,6 +27,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 
 /**
@@ -24,6 +38,18 @@ public class ProductoDataFetcher {
     
     private static final Logger logger = Logger.getLogger(ProductoDataFetcher.class.getName());
     
+    /**
+     * Órdenes soportados por productosConnection (enum ProductoOrderBy)
+     */
+    private static final Map<String, KeysetPagination.Orden<Producto>> ORDENES = KeysetPagination.ordenes(
+        new KeysetPagination.Orden<>("ID_ASC", null, true, null, null),
+        new KeysetPagination.Orden<>("ID_DESC", null, false, null, null),
+        new KeysetPagination.Orden<>("NOMBRE_ASC", "Nombre", true, valor -> valor, Producto::getNombre),
+        new KeysetPagination.Orden<>("NOMBRE_DESC", "Nombre", false, valor -> valor, Producto::getNombre),
+        new KeysetPagination.Orden<>("PRECIO_ASC", "Precio", true, BigDecimal::new, Producto::getPrecio),
+        new KeysetPagination.Orden<>("PRECIO_DESC", "Precio", false, BigDecimal::new, Producto::getPrecio)
+    );
+    
     /**
      * Query: productos - Obtener todos los productos
      */
@@ -31,29 +57,14 @@ public class ProductoDataFetcher {
         return dataFetchingEnvironment -> {
             List<Producto> productos = new ArrayList<>();
             
-            try (Connection connection = DatabaseManager.getConnection()) {
+            try (Connection connection = DatabaseManager.getReadConnection()) {
                 String sql = "SELECT ID, Nombre, Descripcion, Precio, CantidadEnStock, FechaCreacion, FechaActualizacion FROM PRODUCTO ORDER BY ID";
                 
                 try (PreparedStatement statement = connection.prepareStatement(sql);
                      ResultSet resultSet = statement.executeQuery()) {
                     
                     while (resultSet.next()) {
-                        Producto producto = new Producto();
-                        producto.setId(resultSet.getInt("ID"));
-                        producto.setNombre(resultSet.getString("Nombre"));
-                        producto.setDescripcion(resultSet.getString("Descripcion"));
-                        producto.setPrecio(resultSet.getBigDecimal("Precio"));
-                        producto.setCantidadEnStock(resultSet.getInt("CantidadEnStock"));
-                        
-                        Timestamp fechaCreacion = resultSet.getTimestamp("FechaCreacion");
-                        if (fechaCreacion != null) {
-                            producto.setFechaCreacion(fechaCreacion.toLocalDateTime());
-                        }
-                        
-                        Timestamp fechaActualizacion = resultSet.getTimestamp("FechaActualizacion");
-                        if (fechaActualizacion != null) {
-                            producto.setFechaActualizacion(fechaActualizacion.toLocalDateTime());
-                        }
+                        Producto producto = mapProducto(resultSet);
                         productos.add(producto);
                     }
                 }
@@ -67,47 +78,76 @@ public class ProductoDataFetcher {
     }
     
     /**
-     * Query: producto(id) - Obtener producto por ID
+     * Query: producto(id) - Obtener producto por ID (agrupado vía DataLoader)
      */
-    public static DataFetcher<Producto> getProducto() {
+    public static DataFetcher<CompletableFuture<Producto>> getProducto() {
         return dataFetchingEnvironment -> {
             String idString = dataFetchingEnvironment.getArgument("id");
             int id = Integer.parseInt(idString);
             
-            try (Connection connection = DatabaseManager.getConnection()) {
-                String sql = "SELECT ID, Nombre, Descripcion, Precio, CantidadEnStock, FechaCreacion, FechaActualizacion FROM PRODUCTO WHERE ID = ?";
-                
-                try (PreparedStatement statement = connection.prepareStatement(sql)) {
-                    statement.setInt(1, id);
-                    
-                    try (ResultSet resultSet = statement.executeQuery()) {
-                        if (resultSet.next()) {
-                            Producto producto = new Producto();
-                            producto.setId(resultSet.getInt("ID"));
-                            producto.setNombre(resultSet.getString("Nombre"));
-                            producto.setDescripcion(resultSet.getString("Descripcion"));
-                            producto.setPrecio(resultSet.getBigDecimal("Precio"));
-                            producto.setCantidadEnStock(resultSet.getInt("CantidadEnStock"));
-                            
-                            Timestamp fechaCreacion = resultSet.getTimestamp("FechaCreacion");
-                            if (fechaCreacion != null) {
-                                producto.setFechaCreacion(fechaCreacion.toLocalDateTime());
-                            }
-                            
-                            Timestamp fechaActualizacion = resultSet.getTimestamp("FechaActualizacion");
-                            if (fechaActualizacion != null) {
-                                producto.setFechaActualizacion(fechaActualizacion.toLocalDateTime());
-                            }
-                            return producto;
-                        }
+            DataLoader<Integer, Producto> loader = dataFetchingEnvironment.getDataLoader(DataLoaders.PRODUCTO_LOADER);
+            return loader.load(id);
+        };
+    }
+    
+    /**
+     * Query: productosConnection(first, after, filter, orderBy) - Paginación Relay con keyset
+     */
+    public static DataFetcher<Map<String, Object>> getProductosConnection() {
+        return dataFetchingEnvironment -> {
+            String ordenNombre = dataFetchingEnvironment.getArgumentOrDefault("orderBy", "ID_ASC");
+            KeysetPagination.Orden<Producto> orden = ORDENES.get(ordenNombre);
+            if (orden == null) {
+                throw new IllegalArgumentException("Orden no soportado: " + ordenNombre);
+            }
+            int first = KeysetPagination.resolveFirst(dataFetchingEnvironment.getArgument("first"));
+            KeysetCursor after = KeysetPagination.resolveAfter(dataFetchingEnvironment.getArgument("after"), orden);
+            Map<String, Object> filter = dataFetchingEnvironment.getArgument("filter");
+
+            List<String> conditions = new ArrayList<>();
+            List<Object> params = new ArrayList<>();
+            if (filter != null) {
+                Object nombre = filter.get("nombreContiene");
+                if (nombre != null && !nombre.toString().trim().isEmpty()) {
+                    conditions.add("Nombre ILIKE ?");
+                    params.add(KeysetPagination.likePattern(nombre.toString().trim()));
+                }
+                if (filter.get("precioMin") != null) {
+                    conditions.add("Precio >= ?");
+                    params.add(new BigDecimal(filter.get("precioMin").toString()));
+                }
+                if (filter.get("precioMax") != null) {
+                    conditions.add("Precio <= ?");
+                    params.add(new BigDecimal(filter.get("precioMax").toString()));
+                }
+                if (filter.get("stockMin") != null) {
+                    conditions.add("CantidadEnStock >= ?");
+                    params.add(filter.get("stockMin"));
+                }
+            }
+            KeysetPagination.appendKeysetCondition(conditions, params, orden, after);
+            params.add(first + 1);
+
+            String sql = "SELECT ID, Nombre, Descripcion, Precio, CantidadEnStock, FechaCreacion, FechaActualizacion FROM PRODUCTO"
+                + KeysetPagination.tail(conditions, orden);
+            List<Producto> productos = new ArrayList<>();
+
+            try (Connection connection = DatabaseManager.getReadConnection();
+                 PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < params.size(); i++) {
+                    statement.setObject(i + 1, params.get(i));
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        productos.add(mapProducto(resultSet));
                     }
                 }
             } catch (SQLException e) {
-                logger.severe("Error obteniendo producto por ID: " + e.getMessage());
-                throw new RuntimeException("Error obteniendo producto", e);
+                logger.severe("Error obteniendo página de productos: " + e.getMessage());
+                throw new RuntimeException("Error obteniendo productos", e);
             }
-            
-            return null;
+
+            return KeysetPagination.toConnection(productos, first, after != null, orden, Producto::getId);
         };
     }
     
@@ -139,6 +179,7 @@ public class ProductoDataFetcher {
                 // Insertar en base de datos
                 Integer productoId = insertProducto(producto);
                 producto.setId(productoId);
+                EntityCache.invalidateProducto(productoId);
                 
                 response.put("success", true);
                 response.put("message", "Producto creado exitosamente");
@@ -157,6 +198,104 @@ public class ProductoDataFetcher {
         };
     }
     
+    /**
+     * Mutation: crearProductos - Crear productos en lote (una transacción, JDBC batch)
+     */
+    public static DataFetcher<Map<String, Object>> crearProductos() {
+        return dataFetchingEnvironment -> {
+            List<Map<String, Object>> inputs = dataFetchingEnvironment.getArgument("inputs");
+            Map<String, Object> response = new HashMap<>();
+            
+            if (inputs.size() > ProductoBatchOperations.MAX_ITEMS) {
+                response.put("success", false);
+                response.put("message", "");
+                response.put("creados", 0);
+                response.put("fallidos", inputs.size());
+                response.put("resultados", new ArrayList<>());
+                response.put("error", "El lote no puede superar " + ProductoBatchOperations.MAX_ITEMS + " ítems");
+                return response;
+            }
+            
+            try {
+                List<Map<String, Object>> resultados = new ArrayList<>(inputs.size());
+                List<Producto> validos = new ArrayList<>();
+                List<Map<String, Object>> resultadosValidos = new ArrayList<>();
+                
+                for (int i = 0; i < inputs.size(); i++) {
+                    Map<String, Object> input = inputs.get(i);
+                    Map<String, Object> resultado = new HashMap<>();
+                    resultado.put("indice", i);
+                    resultados.add(resultado);
+                    
+                    Producto producto = new Producto();
+                    producto.setNombre((String) input.get("nombre"));
+                    producto.setDescripcion((String) input.get("descripcion"));
+                    producto.setPrecio(new BigDecimal(input.get("precio").toString()));
+                    producto.setCantidadEnStock((Integer) input.get("cantidad"));
+                    
+                    String error = ProductoBatchOperations.validar(producto);
+                    if (error != null) {
+                        resultado.put("success", false);
+                        resultado.put("error", error);
+                    } else {
+                        validos.add(producto);
+                        resultadosValidos.add(resultado);
+                    }
+                }
+                
+                List<EventGridEvent> events = DatabaseManager.inTransaction(Workload.BATCH, connection -> {
+                    List<Integer> ids = ProductoBatchOperations.insertAll(connection, validos);
+                    List<EventGridEvent> lote = new ArrayList<>();
+                    for (int i = 0; i < validos.size(); i++) {
+                        Producto producto = validos.get(i);
+                        producto.setId(ids.get(i));
+                        resultadosValidos.get(i).put("success", true);
+                        resultadosValidos.get(i).put("producto", producto);
+                        if (EventGridPublisher.isConfigured()) {
+                            lote.add(buildEvent(producto));
+                        }
+                    }
+                    if (EventOutbox.isEnabled()) {
+                        EventOutbox.enqueueAll(connection, lote);
+                    }
+                    return lote;
+                });
+                if (!events.isEmpty() && !EventOutbox.isEnabled()) {
+                    EventGridPublisher.publishEvents(events, logger);
+                }
+                
+                response.put("success", validos.size() == inputs.size());
+                response.put("message", validos.size() + " productos creados");
+                response.put("creados", validos.size());
+                response.put("fallidos", inputs.size() - validos.size());
+                response.put("resultados", resultados);
+                response.put("error", null);
+                
+            } catch (Exception e) {
+                logger.severe("Error creando lote de productos: " + e.getMessage());
+                response.put("success", false);
+                response.put("message", "");
+                response.put("creados", 0);
+                response.put("fallidos", inputs.size());
+                response.put("resultados", new ArrayList<>());
+                response.put("error", "Error creando lote de productos: " + e.getMessage());
+            }
+            
+            return response;
+        };
+    }
+    
+    private static EventGridEvent buildEvent(Producto producto) throws SQLException {
+        try {
+            return EventGridPublisher.buildProductoEvent(
+                EventType.PRODUCTO_CREADO,
+                new ProductoEventData(producto, "CREATE", "system")
+            );
+        } catch (JsonProcessingException e) {
+            throw new SQLException("No se pudo serializar el evento del producto " + producto.getId(), e);
+        }
+    }
+    
     /**
      * Mutation: actualizarProducto - Actualizar producto existente
      */
@@ -186,6 +325,7 @@ public class ProductoDataFetcher {
                 boolean updated = updateProducto(producto);
                 
                 if (updated) {
+                    CacheInvalidation.broadcastProducto(id);
                     response.put("success", true);
                     response.put("message", "Producto actualizado exitosamente");
                     response.put("producto", producto);
@@ -222,6 +362,7 @@ public class ProductoDataFetcher {
                 boolean deleted = deleteProducto(id);
                 
                 if (deleted) {
+                    CacheInvalidation.broadcastProducto(id);
                     response.put("success", true);
                     response.put("message", "Producto eliminado exitosamente");
                     response.put("error", null);
@@ -242,9 +383,71 @@ public class ProductoDataFetcher {
         };
     }
     
+    /**
+     * Carga en una sola consulta los productos de un lote de IDs (batch loader);
+     * los IDs presentes en EntityCache no llegan a la base de datos
+     */
+    static Map<Integer, Producto> loadProductosByIds(Set<Integer> ids) {
+        Map<Integer, Producto> productos = new HashMap<>();
+        List<Integer> pendientes = new ArrayList<>();
+        for (Integer id : ids) {
+            Producto cached = EntityCache.getProducto(id);
+            if (cached != null) {
+                productos.put(id, cached);
+            } else {
+                pendientes.add(id);
+            }
+        }
+        if (pendientes.isEmpty()) {
+            return productos;
+        }
+        
+        String sql = "SELECT ID, Nombre, Descripcion, Precio, CantidadEnStock, FechaCreacion, FechaActualizacion FROM PRODUCTO WHERE ID = ANY(?)";
+        try (Connection connection = DatabaseManager.getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setArray(1, connection.createArrayOf("integer", pendientes.toArray()));
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    Producto producto = mapProducto(resultSet);
+                    productos.put(producto.getId(), producto);
+                    // Una fila de la réplica puede ser anterior a la última invalidación
+                    if (!connection.isReadOnly()) {
+                        EntityCache.putProducto(producto);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            logger.severe("Error obteniendo lote de productos por ID: " + e.getMessage());
+            throw new RuntimeException("Error obteniendo producto", e);
+        }
+        
+        return productos;
+    }
+    
     // Métodos auxiliares de base de datos
+    static Producto mapProducto(ResultSet resultSet) throws SQLException {
+        Producto producto = new Producto();
+        producto.setId(resultSet.getInt("ID"));
+        producto.setNombre(resultSet.getString("Nombre"));
+        producto.setDescripcion(resultSet.getString("Descripcion"));
+        producto.setPrecio(resultSet.getBigDecimal("Precio"));
+        producto.setCantidadEnStock(resultSet.getInt("CantidadEnStock"));
+        
+        Timestamp fechaCreacion = resultSet.getTimestamp("FechaCreacion");
+        if (fechaCreacion != null) {
+            producto.setFechaCreacion(fechaCreacion.toLocalDateTime());
+        }
+        
+        Timestamp fechaActualizacion = resultSet.getTimestamp("FechaActualizacion");
+        if (fechaActualizacion != null) {
+            producto.setFechaActualizacion(fechaActualizacion.toLocalDateTime());
+        }
+        return producto;
+    }
+    
     private static Integer insertProducto(Producto producto) throws SQLException {
-        try (Connection connection = DatabaseManager.getConnection()) {
+        try (Connection connection = DatabaseManager.getWriteConnection()) {
             String sql = "INSERT INTO PRODUCTO (Nombre, Descripcion, Precio, CantidadEnStock, FechaCreacion, FechaActualizacion) VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)";
             
             try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
@@ -270,7 +473,7 @@ public class ProductoDataFetcher {
     }
     
     private static boolean updateProducto(Producto producto) throws SQLException {
-        try (Connection connection = DatabaseManager.getConnection()) {
+        try (Connection connection = DatabaseManager.getWriteConnection()) {
             StringBuilder sql = new StringBuilder("UPDATE PRODUCTO SET FechaActualizacion = CURRENT_TIMESTAMP");
             List<Object> params = new ArrayList<>();
             
@@ -305,7 +508,7 @@ public class ProductoDataFetcher {
     }
     
     private static boolean deleteProducto(int id) throws SQLException {
-        try (Connection connection = DatabaseManager.getConnection()) {
+        try (Connection connection = DatabaseManager.getWriteConnection()) {
             String sql = "DELETE FROM PRODUCTO WHERE ID = ?";
             
             try (PreparedStatement statement = connection.prepareStatement(sql)) {
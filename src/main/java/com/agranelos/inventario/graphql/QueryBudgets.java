@@ -0,0 +1,80 @@
+package com.agranelos.inventario.graphql;
+
+import com.agranelos.inventario.cache.LruCache;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Presupuesto de costo GraphQL por cliente (token bucket).
+ *
+ * Cada cliente parte con {@code capacity} unidades que se recargan a
+ * {@code refillPerSecond}; cada operación descuenta su costo estático. Los
+ * buckets viven en una LRU acotada: un cliente olvidado vuelve con el
+ * presupuesto lleno, que es lo mismo que obtendría tras esperar.
+ */
+public class QueryBudgets {
+
+    private final long capacity;
+    private final double refillPerMilli;
+    private final LongSupplier clock;
+    private final LruCache<String, Bucket> buckets;
+
+    private static final class Bucket {
+        private double disponibles;
+        private long ultimaRecarga;
+
+        private Bucket(double disponibles, long ahora) {
+            this.disponibles = disponibles;
+            this.ultimaRecarga = ahora;
+        }
+    }
+
+    public QueryBudgets(long capacity, double refillPerSecond, int maxClients) {
+        this(capacity, refillPerSecond, maxClients, System::currentTimeMillis);
+    }
+
+    QueryBudgets(long capacity, double refillPerSecond, int maxClients, LongSupplier clock) {
+        if (capacity < 1 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("capacity y refillPerSecond deben ser positivos");
+        }
+        this.capacity = capacity;
+        this.refillPerMilli = refillPerSecond / 1000.0;
+        this.clock = clock;
+        this.buckets = new LruCache<>(maxClients);
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Descuenta el costo del presupuesto del cliente si alcanza
+     *
+     * @return 0 si se descontó; si no, milisegundos hasta que el presupuesto
+     *         alcance (o -1 si el costo supera la capacidad y nunca alcanzará)
+     */
+    public long tryConsume(String cliente, long costo) {
+        if (costo > capacity) {
+            return -1;
+        }
+        long ahora = clock.getAsLong();
+        Bucket bucket;
+        synchronized (buckets) {
+            bucket = buckets.get(cliente);
+            if (bucket == null) {
+                bucket = new Bucket(capacity, ahora);
+                buckets.put(cliente, bucket);
+            }
+        }
+        synchronized (bucket) {
+            bucket.disponibles = Math.min(capacity,
+                bucket.disponibles + (ahora - bucket.ultimaRecarga) * refillPerMilli);
+            bucket.ultimaRecarga = ahora;
+            if (bucket.disponibles >= costo) {
+                bucket.disponibles -= costo;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((costo - bucket.disponibles) / refillPerMilli));
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.agranelos.inventario.graphql;
+
+import graphql.analysis.QueryTraverser;
+import graphql.analysis.QueryVisitorFieldEnvironment;
+import graphql.analysis.QueryVisitorStub;
+import graphql.execution.CoercedVariables;
+import graphql.language.Document;
+import graphql.schema.GraphQLFieldsContainer;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLType;
+import graphql.schema.GraphQLTypeUtil;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Costo estático de una operación GraphQL, calculado sobre el documento ya
+ * validado y antes de ejecutar ningún resolver.
+ *
+ * <pre>
+ * costo(campo) = peso(campo) + multiplicador(campo) * (objeto(campo) + Σ costo(subcampos))
+ * </pre>
+ *
+ * <ul>
+ * <li>peso: el configurado para {@code Tipo.campo}; si no hay,
+ * {@value #MUTATION_WEIGHT} para mutations y 0 para el resto. Un argumento
+ * de tipo lista (p. ej. {@code crearProductos(inputs)}) multiplica el peso
+ * por su tamaño.</li>
+ * <li>objeto: 1 si el campo devuelve objetos (cada uno es al menos una fila
+ * leída), 0 si es escalar.</li>
+ * <li>multiplicador: el argumento {@code first} o {@code limit} si el campo lo
+ * tiene; si no, para campos de tipo lista, el tamaño esperado configurado
+ * para {@code Tipo.campo} o el tamaño por defecto; 1 en otro caso.</li>
+ * </ul>
+ *
+ * Los campos de introspección ({@code __schema}, {@code __type}) no suman
+ * costo ni profundidad.
+ */
+public class QueryCostAnalyzer {
+
+    static final int MUTATION_WEIGHT = 10;
+
+    private final Map<String, Integer> weights;
+    private final Map<String, Integer> listSizes;
+    private final int defaultListSize;
+
+    /**
+     * @param weights   peso por {@code Tipo.campo}
+     * @param listSizes tamaño esperado por {@code Tipo.campo} de tipo lista
+     */
+    public QueryCostAnalyzer(Map<String, Integer> weights, Map<String, Integer> listSizes, int defaultListSize) {
+        this.weights = weights;
+        this.listSizes = listSizes;
+        this.defaultListSize = defaultListSize;
+    }
+
+    /**
+     * Costo y profundidad de una operación
+     */
+    public static final class Resultado {
+        private final long costo;
+        private final int profundidad;
+
+        Resultado(long costo, int profundidad) {
+            this.costo = costo;
+            this.profundidad = profundidad;
+        }
+
+        public long getCosto() {
+            return costo;
+        }
+
+        public int getProfundidad() {
+            return profundidad;
+        }
+    }
+
+    public Resultado analyze(GraphQLSchema schema, Document document, String operationName, CoercedVariables variables) {
+        QueryTraverser traverser = QueryTraverser.newQueryTraverser()
+            .schema(schema)
+            .document(document)
+            .operationName(operationName)
+            .coercedVariables(variables)
+            .build();
+
+        // Costo acumulado de los hijos de cada campo (postorden: los hijos se visitan antes)
+        Map<QueryVisitorFieldEnvironment, Long> costoHijos = new HashMap<>();
+        long[] total = new long[1];
+        int[] profundidadMaxima = new int[1];
+
+        traverser.visitPostOrder(new QueryVisitorStub() {
+            @Override
+            public void visitField(QueryVisitorFieldEnvironment env) {
+                int profundidad = profundidad(env);
+                if (profundidad < 0) {
+                    return;
+                }
+                profundidadMaxima[0] = Math.max(profundidadMaxima[0], profundidad);
+
+                long hijos = costoHijos.getOrDefault(env, 0L);
+                costoHijos.remove(env);
+                long porElemento = saturatedAdd(isLeaf(env) ? 0 : 1, hijos);
+                long costo = saturatedAdd(peso(env), saturatedMultiply(multiplicador(env), porElemento));
+
+                QueryVisitorFieldEnvironment padre = env.getParentEnvironment();
+                if (padre == null) {
+                    total[0] = saturatedAdd(total[0], costo);
+                } else {
+                    costoHijos.merge(padre, costo, QueryCostAnalyzer::saturatedAdd);
+                }
+            }
+        });
+        return new Resultado(total[0], profundidadMaxima[0]);
+    }
+
+    /**
+     * Profundidad del campo (1 en la raíz), o -1 si está dentro de introspección
+     */
+    private static int profundidad(QueryVisitorFieldEnvironment env) {
+        int profundidad = 0;
+        for (QueryVisitorFieldEnvironment actual = env; actual != null; actual = actual.getParentEnvironment()) {
+            if (actual.getFieldDefinition().getName().startsWith("__")) {
+                return -1;
+            }
+            profundidad++;
+        }
+        return profundidad;
+    }
+
+    private long peso(QueryVisitorFieldEnvironment env) {
+        String clave = clave(env);
+        long peso;
+        Integer configurado = weights.get(clave);
+        if (configurado != null) {
+            peso = configurado;
+        } else if (env.getParentEnvironment() == null && isMutation(env)) {
+            peso = MUTATION_WEIGHT;
+        } else {
+            peso = 0;
+        }
+        for (Object argumento : env.getArguments().values()) {
+            if (argumento instanceof Collection) {
+                peso = saturatedMultiply(peso, Math.max(1, ((Collection<?>) argumento).size()));
+            }
+        }
+        return peso;
+    }
+
+    private long multiplicador(QueryVisitorFieldEnvironment env) {
+        Object tamano = env.getArguments().get("first");
+        if (tamano == null) {
+            tamano = env.getArguments().get("limit");
+        }
+        if (tamano instanceof Number) {
+            return Math.max(0, ((Number) tamano).longValue());
+        }
+        if (isList(env.getFieldDefinition().getType())) {
+            return listSizes.getOrDefault(clave(env), defaultListSize);
+        }
+        return 1;
+    }
+
+    private static boolean isLeaf(QueryVisitorFieldEnvironment env) {
+        return GraphQLTypeUtil.isLeaf(GraphQLTypeUtil.unwrapAll(env.getFieldDefinition().getType()));
+    }
+
+    private static boolean isList(GraphQLType type) {
+        return GraphQLTypeUtil.isList(GraphQLTypeUtil.unwrapNonNull(type));
+    }
+
+    private static boolean isMutation(QueryVisitorFieldEnvironment env) {
+        GraphQLSchema schema = env.getSchema();
+        return schema.getMutationType() != null
+            && schema.getMutationType().getName().equals(contenedor(env));
+    }
+
+    private static String clave(QueryVisitorFieldEnvironment env) {
+        return contenedor(env) + "." + env.getFieldDefinition().getName();
+    }
+
+    private static String contenedor(QueryVisitorFieldEnvironment env) {
+        GraphQLFieldsContainer container = env.getFieldsContainer();
+        return container.getName();
+    }
+
+    // Un documento malicioso no debe desbordar el costo a negativo
+    private static long saturatedAdd(long a, long b) {
+        try {
+            return Math.addExact(a, b);
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static long saturatedMultiply(long a, long b) {
+        try {
+            return Math.multiplyExact(a, b);
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.agranelos.inventario.graphql;
+
+import com.agranelos.inventario.config.EnvConfig;
+import graphql.ExecutionResult;
+import graphql.GraphQLError;
+import graphql.GraphqlErrorBuilder;
+import graphql.execution.AbortExecutionException;
+import graphql.execution.ExecutionContext;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Límites de profundidad, costo y presupuesto por cliente para GraphQL.
+ *
+ * Se evalúa en beginExecuteOperation: después de parsear y validar (el
+ * documento puede venir de la caché), pero antes de que corra ningún
+ * resolver, así que una consulta rechazada no toma conexiones del pool. El
+ * costo lo calcula {@link QueryCostAnalyzer}; el cliente se identifica con
+ * la clave {@value #CLIENT_KEY} del GraphQLContext y, sin ella, no se aplica
+ * presupuesto.
+ *
+ * Los rechazos son errores GraphQL con {@code extensions.code}
+ * QUERY_TOO_DEEP, QUERY_TOO_COMPLEX o BUDGET_EXCEEDED (este último con
+ * {@code retryAfterSeconds}).
+ */
+public class QueryCostInstrumentation extends SimplePerformantInstrumentation {
+
+    private static final Logger logger = Logger.getLogger(QueryCostInstrumentation.class.getName());
+
+    public static final String CLIENT_KEY = "clientId";
+
+    public static final String QUERY_TOO_DEEP = "QUERY_TOO_DEEP";
+    public static final String QUERY_TOO_COMPLEX = "QUERY_TOO_COMPLEX";
+    public static final String BUDGET_EXCEEDED = "BUDGET_EXCEEDED";
+
+    private final QueryCostAnalyzer analyzer;
+    private final int maxDepth;
+    private final long maxCost;
+    private final QueryBudgets budgets;
+
+    private final AtomicLong evaluadas = new AtomicLong();
+    private final AtomicLong rechazadasProfundidad = new AtomicLong();
+    private final AtomicLong rechazadasCosto = new AtomicLong();
+    private final AtomicLong rechazadasPresupuesto = new AtomicLong();
+
+    /**
+     * @param maxDepth 0 desactiva el límite de profundidad
+     * @param maxCost  0 desactiva el límite de costo
+     * @param budgets  null desactiva los presupuestos por cliente
+     */
+    public QueryCostInstrumentation(QueryCostAnalyzer analyzer, int maxDepth, long maxCost, QueryBudgets budgets) {
+        this.analyzer = analyzer;
+        this.maxDepth = maxDepth;
+        this.maxCost = maxCost;
+        this.budgets = budgets;
+    }
+
+    /**
+     * Crea la instancia según App Settings: GRAPHQL_MAX_DEPTH (10),
+     * GRAPHQL_MAX_COST (5000), GRAPHQL_COST_WEIGHTS, GRAPHQL_COST_LIST_SIZES,
+     * GRAPHQL_COST_DEFAULT_LIST_SIZE (100), GRAPHQL_BUDGET_CAPACITY (20000,
+     * 0 desactiva), GRAPHQL_BUDGET_REFILL_PER_SECOND (1000) y
+     * GRAPHQL_BUDGET_CLIENTS (10000)
+     */
+    public static QueryCostInstrumentation fromEnvironment() {
+        Map<String, Integer> listSizes = new HashMap<>();
+        // Las conexiones ya multiplican por first; los edges no vuelven a multiplicar
+        listSizes.put("ProductoConnection.edges", 1);
+        listSizes.put("BodegaConnection.edges", 1);
+        listSizes.put("Producto.inventario", 10);
+        listSizes.putAll(parseFieldValues(EnvConfig.getString("GRAPHQL_COST_LIST_SIZES", "")));
+
+        QueryCostAnalyzer analyzer = new QueryCostAnalyzer(
+            parseFieldValues(EnvConfig.getString("GRAPHQL_COST_WEIGHTS", "")),
+            listSizes,
+            EnvConfig.getInt("GRAPHQL_COST_DEFAULT_LIST_SIZE", 100)
+        );
+
+        long capacity = EnvConfig.getLong("GRAPHQL_BUDGET_CAPACITY", 20000);
+        QueryBudgets budgets = capacity > 0
+            ? new QueryBudgets(
+                capacity,
+                EnvConfig.getLong("GRAPHQL_BUDGET_REFILL_PER_SECOND", 1000),
+                EnvConfig.getInt("GRAPHQL_BUDGET_CLIENTS", 10000))
+            : null;
+
+        return new QueryCostInstrumentation(
+            analyzer,
+            EnvConfig.getInt("GRAPHQL_MAX_DEPTH", 10),
+            EnvConfig.getLong("GRAPHQL_MAX_COST", 5000),
+            budgets
+        );
+    }
+
+    /**
+     * Lee una lista {@code Tipo.campo=n,Tipo.campo=n}; ignora las entradas inválidas
+     */
+    static Map<String, Integer> parseFieldValues(String value) {
+        Map<String, Integer> result = new HashMap<>();
+        for (String entry : value.split(",")) {
+            String[] partes = entry.split("=");
+            if (partes.length != 2 || !partes[0].contains(".")) {
+                if (!entry.trim().isEmpty()) {
+                    logger.warning("Entrada de costo GraphQL inválida: " + entry);
+                }
+                continue;
+            }
+            try {
+                result.put(partes[0].trim(), Integer.parseInt(partes[1].trim()));
+            } catch (NumberFormatException e) {
+                logger.warning("Entrada de costo GraphQL inválida: " + entry);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(InstrumentationExecuteOperationParameters parameters,
+                                                                         InstrumentationState state) {
+        evaluadas.incrementAndGet();
+        ExecutionContext context = parameters.getExecutionContext();
+        QueryCostAnalyzer.Resultado resultado = analyzer.analyze(
+            context.getGraphQLSchema(),
+            context.getDocument(),
+            context.getOperationDefinition().getName(),
+            context.getCoercedVariables()
+        );
+
+        if (maxDepth > 0 && resultado.getProfundidad() > maxDepth) {
+            rechazadasProfundidad.incrementAndGet();
+            throw abort(QUERY_TOO_DEEP,
+                String.format("La consulta tiene profundidad %d; el máximo es %d", resultado.getProfundidad(), maxDepth),
+                Map.of("depth", resultado.getProfundidad(), "maxDepth", maxDepth));
+        }
+        if (maxCost > 0 && resultado.getCosto() > maxCost) {
+            rechazadasCosto.incrementAndGet();
+            throw abort(QUERY_TOO_COMPLEX,
+                String.format("La consulta tiene costo %d; el máximo es %d", resultado.getCosto(), maxCost),
+                Map.of("cost", resultado.getCosto(), "maxCost", maxCost));
+        }
+
+        String cliente = context.getGraphQLContext().get(CLIENT_KEY);
+        if (budgets != null && cliente != null) {
+            long esperaMillis = budgets.tryConsume(cliente, resultado.getCosto());
+            if (esperaMillis != 0) {
+                rechazadasPresupuesto.incrementAndGet();
+                long retryAfter = esperaMillis < 0 ? -1 : Math.max(1, (esperaMillis + 999) / 1000);
+                logger.warning(String.format("Presupuesto GraphQL agotado para %s (costo %d)", cliente, resultado.getCosto()));
+                Map<String, Object> extensions = new LinkedHashMap<>();
+                extensions.put("cost", resultado.getCosto());
+                extensions.put("budget", budgets.getCapacity());
+                if (retryAfter > 0) {
+                    extensions.put("retryAfterSeconds", retryAfter);
+                }
+                throw abort(BUDGET_EXCEEDED, "Presupuesto de consultas agotado para este cliente", extensions);
+            }
+        }
+        return SimpleInstrumentationContext.noOp();
+    }
+
+    private static AbortExecutionException abort(String code, String message, Map<String, Object> detalle) {
+        Map<String, Object> extensions = new LinkedHashMap<>();
+        extensions.put("code", code);
+        extensions.putAll(detalle);
+        GraphQLError error = GraphqlErrorBuilder.newError()
+            .message(message)
+            .extensions(extensions)
+            .build();
+        return new AbortExecutionException(Collections.singletonList(error));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxDepth", maxDepth);
+        stats.put("maxCost", maxCost);
+        stats.put("budgetCapacity", budgets != null ? budgets.getCapacity() : 0);
+        stats.put("evaluated", evaluadas.get());
+        stats.put("rejectedDepth", rechazadasProfundidad.get());
+        stats.put("rejectedCost", rechazadasCosto.get());
+        stats.put("rejectedBudget", rechazadasPresupuesto.get());
+        return stats;
+    }
+}
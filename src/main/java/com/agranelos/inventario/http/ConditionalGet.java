@@ -0,0 +1,137 @@
+package com.agranelos.inventario.http;
+
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+/**
+ * GET condicional (RFC 9110): validadores ETag / Last-Modified y respuesta 304.
+ *
+ * Los validadores se calculan a partir de metadatos baratos (ID +
+ * FechaActualizacion, o la versión de la colección), de modo que un 304 se
+ * resuelve sin serializar el cuerpo. Las fechas sin zona de la base de datos
+ * se interpretan como UTC, igual que en el esquema GraphQL.
+ */
+public final class ConditionalGet {
+
+    private ConditionalGet() {
+    }
+
+    /**
+     * ETag fuerte a partir de las partes que identifican la representación
+     */
+    public static String etag(Object... parts) {
+        StringBuilder raw = new StringBuilder();
+        for (Object part : parts) {
+            raw.append(part).append('\u001f');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest(raw.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder("\"");
+            for (int i = 0; i < 16; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Evalúa If-None-Match y, solo si no viene, If-Modified-Since
+     *
+     * @param lastModified fecha a comparar con If-Modified-Since, o null para ignorarlo
+     */
+    public static boolean isNotModified(HttpRequestMessage<?> request, String etag, LocalDateTime lastModified) {
+        String ifNoneMatch = header(request, "If-None-Match");
+        if (ifNoneMatch != null) {
+            return matches(ifNoneMatch, etag);
+        }
+
+        String ifModifiedSince = header(request, "If-Modified-Since");
+        if (ifModifiedSince == null || lastModified == null) {
+            return false;
+        }
+        try {
+            ZonedDateTime since = ZonedDateTime.parse(ifModifiedSince.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return !lastModified.truncatedTo(ChronoUnit.SECONDS)
+                .atOffset(ZoneOffset.UTC)
+                .isAfter(since.toOffsetDateTime());
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Respuesta 304 sin cuerpo con los mismos validadores que tendría el 200
+     */
+    public static HttpResponseMessage notModified(HttpRequestMessage<?> request, String etag, LocalDateTime lastModified) {
+        return withValidators(request.createResponseBuilder(HttpStatus.NOT_MODIFIED), etag, lastModified).build();
+    }
+
+    /**
+     * Agrega ETag, Last-Modified y Cache-Control: no-cache (revalidar siempre)
+     */
+    public static HttpResponseMessage.Builder withValidators(HttpResponseMessage.Builder builder,
+                                                             String etag, LocalDateTime lastModified) {
+        builder.header("ETag", etag);
+        builder.header("Cache-Control", "no-cache");
+        if (lastModified != null) {
+            builder.header("Last-Modified", httpDate(lastModified));
+        }
+        return builder;
+    }
+
+    static String httpDate(LocalDateTime dateTime) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(dateTime.atOffset(ZoneOffset.UTC));
+    }
+
+    /**
+     * Comparación débil de If-None-Match: lista separada por comas, W/ o *
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        String trimmed = ifNoneMatch.trim();
+        if ("*".equals(trimmed)) {
+            return true;
+        }
+        String opaque = stripWeak(etag);
+        for (String candidate : trimmed.split(",")) {
+            if (stripWeak(candidate.trim()).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    /**
+     * Busca un header sin distinguir mayúsculas (el host no normaliza los nombres)
+     */
+    static String header(HttpRequestMessage<?> request, String name) {
+        Map<String, String> headers = request.getHeaders();
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,66 @@
+package com.agranelos.inventario.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Arranque en frío de la instancia: tiempo desde el inicio de la JVM hasta
+ * la primera respuesta (time-to-first-byte) y duración de los pasos del
+ * precalentamiento ({@code com.agranelos.inventario.Warmup}).
+ *
+ * La primera respuesta es el cierre del primer {@link RequestMetrics.Scope}
+ * de nivel superior que no es sintético; las invocaciones del
+ * precalentamiento no cuentan.
+ */
+public final class ColdStart {
+
+    private static final long JVM_START_MILLIS = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    // Protegidos por el monitor de la clase
+    private static String primeraFuncion;
+    private static long primeraRespuestaMillis = -1;
+    private static long primeraInvocacionNanos;
+    private static long warmupNanos = -1;
+    private static boolean warmupAntesDeLaPrimera;
+    private static final Map<String, Long> pasos = new LinkedHashMap<>();
+
+    private ColdStart() {
+    }
+
+    /**
+     * Registra la primera invocación de la instancia; las siguientes se ignoran
+     */
+    static synchronized void firstInvocation(String function, long durationNanos) {
+        if (primeraFuncion != null) {
+            return;
+        }
+        primeraFuncion = function;
+        primeraRespuestaMillis = System.currentTimeMillis() - JVM_START_MILLIS;
+        primeraInvocacionNanos = durationNanos;
+    }
+
+    /**
+     * Duración de un paso del precalentamiento (pool, schema, serialization, requests)
+     */
+    public static synchronized void warmupStep(String step, long nanos) {
+        pasos.put(step, nanos);
+    }
+
+    public static synchronized void warmupCompleted(long nanos) {
+        warmupNanos = nanos;
+        warmupAntesDeLaPrimera = primeraFuncion == null;
+    }
+
+    public static synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("jvmStartMillis", JVM_START_MILLIS);
+        stats.put("firstFunction", primeraFuncion);
+        stats.put("firstResponseMillis", primeraRespuestaMillis);
+        stats.put("firstInvocationNanos", primeraInvocacionNanos);
+        stats.put("warmupNanos", warmupNanos);
+        stats.put("warmedBeforeFirstInvocation", warmupAntesDeLaPrimera);
+        stats.put("warmupSteps", new LinkedHashMap<>(pasos));
+        return stats;
+    }
+}
@@ -0,0 +1,83 @@
+package com.agranelos.inventario.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de los pools de Hikari, recibidas por su MetricsTrackerFactory:
+ * conexiones activas, ociosas y hilos en espera, más la espera por una
+ * conexión (checkout) y los timeouts. Además informa a {@link RequestMetrics}
+ * cuándo el hilo toma y devuelve conexiones, para el tiempo de base de datos
+ * de cada invocación.
+ */
+public final class PoolMetrics implements MetricsTrackerFactory {
+
+    private static final PoolMetrics INSTANCE = new PoolMetrics();
+
+    private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+    static final class Pool implements IMetricsTracker {
+        private final PoolStats stats;
+        private final LatencyHistogram checkout = new LatencyHistogram();
+        private final LongAdder timeouts = new LongAdder();
+
+        private Pool(PoolStats stats) {
+            this.stats = stats;
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            checkout.recordNanos(elapsedAcquiredNanos);
+            RequestMetrics.connectionAcquired();
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+            RequestMetrics.connectionReleased(elapsedBorrowedMillis);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.increment();
+        }
+
+        PoolStats getStats() {
+            return stats;
+        }
+
+        LatencyHistogram getCheckout() {
+            return checkout;
+        }
+
+        long getTimeouts() {
+            return timeouts.sum();
+        }
+    }
+
+    private PoolMetrics() {
+    }
+
+    /**
+     * Fábrica para HikariConfig.setMetricsTrackerFactory
+     */
+    public static PoolMetrics getFactory() {
+        return INSTANCE;
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        Pool pool = new Pool(poolStats);
+        pools.put(poolName, pool);
+        return pool;
+    }
+
+    static Map<String, Pool> snapshot() {
+        return new TreeMap<>(INSTANCE.pools);
+    }
+}
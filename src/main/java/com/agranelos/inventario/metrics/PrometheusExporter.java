@@ -0,0 +1,177 @@
+package com.agranelos.inventario.metrics;
+
+import com.agranelos.inventario.db.DatabaseManager;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.Map;
+
+/**
+ * Exposición de las métricas en el formato de texto de Prometheus (0.0.4),
+ * para el endpoint GET /metrics.
+ *
+ * Las latencias se publican como summaries con los cuantiles precalculados
+ * del histograma (p50, p90, p99, p99.9), en segundos.
+ */
+public final class PrometheusExporter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private PrometheusExporter() {
+    }
+
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(8 * 1024);
+        writeFunctions(out);
+        writePools(out);
+        writeAdmission(out);
+        writeReplica(out);
+        writeColdStart(out);
+        return out.toString();
+    }
+
+    private static void writeFunctions(StringBuilder out) {
+        String name = "inventario_function_duration_seconds";
+        header(out, name, "summary", "Latencia de las funciones por fase (total, db, serialization, eventgrid)");
+        for (Map.Entry<String, LatencyHistogram[]> entry : RequestMetrics.snapshot().entrySet()) {
+            for (RequestMetrics.Phase phase : RequestMetrics.phases()) {
+                LatencyHistogram histogram = entry.getValue()[phase.ordinal()];
+                if (histogram.getCount() == 0) {
+                    continue;
+                }
+                String labels = "function=\"" + escape(entry.getKey()) + "\",phase=\"" + phase.getLabel() + "\"";
+                summary(out, name, labels, histogram);
+            }
+        }
+    }
+
+    private static void writePools(StringBuilder out) {
+        Map<String, PoolMetrics.Pool> pools = PoolMetrics.snapshot();
+        if (pools.isEmpty()) {
+            return;
+        }
+        gauge(out, pools, "hikaricp_connections_active", "Conexiones en uso", PoolStats::getActiveConnections);
+        gauge(out, pools, "hikaricp_connections_idle", "Conexiones ociosas", PoolStats::getIdleConnections);
+        gauge(out, pools, "hikaricp_connections_pending", "Hilos esperando una conexión", PoolStats::getPendingThreads);
+        gauge(out, pools, "hikaricp_connections_total", "Conexiones abiertas", PoolStats::getTotalConnections);
+        gauge(out, pools, "hikaricp_connections_max", "Tamaño máximo del pool", PoolStats::getMaxConnections);
+
+        String acquire = "hikaricp_connections_acquire_seconds";
+        header(out, acquire, "summary", "Espera para obtener una conexión del pool");
+        for (Map.Entry<String, PoolMetrics.Pool> entry : pools.entrySet()) {
+            summary(out, acquire, "pool=\"" + escape(entry.getKey()) + "\"", entry.getValue().getCheckout());
+        }
+
+        String timeouts = "hikaricp_connections_timeout_total";
+        header(out, timeouts, "counter", "Timeouts esperando una conexión del pool");
+        for (Map.Entry<String, PoolMetrics.Pool> entry : pools.entrySet()) {
+            out.append(timeouts).append("{pool=\"").append(escape(entry.getKey())).append("\"} ")
+                .append(entry.getValue().getTimeouts()).append('\n');
+        }
+    }
+
+    private static void writeAdmission(StringBuilder out) {
+        Map<String, Map<String, Object>> pools = DatabaseManager.admissionStats();
+        if (pools.isEmpty()) {
+            return;
+        }
+        header(out, "inventario_db_admission_limit", "gauge", "Límite adaptativo de conexiones en uso");
+        for (Map.Entry<String, Map<String, Object>> entry : pools.entrySet()) {
+            out.append("inventario_db_admission_limit{pool=\"").append(entry.getKey()).append("\"} ")
+                .append(entry.getValue().get("limit")).append('\n');
+        }
+        header(out, "inventario_db_admission_in_flight", "gauge", "Conexiones admitidas en uso");
+        for (Map.Entry<String, Map<String, Object>> entry : pools.entrySet()) {
+            out.append("inventario_db_admission_in_flight{pool=\"").append(entry.getKey()).append("\"} ")
+                .append(entry.getValue().get("inFlight")).append('\n');
+        }
+
+        String rejected = "inventario_db_admission_rejected_total";
+        header(out, rejected, "counter", "Peticiones rechazadas con 503 por saturación");
+        for (Map.Entry<String, Map<String, Object>> entry : pools.entrySet()) {
+            String pool = "pool=\"" + entry.getKey() + "\"";
+            out.append(rejected).append('{').append(pool).append(",priority=\"read\"} ")
+                .append(entry.getValue().get("rejectedReads")).append('\n');
+            out.append(rejected).append('{').append(pool).append(",priority=\"write\"} ")
+                .append(entry.getValue().get("rejectedWrites")).append('\n');
+        }
+    }
+
+    private static void writeReplica(StringBuilder out) {
+        Map<String, Object> stats = DatabaseManager.replicaStats();
+        if (stats == null) {
+            return;
+        }
+        header(out, "inventario_db_replica_available", "gauge", "1 si la réplica de lectura atiende lecturas");
+        out.append("inventario_db_replica_available ").append(Boolean.TRUE.equals(stats.get("available")) ? 1 : 0).append('\n');
+        header(out, "inventario_db_replica_lag_seconds", "gauge", "Retraso de la réplica de lectura respecto del primario");
+        out.append("inventario_db_replica_lag_seconds ").append(((Number) stats.get("lagMillis")).longValue() / 1e3).append('\n');
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeColdStart(StringBuilder out) {
+        Map<String, Object> stats = ColdStart.stats();
+        Object funcion = stats.get("firstFunction");
+        if (funcion != null) {
+            String labels = "{function=\"" + escape((String) funcion) + "\"} ";
+            header(out, "inventario_cold_start_first_response_seconds", "gauge",
+                "Desde el inicio de la JVM hasta la primera respuesta de la instancia");
+            out.append("inventario_cold_start_first_response_seconds").append(labels)
+                .append(((Number) stats.get("firstResponseMillis")).longValue() / 1e3).append('\n');
+            header(out, "inventario_cold_start_first_invocation_seconds", "gauge",
+                "Duración de la primera invocación de la instancia");
+            out.append("inventario_cold_start_first_invocation_seconds").append(labels)
+                .append(seconds(((Number) stats.get("firstInvocationNanos")).longValue())).append('\n');
+        }
+        long warmup = ((Number) stats.get("warmupNanos")).longValue();
+        if (warmup < 0) {
+            return;
+        }
+        String name = "inventario_warmup_duration_seconds";
+        header(out, name, "gauge", "Duración del precalentamiento por paso (pool, schema, serialization, requests)");
+        for (Map.Entry<String, Long> paso : ((Map<String, Long>) stats.get("warmupSteps")).entrySet()) {
+            out.append(name).append("{step=\"").append(escape(paso.getKey())).append("\"} ")
+                .append(seconds(paso.getValue())).append('\n');
+        }
+        out.append(name).append("{step=\"total\"} ").append(seconds(warmup)).append('\n');
+        header(out, "inventario_warmup_before_first_invocation", "gauge",
+            "1 si el precalentamiento terminó antes de la primera invocación");
+        out.append("inventario_warmup_before_first_invocation ")
+            .append(Boolean.TRUE.equals(stats.get("warmedBeforeFirstInvocation")) ? 1 : 0).append('\n');
+    }
+
+    private interface PoolGauge {
+        int value(PoolStats stats);
+    }
+
+    private static void gauge(StringBuilder out, Map<String, PoolMetrics.Pool> pools, String name, String help, PoolGauge gauge) {
+        header(out, name, "gauge", help);
+        for (Map.Entry<String, PoolMetrics.Pool> entry : pools.entrySet()) {
+            out.append(name).append("{pool=\"").append(escape(entry.getKey())).append("\"} ")
+                .append(gauge.value(entry.getValue().getStats())).append('\n');
+        }
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        for (double quantile : QUANTILES) {
+            out.append(name).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+                .append(seconds(histogram.percentileNanos(quantile))).append('\n');
+        }
+        out.append(name).append("_sum{").append(labels).append("} ").append(seconds(histogram.getSumNanos())).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(histogram.getCount()).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,204 @@
+package com.agranelos.inventario.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Latencias por función (@FunctionName) y fase.
+ *
+ * Cada invocación abre un {@link Scope} en su hilo; mientras está abierto,
+ * el pool de conexiones, la serialización y la publicación en Event Grid
+ * suman su tiempo a la fase correspondiente. Al cerrarse, el scope registra
+ * el total y cada fase usada en los histogramas de la función.
+ *
+ * El tiempo de base de datos es el tiempo con al menos una conexión del pool
+ * tomada (incluye el mapeo de filas). Lo que ocurre fuera del hilo de la
+ * invocación (p. ej. la cola asíncrona de Event Grid) se registra bajo la
+ * función {@value #BACKGROUND}.
+ *
+ * Las invocaciones sintéticas del precalentamiento ({@link #startSynthetic})
+ * no se registran, y el cierre de la primera invocación real marca el fin del
+ * arranque en frío ({@link ColdStart}).
+ */
+public final class RequestMetrics {
+
+    public static final String BACKGROUND = "background";
+
+    /**
+     * Fases medidas dentro de una invocación
+     */
+    public enum Phase {
+        TOTAL("total"),
+        DB("db"),
+        SERIALIZATION("serialization"),
+        EVENT_GRID("eventgrid");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final Map<String, LatencyHistogram[]> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private RequestMetrics() {
+    }
+
+    /**
+     * Abre la medición de una invocación; usar con try-with-resources
+     */
+    public static Scope start(String function) {
+        Scope parent = CURRENT.get();
+        Scope scope = new Scope(function, parent, parent != null && parent.synthetic);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Ejecuta {@code work} dentro de la medición de la función
+     */
+    public static <T> T measure(String function, Supplier<T> work) {
+        try (Scope scope = start(function)) {
+            return work.get();
+        }
+    }
+
+    /**
+     * Igual que {@link #measure(String, Supplier)}, para funciones sin resultado
+     */
+    public static void measure(String function, Runnable work) {
+        try (Scope scope = start(function)) {
+            work.run();
+        }
+    }
+
+    /**
+     * Abre una medición que no se registra, ni ella ni las invocaciones que
+     * se abran dentro (peticiones sintéticas del precalentamiento)
+     */
+    public static Scope startSynthetic(String function) {
+        Scope scope = new Scope(function, CURRENT.get(), true);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Suma tiempo a una fase de la invocación en curso
+     */
+    public static void record(Phase phase, long nanos) {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.phaseNanos[phase.ordinal()] += nanos;
+            scope.phaseUsed[phase.ordinal()] = true;
+        } else {
+            histograms(BACKGROUND)[phase.ordinal()].recordNanos(nanos);
+        }
+    }
+
+    /**
+     * Marca que el hilo tomó una conexión del pool
+     */
+    static void connectionAcquired() {
+        Scope scope = CURRENT.get();
+        if (scope != null && scope.conexionesAbiertas++ == 0) {
+            scope.dbDesde = System.nanoTime();
+        }
+    }
+
+    /**
+     * Marca que el hilo devolvió una conexión al pool
+     */
+    static void connectionReleased(long usageMillis) {
+        Scope scope = CURRENT.get();
+        if (scope == null || scope.conexionesAbiertas == 0) {
+            // Conexión tomada fuera de una invocación medida
+            histograms(BACKGROUND)[Phase.DB.ordinal()].recordNanos(usageMillis * 1_000_000);
+            return;
+        }
+        if (--scope.conexionesAbiertas == 0) {
+            record(Phase.DB, System.nanoTime() - scope.dbDesde);
+        }
+    }
+
+    static LatencyHistogram[] histograms(String function) {
+        return HISTOGRAMS.computeIfAbsent(function, key -> {
+            LatencyHistogram[] histograms = new LatencyHistogram[PHASES.length];
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new LatencyHistogram();
+            }
+            return histograms;
+        });
+    }
+
+    /**
+     * Histogramas por función, ordenados por nombre
+     */
+    static Map<String, LatencyHistogram[]> snapshot() {
+        return new TreeMap<>(HISTOGRAMS);
+    }
+
+    static Phase[] phases() {
+        return PHASES;
+    }
+
+    /**
+     * Medición de una invocación. No es thread-safe: pertenece al hilo que la abrió.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final String function;
+        private final Scope parent;
+        private final boolean synthetic;
+        private final long inicio = System.nanoTime();
+        private final long[] phaseNanos = new long[PHASES.length];
+        private final boolean[] phaseUsed = new boolean[PHASES.length];
+        private int conexionesAbiertas;
+        private long dbDesde;
+
+        private Scope(String function, Scope parent, boolean synthetic) {
+            this.function = function;
+            this.parent = parent;
+            this.synthetic = synthetic;
+        }
+
+        @Override
+        public void close() {
+            if (synthetic) {
+                restore();
+                return;
+            }
+            long total = System.nanoTime() - inicio;
+            if (parent == null) {
+                ColdStart.firstInvocation(function, total);
+            }
+            LatencyHistogram[] histograms = histograms(function);
+            histograms[Phase.TOTAL.ordinal()].recordNanos(total);
+            if (conexionesAbiertas > 0) {
+                phaseNanos[Phase.DB.ordinal()] += System.nanoTime() - dbDesde;
+                phaseUsed[Phase.DB.ordinal()] = true;
+            }
+            for (Phase phase : PHASES) {
+                if (phase != Phase.TOTAL && phaseUsed[phase.ordinal()]) {
+                    histograms[phase.ordinal()].recordNanos(phaseNanos[phase.ordinal()]);
+                }
+            }
+            restore();
+        }
+
+        private void restore() {
+            if (parent != null) {
+                CURRENT.set(parent);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+}
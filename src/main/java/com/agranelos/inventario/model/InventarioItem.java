@@ -0,0 +1,87 @@
+package com.agranelos.inventario.model;
+
+import java.time.LocalDateTime;
+
+public class InventarioItem {
+    private Integer id;
+    private Integer productoId;
+    private Integer bodegaId;
+    private Integer cantidad;
+    private LocalDateTime fechaActualizacion;
+
+    // Constructors
+    public InventarioItem() {}
+
+    public InventarioItem(Integer productoId, Integer bodegaId, Integer cantidad) {
+        this.productoId = productoId;
+        this.bodegaId = bodegaId;
+        this.cantidad = cantidad;
+    }
+
+    // Getters and Setters
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Integer getProductoId() {
+        return productoId;
+    }
+
+    public void setProductoId(Integer productoId) {
+        this.productoId = productoId;
+    }
+
+    public Integer getBodegaId() {
+        return bodegaId;
+    }
+
+    public void setBodegaId(Integer bodegaId) {
+        this.bodegaId = bodegaId;
+    }
+
+    public Integer getCantidad() {
+        return cantidad;
+    }
+
+    public void setCantidad(Integer cantidad) {
+        this.cantidad = cantidad;
+    }
+
+    public LocalDateTime getFechaActualizacion() {
+        return fechaActualizacion;
+    }
+
+    public void setFechaActualizacion(LocalDateTime fechaActualizacion) {
+        this.fechaActualizacion = fechaActualizacion;
+    }
+
+    @Override
+    public String toString() {
+        return "InventarioItem{" +
+                "id=" + id +
+                ", productoId=" + productoId +
+                ", bodegaId=" + bodegaId +
+                ", cantidad=" + cantidad +
+                ", fechaActualizacion=" + fechaActualizacion +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        InventarioItem that = (InventarioItem) o;
+
+        return id != null ? id.equals(that.id) : that.id == null;
+    }
+
+    @Override
+    public int hashCode() {
+        return id != null ? id.hashCode() : 0;
+    }
+}
@@ -0,0 +1,25 @@
+package com.agranelos.inventario.services;
+
+import java.io.IOException;
+
+/**
+ * Rechazo del proveedor de email con la indicación de si conviene reintentar
+ * (429 y 5xx sí; el resto de 4xx no)
+ */
+public class EmailDeliveryException extends IOException {
+
+    private final int statusCode;
+
+    public EmailDeliveryException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public boolean isRetryable() {
+        return statusCode == 429 || statusCode >= 500;
+    }
+}
@@ -0,0 +1,99 @@
+package com.agranelos.inventario.services;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Acumula notificaciones por destinatario y las entrega como un solo email
+ * de resumen cada {@code intervaloMillis} o al llegar a {@code maxCambios}
+ * cambios, lo que ocurra primero.
+ */
+public class EmailDigest {
+
+    private final int maxCambios;
+    private final long intervaloMillis;
+    private final BiConsumer<String, List<String>> emisor;
+    private final LongSupplier clock;
+    private final Map<String, Pendiente> porDestinatario = new LinkedHashMap<>();
+
+    private static final class Pendiente {
+        private final long desde;
+        private final List<String> lineas = new ArrayList<>();
+
+        private Pendiente(long desde) {
+            this.desde = desde;
+        }
+    }
+
+    /**
+     * @param emisor recibe el destinatario y las líneas del resumen
+     */
+    public EmailDigest(int maxCambios, long intervaloMillis, BiConsumer<String, List<String>> emisor, LongSupplier clock) {
+        this.maxCambios = Math.max(1, maxCambios);
+        this.intervaloMillis = intervaloMillis;
+        this.emisor = emisor;
+        this.clock = clock;
+    }
+
+    public void add(String destinatario, String linea) {
+        List<String> completo = null;
+        synchronized (porDestinatario) {
+            Pendiente pendiente = porDestinatario.computeIfAbsent(destinatario, key -> new Pendiente(clock.getAsLong()));
+            pendiente.lineas.add(linea);
+            if (pendiente.lineas.size() >= maxCambios) {
+                porDestinatario.remove(destinatario);
+                completo = pendiente.lineas;
+            }
+        }
+        if (completo != null) {
+            emisor.accept(destinatario, completo);
+        }
+    }
+
+    /**
+     * Entrega los resúmenes cuyo intervalo ya se cumplió
+     *
+     * @return resúmenes entregados
+     */
+    public int flushDue() {
+        return flush(clock.getAsLong() - intervaloMillis);
+    }
+
+    /**
+     * Entrega todos los resúmenes pendientes
+     */
+    public int flushAll() {
+        return flush(Long.MAX_VALUE);
+    }
+
+    private int flush(long iniciadosAntesDe) {
+        Map<String, List<String>> vencidos = new LinkedHashMap<>();
+        synchronized (porDestinatario) {
+            Iterator<Map.Entry<String, Pendiente>> iterator = porDestinatario.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Pendiente> entry = iterator.next();
+                if (entry.getValue().desde <= iniciadosAntesDe) {
+                    vencidos.put(entry.getKey(), entry.getValue().lineas);
+                    iterator.remove();
+                }
+            }
+        }
+        vencidos.forEach(emisor);
+        return vencidos.size();
+    }
+
+    public int size() {
+        synchronized (porDestinatario) {
+            int total = 0;
+            for (Pendiente pendiente : porDestinatario.values()) {
+                total += pendiente.lineas.size();
+            }
+            return total;
+        }
+    }
+}
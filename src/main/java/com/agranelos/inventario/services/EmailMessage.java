@@ -0,0 +1,35 @@
+package com.agranelos.inventario.services;
+
+/**
+ * Email listo para entregar a un {@link EmailTransport}
+ */
+public final class EmailMessage {
+
+    private final String from;
+    private final String to;
+    private final String subject;
+    private final String htmlBody;
+
+    public EmailMessage(String from, String to, String subject, String htmlBody) {
+        this.from = from;
+        this.to = to;
+        this.subject = subject;
+        this.htmlBody = htmlBody;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getHtmlBody() {
+        return htmlBody;
+    }
+}
@@ -0,0 +1,175 @@
+package com.agranelos.inventario.services;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Cola asíncrona de envío de emails.
+ *
+ * Un único hilo entrega los emails con el transporte compartido, a lo sumo
+ * {@code ratePerSecond} por segundo. Los fallos reintentables se reprograman
+ * con backoff exponencial (base {@code backoffMillis}, tope 5 minutos) hasta
+ * {@code maxIntentos}. La cola está acotada: con {@code capacity} emails
+ * pendientes (incluidos los que esperan reintento) {@link #submit} los
+ * rechaza, ya que las notificaciones no justifican frenar a los handlers.
+ */
+public class EmailQueue {
+
+    private static final Logger logger = Logger.getLogger(EmailQueue.class.getName());
+
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final EmailTransport transport;
+    private final int capacity;
+    private final long intervalNanos;
+    private final int maxIntentos;
+    private final long backoffMillis;
+    private final ScheduledExecutorService worker;
+
+    private final AtomicInteger pendientes = new AtomicInteger();
+    private final AtomicLong enviados = new AtomicLong();
+    private final AtomicLong reintentos = new AtomicLong();
+    private final AtomicLong fallidos = new AtomicLong();
+    private final AtomicLong rechazados = new AtomicLong();
+
+    private volatile boolean cerrada;
+
+    // Solo lo usa el hilo de envío
+    private long siguienteTurno = System.nanoTime();
+
+    public EmailQueue(EmailTransport transport, int capacity, double ratePerSecond, int maxIntentos, long backoffMillis) {
+        if (capacity < 1 || ratePerSecond <= 0 || maxIntentos < 1) {
+            throw new IllegalArgumentException("capacity, ratePerSecond y maxIntentos deben ser positivos");
+        }
+        this.transport = transport;
+        this.capacity = capacity;
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        this.maxIntentos = maxIntentos;
+        this.backoffMillis = backoffMillis;
+        this.worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "email-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Encola el email sin bloquear
+     *
+     * @return false si la cola está llena o cerrada
+     */
+    public boolean submit(EmailMessage message) {
+        if (cerrada) {
+            rechazados.incrementAndGet();
+            return false;
+        }
+        if (pendientes.incrementAndGet() > capacity) {
+            pendientes.decrementAndGet();
+            rechazados.incrementAndGet();
+            return false;
+        }
+        try {
+            worker.execute(() -> attempt(message, 1));
+            return true;
+        } catch (RejectedExecutionException e) {
+            pendientes.decrementAndGet();
+            rechazados.incrementAndGet();
+            return false;
+        }
+    }
+
+    private void attempt(EmailMessage message, int intento) {
+        esperarTurno();
+        try {
+            transport.send(message);
+            enviados.incrementAndGet();
+            pendientes.decrementAndGet();
+            logger.info(String.format("Email enviado a %s: %s", message.getTo(), message.getSubject()));
+        } catch (IOException | RuntimeException e) {
+            boolean reintentable = !(e instanceof EmailDeliveryException) || ((EmailDeliveryException) e).isRetryable();
+            if (reintentable && intento < maxIntentos && !worker.isShutdown()) {
+                long delay = Math.min(backoffMillis << Math.min(intento - 1, 20), MAX_BACKOFF_MILLIS);
+                reintentos.incrementAndGet();
+                logger.warning(String.format("Error enviando email a %s (intento %d), se reintenta en %d ms: %s",
+                    message.getTo(), intento, delay, e.getMessage()));
+                worker.schedule(() -> attempt(message, intento + 1), delay, TimeUnit.MILLISECONDS);
+            } else {
+                fallidos.incrementAndGet();
+                pendientes.decrementAndGet();
+                logger.severe(String.format("Email descartado para %s tras %d intentos: %s",
+                    message.getTo(), intento, e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Limita la tasa de envío: espera hasta el siguiente turno libre
+     */
+    private void esperarTurno() {
+        long ahora = System.nanoTime();
+        if (siguienteTurno > ahora) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(siguienteTurno - ahora);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ahora = System.nanoTime();
+        }
+        siguienteTurno = Math.max(ahora, siguienteTurno) + intervalNanos;
+    }
+
+    /**
+     * Deja de aceptar emails y espera, hasta el timeout, a que se entreguen
+     * los encolados (incluidos sus reintentos)
+     */
+    public void shutdown(long timeoutMillis) {
+        cerrada = true;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            while (pendientes.get() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        worker.shutdownNow();
+        if (pendientes.get() > 0) {
+            logger.warning("Emails sin entregar al cerrar: " + pendientes.get());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("transport", transport.getName());
+        stats.put("pending", pendientes.get());
+        stats.put("sent", enviados.get());
+        stats.put("retries", reintentos.get());
+        stats.put("failed", fallidos.get());
+        stats.put("rejected", rechazados.get());
+        return stats;
+    }
+
+    public int getPendientes() {
+        return pendientes.get();
+    }
+
+    public long getEnviados() {
+        return enviados.get();
+    }
+
+    public long getFallidos() {
+        return fallidos.get();
+    }
+
+    public long getReintentos() {
+        return reintentos.get();
+    }
+}
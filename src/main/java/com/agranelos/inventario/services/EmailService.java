@@ -1,158 +1,95 @@
 package com.agranelos.inventario.services;
 
-import com.sendgrid.*;
-import com.sendgrid.helpers.mail.Mail;
-import com.sendgrid.helpers.mail.objects.Content;
-import com.sendgrid.helpers.mail.objects.Email;
-import java.io.IOException;
+import com.agranelos.inventario.config.EnvConfig;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
  * Servicio para enviar notificaciones por email usando SendGrid
  * Se activa cuando ocurren eventos en el sistema de inventario
+ *
+ * Los envíos no bloquean al handler: pasan por {@link EmailQueue}, con un
+ * transporte compartido (EMAIL_TRANSPORT: sendgrid, http o log), límite de
+ * tasa y reintentos. Con EMAIL_DIGEST_ENABLED las notificaciones se acumulan
+ * y cada destinatario recibe un resumen cada EMAIL_DIGEST_MINUTOS o al
+ * llegar a EMAIL_DIGEST_MAX_CAMBIOS cambios. RECIPIENT_EMAIL admite varias
+ * direcciones separadas por coma.
+ *
+ * Asuntos y cuerpos salen de {@link EmailTemplates} (src/main/resources/email),
+ * compiladas una vez por idioma (EMAIL_LOCALE).
  */
 public class EmailService {
     
+    private static final Logger serviceLogger = Logger.getLogger(EmailService.class.getName());
+    
     private static final String SENDGRID_API_KEY = System.getenv("SENDGRID_API_KEY");
     private static final String FROM_EMAIL = System.getenv("SENDER_EMAIL");
     private static final String TO_EMAIL = System.getenv("RECIPIENT_EMAIL");
     
+    private static final String TRANSPORT = EnvConfig.getString("EMAIL_TRANSPORT", "sendgrid");
+    private static final String LOCALE = EnvConfig.getString("EMAIL_LOCALE", EmailTemplates.DEFAULT_LOCALE);
+    private static final boolean DIGEST_ENABLED = EnvConfig.getBoolean("EMAIL_DIGEST_ENABLED", false);
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+    
+    private static volatile EmailQueue queue;
+    private static volatile EmailDigest digest;
+    
     /**
      * Envía un email de notificación cuando se crea un producto
      */
     public static void sendProductoCreatedEmail(Long productoId, String nombre, Logger logger) {
-        String subject = "✅ Nuevo Producto Creado - Inventario Agranelos";
-        String body = String.format(
-            "<html><body>" +
-            "<h2>Nuevo Producto Creado</h2>" +
-            "<p>Se ha creado un nuevo producto en el sistema de inventario:</p>" +
-            "<ul>" +
-            "<li><strong>ID:</strong> %d</li>" +
-            "<li><strong>Nombre:</strong> %s</li>" +
-            "<li><strong>Fecha:</strong> %s</li>" +
-            "</ul>" +
-            "<p><em>Sistema de Inventario Agranelos</em></p>" +
-            "</body></html>",
-            productoId, nombre, java.time.LocalDateTime.now()
-        );
-        
-        sendEmail(subject, body, logger);
+        notificar("producto.creado", productoId, nombre, logger);
     }
     
     /**
      * Envía un email de notificación cuando se actualiza un producto
      */
     public static void sendProductoUpdatedEmail(Long productoId, String nombre, Logger logger) {
-        String subject = "🔄 Producto Actualizado - Inventario Agranelos";
-        String body = String.format(
-            "<html><body>" +
-            "<h2>Producto Actualizado</h2>" +
-            "<p>Se ha actualizado un producto en el sistema:</p>" +
-            "<ul>" +
-            "<li><strong>ID:</strong> %d</li>" +
-            "<li><strong>Nombre:</strong> %s</li>" +
-            "<li><strong>Fecha:</strong> %s</li>" +
-            "</ul>" +
-            "<p><em>Sistema de Inventario Agranelos</em></p>" +
-            "</body></html>",
-            productoId, nombre, java.time.LocalDateTime.now()
-        );
-        
-        sendEmail(subject, body, logger);
+        notificar("producto.actualizado", productoId, nombre, logger);
     }
     
     /**
      * Envía un email de notificación cuando se elimina un producto
      */
     public static void sendProductoDeletedEmail(Long productoId, Logger logger) {
-        String subject = "🗑️ Producto Eliminado - Inventario Agranelos";
-        String body = String.format(
-            "<html><body>" +
-            "<h2>Producto Eliminado</h2>" +
-            "<p>Se ha eliminado un producto del sistema:</p>" +
-            "<ul>" +
-            "<li><strong>ID:</strong> %d</li>" +
-            "<li><strong>Fecha:</strong> %s</li>" +
-            "</ul>" +
-            "<p><em>Sistema de Inventario Agranelos</em></p>" +
-            "</body></html>",
-            productoId, java.time.LocalDateTime.now()
-        );
-        
-        sendEmail(subject, body, logger);
+        notificar("producto.eliminado", productoId, null, logger);
     }
     
     /**
      * Envía un email de notificación cuando se crea una bodega
      */
     public static void sendBodegaCreatedEmail(Long bodegaId, String nombre, Logger logger) {
-        String subject = "🏢 Nueva Bodega Creada - Inventario Agranelos";
-        String body = String.format(
-            "<html><body>" +
-            "<h2>Nueva Bodega Creada</h2>" +
-            "<p>Se ha creado una nueva bodega en el sistema:</p>" +
-            "<ul>" +
-            "<li><strong>ID:</strong> %d</li>" +
-            "<li><strong>Nombre:</strong> %s</li>" +
-            "<li><strong>Fecha:</strong> %s</li>" +
-            "</ul>" +
-            "<p><em>Sistema de Inventario Agranelos</em></p>" +
-            "</body></html>",
-            bodegaId, nombre, java.time.LocalDateTime.now()
-        );
-        
-        sendEmail(subject, body, logger);
+        notificar("bodega.creada", bodegaId, nombre, logger);
     }
     
     /**
      * Envía un email de notificación cuando se actualiza una bodega
      */
     public static void sendBodegaUpdatedEmail(Long bodegaId, String nombre, Logger logger) {
-        String subject = "🔄 Bodega Actualizada - Inventario Agranelos";
-        String body = String.format(
-            "<html><body>" +
-            "<h2>Bodega Actualizada</h2>" +
-            "<p>Se ha actualizado una bodega en el sistema:</p>" +
-            "<ul>" +
-            "<li><strong>ID:</strong> %d</li>" +
-            "<li><strong>Nombre:</strong> %s</li>" +
-            "<li><strong>Fecha:</strong> %s</li>" +
-            "</ul>" +
-            "<p><em>Sistema de Inventario Agranelos</em></p>" +
-            "</body></html>",
-            bodegaId, nombre, java.time.LocalDateTime.now()
-        );
-        
-        sendEmail(subject, body, logger);
+        notificar("bodega.actualizada", bodegaId, nombre, logger);
     }
     
     /**
      * Envía un email de notificación cuando se elimina una bodega
      */
     public static void sendBodegaDeletedEmail(Long bodegaId, Logger logger) {
-        String subject = "🗑️ Bodega Eliminada - Inventario Agranelos";
-        String body = String.format(
-            "<html><body>" +
-            "<h2>Bodega Eliminada</h2>" +
-            "<p>Se ha eliminado una bodega del sistema:</p>" +
-            "<ul>" +
-            "<li><strong>ID:</strong> %d</li>" +
-            "<li><strong>Fecha:</strong> %s</li>" +
-            "</ul>" +
-            "<p><em>Sistema de Inventario Agranelos</em></p>" +
-            "</body></html>",
-            bodegaId, java.time.LocalDateTime.now()
-        );
-        
-        sendEmail(subject, body, logger);
+        notificar("bodega.eliminada", bodegaId, null, logger);
     }
     
     /**
-     * Método privado para enviar emails usando SendGrid
+     * Encola el email para cada destinatario, o lo suma a su resumen en modo digest
+     *
+     * @param clave prefijo de los mensajes del cambio en mensajes.properties
      */
-    private static void sendEmail(String subject, String htmlBody, Logger logger) {
+    private static void notificar(String clave, Long id, String nombre, Logger logger) {
         // Validar configuración
-        if (SENDGRID_API_KEY == null || SENDGRID_API_KEY.isEmpty()) {
+        if ("sendgrid".equals(TRANSPORT) && (SENDGRID_API_KEY == null || SENDGRID_API_KEY.isEmpty())) {
             logger.warning("SendGrid API Key no configurada. Email no enviado.");
             return;
         }
@@ -162,36 +99,139 @@ public class EmailService {
             return;
         }
         
-        if (TO_EMAIL == null || TO_EMAIL.isEmpty()) {
+        List<String> destinatarios = destinatarios();
+        if (destinatarios.isEmpty()) {
             logger.warning("Email destinatario (RECIPIENT_EMAIL) no configurado. Email no enviado.");
             return;
         }
         
-        try {
-            Email from = new Email(FROM_EMAIL);
-            Email to = new Email(TO_EMAIL);
-            Content content = new Content("text/html", htmlBody);
-            Mail mail = new Mail(from, subject, to, content);
-            
-            SendGrid sg = new SendGrid(SENDGRID_API_KEY);
-            Request request = new Request();
-            
-            request.setMethod(Method.POST);
-            request.setEndpoint("mail/send");
-            request.setBody(mail.build());
-            
-            Response response = sg.api(request);
-            
-            if (response.getStatusCode() >= 200 && response.getStatusCode() < 300) {
-                logger.info(String.format("Email enviado exitosamente a %s: %s (Status: %d)", 
-                    TO_EMAIL, subject, response.getStatusCode()));
-            } else {
-                logger.warning(String.format("Error al enviar email. Status: %d, Body: %s", 
-                    response.getStatusCode(), response.getBody()));
+        EmailTemplates templates = templates();
+        Map<String, Object> model = new HashMap<>();
+        model.put("id", id);
+        model.put("nombre", nombre);
+        
+        // En modo digest solo hace falta la línea de resumen
+        if (DIGEST_ENABLED) {
+            String resumen = templates.message(clave + ".resumen", model);
+            for (String destinatario : destinatarios) {
+                getDigest().add(destinatario, resumen);
+            }
+            return;
+        }
+        
+        model.put("titulo", templates.message(clave + ".titulo", model));
+        model.put("intro", templates.message(clave + ".intro", model));
+        model.put("fecha", templates.formatFecha(LocalDateTime.now()));
+        String subject = templates.message(clave + ".asunto", model);
+        String body = templates.render("cambio", model);
+        
+        for (String destinatario : destinatarios) {
+            if (!getQueue().submit(new EmailMessage(FROM_EMAIL, destinatario, subject, body))) {
+                logger.warning(String.format("Cola de emails llena, email descartado para %s: %s", destinatario, subject));
+            }
+        }
+    }
+    
+    private static List<String> destinatarios() {
+        List<String> destinatarios = new ArrayList<>();
+        if (TO_EMAIL != null) {
+            for (String email : TO_EMAIL.split(",")) {
+                if (!email.trim().isEmpty()) {
+                    destinatarios.add(email.trim());
+                }
+            }
+        }
+        return destinatarios;
+    }
+    
+    /**
+     * Email de resumen con los cambios acumulados para un destinatario
+     */
+    private static void sendDigestEmail(String destinatario, List<String> cambios) {
+        EmailTemplates templates = templates();
+        Map<String, Object> model = new HashMap<>();
+        model.put("cambios", cambios);
+        model.put("total", cambios.size());
+        model.put("fecha", templates.formatFecha(LocalDateTime.now()));
+        String subject = templates.message("resumen.asunto", model);
+        String body = templates.render("resumen", model);
+        if (!getQueue().submit(new EmailMessage(FROM_EMAIL, destinatario, subject, body))) {
+            serviceLogger.warning("Cola de emails llena, resumen descartado para " + destinatario);
+        }
+    }
+    
+    /**
+     * Entrega los resúmenes cuyo intervalo ya se cumplió (timer EmailDigestFlush)
+     *
+     * @return resúmenes encolados
+     */
+    public static int flushDigest() {
+        return DIGEST_ENABLED ? getDigest().flushDue() : 0;
+    }
+    
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("digest", DIGEST_ENABLED);
+        stats.put("digestPending", DIGEST_ENABLED ? getDigest().size() : 0);
+        stats.put("queue", queue != null ? queue.stats() : null);
+        return stats;
+    }
+    
+    private static EmailTemplates templates() {
+        return EmailTemplates.forLocale(LOCALE);
+    }
+    
+    private static EmailQueue getQueue() {
+        if (queue == null) {
+            synchronized (EmailService.class) {
+                if (queue == null) {
+                    EmailQueue created = new EmailQueue(
+                        createTransport(),
+                        EnvConfig.getInt("EMAIL_QUEUE_SIZE", 1000),
+                        EnvConfig.getInt("EMAIL_RATE_PER_SECOND", 5),
+                        EnvConfig.getInt("EMAIL_MAX_INTENTOS", 5),
+                        EnvConfig.getLong("EMAIL_BACKOFF_MS", 1000)
+                    );
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                        if (digest != null) {
+                            digest.flushAll();
+                        }
+                        created.shutdown(SHUTDOWN_TIMEOUT_MS);
+                    }, "email-shutdown"));
+                    queue = created;
+                }
             }
-            
-        } catch (IOException e) {
-            logger.severe(String.format("Error enviando email: %s", e.getMessage()));
+        }
+        return queue;
+    }
+    
+    private static EmailDigest getDigest() {
+        if (digest == null) {
+            synchronized (EmailService.class) {
+                if (digest == null) {
+                    digest = new EmailDigest(
+                        EnvConfig.getInt("EMAIL_DIGEST_MAX_CAMBIOS", 50),
+                        TimeUnit.MINUTES.toMillis(EnvConfig.getInt("EMAIL_DIGEST_MINUTOS", 15)),
+                        EmailService::sendDigestEmail,
+                        System::currentTimeMillis
+                    );
+                }
+            }
+        }
+        return digest;
+    }
+    
+    private static EmailTransport createTransport() {
+        switch (TRANSPORT) {
+            case "http":
+                return new HttpEmailTransport(EnvConfig.getString("EMAIL_HTTP_ENDPOINT", "http://localhost:8025/api/send"));
+            case "log":
+                return new LogEmailTransport();
+            case "sendgrid":
+                return new SendGridTransport(SENDGRID_API_KEY);
+            default:
+                serviceLogger.warning("EMAIL_TRANSPORT desconocido: " + TRANSPORT + ", usando log");
+                return new LogEmailTransport();
         }
     }
 }
@@ -0,0 +1,295 @@
+package com.agranelos.inventario.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plantilla compilada: el texto se analiza una sola vez y queda como una
+ * lista de segmentos (literales, variables y secciones) que se recorre al
+ * renderizar, sin volver a buscar marcadores ni formatear cadenas.
+ *
+ * Sintaxis (subconjunto de Mustache):
+ * <ul>
+ * <li>{@code {{nombre}}}: valor de la variable; en plantillas HTML se escapa</li>
+ * <li>{@code {{{nombre}}}}: valor sin escapar</li>
+ * <li>{@code {{#lista}}...{{/lista}}}: repite el bloque por cada elemento de
+ * una colección, o lo muestra una vez si el valor no es nulo ni vacío.
+ * Dentro del bloque {@code {{.}}} es el elemento actual y, si es un mapa, sus
+ * claves se resuelven antes que las del modelo</li>
+ * </ul>
+ */
+public final class EmailTemplate {
+
+    private final String name;
+    private final Segment[] segments;
+
+    private EmailTemplate(String name, Segment[] segments) {
+        this.name = name;
+        this.segments = segments;
+    }
+
+    /**
+     * Compila una plantilla
+     *
+     * @param html si es true, {@code {{x}}} escapa el valor para HTML
+     * @throws IllegalArgumentException si la plantilla está mal formada
+     */
+    public static EmailTemplate compile(String name, String source, boolean html) {
+        Parser parser = new Parser(name, source, html);
+        Segment[] segments = parser.parse(null);
+        return new EmailTemplate(name, segments);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Renderiza sobre el buffer indicado (no lo limpia)
+     */
+    public void render(Map<String, ?> model, StringBuilder out) {
+        renderSegments(segments, new Context(model, null), out);
+    }
+
+    /**
+     * Renderiza a un String usando el buffer reutilizable del hilo
+     */
+    public String render(Map<String, ?> model) {
+        StringBuilder buffer = Buffers.acquire();
+        render(model, buffer);
+        return Buffers.release(buffer);
+    }
+
+    private static void renderSegments(Segment[] segments, Context context, StringBuilder out) {
+        for (Segment segment : segments) {
+            segment.render(context, out);
+        }
+    }
+
+    /**
+     * Escapa los caracteres con significado en HTML
+     */
+    static void escapeHtml(CharSequence value, StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<': out.append("&lt;"); break;
+                case '>': out.append("&gt;"); break;
+                case '&': out.append("&amp;"); break;
+                case '"': out.append("&quot;"); break;
+                case '\'': out.append("&#39;"); break;
+                default: out.append(c);
+            }
+        }
+    }
+
+    /**
+     * Pila de ámbitos: el elemento de la sección actual y, debajo, el modelo
+     */
+    private static final class Context {
+        private final Object value;
+        private final Context parent;
+
+        private Context(Object value, Context parent) {
+            this.value = value;
+            this.parent = parent;
+        }
+
+        private Object lookup(String key) {
+            if (".".equals(key)) {
+                return value;
+            }
+            for (Context context = this; context != null; context = context.parent) {
+                if (context.value instanceof Map) {
+                    Map<?, ?> map = (Map<?, ?>) context.value;
+                    if (map.containsKey(key)) {
+                        return map.get(key);
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    private interface Segment {
+        void render(Context context, StringBuilder out);
+    }
+
+    private static final class Literal implements Segment {
+        private final String text;
+
+        private Literal(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void render(Context context, StringBuilder out) {
+            out.append(text);
+        }
+    }
+
+    private static final class Variable implements Segment {
+        private final String key;
+        private final boolean escape;
+
+        private Variable(String key, boolean escape) {
+            this.key = key;
+            this.escape = escape;
+        }
+
+        @Override
+        public void render(Context context, StringBuilder out) {
+            Object value = context.lookup(key);
+            if (value == null) {
+                return;
+            }
+            if (!escape) {
+                out.append(value);
+            } else if (value instanceof Number) {
+                out.append(value);
+            } else {
+                escapeHtml(value.toString(), out);
+            }
+        }
+    }
+
+    private static final class Section implements Segment {
+        private final String key;
+        private final Segment[] body;
+
+        private Section(String key, Segment[] body) {
+            this.key = key;
+            this.body = body;
+        }
+
+        @Override
+        public void render(Context context, StringBuilder out) {
+            Object value = context.lookup(key);
+            if (value == null || Boolean.FALSE.equals(value)) {
+                return;
+            }
+            if (value instanceof Iterable) {
+                for (Object item : (Iterable<?>) value) {
+                    renderSegments(body, new Context(item, context), out);
+                }
+            } else if (!(value instanceof CharSequence) || ((CharSequence) value).length() > 0) {
+                renderSegments(body, new Context(value, context), out);
+            }
+        }
+    }
+
+    private static final class Parser {
+        private final String name;
+        private final String source;
+        private final boolean html;
+        private int pos;
+
+        private Parser(String name, String source, boolean html) {
+            this.name = name;
+            this.source = source;
+            this.html = html;
+        }
+
+        /**
+         * Lee segmentos hasta el cierre de la sección indicada (o el final si es null)
+         */
+        private Segment[] parse(String closing) {
+            List<Segment> segments = new ArrayList<>();
+            while (pos < source.length()) {
+                int open = source.indexOf("{{", pos);
+                if (open < 0) {
+                    segments.add(new Literal(source.substring(pos)));
+                    pos = source.length();
+                    break;
+                }
+                if (open > pos) {
+                    segments.add(new Literal(source.substring(pos, open)));
+                }
+                boolean raw = source.startsWith("{{{", open);
+                String end = raw ? "}}}" : "}}";
+                int close = source.indexOf(end, open + end.length());
+                if (close < 0) {
+                    throw error("marcador sin cerrar en posición " + open);
+                }
+                String tag = source.substring(open + end.length(), close).trim();
+                pos = close + end.length();
+
+                if (raw) {
+                    segments.add(new Variable(tag, false));
+                } else if (tag.startsWith("#")) {
+                    String key = tag.substring(1).trim();
+                    segments.add(new Section(key, parse(key)));
+                } else if (tag.startsWith("/")) {
+                    String key = tag.substring(1).trim();
+                    if (!key.equals(closing)) {
+                        throw error("cierre inesperado {{/" + key + "}}");
+                    }
+                    return toArray(segments);
+                } else {
+                    segments.add(new Variable(tag, html));
+                }
+            }
+            if (closing != null) {
+                throw error("falta {{/" + closing + "}}");
+            }
+            return toArray(segments);
+        }
+
+        /**
+         * Une literales consecutivos para recorrer menos segmentos al renderizar
+         */
+        private static Segment[] toArray(List<Segment> segments) {
+            List<Segment> merged = new ArrayList<>(segments.size());
+            for (Segment segment : segments) {
+                int last = merged.size() - 1;
+                if (segment instanceof Literal && last >= 0 && merged.get(last) instanceof Literal) {
+                    merged.set(last, new Literal(((Literal) merged.get(last)).text + ((Literal) segment).text));
+                } else {
+                    merged.add(segment);
+                }
+            }
+            return merged.toArray(new Segment[0]);
+        }
+
+        private IllegalArgumentException error(String detalle) {
+            return new IllegalArgumentException("Plantilla " + name + " inválida: " + detalle);
+        }
+    }
+
+    /**
+     * Buffer de renderizado por hilo: evita reservar un StringBuilder nuevo
+     * (y hacerlo crecer) en cada email
+     */
+    static final class Buffers {
+        private static final int INITIAL_CAPACITY = 4 * 1024;
+        private static final int MAX_RETAINED_CAPACITY = 256 * 1024;
+
+        private static final ThreadLocal<StringBuilder> BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_CAPACITY));
+
+        private Buffers() {
+        }
+
+        static StringBuilder acquire() {
+            StringBuilder buffer = BUFFER.get();
+            if (buffer.length() > 0) {
+                // Renderizado anidado: el buffer del hilo ya está en uso
+                return new StringBuilder(INITIAL_CAPACITY);
+            }
+            return buffer;
+        }
+
+        static String release(StringBuilder buffer) {
+            String result = buffer.toString();
+            if (buffer == BUFFER.get()) {
+                if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+                    BUFFER.set(new StringBuilder(INITIAL_CAPACITY));
+                } else {
+                    buffer.setLength(0);
+                }
+            }
+            return result;
+        }
+    }
+}
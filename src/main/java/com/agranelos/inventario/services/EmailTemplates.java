@@ -0,0 +1,141 @@
+package com.agranelos.inventario.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Plantillas de email de un idioma, cargadas desde el classpath
+ * ({@code email/<idioma>/}) y compiladas una sola vez.
+ *
+ * Cada idioma tiene plantillas HTML ({@code <nombre>.html}) y un
+ * {@code mensajes.properties} con asuntos, títulos y líneas de resumen, que
+ * también son plantillas (de texto, sin escapar). Lo que falte en un idioma
+ * se toma del idioma por defecto ({@value #DEFAULT_LOCALE}).
+ */
+public final class EmailTemplates {
+
+    static final String DEFAULT_LOCALE = "es";
+
+    private static final String BASE_PATH = "email/";
+    private static final Map<String, EmailTemplates> BY_LOCALE = new ConcurrentHashMap<>();
+
+    private final String locale;
+    private final EmailTemplates fallback;
+    private final Properties mensajes;
+    private final DateTimeFormatter fechaFormatter;
+    private final Map<String, EmailTemplate> html = new ConcurrentHashMap<>();
+    private final Map<String, EmailTemplate> textos = new ConcurrentHashMap<>();
+
+    private EmailTemplates(String locale, EmailTemplates fallback) {
+        this.locale = locale;
+        this.fallback = fallback;
+        this.mensajes = loadProperties(BASE_PATH + locale + "/mensajes.properties");
+        this.fechaFormatter = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM)
+            .withLocale(Locale.forLanguageTag(locale));
+    }
+
+    public static EmailTemplates forLocale(String locale) {
+        EmailTemplates templates = BY_LOCALE.get(locale);
+        if (templates == null) {
+            // El idioma por defecto se resuelve antes: computeIfAbsent no admite llamadas anidadas
+            EmailTemplates fallback = DEFAULT_LOCALE.equals(locale) ? null : forLocale(DEFAULT_LOCALE);
+            templates = BY_LOCALE.computeIfAbsent(locale, key -> new EmailTemplates(key, fallback));
+        }
+        return templates;
+    }
+
+    public String getLocale() {
+        return locale;
+    }
+
+    /**
+     * Renderiza la plantilla HTML {@code <nombre>.html}
+     *
+     * @throws IllegalArgumentException si no existe en este idioma ni en el por defecto
+     */
+    public String render(String nombre, Map<String, ?> model) {
+        return template(nombre).render(model);
+    }
+
+    /**
+     * Renderiza un mensaje de {@code mensajes.properties}
+     *
+     * @throws IllegalArgumentException si la clave no existe
+     */
+    public String message(String clave, Map<String, ?> model) {
+        return mensaje(clave).render(model);
+    }
+
+    public String formatFecha(LocalDateTime fecha) {
+        return fechaFormatter.format(fecha);
+    }
+
+    EmailTemplate template(String nombre) {
+        EmailTemplate template = html.get(nombre);
+        if (template == null) {
+            template = html.computeIfAbsent(nombre, key -> {
+                String source = loadResource(BASE_PATH + locale + "/" + key + ".html");
+                if (source == null) {
+                    return fallback != null ? fallback.template(key) : null;
+                }
+                return EmailTemplate.compile(locale + "/" + key, source, true);
+            });
+            if (template == null) {
+                throw new IllegalArgumentException("Plantilla de email no encontrada: " + nombre);
+            }
+        }
+        return template;
+    }
+
+    EmailTemplate mensaje(String clave) {
+        EmailTemplate template = textos.get(clave);
+        if (template == null) {
+            template = textos.computeIfAbsent(clave, key -> {
+                String source = mensajes.getProperty(key);
+                if (source == null) {
+                    return fallback != null ? fallback.mensaje(key) : null;
+                }
+                return EmailTemplate.compile(locale + ":" + key, source, false);
+            });
+            if (template == null) {
+                throw new IllegalArgumentException("Mensaje de email no encontrado: " + clave);
+            }
+        }
+        return template;
+    }
+
+    private static String loadResource(String path) {
+        try (InputStream inputStream = EmailTemplates.class.getClassLoader().getResourceAsStream(path)) {
+            if (inputStream == null) {
+                return null;
+            }
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo leer la plantilla " + path, e);
+        }
+    }
+
+    private static Properties loadProperties(String path) {
+        Properties properties = new Properties();
+        try (InputStream inputStream = EmailTemplates.class.getClassLoader().getResourceAsStream(path)) {
+            if (inputStream != null) {
+                try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+                    properties.load(reader);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudieron leer los mensajes " + path, e);
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,20 @@
+package com.agranelos.inventario.services;
+
+import java.io.IOException;
+
+/**
+ * Canal de entrega de emails (SendGrid en producción; HTTP o log como
+ * sustitutos locales). Se elige con EMAIL_TRANSPORT.
+ *
+ * Una {@link EmailDeliveryException} no reintentable descarta el email;
+ * cualquier otra IOException se reintenta con backoff.
+ */
+public interface EmailTransport {
+
+    void send(EmailMessage message) throws IOException;
+
+    /**
+     * Nombre para logs y estadísticas
+     */
+    String getName();
+}
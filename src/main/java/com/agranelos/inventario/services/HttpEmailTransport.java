@@ -0,0 +1,62 @@
+package com.agranelos.inventario.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sustituto local: envía cada email como JSON ({@code from, to, subject, html})
+ * por POST a EMAIL_HTTP_ENDPOINT, p. ej. un mock server en pruebas
+ */
+public class HttpEmailTransport implements EmailTransport {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpClient client = HttpClient.newBuilder()
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+    private final URI endpoint;
+
+    public HttpEmailTransport(String endpoint) {
+        this.endpoint = URI.create(endpoint);
+    }
+
+    @Override
+    public void send(EmailMessage message) throws IOException {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("from", message.getFrom());
+        body.put("to", message.getTo());
+        body.put("subject", message.getSubject());
+        body.put("html", message.getHtmlBody());
+
+        HttpRequest request = HttpRequest.newBuilder(endpoint)
+            .timeout(Duration.ofSeconds(10))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+            .build();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                throw new EmailDeliveryException(
+                    "El endpoint de email respondió " + response.statusCode(),
+                    response.statusCode()
+                );
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Envío interrumpido", e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "http";
+    }
+}
@@ -0,0 +1,21 @@
+package com.agranelos.inventario.services;
+
+import java.util.logging.Logger;
+
+/**
+ * Sustituto local que solo registra el email en el log
+ */
+public class LogEmailTransport implements EmailTransport {
+
+    private static final Logger logger = Logger.getLogger(LogEmailTransport.class.getName());
+
+    @Override
+    public void send(EmailMessage message) {
+        logger.info(String.format("Email (log) para %s: %s", message.getTo(), message.getSubject()));
+    }
+
+    @Override
+    public String getName() {
+        return "log";
+    }
+}
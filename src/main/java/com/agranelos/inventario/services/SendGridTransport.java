@@ -0,0 +1,52 @@
+package com.agranelos.inventario.services;
+
+import com.sendgrid.Method;
+import com.sendgrid.Request;
+import com.sendgrid.Response;
+import com.sendgrid.SendGrid;
+import com.sendgrid.helpers.mail.Mail;
+import com.sendgrid.helpers.mail.objects.Content;
+import com.sendgrid.helpers.mail.objects.Email;
+
+import java.io.IOException;
+
+/**
+ * Entrega por la API de SendGrid con un único cliente por instancia, que
+ * reutiliza sus conexiones HTTP entre envíos
+ */
+public class SendGridTransport implements EmailTransport {
+
+    private final SendGrid client;
+
+    public SendGridTransport(String apiKey) {
+        this.client = new SendGrid(apiKey);
+    }
+
+    @Override
+    public void send(EmailMessage message) throws IOException {
+        Mail mail = new Mail(
+            new Email(message.getFrom()),
+            message.getSubject(),
+            new Email(message.getTo()),
+            new Content("text/html", message.getHtmlBody())
+        );
+
+        Request request = new Request();
+        request.setMethod(Method.POST);
+        request.setEndpoint("mail/send");
+        request.setBody(mail.build());
+
+        Response response = client.api(request);
+        if (response.getStatusCode() < 200 || response.getStatusCode() >= 300) {
+            throw new EmailDeliveryException(
+                String.format("SendGrid respondió %d: %s", response.getStatusCode(), response.getBody()),
+                response.getStatusCode()
+            );
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "sendgrid";
+    }
+}
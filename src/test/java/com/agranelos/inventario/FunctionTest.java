@@ -131,6 +131,85 @@ public class FunctionTest {
         }
     }
 
+    /**
+     * Test para la paginación de productos con parámetros inválidos
+     */
+    @Test
+    public void testGetProductosWithInvalidPagination() throws Exception {
+        // Setup
+        @SuppressWarnings("unchecked")
+        final HttpRequestMessage<Optional<String>> req = mock(
+            HttpRequestMessage.class
+        );
+
+        final Map<String, String> queryParams = new HashMap<>();
+        queryParams.put("limit", "0");
+        queryParams.put("after", "no-es-un-cursor");
+        doReturn(queryParams).when(req).getQueryParameters();
+
+        final Optional<String> queryBody = Optional.empty();
+        doReturn(queryBody).when(req).getBody();
+
+        doAnswer(
+            new Answer<HttpResponseMessage.Builder>() {
+                @Override
+                public HttpResponseMessage.Builder answer(
+                    InvocationOnMock invocation
+                ) {
+                    HttpStatus status =
+                        (HttpStatus) invocation.getArguments()[0];
+                    return new HttpResponseMessageMock.HttpResponseMessageBuilderMock().status(
+                        status
+                    );
+                }
+            }
+        )
+            .when(req)
+            .createResponseBuilder(any(HttpStatus.class));
+
+        final HttpResponseMessage ret = function.getProductos(req, context);
+
+        // Debería devolver BAD_REQUEST sin tocar la base de datos
+        assertEquals(HttpStatus.BAD_REQUEST, ret.getStatus());
+    }
+
+    /**
+     * Test para el endpoint de creación masiva con un cuerpo inválido
+     */
+    @Test
+    public void testCreateProductosBatchRequiresArray() throws Exception {
+        // Setup
+        @SuppressWarnings("unchecked")
+        final HttpRequestMessage<Optional<String>> req = mock(
+            HttpRequestMessage.class
+        );
+
+        final Optional<String> queryBody = Optional.of("{\"nombre\": \"Arroz\"}");
+        doReturn(queryBody).when(req).getBody();
+
+        doAnswer(
+            new Answer<HttpResponseMessage.Builder>() {
+                @Override
+                public HttpResponseMessage.Builder answer(
+                    InvocationOnMock invocation
+                ) {
+                    HttpStatus status =
+                        (HttpStatus) invocation.getArguments()[0];
+                    return new HttpResponseMessageMock.HttpResponseMessageBuilderMock().status(
+                        status
+                    );
+                }
+            }
+        )
+            .when(req)
+            .createResponseBuilder(any(HttpStatus.class));
+
+        final HttpResponseMessage ret = function.createProductosBatch(req, context);
+
+        // Debería devolver BAD_REQUEST sin tocar la base de datos
+        assertEquals(HttpStatus.BAD_REQUEST, ret.getStatus());
+    }
+
     /**
      * Test para el endpoint de crear producto
      */
@@ -0,0 +1,22 @@
+package com.agranelos.inventario;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for Warmup (arranque fuera del host de Functions).
+ */
+public class WarmupTest {
+
+    @Test
+    public void testLoadingFunctionOutsideHostDoesNotStartWarmup() {
+        assumeFalse(Warmup.enHostDeFunctions(), "solo aplica fuera del host de Functions");
+
+        new Function();
+        Warmup.bootstrap();
+
+        assertFalse(Warmup.isStarted());
+    }
+}
@@ -0,0 +1,70 @@
+package com.agranelos.inventario.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.agranelos.inventario.model.Bodega;
+import com.agranelos.inventario.model.Producto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the LISTEN/NOTIFY payloads handled by CacheInvalidation.
+ */
+public class CacheInvalidationTest {
+
+    @AfterEach
+    public void tearDown() {
+        EntityCache.invalidateAll();
+    }
+
+    @Test
+    public void testApplyEvictsSingleEntry() {
+        EntityCache.putProducto(producto(1));
+        EntityCache.putProducto(producto(2));
+
+        assertTrue(CacheInvalidation.apply("producto:1"));
+
+        assertNull(EntityCache.getProducto(1));
+        assertNotNull(EntityCache.getProducto(2));
+    }
+
+    @Test
+    public void testApplyEvictsIdList() {
+        EntityCache.putProducto(producto(1));
+        EntityCache.putProducto(producto(2));
+        EntityCache.putProducto(producto(3));
+
+        assertTrue(CacheInvalidation.apply("producto:1,3"));
+
+        assertNull(EntityCache.getProducto(1));
+        assertNotNull(EntityCache.getProducto(2));
+        assertNull(EntityCache.getProducto(3));
+    }
+
+    @Test
+    public void testApplyWildcardClearsEverything() {
+        EntityCache.putProducto(producto(1));
+        Bodega bodega = new Bodega();
+        bodega.setId(7);
+        EntityCache.putBodega(bodega);
+
+        assertTrue(CacheInvalidation.apply("*"));
+
+        assertNull(EntityCache.getProducto(1));
+        assertNull(EntityCache.getBodega(7));
+    }
+
+    @Test
+    public void testApplyRejectsMalformedPayloads() {
+        assertFalse(CacheInvalidation.apply(null));
+        assertFalse(CacheInvalidation.apply("producto"));
+        assertFalse(CacheInvalidation.apply("producto:abc"));
+        assertFalse(CacheInvalidation.apply("movimiento:1"));
+    }
+
+    private static Producto producto(int id) {
+        Producto producto = new Producto();
+        producto.setId(id);
+        return producto;
+    }
+}
@@ -0,0 +1,52 @@
+package com.agranelos.inventario.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for LruCache.
+ */
+public class LruCacheTest {
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        LruCache<Integer, String> cache = new LruCache<>(2);
+        cache.put(1, "uno");
+        cache.put(2, "dos");
+        cache.get(1);
+        cache.put(3, "tres");
+
+        assertEquals("uno", cache.get(1));
+        assertNull(cache.get(2));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testExpiresEntriesAfterTtl() {
+        AtomicLong now = new AtomicLong(1000);
+        LruCache<Integer, String> cache = new LruCache<>(10, 500, now::get);
+        cache.put(1, "uno");
+
+        now.set(1499);
+        assertEquals("uno", cache.get(1));
+
+        now.set(1500);
+        assertNull(cache.get(1));
+        assertEquals(1, cache.getExpirations());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidate() {
+        LruCache<Integer, String> cache = new LruCache<>(10, 60000);
+        cache.put(1, "uno");
+        cache.invalidate(1);
+
+        assertNull(cache.get(1));
+    }
+}
@@ -0,0 +1,95 @@
+package com.agranelos.inventario.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for AdmissionController.
+ */
+public class AdmissionControllerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testReadsShedBeforeWrites() throws Exception {
+        // Límite 5, lecturas hasta 4 (0.8), sin cola
+        AdmissionController admission = new AdmissionController(1, 5, 0.8, 0, 0, 0, 250, 2);
+
+        for (int i = 0; i < 4; i++) {
+            admission.acquire(AdmissionController.Priority.READ);
+        }
+        AdmissionRejectedException rechazo = assertThrows(AdmissionRejectedException.class,
+            () -> admission.acquire(AdmissionController.Priority.READ));
+        assertEquals(2, rechazo.getRetryAfterSeconds());
+
+        AdmissionController.Permit escritura = admission.acquire(AdmissionController.Priority.WRITE);
+        assertThrows(AdmissionRejectedException.class,
+            () -> admission.acquire(AdmissionController.Priority.WRITE));
+
+        escritura.release(false);
+        admission.acquire(AdmissionController.Priority.WRITE);
+        assertEquals(1L, admission.stats().get("rejectedReads"));
+        assertEquals(1L, admission.stats().get("rejectedWrites"));
+    }
+
+    @Test
+    public void testQueuedWriteAdmittedOnRelease() throws Exception {
+        AdmissionController admission = new AdmissionController(1, 1, 1.0, 10, 50, 5000, 250, 1);
+        AdmissionController.Permit ocupado = admission.acquire(AdmissionController.Priority.WRITE);
+
+        CompletableFuture<AdmissionController.Permit> espera = CompletableFuture.supplyAsync(() -> {
+            try {
+                return admission.acquire(AdmissionController.Priority.WRITE);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        while ((int) admission.stats().get("waitingWrites") == 0) {
+            Thread.sleep(1);
+        }
+        // La lectura no adelanta a la escritura en espera y vence su propia espera
+        assertThrows(AdmissionRejectedException.class,
+            () -> admission.acquire(AdmissionController.Priority.READ));
+
+        ocupado.release(false);
+        assertNotNull(espera.get(5, TimeUnit.SECONDS));
+        assertEquals(1, admission.stats().get("inFlight"));
+    }
+
+    @Test
+    public void testAimdDecreasesOncePerWindowAndRecovers() throws Exception {
+        AtomicLong reloj = new AtomicLong(0);
+        AdmissionController admission = new AdmissionController(2, 10, 1.0, 0, 0, 0, 100, 1, reloj::get);
+
+        AdmissionController.Permit lento = admission.acquire(AdmissionController.Priority.READ);
+        AdmissionController.Permit lento2 = admission.acquire(AdmissionController.Priority.READ);
+        reloj.addAndGet(500 * MS);
+        lento.release(false);
+        lento2.release(false);
+        // Dos muestras lentas en la misma ventana: una sola reducción
+        assertEquals(9, admission.getLimit());
+
+        reloj.addAndGet(100 * MS);
+        admission.acquire(AdmissionController.Priority.WRITE).release(true);
+        assertEquals(8, admission.getLimit());
+
+        // Muestras rápidas con el límite en uso lo hacen crecer de nuevo
+        for (int i = 0; i < 100; i++) {
+            AdmissionController.Permit[] permisos = new AdmissionController.Permit[admission.getLimit()];
+            for (int j = 0; j < permisos.length; j++) {
+                permisos[j] = admission.acquire(AdmissionController.Priority.READ);
+            }
+            reloj.addAndGet(MS);
+            for (AdmissionController.Permit permiso : permisos) {
+                permiso.release(false);
+            }
+        }
+        assertEquals(10, admission.getLimit());
+        assertEquals(1L, admission.stats().get("poolTimeouts"));
+    }
+}
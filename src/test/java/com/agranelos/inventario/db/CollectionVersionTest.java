@@ -0,0 +1,56 @@
+package com.agranelos.inventario.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.agranelos.inventario.http.ConditionalGet;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for CollectionVersion (mapeo de COLECCION_VERSION, sin base de datos).
+ */
+public class CollectionVersionTest {
+
+    private static ResultSet fila(long version, LocalDateTime fecha) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getLong("Version")).thenReturn(version);
+        when(rs.getTimestamp("FechaActualizacion")).thenReturn(Timestamp.valueOf(fecha));
+        return rs;
+    }
+
+    private static String etag(CollectionVersion version) {
+        return ConditionalGet.etag("productos", version.getVersion(), version.getUltimaActualizacion());
+    }
+
+    @Test
+    public void testLateCommitChangesListEtag() throws Exception {
+        // T2 empezó a las 10:00:05 e hizo commit; T1 (un batchUpdate que empezó a
+        // las 10:00:00) hace commit después. Sus filas quedan con FechaActualizacion
+        // 10:00:00, así que COUNT(*) y MAX(FechaActualizacion) no cambiaban: el
+        // trigger diferido incrementa el contador en el commit de T1.
+        CollectionVersion trasT2 = CollectionVersion.read("producto",
+            fila(7, LocalDateTime.of(2024, 5, 1, 10, 0, 6)));
+        CollectionVersion trasT1 = CollectionVersion.read("producto",
+            fila(8, LocalDateTime.of(2024, 5, 1, 10, 0, 9)));
+
+        assertEquals(7, trasT2.getVersion());
+        assertEquals(LocalDateTime.of(2024, 5, 1, 10, 0, 9), trasT1.getUltimaActualizacion());
+        assertNotEquals(etag(trasT2), etag(trasT1));
+    }
+
+    @Test
+    public void testMissingRowNeverMatches() throws Exception {
+        ResultSet vacio = mock(ResultSet.class);
+        when(vacio.next()).thenReturn(false);
+
+        CollectionVersion uno = CollectionVersion.read("bodega", vacio);
+        CollectionVersion dos = CollectionVersion.read("bodega", vacio);
+
+        assertNull(uno.getUltimaActualizacion());
+        assertNotEquals(etag(uno), etag(dos));
+    }
+}
@@ -0,0 +1,41 @@
+package com.agranelos.inventario.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for KeysetCursor.
+ */
+public class KeysetCursorTest {
+
+    @Test
+    public void testRoundTrip() {
+        KeysetCursor cursor = new KeysetCursor("NOMBRE", "Jamón | Ibérico", 42);
+
+        KeysetCursor decoded = KeysetCursor.decode(cursor.encode());
+
+        assertEquals("NOMBRE", decoded.getOrden());
+        assertEquals("Jamón | Ibérico", decoded.getValor());
+        assertEquals(42, decoded.getId());
+    }
+
+    @Test
+    public void testEncodeIsUrlSafe() {
+        String token = new KeysetCursor("NOMBRE", "???>>>", 1).encode();
+
+        assertFalse(token.contains("+"));
+        assertFalse(token.contains("/"));
+        assertFalse(token.contains("="));
+    }
+
+    @Test
+    public void testDecodeInvalidToken() {
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(""));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode("%%%"));
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> KeysetCursor.decode("c2luLXNlcGFyYWRvcg")
+        );
+    }
+}
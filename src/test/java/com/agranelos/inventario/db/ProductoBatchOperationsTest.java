@@ -0,0 +1,62 @@
+package com.agranelos.inventario.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.agranelos.inventario.model.Producto;
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for ProductoBatchOperations (sin base de datos).
+ */
+public class ProductoBatchOperationsTest {
+
+    @Test
+    public void testInsertAllMapsIdsByOrdinalNotByReturningOrder() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(connection.createArrayOf(anyString(), any())).thenReturn(mock(Array.class));
+        when(statement.executeQuery()).thenReturn(rs);
+        // Filas devueltas en otro orden que la entrada
+        when(rs.next()).thenReturn(true, true, true, false);
+        when(rs.getLong(1)).thenReturn(3L, 1L, 2L);
+        when(rs.getInt(2)).thenReturn(72, 70, 71);
+
+        List<Integer> ids = ProductoBatchOperations.insertAll(connection, Arrays.asList(
+            new Producto("A", null, BigDecimal.ONE, 1),
+            new Producto("B", null, null, null),
+            new Producto("C", "c", BigDecimal.TEN, 3)
+        ));
+
+        assertEquals(Arrays.asList(70, 71, 72), ids);
+    }
+
+    @Test
+    public void testInsertAllFailsWhenRowsAreMissing() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(connection.createArrayOf(anyString(), any())).thenReturn(mock(Array.class));
+        when(statement.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getLong(1)).thenReturn(1L);
+        when(rs.getInt(2)).thenReturn(70);
+
+        assertThrows(SQLException.class, () -> ProductoBatchOperations.insertAll(connection, Arrays.asList(
+            new Producto("A", null, BigDecimal.ONE, 1),
+            new Producto("B", null, BigDecimal.ONE, 1)
+        )));
+    }
+}
@@ -0,0 +1,65 @@
+package com.agranelos.inventario.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for ReplicaMonitor and the ReadConsistency session token.
+ */
+public class ReplicaMonitorTest {
+
+    @Test
+    public void testLsnRoundTrip() {
+        long lsn = ReadConsistency.parseLsn("16/B374D848");
+
+        assertEquals(0x16B374D848L, lsn);
+        assertEquals("16/B374D848", ReadConsistency.formatLsn(lsn));
+        assertEquals(0, ReadConsistency.parseLsn(null));
+        assertEquals(0, ReadConsistency.parseLsn("no-es-lsn"));
+        assertEquals(0, ReadConsistency.parseLsn("123456789/0"));
+    }
+
+    @Test
+    public void testRoutesByLagAndFreshness() {
+        AtomicLong reloj = new AtomicLong(10_000);
+        ReplicaMonitor monitor = new ReplicaMonitor(null, 500, 5000, reloj::get);
+
+        // Sin ninguna consulta exitosa la réplica no atiende
+        assertFalse(monitor.canServe(0));
+
+        monitor.update(ReadConsistency.parseLsn("0/2000"), 100, true);
+        assertTrue(monitor.canServe(0));
+        assertTrue(monitor.canServe(ReadConsistency.parseLsn("0/2000")));
+        assertFalse(monitor.canServe(ReadConsistency.parseLsn("0/2001")));
+
+        monitor.update(ReadConsistency.parseLsn("0/3000"), 6000, true);
+        assertFalse(monitor.canServe(0));
+
+        // Receptor de WAL desconectado: lo reproducido puede estar atrasado
+        monitor.update(ReadConsistency.parseLsn("0/3000"), 0, false);
+        assertFalse(monitor.canServe(0));
+
+        monitor.update(ReadConsistency.parseLsn("0/3000"), 0, true);
+        assertTrue(monitor.canServe(0));
+        reloj.addAndGet(1501);
+        assertFalse(monitor.canServe(0), "un estado de más de tres períodos no es confiable");
+    }
+
+    @Test
+    public void testSessionRequiresTokenFromClient() {
+        assertEquals(0, ReadConsistency.requiredLsn());
+
+        try (ReadConsistency.Session session = ReadConsistency.start("0/ABC")) {
+            assertEquals(0xABC, ReadConsistency.requiredLsn());
+            assertNull(session.getToken());
+
+            try (ReadConsistency.Session interna = ReadConsistency.start(null)) {
+                assertEquals(0, ReadConsistency.requiredLsn());
+            }
+            assertEquals(0xABC, ReadConsistency.requiredLsn());
+        }
+        assertEquals(0, ReadConsistency.requiredLsn());
+    }
+}
@@ -0,0 +1,93 @@
+package com.agranelos.inventario.events;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.azure.core.util.BinaryData;
+import com.azure.messaging.eventgrid.EventGridEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Unit tests for AsyncEventGridPublisher.
+ */
+public class AsyncEventGridPublisherTest {
+
+    private static EventGridEvent event(int id) {
+        return new EventGridEvent("/productos/" + id, "ProductoActualizado", BinaryData.fromString("{}"), "1.0");
+    }
+
+    @Test
+    public void testFlushesWhenBatchIsFull() throws Exception {
+        List<Integer> sizes = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(2);
+        AsyncEventGridPublisher publisher = new AsyncEventGridPublisher(batch -> {
+            sizes.add(batch.size());
+            latch.countDown();
+            return Mono.empty();
+        }, 100, 3, 60_000, 1);
+
+        for (int i = 0; i < 6; i++) {
+            assertTrue(publisher.offer(event(i)));
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(3, 3), sizes);
+        publisher.close(1000);
+    }
+
+    @Test
+    public void testFlushesPartialBatchAfterInterval() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        AsyncEventGridPublisher publisher = new AsyncEventGridPublisher(batch -> {
+            latch.countDown();
+            return Mono.empty();
+        }, 100, 500, 50, 1);
+
+        publisher.offer(event(1));
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        publisher.close(1000);
+        assertEquals(1, publisher.getSent());
+    }
+
+    @Test
+    public void testRejectsWhenQueueIsFullAndSendsRestOnClose() {
+        // La única petición en vuelo no termina, así que la cola no se vacía
+        Sinks.Empty<Void> pendiente = Sinks.empty();
+        List<EventGridEvent> alCerrar = Collections.synchronizedList(new ArrayList<>());
+        AsyncEventGridPublisher publisher = new AsyncEventGridPublisher(batch -> {
+            if (batch.get(0).getSubject().equals("/productos/0")) {
+                return pendiente.asMono();
+            }
+            alCerrar.addAll(batch);
+            return Mono.empty();
+        }, 2, 1, 1, 1);
+
+        assertTrue(publisher.offer(event(0)));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (publisher.getBatches() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+
+        // No caben los cuatro: no se encola ninguno, para no alterar el orden
+        List<EventGridEvent> rechazados = publisher.offerAll(List.of(event(1), event(2), event(3), event(4)));
+        assertEquals(4, rechazados.size());
+        assertEquals("/productos/1", rechazados.get(0).getSubject());
+        assertEquals(4, publisher.getRejected());
+
+        // Los que caben quedan en la cola hasta el cierre
+        assertTrue(publisher.offerAll(List.of(event(5), event(6))).isEmpty());
+
+        pendiente.tryEmitEmpty();
+        publisher.close(2000);
+        assertFalse(alCerrar.isEmpty());
+        assertEquals(2, alCerrar.size());
+        assertFalse(publisher.offer(event(7)));
+    }
+}
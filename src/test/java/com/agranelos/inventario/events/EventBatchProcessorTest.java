@@ -0,0 +1,260 @@
+package com.agranelos.inventario.events;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.agranelos.inventario.HttpResponseMessageMock;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for EventBatchProcessor and the EventGridConsumer batch webhook.
+ */
+public class EventBatchProcessorTest {
+
+    private static final Logger logger = Logger.getLogger(EventBatchProcessorTest.class.getName());
+
+    private static EventGridConsumer.EventGridEventSchema event(EventType type, int productoId, String nombre) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("productoId", productoId);
+        data.put("nombre", nombre);
+        data.put("timestamp", List.of(2024, 5, 1, 10, 30, 0));
+        EventGridConsumer.EventGridEventSchema event = new EventGridConsumer.EventGridEventSchema();
+        event.setId(productoId + "-" + nombre);
+        event.setEventType(type.getValue());
+        event.setSubject("/productos/" + productoId);
+        event.setData(data);
+        return event;
+    }
+
+    @Test
+    public void testKeepsOrderPerSubjectAndDeserializesPayload() {
+        Map<Integer, List<String>> vistos = new HashMap<>();
+        EventHandlerRegistry registry = new EventHandlerRegistry()
+            .register(EventType.PRODUCTO_ACTUALIZADO, ProductoEventData.class, (data, log) -> {
+                Thread.sleep(data.getNombre().endsWith("1") ? 20 : 0);
+                synchronized (vistos) {
+                    vistos.computeIfAbsent(data.getProductoId(), id -> new ArrayList<>()).add(data.getNombre());
+                }
+            });
+        EventBatchProcessor processor = new EventBatchProcessor(registry, 4);
+
+        List<EventGridConsumer.EventGridEventSchema> lote = new ArrayList<>();
+        for (int version = 1; version <= 3; version++) {
+            for (int id = 1; id <= 5; id++) {
+                lote.add(event(EventType.PRODUCTO_ACTUALIZADO, id, "v" + version));
+            }
+        }
+
+        EventBatchProcessor.Resultado resultado = processor.process(lote, logger);
+
+        assertEquals(15, resultado.getProcesados());
+        assertEquals(0, resultado.getFallidos());
+        for (int id = 1; id <= 5; id++) {
+            assertEquals(List.of("v1", "v2", "v3"), vistos.get(id));
+        }
+    }
+
+    @Test
+    public void testCountsUnhandledAndFailedEvents() {
+        EventHandlerRegistry registry = new EventHandlerRegistry()
+            .register(EventType.PRODUCTO_CREADO, ProductoEventData.class, (data, log) -> {
+                throw new IllegalStateException("fallo");
+            });
+        EventBatchProcessor processor = new EventBatchProcessor(registry, 2);
+
+        EventBatchProcessor.Resultado resultado = processor.process(List.of(
+            event(EventType.PRODUCTO_CREADO, 1, "a"),
+            event(EventType.PRODUCTO_ELIMINADO, 2, "b")
+        ), logger);
+
+        assertEquals(0, resultado.getProcesados());
+        assertEquals(1, resultado.getIgnorados());
+        assertEquals(1, resultado.getFallidos());
+    }
+
+    @Test
+    public void testDropsDuplicatesAndReleasesFailedEvents() {
+        List<String> procesados = Collections.synchronizedList(new ArrayList<>());
+        boolean[] fallar = { true };
+        EventHandlerRegistry registry = new EventHandlerRegistry()
+            .register(EventType.PRODUCTO_ACTUALIZADO, ProductoEventData.class, (data, log) -> {
+                if (data.getProductoId() == 2 && fallar[0]) {
+                    throw new IllegalStateException("fallo");
+                }
+                procesados.add(data.getProductoId() + "-" + data.getNombre());
+            });
+        EventBatchProcessor processor = new EventBatchProcessor(registry, 2, new EventDeduplicator(100, 24, false));
+
+        EventGridConsumer.EventGridEventSchema uno = event(EventType.PRODUCTO_ACTUALIZADO, 1, "a");
+        EventGridConsumer.EventGridEventSchema dos = event(EventType.PRODUCTO_ACTUALIZADO, 2, "b");
+
+        EventBatchProcessor.Resultado primero = processor.process(List.of(uno, uno, dos), logger);
+        assertEquals(1, primero.getProcesados());
+        assertEquals(1, primero.getDuplicados());
+        assertEquals(1, primero.getFallidos());
+
+        // El reintento solo vuelve a ejecutar el evento que falló
+        fallar[0] = false;
+        EventBatchProcessor.Resultado reintento = processor.process(List.of(uno, dos), logger);
+        assertEquals(1, reintento.getProcesados());
+        assertEquals(1, reintento.getDuplicados());
+        assertEquals(List.of("1-a", "2-b"), procesados);
+    }
+
+    @Test
+    public void testFailureStopsSubjectGroupAndRetryKeepsOrder() {
+        List<String> vistos = new ArrayList<>();
+        boolean[] fallar = { true };
+        EventHandlerRegistry registry = new EventHandlerRegistry()
+            .register(EventType.PRODUCTO_ACTUALIZADO, ProductoEventData.class, (data, log) -> {
+                if (data.getNombre().equals("v2") && fallar[0]) {
+                    throw new IllegalStateException("fallo");
+                }
+                synchronized (vistos) {
+                    vistos.add(data.getProductoId() + "-" + data.getNombre());
+                }
+            });
+        EventBatchProcessor processor = new EventBatchProcessor(registry, 2, new EventDeduplicator(100, 24, false));
+        List<EventGridConsumer.EventGridEventSchema> lote = List.of(
+            event(EventType.PRODUCTO_ACTUALIZADO, 1, "v1"),
+            event(EventType.PRODUCTO_ACTUALIZADO, 1, "v2"),
+            event(EventType.PRODUCTO_ACTUALIZADO, 2, "v1"),
+            event(EventType.PRODUCTO_ACTUALIZADO, 1, "v3"));
+
+        EventBatchProcessor.Resultado primero = processor.process(lote, logger);
+        assertEquals(2, primero.getProcesados());
+        assertEquals(1, primero.getFallidos());
+        assertEquals(1, primero.getAplazados());
+        assertFalse(vistos.contains("1-v3"), "v3 no puede adelantarse a v2");
+
+        // La reentrega ejecuta v2 y luego v3; lo ya procesado se descarta
+        fallar[0] = false;
+        EventBatchProcessor.Resultado reintento = processor.process(lote, logger);
+        assertEquals(2, reintento.getProcesados());
+        assertEquals(2, reintento.getDuplicados());
+        assertEquals(List.of("1-v1", "1-v2", "1-v3"), vistos.stream().filter(v -> v.startsWith("1-")).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testClaimedEventWhoseHandlerNeverFinishesIsReclaimedAfterLease() {
+        AtomicLong reloj = new AtomicLong(1_000);
+        EventDeduplicator deduplicator = new EventDeduplicator(100, 24, 60_000, false, reloj::get);
+        List<String> procesados = new ArrayList<>();
+        EventHandlerRegistry registry = new EventHandlerRegistry()
+            .register(EventType.PRODUCTO_ACTUALIZADO, ProductoEventData.class,
+                (data, log) -> procesados.add(data.getProductoId() + "-" + data.getNombre()));
+        EventBatchProcessor processor = new EventBatchProcessor(registry, 2, deduplicator);
+        EventGridConsumer.EventGridEventSchema evento = event(EventType.PRODUCTO_ACTUALIZADO, 1, "a");
+
+        // Una invocación lo reclamó y murió a mitad del handler: nunca llega a complete ni release
+        assertEquals(Set.of(evento.getId()), deduplicator.claim(List.of(evento.getId())));
+
+        // Con el lease vigente la reentrega se descarta
+        assertEquals(1, processor.process(List.of(evento), logger).getDuplicados());
+
+        // Vencido el lease, la reentrega lo reclama y lo procesa
+        reloj.addAndGet(60_001);
+        assertEquals(1, processor.process(List.of(evento), logger).getProcesados());
+
+        // Ya procesado, no se repite aunque pase otro lease
+        reloj.addAndGet(60_001);
+        assertEquals(1, processor.process(List.of(evento), logger).getDuplicados());
+        assertEquals(List.of("1-a"), procesados);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpResponseMessage post(EventGridConsumer consumer, String body, Map<String, String> headers) {
+        HttpRequestMessage<Optional<String>> request = mock(HttpRequestMessage.class);
+        doReturn(Optional.of(body)).when(request).getBody();
+        doReturn(headers).when(request).getHeaders();
+        doAnswer(invocation -> new HttpResponseMessageMock.HttpResponseMessageBuilderMock()
+            .status((HttpStatus) invocation.getArguments()[0]))
+            .when(request).createResponseBuilder(any(HttpStatus.class));
+        ExecutionContext context = mock(ExecutionContext.class);
+        doReturn(logger).when(context).getLogger();
+        return consumer.handleEventBatch(request, context);
+    }
+
+    @Test
+    public void testWebhookFailsDeliveryAndRetryReprocessesFailedEvent() throws Exception {
+        List<String> procesados = new ArrayList<>();
+        boolean[] fallar = { true };
+        EventHandlerRegistry registry = new EventHandlerRegistry()
+            .register(EventType.PRODUCTO_ACTUALIZADO, ProductoEventData.class, (data, log) -> {
+                if (data.getProductoId() == 2 && fallar[0]) {
+                    throw new IllegalStateException("fallo");
+                }
+                procesados.add(data.getProductoId() + "-" + data.getNombre());
+            });
+        EventGridConsumer consumer = new EventGridConsumer(
+            new EventBatchProcessor(registry, 2, new EventDeduplicator(100, 24, false)), null);
+        String lote = new ObjectMapper().writeValueAsString(List.of(
+            event(EventType.PRODUCTO_ACTUALIZADO, 1, "a"),
+            event(EventType.PRODUCTO_ACTUALIZADO, 2, "b")));
+
+        // Un evento fallido hace fallar la entrega para que Event Grid la reintente
+        HttpResponseMessage primera = post(consumer, lote, Map.of());
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, primera.getStatus());
+        assertTrue(primera.getBody().toString().contains("\"fallidos\":1"));
+
+        // La reentrega del mismo lote procesa el id que falló y descarta el otro
+        fallar[0] = false;
+        HttpResponseMessage reintento = post(consumer, lote, Map.of());
+        assertEquals(HttpStatus.OK, reintento.getStatus());
+        assertTrue(reintento.getBody().toString().contains("\"duplicados\":1"));
+        assertEquals(List.of("1-a", "2-b"), procesados);
+    }
+
+    @Test
+    public void testWebhookRejectsRequestsWithoutSharedKey() throws Exception {
+        List<String> procesados = new ArrayList<>();
+        EventHandlerRegistry registry = new EventHandlerRegistry()
+            .register(EventType.PRODUCTO_ELIMINADO, ProductoEventData.class,
+                (data, log) -> procesados.add(data.getProductoId() + "-" + data.getNombre()));
+        EventGridConsumer consumer = new EventGridConsumer(new EventBatchProcessor(registry, 2), "secreto");
+        String lote = new ObjectMapper().writeValueAsString(List.of(event(EventType.PRODUCTO_ELIMINADO, 1, "a")));
+        String validacion = "[{\"id\":\"v\",\"eventType\":\"Microsoft.EventGrid.SubscriptionValidationEvent\","
+            + "\"data\":{\"validationCode\":\"abc\"}}]";
+
+        assertEquals(HttpStatus.UNAUTHORIZED, post(consumer, lote, Map.of()).getStatus());
+        assertEquals(HttpStatus.UNAUTHORIZED, post(consumer, lote, Map.of("x-webhook-key", "otro")).getStatus());
+        assertEquals(HttpStatus.UNAUTHORIZED, post(consumer, validacion, Map.of()).getStatus());
+        assertTrue(procesados.isEmpty());
+
+        assertEquals(HttpStatus.OK, post(consumer, lote, Map.of("x-webhook-key", "secreto")).getStatus());
+        assertEquals(List.of("1-a"), procesados);
+    }
+
+    @Test
+    public void testLongEventIdsAreHashedToColumnLength() {
+        String largo = "x".repeat(200);
+        assertEquals(EventDeduplicator.MAX_ID_LENGTH, EventDeduplicator.key(largo).length());
+        assertEquals("corto", EventDeduplicator.key("corto"));
+    }
+
+    @Test
+    public void testReadEventsAcceptsArrayAndSingleObject() throws Exception {
+        String evento = "{\"id\":\"1\",\"eventType\":\"" + EventType.BODEGA_CREADA.getValue()
+            + "\",\"subject\":\"/bodegas/1\",\"data\":{\"bodegaId\":1},\"dataVersion\":\"1.0\"}";
+
+        assertEquals(2, EventGridConsumer.readEvents("[" + evento + "," + evento + "]").size());
+        assertEquals("/bodegas/1", EventGridConsumer.readEvents(evento).get(0).getSubject());
+        assertEquals(Collections.emptyList(), EventGridConsumer.readEvents("[]"));
+    }
+}
@@ -0,0 +1,72 @@
+package com.agranelos.inventario.events;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.azure.core.util.BinaryData;
+import com.azure.messaging.eventgrid.EventGridEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for EventCoalescer.
+ */
+public class EventCoalescerTest {
+
+    private static EventGridEvent event(EventType type, int productoId, String version) {
+        return new EventGridEvent("/productos/" + productoId, type.getValue(),
+            BinaryData.fromString("{\"version\":\"" + version + "\"}"), "1.0");
+    }
+
+    private static List<String> describir(List<EventGridEvent> events) {
+        List<String> resultado = new ArrayList<>();
+        for (EventGridEvent event : events) {
+            resultado.add(event.getSubject() + " " + event.getData().toString());
+        }
+        return resultado;
+    }
+
+    @Test
+    public void testCoalesceKeepsLastUpdateOfEachRun() {
+        long antes = EventCoalescer.getFusionados();
+        List<EventGridEvent> lote = List.of(
+            event(EventType.PRODUCTO_ACTUALIZADO, 1, "a"),
+            event(EventType.PRODUCTO_ACTUALIZADO, 2, "a"),
+            event(EventType.PRODUCTO_ACTUALIZADO, 1, "b"),
+            event(EventType.PRODUCTO_ELIMINADO, 1, "c"),
+            event(EventType.PRODUCTO_ACTUALIZADO, 1, "d"),
+            event(EventType.PRODUCTO_ACTUALIZADO, 1, "e")
+        );
+
+        List<EventGridEvent> resultado = EventCoalescer.coalesce(lote);
+
+        assertEquals(List.of(
+            "/productos/2 {\"version\":\"a\"}",
+            "/productos/1 {\"version\":\"b\"}",
+            "/productos/1 {\"version\":\"c\"}",
+            "/productos/1 {\"version\":\"e\"}"
+        ), describir(resultado));
+        assertEquals(2, EventCoalescer.getFusionados() - antes);
+    }
+
+    @Test
+    public void testWindowEmitsFinalStateOnce() {
+        AtomicLong now = new AtomicLong(1000);
+        List<EventGridEvent> emitidos = new ArrayList<>();
+        EventCoalescer coalescer = new EventCoalescer(60_000, emitidos::addAll, now::get);
+
+        coalescer.submit(event(EventType.PRODUCTO_ACTUALIZADO, 1, "a"));
+        coalescer.submit(event(EventType.PRODUCTO_ACTUALIZADO, 1, "b"));
+        now.set(30_000);
+        coalescer.submit(event(EventType.PRODUCTO_ACTUALIZADO, 2, "a"));
+
+        now.set(61_000);
+        coalescer.flushExpired();
+        assertEquals(List.of("/productos/1 {\"version\":\"b\"}"), describir(emitidos));
+        assertEquals(1, coalescer.size());
+
+        assertNotNull(coalescer.take("/productos/2"));
+        assertNull(coalescer.take("/productos/2"));
+    }
+}
@@ -0,0 +1,150 @@
+package com.agranelos.inventario.events;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.azure.messaging.eventgrid.EventGridEvent;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for EventOutboxDispatcher (JDBC simulado, sin base de datos).
+ */
+public class EventOutboxDispatcherTest {
+
+    private static final Logger logger = Logger.getLogger(EventOutboxDispatcherTest.class.getName());
+
+    private static final String DELETE = "DELETE FROM EVENTO_OUTBOX WHERE ID = ANY(?)";
+
+    /**
+     * Conexión con el advisory lock libre y las filas indicadas pendientes
+     * (ID, subject, tipo)
+     */
+    private static Connection outbox(PreparedStatement markFailed, PreparedStatement delete, Object[]... filas)
+        throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(connection.createArrayOf(anyString(), any())).thenReturn(mock(Array.class));
+
+        PreparedStatement lock = mock(PreparedStatement.class);
+        ResultSet lockRs = mock(ResultSet.class);
+        when(lock.executeQuery()).thenReturn(lockRs);
+        when(lockRs.next()).thenReturn(true);
+        when(lockRs.getBoolean(1)).thenReturn(true);
+        when(connection.prepareStatement("SELECT pg_try_advisory_xact_lock(?)")).thenReturn(lock);
+
+        PreparedStatement select = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(select.executeQuery()).thenReturn(rs);
+        int[] fila = {-1};
+        when(rs.next()).thenAnswer(invocation -> ++fila[0] < filas.length);
+        when(rs.getLong("ID")).thenAnswer(invocation -> filas[fila[0]][0]);
+        when(rs.getString("EventId")).thenAnswer(invocation -> "evt-" + filas[fila[0]][0]);
+        when(rs.getString("Subject")).thenAnswer(invocation -> filas[fila[0]][1]);
+        when(rs.getString("EventType")).thenAnswer(invocation -> ((EventType) filas[fila[0]][2]).getValue());
+        when(rs.getString("Data")).thenAnswer(invocation -> "{\"id\":" + filas[fila[0]][0] + "}");
+        when(rs.getString("DataVersion")).thenReturn("1.0");
+        when(rs.getTimestamp("FechaEvento")).thenReturn(Timestamp.valueOf("2024-05-01 10:30:00"));
+        when(connection.prepareStatement(EventOutboxDispatcher.SELECT_PENDIENTES)).thenReturn(select);
+
+        when(connection.prepareStatement(EventOutboxDispatcher.MARK_FAILED)).thenReturn(markFailed);
+        when(connection.prepareStatement(DELETE)).thenReturn(delete);
+        return connection;
+    }
+
+    private static Object[] fila(long id, int productoId, EventType type) {
+        return new Object[] { id, "/productos/" + productoId, type };
+    }
+
+    @Test
+    public void testPendingQueryHoldsBackSubjectBehindEventAwaitingRetry() {
+        String sql = EventOutboxDispatcher.SELECT_PENDIENTES;
+
+        // Un evento anterior del mismo subject, no descartado y con el reintento en el futuro, bloquea al resto
+        assertTrue(sql.contains("NOT EXISTS (SELECT 1 FROM EVENTO_OUTBOX p "
+            + "WHERE p.Subject = o.Subject AND p.ID < o.ID AND p.Descartado = FALSE "
+            + "AND p.ProximoIntento > CURRENT_TIMESTAMP)"), sql);
+        // Los descartados dejan de bloquear y el lote sale en orden de inserción
+        assertTrue(sql.contains("o.Descartado = FALSE AND o.ProximoIntento <= CURRENT_TIMESTAMP"), sql);
+        assertTrue(sql.endsWith("ORDER BY o.ID LIMIT ?"), sql);
+    }
+
+    @Test
+    public void testFailedPublishBacksOffEveryRowAndDeletesNothing() throws Exception {
+        PreparedStatement markFailed = mock(PreparedStatement.class);
+        ResultSet marcadas = mock(ResultSet.class);
+        when(markFailed.executeQuery()).thenReturn(marcadas);
+        when(marcadas.next()).thenReturn(true, true, false);
+        when(marcadas.getLong("ID")).thenReturn(1L, 2L);
+        when(marcadas.getBoolean("Descartado")).thenReturn(false, true);
+        PreparedStatement delete = mock(PreparedStatement.class);
+        Connection connection = outbox(markFailed, delete,
+            fila(1, 7, EventType.PRODUCTO_CREADO),
+            fila(2, 8, EventType.PRODUCTO_ELIMINADO));
+
+        int resultado = EventOutboxDispatcher.drainBatch(connection, logger, events -> {
+            throw new IllegalStateException("503 Service Unavailable");
+        });
+
+        assertEquals(-1, resultado);
+        verify(markFailed).setString(1, "503 Service Unavailable");
+        // Backoff 5 s * 2^Intentos con tope de 900 s, descarte al llegar a 10 intentos (valores por defecto)
+        verify(markFailed).setInt(2, 900);
+        verify(markFailed).setInt(3, 10);
+        verify(connection).createArrayOf("bigint", new Object[] { 1L, 2L });
+        verify(marcadas, times(2)).getBoolean("Descartado");
+        verify(delete, never()).executeUpdate();
+
+        String sql = EventOutboxDispatcher.MARK_FAILED;
+        assertTrue(sql.contains("Intentos = Intentos + 1"), sql);
+        assertTrue(sql.contains("ProximoIntento = CURRENT_TIMESTAMP + LEAST(POWER(2, Intentos) * 5, ?) * INTERVAL '1 second'"), sql);
+        assertTrue(sql.contains("Descartado = (Intentos + 1 >= ?)"), sql);
+    }
+
+    @Test
+    public void testCoalescedBatchDeletesEveryRowItRead() throws Exception {
+        PreparedStatement markFailed = mock(PreparedStatement.class);
+        PreparedStatement delete = mock(PreparedStatement.class);
+        Connection connection = outbox(markFailed, delete,
+            fila(10, 1, EventType.PRODUCTO_ACTUALIZADO),
+            fila(11, 1, EventType.PRODUCTO_ACTUALIZADO),
+            fila(12, 2, EventType.PRODUCTO_CREADO),
+            fila(13, 1, EventType.PRODUCTO_ACTUALIZADO));
+        List<EventGridEvent> publicados = new ArrayList<>();
+
+        int resultado = EventOutboxDispatcher.drainBatch(connection, logger, publicados::addAll);
+
+        // Las tres actualizaciones de /productos/1 salen una vez, pero se borran las cuatro filas
+        assertEquals(4, resultado);
+        assertEquals(2, publicados.size());
+        assertEquals("evt-12", publicados.get(0).getId());
+        assertEquals("evt-13", publicados.get(1).getId());
+        verify(connection).createArrayOf("bigint", new Object[] { 10L, 11L, 12L, 13L });
+        verify(delete).executeUpdate();
+        verify(markFailed, never()).executeQuery();
+    }
+
+    @Test
+    public void testBusyLockPublishesNothing() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement lock = mock(PreparedStatement.class);
+        ResultSet lockRs = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(lock);
+        when(lock.executeQuery()).thenReturn(lockRs);
+        when(lockRs.next()).thenReturn(true);
+        when(lockRs.getBoolean(1)).thenReturn(false);
+        List<EventGridEvent> publicados = new ArrayList<>();
+
+        assertEquals(0, EventOutboxDispatcher.drainBatch(connection, logger, publicados::addAll));
+        assertTrue(publicados.isEmpty());
+        verify(connection, never()).prepareStatement(EventOutboxDispatcher.SELECT_PENDIENTES);
+    }
+}
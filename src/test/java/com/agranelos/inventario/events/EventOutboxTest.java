@@ -0,0 +1,77 @@
+package com.agranelos.inventario.events;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.azure.core.util.BinaryData;
+import com.azure.messaging.eventgrid.EventGridEvent;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+/**
+ * Unit tests for EventOutbox (JDBC simulado, sin base de datos).
+ */
+public class EventOutboxTest {
+
+    private static final String UPDATE_PRODUCTO = "UPDATE PRODUCTO SET Precio = ? WHERE ID = ?";
+
+    private static EventGridEvent event(int productoId) {
+        EventGridEvent event = new EventGridEvent("/productos/" + productoId, EventType.PRODUCTO_ACTUALIZADO.getValue(),
+            BinaryData.fromString("{\"productoId\":" + productoId + "}"), "1.0");
+        event.setId("evt-" + productoId);
+        return event;
+    }
+
+    @Test
+    public void testEnqueueAllWritesOnCallersTransaction() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement update = mock(PreparedStatement.class);
+        PreparedStatement insert = mock(PreparedStatement.class);
+        when(connection.prepareStatement(UPDATE_PRODUCTO)).thenReturn(update);
+        when(connection.prepareStatement(startsWith("INSERT INTO EVENTO_OUTBOX"))).thenReturn(insert);
+
+        // Lo que hace un handler dentro de DatabaseManager.inTransaction
+        try (PreparedStatement statement = connection.prepareStatement(UPDATE_PRODUCTO)) {
+            statement.executeUpdate();
+        }
+        EventOutbox.enqueueAll(connection, List.of(event(1), event(2)));
+
+        InOrder orden = inOrder(update, insert);
+        orden.verify(update).executeUpdate();
+        orden.verify(insert, times(2)).addBatch();
+        orden.verify(insert).executeBatch();
+        verify(insert).setString(1, "evt-1");
+        verify(insert).setString(2, "/productos/2");
+        verify(insert).setString(4, "{\"productoId\":2}");
+        // El commit, el rollback y el cierre quedan para quien abrió la transacción
+        verify(connection, never()).commit();
+        verify(connection, never()).rollback();
+        verify(connection, never()).setAutoCommit(anyBoolean());
+        verify(connection, never()).close();
+    }
+
+    @Test
+    public void testEnqueueFailurePropagatesSoTheDataChangeRollsBack() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement insert = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(insert);
+        when(insert.executeBatch()).thenThrow(new BatchUpdateException());
+
+        assertThrows(BatchUpdateException.class, () -> EventOutbox.enqueueAll(connection, List.of(event(1))));
+        verify(connection, never()).commit();
+    }
+
+    @Test
+    public void testEnqueueAllWithoutEventsTouchesNothing() throws Exception {
+        Connection connection = mock(Connection.class);
+
+        EventOutbox.enqueueAll(connection, List.of());
+
+        verifyNoMoreInteractions(connection);
+    }
+}
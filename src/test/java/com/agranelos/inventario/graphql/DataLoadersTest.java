@@ -0,0 +1,52 @@
+package com.agranelos.inventario.graphql;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.agranelos.inventario.model.Producto;
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for DataLoaders (carga de productos simulada, sin base de datos).
+ */
+public class DataLoadersTest {
+
+    @Test
+    public void testAliasedProductoQueriesAreLoadedInOneBatch() throws Exception {
+        List<Set<Integer>> lotes = new ArrayList<>();
+        ExecutionInput input = ExecutionInput.newExecutionInput()
+            .query(IntStream.rangeClosed(1, 20)
+                .mapToObj(id -> "p" + id + ": producto(id: \"" + id + "\") { id nombre }")
+                .collect(Collectors.joining(" ", "{ ", " }")))
+            .dataLoaderRegistry(DataLoaders.newRegistry(ids -> {
+                lotes.add(new HashSet<>(ids));
+                Map<Integer, Producto> productos = new HashMap<>();
+                for (Integer id : ids) {
+                    Producto producto = new Producto("Producto " + id, null, BigDecimal.ONE, 1);
+                    producto.setId(id);
+                    productos.put(id, producto);
+                }
+                return productos;
+            }))
+            .build();
+
+        ExecutionResult result = GraphQLSchemaBuilder.buildSchema().execute(input);
+
+        assertTrue(result.getErrors().isEmpty(), () -> result.getErrors().toString());
+        assertEquals(1, lotes.size());
+        assertEquals(IntStream.rangeClosed(1, 20).boxed().collect(Collectors.toSet()), lotes.get(0));
+        Map<String, Map<String, Object>> data = result.getData();
+        assertEquals(20, data.size());
+        assertEquals("Producto 7", data.get("p7").get("nombre"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.agranelos.inventario.graphql;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for FieldTracingInstrumentation.
+ */
+public class FieldTracingInstrumentationTest {
+
+    private static GraphQL graphQL(FieldTracingInstrumentation tracing) {
+        String sdl = "type Query { productos: [Producto] } type Producto { nombre: String }";
+        RuntimeWiring wiring = RuntimeWiring.newRuntimeWiring()
+            .type("Query", builder -> builder.dataFetcher("productos",
+                env -> List.of(Map.of("nombre", "Arroz"), Map.of("nombre", "Sal"))))
+            .build();
+        GraphQLSchema schema = new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(sdl), wiring);
+        return GraphQL.newGraphQL(schema).instrumentation(tracing).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> operacion(FieldTracingInstrumentation tracing, String nombre) {
+        return (Map<String, Object>) ((Map<String, Object>) tracing.stats().get("operations")).get(nombre);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSampledExecutionAggregatesFieldTimings() {
+        FieldTracingInstrumentation tracing = new FieldTracingInstrumentation(1.0, 1000, false);
+        GraphQL graphQL = graphQL(tracing);
+
+        for (int i = 0; i < 3; i++) {
+            ExecutionResult result = graphQL.execute(ExecutionInput.newExecutionInput()
+                .query("query Listado { productos { nombre } }")
+                .operationName("Listado")
+                .build());
+            assertTrue(result.getErrors().isEmpty());
+            assertNull(result.getExtensions());
+        }
+
+        Map<String, Object> listado = operacion(tracing, "Listado");
+        assertEquals(3L, listado.get("count"));
+        Map<String, Map<String, Object>> campos = (Map<String, Map<String, Object>>) listado.get("fields");
+        assertEquals(3L, campos.get("Query.productos").get("count"));
+        assertEquals(6L, campos.get("Producto.nombre").get("count"));
+    }
+
+    @Test
+    public void testUnsampledExecutionRecordsNothing() {
+        FieldTracingInstrumentation tracing = new FieldTracingInstrumentation(0, 0, true);
+        ExecutionResult result = graphQL(tracing).execute("{ productos { nombre } }");
+
+        assertTrue(result.getErrors().isEmpty());
+        assertNull(result.getExtensions());
+        assertTrue(((Map<?, ?>) tracing.stats().get("operations")).isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testApolloTracingOnRequest() {
+        FieldTracingInstrumentation tracing = new FieldTracingInstrumentation(0, 1000, true);
+        ExecutionResult result = graphQL(tracing).execute(ExecutionInput.newExecutionInput()
+            .query("{ productos { nombre } }")
+            .extensions(Map.of("tracing", true))
+            .build());
+
+        Map<String, Object> apollo = (Map<String, Object>) result.getExtensions().get("tracing");
+        assertEquals(1, apollo.get("version"));
+        List<Map<String, Object>> resolvers =
+            (List<Map<String, Object>>) ((Map<String, Object>) apollo.get("execution")).get("resolvers");
+        assertEquals(3, resolvers.size());
+        assertTrue(resolvers.stream().anyMatch(r -> r.get("path").equals(List.of("productos", 1, "nombre"))));
+        assertNotNull(operacion(tracing, FieldTracingInstrumentation.SIN_NOMBRE));
+    }
+}
@@ -0,0 +1,107 @@
+package com.agranelos.inventario.graphql;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import graphql.ExecutionResult;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for GraphQLSchemaBuilder (sin base de datos).
+ */
+public class GraphQLSchemaBuilderTest {
+
+    @Test
+    public void testHealthQuery() throws Exception {
+        ExecutionResult result = GraphQLSchemaBuilder.executeQuery("{ health }", null, null);
+
+        assertTrue(result.getErrors().isEmpty());
+        Map<String, Object> data = result.getData();
+        assertEquals("GraphQL API funcionando correctamente", data.get("health"));
+    }
+
+    @Test
+    public void testProductosConnectionRejectsInvalidFirst() throws Exception {
+        ExecutionResult result = GraphQLSchemaBuilder.executeQuery(
+            "{ productosConnection(first: 0) { edges { cursor } pageInfo { hasNextPage } } }",
+            null,
+            null
+        );
+
+        // La validación de argumentos ocurre antes de consultar la base de datos
+        assertFalse(result.getErrors().isEmpty());
+        assertTrue(result.getErrors().get(0).getMessage().contains("first"));
+    }
+
+    @Test
+    public void testBodegasConnectionRejectsForeignCursor() throws Exception {
+        String cursor = new com.agranelos.inventario.db.KeysetCursor("NOMBRE_ASC", "Central", 3).encode();
+
+        ExecutionResult result = GraphQLSchemaBuilder.executeQuery(
+            "{ bodegasConnection(after: \"" + cursor + "\", orderBy: CAPACIDAD_DESC) { edges { cursor } } }",
+            null,
+            null
+        );
+
+        assertFalse(result.getErrors().isEmpty());
+    }
+
+    @Test
+    public void testDocumentCacheReusesParsedQuery() throws Exception {
+        String query = "query CacheTest { health }";
+        long hitsBefore = GraphQLSchemaBuilder.getDocumentCache().getCache().getHits();
+
+        GraphQLSchemaBuilder.executeQuery(query, null, null);
+        GraphQLSchemaBuilder.executeQuery(query, null, null);
+
+        assertTrue(GraphQLSchemaBuilder.getDocumentCache().getCache().getHits() > hitsBefore);
+    }
+
+    @Test
+    public void testPersistedQueryByHash() throws Exception {
+        String hash = GraphQLSchemaBuilder.registerPersistedQuery("query Persistida { health }");
+
+        ExecutionResult result = GraphQLSchemaBuilder.executePersistedQuery(hash, null, null);
+        assertTrue(result.getErrors().isEmpty());
+
+        ExecutionResult missing = GraphQLSchemaBuilder.executePersistedQuery("00ff", null, null);
+        assertEquals("PersistedQueryNotFound", missing.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    public void testAutomaticPersistedQueryProtocol() throws Exception {
+        String query = "query Apq { health }";
+        String hash = PersistedQueryRegistry.sha256Hex(query);
+        Map<String, Object> persistedQuery = new HashMap<>();
+        persistedQuery.put("version", 1);
+        persistedQuery.put("sha256Hash", hash);
+        Map<String, Object> extensions = new HashMap<>();
+        extensions.put("persistedQuery", persistedQuery);
+
+        // Primer intento solo con hash: el servidor aún no conoce la consulta
+        ExecutionResult notFound = GraphQLSchemaBuilder.executeQuery(null, null, null, extensions);
+        assertEquals("PersistedQueryNotFound", notFound.getErrors().get(0).getMessage());
+
+        // Reintento con texto: se registra y ejecuta
+        ExecutionResult registered = GraphQLSchemaBuilder.executeQuery(query, null, null, extensions);
+        assertTrue(registered.getErrors().isEmpty());
+
+        // Siguientes peticiones solo con hash
+        ExecutionResult byHash = GraphQLSchemaBuilder.executeQuery(null, null, null, extensions);
+        assertTrue(byHash.getErrors().isEmpty());
+    }
+
+    @Test
+    public void testAutomaticPersistedQueryHashMismatch() throws Exception {
+        Map<String, Object> persistedQuery = new HashMap<>();
+        persistedQuery.put("version", 1);
+        persistedQuery.put("sha256Hash", PersistedQueryRegistry.sha256Hex("{ otra }"));
+        Map<String, Object> extensions = new HashMap<>();
+        extensions.put("persistedQuery", persistedQuery);
+
+        ExecutionResult result = GraphQLSchemaBuilder.executeQuery("{ health }", null, null, extensions);
+
+        assertEquals("PersistedQueryIdInvalid", result.getErrors().get(0).getMessage());
+    }
+}
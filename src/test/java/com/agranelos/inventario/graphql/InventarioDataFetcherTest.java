@@ -0,0 +1,75 @@
+package com.agranelos.inventario.graphql;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.agranelos.inventario.model.Bodega;
+import com.agranelos.inventario.model.InventarioItem;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for InventarioDataFetcher (mapeo de filas y ocupación, sin base de datos).
+ */
+public class InventarioDataFetcherTest {
+
+    @Test
+    public void testMapInventarioGroupsRowsByKey() throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.next()).thenReturn(true, true, true, false);
+        when(rs.getInt("ID")).thenReturn(1, 2, 3);
+        when(rs.getInt("IDProducto")).thenReturn(10, 10, 20);
+        when(rs.getInt("IDBodega")).thenReturn(100, 200, 100);
+        when(rs.getInt("Cantidad")).thenReturn(5, 7, 9);
+        Timestamp fecha = Timestamp.valueOf(LocalDateTime.of(2024, 1, 2, 3, 4, 5));
+        when(rs.getTimestamp("FechaActualizacion")).thenReturn(fecha, null, fecha);
+
+        Map<Integer, List<InventarioItem>> porProducto = InventarioDataFetcher.mapInventario(rs, true);
+
+        assertEquals(2, porProducto.size());
+        List<InventarioItem> items = porProducto.get(10);
+        assertEquals(2, items.size());
+        assertEquals(1, items.get(0).getId());
+        assertEquals(100, items.get(0).getBodegaId());
+        assertEquals(5, items.get(0).getCantidad());
+        assertEquals(fecha.toLocalDateTime(), items.get(0).getFechaActualizacion());
+        assertNull(items.get(1).getFechaActualizacion());
+        assertEquals(9, porProducto.get(20).get(0).getCantidad());
+    }
+
+    @Test
+    public void testMapTotalesByBodega() throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.next()).thenReturn(true, true, false);
+        when(rs.getInt("IDBodega")).thenReturn(1, 2);
+        when(rs.getLong("Total")).thenReturn(40L, 0L);
+
+        Map<Integer, Long> totales = InventarioDataFetcher.mapTotales(rs);
+
+        assertEquals(40L, totales.get(1));
+        assertEquals(0L, totales.get(2));
+    }
+
+    @Test
+    public void testOcupacionConvertsTotalToInt() {
+        Bodega bodega = new Bodega("Central", "Santiago", 200);
+
+        Map<String, Object> ocupacion = InventarioDataFetcher.ocupacion(bodega, 50L);
+        assertEquals(Integer.valueOf(50), ocupacion.get("totalUnidades"));
+        assertEquals(Integer.valueOf(200), ocupacion.get("capacidad"));
+        assertEquals(Integer.valueOf(150), ocupacion.get("disponible"));
+        assertEquals(25.0, ocupacion.get("porcentaje"));
+
+        // Bodega sin inventario ni capacidad
+        Map<String, Object> vacia = InventarioDataFetcher.ocupacion(new Bodega("Vacía", "Talca", null), null);
+        assertEquals(Integer.valueOf(0), vacia.get("totalUnidades"));
+        assertEquals(0.0, vacia.get("porcentaje"));
+
+        assertThrows(ArithmeticException.class,
+            () -> InventarioDataFetcher.ocupacion(bodega, Integer.MAX_VALUE + 1L));
+    }
+}
@@ -0,0 +1,144 @@
+package com.agranelos.inventario.graphql;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.introspection.IntrospectionQuery;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.SchemaParser;
+import graphql.schema.idl.UnExecutableSchemaGenerator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for QueryCostAnalyzer, QueryBudgets and QueryCostInstrumentation.
+ */
+public class QueryCostInstrumentationTest {
+
+    private static GraphQLSchema schema;
+
+    @BeforeAll
+    public static void loadSchema() throws IOException {
+        try (InputStream in = QueryCostInstrumentationTest.class.getClassLoader().getResourceAsStream("schema.graphqls")) {
+            String sdl = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            schema = UnExecutableSchemaGenerator.makeUnExecutableSchema(new SchemaParser().parse(sdl));
+        }
+    }
+
+    private static QueryCostAnalyzer analyzer() {
+        return new QueryCostAnalyzer(
+            Map.of("Query.producto", 2),
+            Map.of("ProductoConnection.edges", 1, "Producto.inventario", 10),
+            100
+        );
+    }
+
+    private static ExecutionResult execute(QueryCostInstrumentation instrumentation, String query, String cliente) {
+        GraphQL graphQL = GraphQL.newGraphQL(schema).instrumentation(instrumentation).build();
+        ExecutionInput.Builder input = ExecutionInput.newExecutionInput().query(query);
+        if (cliente != null) {
+            input.graphQLContext(Map.of(QueryCostInstrumentation.CLIENT_KEY, cliente));
+        }
+        return graphQL.execute(input.build());
+    }
+
+    private static Object code(ExecutionResult result) {
+        assertEquals(1, result.getErrors().size(), result.getErrors().toString());
+        return result.getErrors().get(0).getExtensions().get("code");
+    }
+
+    private static long costo(String query) {
+        QueryCostInstrumentation instrumentation = new QueryCostInstrumentation(analyzer(), 0, 1, null);
+        ExecutionResult result = execute(instrumentation, query, null);
+        if (result.getErrors().isEmpty()) {
+            return 0;
+        }
+        return ((Number) result.getErrors().get(0).getExtensions().get("cost")).longValue();
+    }
+
+    @Test
+    public void testCostModel() {
+        // 100 productos esperados, cada uno una fila
+        assertEquals(100, costo("{ productos { nombre precio } }"));
+        // first multiplica; edges no vuelve a multiplicar: 5 * (página + edge + node)
+        assertEquals(15, costo("{ productosConnection(first: 5) { edges { node { nombre } } } }"));
+        // peso configurado + un objeto
+        assertEquals(3, costo("{ producto(id: 1) { nombre } }"));
+        // 100 * (producto + 10 * (item + bodega))
+        assertEquals(2100, costo("{ productos { inventario { bodega { nombre } } } }"));
+        // los alias suman
+        assertEquals(300, costo("{ a: productos { id } b: productos { id } c: productos { id } }"));
+        // mutations: peso por defecto por tamaño de inputs, más la respuesta y sus resultados
+        assertEquals(30 + 1 + 100, costo("mutation { crearProductos(inputs: ["
+            + "{nombre: \"a\", precio: 1, cantidad: 1}, {nombre: \"b\", precio: 1, cantidad: 1},"
+            + "{nombre: \"c\", precio: 1, cantidad: 1}]) { resultados { indice } } }"));
+    }
+
+    @Test
+    public void testRejectsDeepAndComplexQueriesBeforeExecution() {
+        QueryCostInstrumentation instrumentation = new QueryCostInstrumentation(analyzer(), 4, 1000, null);
+
+        ExecutionResult profundo = execute(instrumentation,
+            "{ productos { inventario { bodega { inventario { producto { nombre } } } } } }", null);
+        assertEquals(QueryCostInstrumentation.QUERY_TOO_DEEP, code(profundo));
+        assertNull(profundo.getData());
+
+        StringBuilder alias = new StringBuilder("{");
+        for (int i = 0; i < 20; i++) {
+            alias.append(" p").append(i).append(": productos { id }");
+        }
+        ExecutionResult complejo = execute(instrumentation, alias.append(" }").toString(), null);
+        assertEquals(QueryCostInstrumentation.QUERY_TOO_COMPLEX, code(complejo));
+
+        // La introspección no cuenta para profundidad ni costo
+        ExecutionResult introspeccion = execute(instrumentation, IntrospectionQuery.INTROSPECTION_QUERY, null);
+        assertTrue(introspeccion.getErrors().isEmpty(), introspeccion.getErrors().toString());
+
+        Map<String, Object> stats = instrumentation.stats();
+        assertEquals(1L, stats.get("rejectedDepth"));
+        assertEquals(1L, stats.get("rejectedCost"));
+    }
+
+    private static boolean budgetExceeded(ExecutionResult result) {
+        return result.getErrors().stream().anyMatch(e -> e.getExtensions() != null
+            && QueryCostInstrumentation.BUDGET_EXCEEDED.equals(e.getExtensions().get("code")));
+    }
+
+    @Test
+    public void testBudgetPerClient() {
+        QueryCostInstrumentation instrumentation =
+            new QueryCostInstrumentation(analyzer(), 0, 0, new QueryBudgets(250, 10, 100));
+
+        assertFalse(budgetExceeded(execute(instrumentation, "{ productos { id } }", "1.1.1.1")));
+        assertFalse(budgetExceeded(execute(instrumentation, "{ productos { id } }", "1.1.1.1")));
+
+        // Quedan 50 de 100: faltan 50 unidades a 10 por segundo
+        ExecutionResult agotado = execute(instrumentation, "{ productos { id } }", "1.1.1.1");
+        assertEquals(QueryCostInstrumentation.BUDGET_EXCEEDED, code(agotado));
+        assertEquals(5L, agotado.getErrors().get(0).getExtensions().get("retryAfterSeconds"));
+
+        // Otro cliente tiene su propio presupuesto; sin cliente no se aplica
+        assertFalse(budgetExceeded(execute(instrumentation, "{ productos { id } }", "2.2.2.2")));
+        assertFalse(budgetExceeded(execute(instrumentation, "{ productos { id } }", null)));
+        assertEquals(1L, instrumentation.stats().get("rejectedBudget"));
+    }
+
+    @Test
+    public void testBucketRefill() {
+        AtomicLong now = new AtomicLong(0);
+        QueryBudgets budgets = new QueryBudgets(100, 10, 10, now::get);
+
+        assertEquals(0, budgets.tryConsume("c", 100));
+        assertEquals(1000, budgets.tryConsume("c", 10));
+        now.set(1000);
+        assertEquals(0, budgets.tryConsume("c", 10));
+        assertEquals(-1, budgets.tryConsume("c", 101));
+    }
+}
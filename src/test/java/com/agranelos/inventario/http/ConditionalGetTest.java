@@ -0,0 +1,58 @@
+package com.agranelos.inventario.http;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.microsoft.azure.functions.HttpRequestMessage;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for ConditionalGet.
+ */
+public class ConditionalGetTest {
+
+    private static final LocalDateTime FECHA = LocalDateTime.of(2024, 5, 10, 12, 30, 15, 500_000_000);
+
+    @Test
+    public void testEtagIsStableAndQuoted() {
+        String etag = ConditionalGet.etag("producto", 1, FECHA);
+
+        assertEquals(etag, ConditionalGet.etag("producto", 1, FECHA));
+        assertNotEquals(etag, ConditionalGet.etag("producto", 1, FECHA.plusSeconds(1)));
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+    }
+
+    @Test
+    public void testIfNoneMatch() {
+        String etag = ConditionalGet.etag("producto", 1, FECHA);
+
+        assertTrue(ConditionalGet.isNotModified(request("if-none-match", etag), etag, null));
+        assertTrue(ConditionalGet.isNotModified(request("If-None-Match", "\"otro\", W/" + etag), etag, null));
+        assertTrue(ConditionalGet.isNotModified(request("If-None-Match", "*"), etag, null));
+        assertFalse(ConditionalGet.isNotModified(request("If-None-Match", "\"otro\""), etag, FECHA));
+    }
+
+    @Test
+    public void testIfModifiedSince() {
+        String etag = ConditionalGet.etag("producto", 1, FECHA);
+        String lastModified = ConditionalGet.httpDate(FECHA);
+
+        assertEquals("Fri, 10 May 2024 12:30:15 GMT", lastModified);
+        assertTrue(ConditionalGet.isNotModified(request("If-Modified-Since", lastModified), etag, FECHA));
+        assertFalse(ConditionalGet.isNotModified(request("If-Modified-Since", lastModified), etag, FECHA.plusSeconds(1)));
+        assertFalse(ConditionalGet.isNotModified(request("If-Modified-Since", "ayer"), etag, FECHA));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpRequestMessage<Optional<String>> request(String header, String value) {
+        HttpRequestMessage<Optional<String>> request = mock(HttpRequestMessage.class);
+        Map<String, String> headers = new HashMap<>();
+        headers.put(header, value);
+        doReturn(headers).when(request).getHeaders();
+        return request;
+    }
+}
@@ -0,0 +1,92 @@
+package com.agranelos.inventario.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for LatencyHistogram, RequestMetrics and PrometheusExporter.
+ */
+public class RequestMetricsTest {
+
+    @Test
+    public void testHistogramPercentilesWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1..1000 ms
+        for (int i = 1; i <= 1000; i++) {
+            histogram.recordNanos(i * 1_000_000L);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000_000L, histogram.getMaxNanos());
+        assertEquals(500_000_000L, histogram.percentileNanos(0.5), 500_000_000L * 0.04);
+        assertEquals(990_000_000L, histogram.percentileNanos(0.99), 990_000_000L * 0.04);
+        assertEquals(1_000_000_000L, histogram.percentileNanos(1.0));
+        assertEquals(0, new LatencyHistogram().percentileNanos(0.5));
+    }
+
+    @Test
+    public void testBucketIndexIsMonotonic() {
+        int anterior = -1;
+        for (long micros = 0; micros < 1_000_000; micros += 7) {
+            int index = LatencyHistogram.indexOf(micros);
+            assertTrue(index >= anterior);
+            assertTrue(LatencyHistogram.upperBoundMicros(index) >= micros);
+            anterior = index;
+        }
+    }
+
+    @Test
+    public void testScopeRecordsTotalAndUsedPhases() {
+        try (RequestMetrics.Scope metrics = RequestMetrics.start("TestFunction")) {
+            RequestMetrics.record(RequestMetrics.Phase.SERIALIZATION, 2_000_000);
+            RequestMetrics.record(RequestMetrics.Phase.SERIALIZATION, 1_000_000);
+            RequestMetrics.connectionAcquired();
+            RequestMetrics.connectionAcquired();
+            RequestMetrics.connectionReleased(0);
+            RequestMetrics.connectionReleased(0);
+        }
+
+        LatencyHistogram[] histograms = RequestMetrics.histograms("TestFunction");
+        assertEquals(1, histograms[RequestMetrics.Phase.TOTAL.ordinal()].getCount());
+        assertEquals(3_000_000, histograms[RequestMetrics.Phase.SERIALIZATION.ordinal()].getSumNanos());
+        assertEquals(1, histograms[RequestMetrics.Phase.DB.ordinal()].getCount());
+        assertEquals(0, histograms[RequestMetrics.Phase.EVENT_GRID.ordinal()].getCount());
+
+        String texto = PrometheusExporter.scrape();
+        assertTrue(texto.contains("# TYPE inventario_function_duration_seconds summary"));
+        assertTrue(texto.contains("inventario_function_duration_seconds_count{function=\"TestFunction\",phase=\"total\"} 1"));
+        assertTrue(texto.contains("inventario_function_duration_seconds_sum{function=\"TestFunction\",phase=\"serialization\"} 0.003"));
+        assertFalse(texto.contains("function=\"TestFunction\",phase=\"eventgrid\""));
+    }
+
+    @Test
+    public void testSyntheticScopesAreNotRecorded() {
+        try (RequestMetrics.Scope warmup = RequestMetrics.startSynthetic("WarmupTest")) {
+            try (RequestMetrics.Scope metrics = RequestMetrics.start("SyntheticFunction")) {
+                RequestMetrics.record(RequestMetrics.Phase.SERIALIZATION, 1_000_000);
+            }
+        }
+        assertFalse(RequestMetrics.snapshot().containsKey("SyntheticFunction"));
+        assertFalse(RequestMetrics.snapshot().containsKey("WarmupTest"));
+
+        // La primera invocación real marca el fin del arranque en frío
+        try (RequestMetrics.Scope metrics = RequestMetrics.start("ColdStartFunction")) {
+            RequestMetrics.record(RequestMetrics.Phase.SERIALIZATION, 1_000_000);
+        }
+        assertNotNull(ColdStart.stats().get("firstFunction"));
+        assertTrue(((Number) ColdStart.stats().get("firstResponseMillis")).longValue() >= 0);
+        assertTrue(PrometheusExporter.scrape().contains("# TYPE inventario_cold_start_first_response_seconds gauge"));
+    }
+
+    @Test
+    public void testMeasureRecordsEvenWhenWorkThrows() {
+        assertEquals("ok", RequestMetrics.measure("MeasuredFunction", () -> "ok"));
+        assertThrows(IllegalStateException.class, () -> RequestMetrics.measure("MeasuredFunction", () -> {
+            throw new IllegalStateException("fallo");
+        }));
+
+        LatencyHistogram[] histograms = RequestMetrics.histograms("MeasuredFunction");
+        assertEquals(2, histograms[RequestMetrics.Phase.TOTAL.ordinal()].getCount());
+    }
+}
@@ -0,0 +1,110 @@
+package com.agranelos.inventario.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for EmailQueue and EmailDigest.
+ */
+public class EmailQueueTest {
+
+    private static EmailMessage message(String subject) {
+        return new EmailMessage("from@example.com", "to@example.com", subject, "<p>" + subject + "</p>");
+    }
+
+    /**
+     * Transporte de prueba que falla las primeras N veces
+     */
+    private static final class FakeTransport implements EmailTransport {
+        private final List<String> entregados = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger fallosRestantes;
+        private final int status;
+
+        private FakeTransport(int fallos, int status) {
+            this.fallosRestantes = new AtomicInteger(fallos);
+            this.status = status;
+        }
+
+        @Override
+        public void send(EmailMessage message) throws IOException {
+            if (fallosRestantes.getAndDecrement() > 0) {
+                throw new EmailDeliveryException("fallo", status);
+            }
+            entregados.add(message.getSubject());
+        }
+
+        @Override
+        public String getName() {
+            return "fake";
+        }
+    }
+
+    @Test
+    public void testRetriesTransientFailures() {
+        FakeTransport transport = new FakeTransport(2, 503);
+        EmailQueue queue = new EmailQueue(transport, 10, 1000, 5, 1);
+
+        assertTrue(queue.submit(message("uno")));
+        queue.shutdown(5000);
+
+        assertEquals(List.of("uno"), transport.entregados);
+        assertEquals(2, queue.getReintentos());
+        assertEquals(0, queue.getPendientes());
+    }
+
+    @Test
+    public void testDropsPermanentFailures() {
+        FakeTransport transport = new FakeTransport(1, 400);
+        EmailQueue queue = new EmailQueue(transport, 10, 1000, 5, 1);
+
+        queue.submit(message("uno"));
+        queue.submit(message("dos"));
+        queue.shutdown(5000);
+
+        assertEquals(List.of("dos"), transport.entregados);
+        assertEquals(1, queue.getFallidos());
+        assertEquals(0, queue.getReintentos());
+    }
+
+    @Test
+    public void testRejectsWhenFull() {
+        FakeTransport transport = new FakeTransport(0, 0);
+        // Un email por segundo: el primero se envía y el resto espera turno
+        EmailQueue queue = new EmailQueue(transport, 2, 1, 1, 1);
+
+        assertTrue(queue.submit(message("uno")));
+        assertTrue(queue.submit(message("dos")));
+        assertFalse(queue.submit(message("tres")));
+        queue.shutdown(5000);
+
+        assertEquals(List.of("uno", "dos"), transport.entregados);
+    }
+
+    @Test
+    public void testDigestFlushesByCountAndInterval() {
+        AtomicLong now = new AtomicLong(0);
+        List<String> resumenes = new ArrayList<>();
+        EmailDigest digest = new EmailDigest(3, 60_000,
+            (destinatario, lineas) -> resumenes.add(destinatario + ":" + lineas.size()), now::get);
+
+        digest.add("a@example.com", "1");
+        digest.add("a@example.com", "2");
+        digest.add("b@example.com", "1");
+        digest.add("a@example.com", "3");
+        assertEquals(List.of("a@example.com:3"), resumenes);
+
+        now.set(59_999);
+        assertEquals(0, digest.flushDue());
+        now.set(60_000);
+        assertEquals(1, digest.flushDue());
+        assertEquals(List.of("a@example.com:3", "b@example.com:1"), resumenes);
+        assertEquals(0, digest.size());
+    }
+}
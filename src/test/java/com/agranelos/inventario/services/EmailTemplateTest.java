@@ -0,0 +1,76 @@
+package com.agranelos.inventario.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for EmailTemplate and EmailTemplates.
+ */
+public class EmailTemplateTest {
+
+    @Test
+    public void testVariablesSectionsAndEscaping() {
+        EmailTemplate template = EmailTemplate.compile("test",
+            "<h2>{{titulo}}</h2>{{#items}}<li>{{nombre}} x{{cantidad}}</li>{{/items}}{{#nota}}<p>{{{nota}}}</p>{{/nota}}",
+            true);
+
+        Map<String, Object> model = new HashMap<>();
+        model.put("titulo", "Arroz & <Trigo>");
+        model.put("items", List.of(Map.of("nombre", "Sal \"fina\"", "cantidad", 2), Map.of("nombre", "Té", "cantidad", 1)));
+        model.put("nota", "<b>ok</b>");
+
+        assertEquals("<h2>Arroz &amp; &lt;Trigo&gt;</h2>"
+            + "<li>Sal &quot;fina&quot; x2</li><li>Té x1</li><p><b>ok</b></p>", template.render(model));
+
+        model.remove("nota");
+        model.put("items", List.of());
+        assertEquals("<h2>Arroz &amp; &lt;Trigo&gt;</h2>", template.render(model));
+    }
+
+    @Test
+    public void testRejectsMalformedTemplates() {
+        assertThrows(IllegalArgumentException.class, () -> EmailTemplate.compile("a", "{{#x}}sin cierre", true));
+        assertThrows(IllegalArgumentException.class, () -> EmailTemplate.compile("b", "{{#x}}{{/y}}", true));
+        assertThrows(IllegalArgumentException.class, () -> EmailTemplate.compile("c", "{{abierto", true));
+    }
+
+    @Test
+    public void testLocalizedTemplatesWithFallback() {
+        Map<String, Object> model = new HashMap<>();
+        model.put("id", 7L);
+        model.put("nombre", "Lentejas");
+
+        assertEquals("Producto creado — ID 7: Lentejas",
+            EmailTemplates.forLocale("es").message("producto.creado.resumen", model));
+        assertEquals("Product created — ID 7: Lentejas",
+            EmailTemplates.forLocale("en").message("producto.creado.resumen", model));
+        // Idioma sin plantillas: se usa el por defecto
+        assertEquals("Producto creado — ID 7: Lentejas",
+            EmailTemplates.forLocale("pt").message("producto.creado.resumen", model));
+        assertThrows(IllegalArgumentException.class, () -> EmailTemplates.forLocale("es").render("inexistente", model));
+    }
+
+    @Test
+    public void testDigestRendersAllItems() {
+        List<String> cambios = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            cambios.add("Producto actualizado — ID " + i + ": <Item " + i + ">");
+        }
+        Map<String, Object> model = new HashMap<>();
+        model.put("cambios", cambios);
+        model.put("fecha", "hoy");
+
+        EmailTemplates templates = EmailTemplates.forLocale("es");
+        String html = templates.render("resumen", model);
+        String otra = templates.render("resumen", model);
+
+        assertEquals(html, otra);
+        assertTrue(html.contains("<li>Producto actualizado — ID 499: &lt;Item 499&gt;</li>"));
+        assertEquals(500, html.split("<li>", -1).length - 1);
+    }
+}